@@ -0,0 +1,89 @@
+package com.habr.cron;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+/**
+ * Schedules and start dates used by all benchmarks.
+ */
+final class BenchmarkData
+{
+    private BenchmarkData() {}
+
+    /**
+     * Schedules for search of events: {schedule, start date}
+     */
+    static final String[][] TEST_DATES = new String[][]
+    {
+            // the nearest event is in 4 years; expected to receive 2016.01.01 12:00:00.000
+            {"*/4.01.01 12:00:00.000",              "2012.01.01 12:00:00.001"},
+
+            // generation of events with a frequency of 1ms; expected to receive 2021.09.30 12:00:00.003
+            {"*.*.* *:*:*.*",                       "2021.09.30 12:00:00.002"},
+
+            // the nearest event in April; expected to receive 2001.04.06 00:00:00.001
+            {"*.4.6,7 * *:*:*.1,2,3-5,10-20/3",     "2001.01.01 00:00:00.000"},
+
+            // the nearest event in next year; expected to receive 2081.04.06 00:00:00.001
+            {"*.4.6,7 * *:*:*.1,2,3-5,10-20/3",     "2080.05.05 12:00:00.000"},
+
+            // the next event in the last of possible range; expected 2100.12.31 23:59:59.999
+            {"2100.12.31 23:59:59.999",             "2000.01.01 00:00:00.000"},
+            {"2100.12.31 23:59:59.999",             "2080.05.05 00:00:00.000"},
+
+            //
+            // Synthetic schedules: very complexity schedules.
+            // Will not used in real cases.
+            //
+
+            // the last day of February in Saturday; expected 29.02.2048 12:00:00.000
+            {"*.02.29 6 12:00:00",                  "2021.01.01 12:00:00.000"},
+
+            // on Friday with float days top limit; expected 30.04.2021 12:14:34.000
+            {"*.*.20-32/5 5 12:14:34",              "2021.01.31 12:14:33.177"},
+    };
+
+    /**
+     * Schedules for generation of events: {schedule, start date}
+     */
+    static final String[][] GENERATOR_DATES = new String[][]
+    {
+            // generate with step 1ms
+            {"*:*:*.*",                             "2021.11.17 14:00:00.001"},
+            // generate with step 5ms
+            {"*:*:*.5",                             "2021.11.17 14:00:00.000"},
+            // generate with step 1sec
+            {"*:*:*",                               "2021.11.17 14:00:00.000"},
+            // complexity schedules
+            {"*.1,10.5-26/7 1 12:*:*.320",          "2000.01.01 00:00:00.000"},
+            {"*.*.31 3 12:*:*",                     "2000.01.01 00:00:00.000"},
+
+            {"*:*:*.100-200,400-600",               "2021.01.01 00:00:00.000"},
+            {"*:*:*.100-200/10,400-600/10",         "2021.01.01 00:00:00.000"},
+            {"*:*:*.100-200,150-160",               "2021.01.01 00:00:00.000"}, // IntervalMatcher after optimize
+            {"*:*:*.100-101,150-151",               "2021.01.01 00:00:00.000"}, // ArrayMatcher
+            {"*:*:*.10-20,120-130,140-150,260-290,310-315,410-420,520-530,640-650,760-790,970-999",
+                                                    "2021.01.01 00:00:00.000"},
+    };
+
+
+    /**
+     * @param date in format 'yyyy.MM.dd HH:mm:ss.SSS' (UTC)
+     * @return timestamp of the date
+     */
+    static long parse(String date)
+    {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        format.setLenient(false);
+        try
+        {
+            return format.parse(date).getTime();
+        }
+        catch (ParseException e)
+        {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler (allocation rate per operation is reported).
+ * Accepts the standard JMH command line, for example:
+ *     java -jar target/benchmarks.jar SearchBenchmark -p testCase=1
+ */
+public class BenchmarkRunner
+{
+    public static void main(String args[]) throws RunnerException, CommandLineOptionException
+    {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
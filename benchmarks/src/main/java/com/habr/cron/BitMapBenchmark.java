@@ -0,0 +1,76 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speed of the search in the {@link BitMapMatcher} by the density of the map.
+ * Each operation sweeps the whole range of the element.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BitMapBenchmark
+{
+    private static final int SWEEP = 1000;
+
+    /**
+     * The element: milliseconds (0-999) or years (0-9999)
+     */
+    @Param({"millis", "years"})
+    public String element;
+
+    /**
+     * The part of the matched values, in per mille
+     */
+    @Param({"1", "10", "100", "500"})
+    public int density;
+
+    private BitMapMatcher matcher;
+    private int max;
+    private int step; // the sweep visits SWEEP values of the whole range
+
+    @Setup
+    public void setUp()
+    {
+        max = "years".equals(element) ? 9999 : 999;
+        step = (max + 1) / SWEEP;
+        matcher = new BitMapMatcher(0, max);
+
+        Random random = new Random(1);
+        int count = Math.max(1, (max + 1) * density / 1000);
+        for (int i = 0; i < count; i++)
+            matcher.addValue(random.nextInt(max + 1));
+
+        matcher.finishRange();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SWEEP)
+    public int getNext()
+    {
+        int sum = 0;
+        int high = matcher.getHigh();
+        for (int value = 0; value <= max; value += step)
+            if ( value < high ) sum += matcher.getNext(value);
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SWEEP)
+    public int getPrev()
+    {
+        int sum = 0;
+        int low = matcher.getLow();
+        for (int value = 0; value <= max; value += step)
+            if ( value > low ) sum += matcher.getPrev(value);
+
+        return sum;
+    }
+}
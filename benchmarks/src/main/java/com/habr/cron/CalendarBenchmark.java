@@ -0,0 +1,71 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speed of the calendar arithmetic: timestamp to calendar fields and back, day of week.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CalendarBenchmark
+{
+    private static final int COUNT = 1024;
+
+    private final GregCalendar calendar = new GregCalendar(0);
+    private final long[] timestamps = new long[COUNT];
+
+    @Setup
+    public void setUp()
+    {
+        long start = BenchmarkData.parse("2000.01.01 00:00:00.000");
+        long step = (BenchmarkData.parse("2100.12.31 23:59:59.999") - start) / COUNT;
+
+        for (int i = 0; i < COUNT; i++)
+            timestamps[i] = start + i * step + i; // different times of day
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int setTimestamp()
+    {
+        int sum = 0;
+        for (long timestamp : timestamps)
+        {
+            calendar.setTimestamp(timestamp);
+            sum += calendar.day;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public long roundTrip()
+    {
+        long sum = 0;
+        for (long timestamp : timestamps)
+        {
+            calendar.setTimestamp(timestamp);
+            sum += calendar.asTimestamp();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int dayOfWeek()
+    {
+        int sum = 0;
+        for (long timestamp : timestamps)
+        {
+            calendar.setTimestamp(timestamp);
+            sum += calendar.getDayOfWeek();
+        }
+        return sum;
+    }
+}
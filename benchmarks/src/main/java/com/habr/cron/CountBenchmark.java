@@ -0,0 +1,43 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speed of the counting of events in the interval (one year).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CountBenchmark
+{
+    @Param({"*:*:*.*", "*.9.*/2 1-5 10:00:00.000", "*.*.27-32/2 1 12:14:*.5"})
+    public String schedule;
+
+    @Param({"UTC", "Europe/Berlin"})
+    public String zone;
+
+    private Schedule instance;
+    private long from;
+    private long to;
+
+    @Setup
+    public void setUp() throws ScheduleFormatException
+    {
+        instance = new Schedule(schedule, ZoneId.of(zone));
+        from = BenchmarkData.parse("2021.01.01 00:00:00.000");
+        to = BenchmarkData.parse("2022.01.01 00:00:00.000");
+        instance.countEvents(from, to); // creates the counter
+    }
+
+    @Benchmark
+    public long countEvents()
+    {
+        return instance.countEvents(from, to);
+    }
+}
@@ -0,0 +1,76 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speed of the events generation.
+ * Replaces the former hand-made speed.GeneratorBench.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GeneratorBenchmark
+{
+    /**
+     * The generator is restarted after this count of events,
+     * so the sparse schedules never run out of the years range.
+     */
+    private static final int SERIES_LENGTH = 100000;
+
+    /**
+     * The number of events written by one call of the bulk generation
+     */
+    private static final int BUFFER_SIZE = 1000;
+
+    /**
+     * Index of the test case in {@link BenchmarkData#GENERATOR_DATES}
+     */
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"})
+    public int testCase;
+
+    private Schedule schedule;
+    private Date start;
+    private ScheduleEventsGenerator generator;
+    private int count;
+    private final long[] buffer = new long[BUFFER_SIZE];
+
+    @Setup
+    public void setUp() throws ScheduleFormatException
+    {
+        String[] data = BenchmarkData.GENERATOR_DATES[testCase];
+        schedule = new Schedule(data[0]);
+        start = new Date(BenchmarkData.parse(data[1]));
+        restart();
+    }
+
+    private void restart()
+    {
+        generator = schedule.getEventsGenerator(start, true);
+        count = 0;
+    }
+
+    @Benchmark
+    public Date next()
+    {
+        if ( ++count == SERIES_LENGTH ) restart();
+
+        return generator.next();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BUFFER_SIZE)
+    public long[] fill()
+    {
+        count += BUFFER_SIZE;
+        if ( count >= SERIES_LENGTH ) restart();
+
+        generator.fill(buffer, 0, BUFFER_SIZE, Long.MAX_VALUE);
+        return buffer;
+    }
+}
@@ -0,0 +1,108 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speed of every implementation of the {@link DigitMatcher}.
+ * Each operation sweeps the whole range of the milliseconds (0..999).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MatcherBenchmark
+{
+    @Param({"Constant", "Interval", "Stepping", "Array", "BitMap", "ListOfIntervals", "ListOfRanges", "LastDayProxy"})
+    public String matcher;
+
+    private DigitMatcher instance;
+    private int low;
+    private int high;
+
+    @Setup
+    public void setUp()
+    {
+        instance = create(matcher);
+        low = instance.getLow();
+        high = instance.getHigh();
+    }
+
+    static DigitMatcher create(String type)
+    {
+        if ( "Constant".equals(type) )
+            return new ConstantMatcher(500);
+
+        if ( "Interval".equals(type) )
+            return new IntervalMatcher(0, 999);
+
+        if ( "Stepping".equals(type) )
+            return new SteppingMatcher(0, 999, 7);
+
+        if ( "Array".equals(type) )
+            return fill(new ArrayMatcher(100, 150), new int[][]{{100, 101, 1}, {120, 150, 3}});
+
+        if ( "BitMap".equals(type) )
+            return fill(new BitMapMatcher(3, 600), new int[][]{{3, 5, 1}, {100, 600, 3}});
+
+        if ( "ListOfIntervals".equals(type) )
+            return fill(new ListOfIntervalsMatcher(100, 600, 2), new int[][]{{100, 200, 1}, {400, 600, 1}});
+
+        if ( "ListOfRanges".equals(type) )
+            return fill(new ListOfRangesMatcher(100, 600, 2), new int[][]{{100, 200, 10}, {400, 600, 10}});
+
+        if ( "LastDayProxy".equals(type) )
+        {
+            GregCalendar calendar = new GregCalendar(BenchmarkData.parse("2021.02.01 00:00:00.000"));
+            return new LastDayOfMonthProxy(new IntervalMatcher(20, 32), calendar);
+        }
+
+        throw new IllegalArgumentException(type);
+    }
+
+    private static DigitMatcher fill(MapMatcher matcher, int[][] ranges)
+    {
+        for (int[] range : ranges)
+            matcher.addRange(range[0], range[1], range[2]);
+
+        matcher.finishRange();
+        return (DigitMatcher) matcher;
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public int match()
+    {
+        int count = 0;
+        for (int value = 0; value < 1000; value++)
+            if ( instance.match(value) ) count++;
+
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public int getNext()
+    {
+        int sum = 0;
+        for (int value = 0; value < 1000; value++)
+            if ( value >= low && instance.hasNext(value) ) sum += instance.getNext(value);
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public int getPrev()
+    {
+        int sum = 0;
+        for (int value = 0; value < 1000; value++)
+            if ( value <= high && instance.hasPrev(value) ) sum += instance.getPrev(value);
+
+        return sum;
+    }
+}
@@ -0,0 +1,52 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the schedule parsing and construction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ParserBenchmark
+{
+    /**
+     * Index of the test case in {@link BenchmarkData#TEST_DATES}
+     */
+    @Param({"0", "1", "2", "4", "6", "7"})
+    public int testCase;
+
+    private String schedule;
+    private final ScheduleCache cache = new ScheduleCache(100);
+
+    @Setup
+    public void setUp()
+    {
+        schedule = BenchmarkData.TEST_DATES[testCase][0];
+    }
+
+    @Benchmark
+    public ScheduleModel parse() throws ScheduleFormatException
+    {
+        Parser parser = new Parser();
+        parser.parse(schedule);
+        return parser.getScheduleModel();
+    }
+
+    @Benchmark
+    public Schedule construct() throws ScheduleFormatException
+    {
+        return new Schedule(schedule);
+    }
+
+    @Benchmark
+    public Schedule cached() throws ScheduleFormatException
+    {
+        return cache.get(schedule);
+    }
+}
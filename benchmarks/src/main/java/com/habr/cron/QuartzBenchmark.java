@@ -0,0 +1,68 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.annotations.*;
+import org.quartz.CronExpression;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speed of the search of the Quartz expressions: {@link Schedule#fromQuartz(String)}
+ * against the reference implementation (org.quartz.CronExpression#getNextValidTimeAfter).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class QuartzBenchmark
+{
+    /**
+     * Index of the test case in {@link #EXPRESSIONS}
+     */
+    @Param({"0", "1", "2", "3", "4"})
+    public int testCase;
+
+    /**
+     * Quartz expressions: {expression, start date}
+     */
+    private static final String[][] EXPRESSIONS = new String[][]
+    {
+            {"0 0/5 14,18 * * ?",           "2021.09.30 18:56:00.000"},
+            {"0 15 10 ? * MON-FRI",         "2021.10.01 10:15:00.000"},
+            {"0 15 10 LW * ?",              "2021.10.29 10:15:00.000"},
+            {"0 15 10 ? * 6#3",             "2021.01.01 00:00:00.000"},
+            {"0 0 0 ? 2 2#5",               "2021.01.01 00:00:00.000"}, // the fifth Monday of February, 2044
+    };
+
+    private Schedule schedule;
+    private CronExpression quartz;
+    private long timestamp;
+    private Date date;
+
+    @Setup
+    public void setUp() throws ScheduleFormatException, ParseException
+    {
+        String[] data = EXPRESSIONS[testCase];
+        schedule = Schedule.fromQuartz(data[0]);
+        quartz = new CronExpression(data[0]);
+        quartz.setTimeZone(TimeZone.getTimeZone("UTC"));
+        timestamp = BenchmarkData.parse(data[1]);
+        date = new Date(timestamp);
+    }
+
+    @Benchmark
+    public long nextEvent()
+    {
+        return schedule.NextEvent(timestamp);
+    }
+
+    @Benchmark
+    public Date quartzNextEvent()
+    {
+        return quartz.getNextValidTimeAfter(date);
+    }
+}
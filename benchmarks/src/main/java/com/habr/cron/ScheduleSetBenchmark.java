@@ -0,0 +1,58 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the poll of the next event across many schedules.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ScheduleSetBenchmark
+{
+    private static final String[] SCHEDULES = {
+            "*:*:*",
+            "*:*/5:0",
+            "*:*:*/10",
+            "*.*.* 1-5 9-18:*/15:00",
+            "*.*.32 12:00:00",
+            "*:*:*.*/100",
+    };
+
+    /**
+     * The number of schedules in the set
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private ScheduleSet set;
+
+    @Setup
+    public void setUp() throws ScheduleFormatException
+    {
+        Schedule[] schedules = new Schedule[SCHEDULES.length];
+        for (int i = 0; i < schedules.length; i++)
+            schedules[i] = new Schedule(SCHEDULES[i]);
+
+        Random random = new Random(1);
+        long start = BenchmarkData.parse("2020.01.01 00:00:00.000");
+
+        set = new ScheduleSet();
+        for (int i = 0; i < size; i++)
+            set.add(schedules[random.nextInt(schedules.length)], start + random.nextInt(86400000));
+    }
+
+    @Benchmark
+    public long poll()
+    {
+        long time = set.peekTime();
+        set.poll();
+        return time;
+    }
+}
@@ -0,0 +1,94 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speed of the event search for every search mode.
+ * Replaces the former hand-made speed.Benchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SearchBenchmark
+{
+    /**
+     * Index of the test case in {@link BenchmarkData#TEST_DATES}
+     */
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7"})
+    public int testCase;
+
+    /**
+     * Time zone of the schedule; compare "UTC", "+03:00" (fixed offset) and "Europe/Berlin" (DST)
+     */
+    @Param({"UTC"})
+    public String zone;
+
+    private Schedule schedule;
+    private long timestamp;
+    private Date date;
+    private Instant instant;
+    private LocalDateTime local;
+
+    @Setup
+    public void setUp() throws ScheduleFormatException
+    {
+        String[] data = BenchmarkData.TEST_DATES[testCase];
+        schedule = new Schedule(data[0], ZoneId.of(zone));
+        timestamp = BenchmarkData.parse(data[1]);
+        date = new Date(timestamp);
+        instant = Instant.ofEpochMilli(timestamp);
+        local = LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    @Benchmark
+    public long nearestEvent()
+    {
+        return schedule.NearestEvent(timestamp);
+    }
+
+    @Benchmark
+    public long nextEvent()
+    {
+        return schedule.NextEvent(timestamp);
+    }
+
+    @Benchmark
+    public long nearestPrevEvent()
+    {
+        return schedule.NearestPrevEvent(timestamp);
+    }
+
+    @Benchmark
+    public long prevEvent()
+    {
+        return schedule.PrevEvent(timestamp);
+    }
+
+    @Benchmark
+    public Date nextEventDate()
+    {
+        return schedule.NextEvent(date);
+    }
+
+    @Benchmark
+    public Instant nextEventInstant()
+    {
+        return schedule.NextEvent(instant);
+    }
+
+    @Benchmark
+    public LocalDateTime nextEventLocalDateTime()
+    {
+        return schedule.NextEvent(local);
+    }
+}
@@ -0,0 +1,87 @@
+package com.habr.cron;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory footprint and speed of the search of many job schedules:
+ * the plain schedules compared with the records of {@link ScheduleStore}.
+ * The retained heap per schedule is measured after the set up (after GC), and it's printed to the output;
+ * the benchmark measures the search of the next event of a random schedule.
+ *
+ *     java -jar target/benchmarks.jar StoreBenchmark -p count=1000000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = "-Xmx4g")
+@State(Scope.Thread)
+public class StoreBenchmark
+{
+    private static final String[] WEEKDAYS = {"*", "1-5", "0,6", "1"};
+    private static final String[] DAYS = {"*", "1", "15", "32", "1-7"};
+
+    @Param({"store", "schedules"})
+    public String kind;
+
+    @Param({"100000"})
+    public int count;
+
+    private ScheduleStore store;
+    private Schedule[] schedules;
+    private long timestamp;
+    private int seed = 1;
+
+    @Setup
+    public void setUp() throws ScheduleFormatException
+    {
+        long before = usedMemory();
+
+        if ( kind.equals("store") )
+        {
+            store = new ScheduleStore(count);
+            for (int i = 0; i < count; i++) store.add(schedule(i));
+            store.trimToSize();
+        }
+        else
+        {
+            schedules = new Schedule[count];
+            for (int i = 0; i < count; i++) schedules[i] = new Schedule(schedule(i));
+        }
+
+        long after = usedMemory();
+        System.out.printf("%n%s: %d schedules, %.1f bytes per schedule%n", kind, count, (after - before) / (double) count);
+
+        timestamp = BenchmarkData.parse("2021.09.30 12:00:00.000");
+    }
+
+    @Benchmark
+    public long nextEvent()
+    {
+        seed = seed * 1103515245 + 12345; // the random schedule, so the records are not in the cache
+        int i = (seed >>> 1) % count;
+
+        return store != null ? store.NextEvent(i, timestamp) : schedules[i].NextEvent(timestamp);
+    }
+
+
+
+    /**
+     * @return the distinct schedule of the job
+     */
+    private static String schedule(int i)
+    {
+        return "*.*." + DAYS[i % DAYS.length] + " " + WEEKDAYS[(i / DAYS.length) % WEEKDAYS.length] + " "
+                + (i / 20) % 24 + ":" + (i / 480) % 60 + ":" + (i / 28800) % 60;
+    }
+
+    private static long usedMemory()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
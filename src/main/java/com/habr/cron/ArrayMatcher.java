@@ -130,15 +130,15 @@ class ArrayMatcher implements DigitMatcher, MapMatcher
     public void finishRange()
     {
         byte p = NO_PREV;
-        low = min - 1;
-        for (int i = min, j = 1; i < max; i++, j++)
+        low = max + 1;
+        for (int i = min, j = 0; i <= max; i++, j++)
         {
+            prev[j] = p;
             if ( match(i) )
             {
-                if ( low < min ) low = i;
+                if ( low > max ) low = i; // the maximum is checked too: it can be the only value
                 p = (byte) (i - min);
             }
-            prev[j] = p;
         }
 
         byte n = NO_NEXT;
@@ -0,0 +1,195 @@
+package com.habr.cron;
+
+/**
+ * Calendar digits for the search of previous values (toward the past).
+ * Every digit resets to its high bound; the order of values is reversed,
+ * so the 'next' value is a previous one, and the 'low' bound is the high one.
+ *
+ * The search loop of the direction: it calls the matchers directly (getHigh, getPrev, hasPrev).
+ *
+ * Not thread safe. Stateful class. Internal used.
+ */
+final class BackwardDigits extends CalendarDigits
+{
+    BackwardDigits(GregCalendar calendar)
+    {
+        super(calendar);
+    }
+
+
+    public void search(boolean canEqual)
+    {
+        while ( isCanSearchDown(canEqual, false) )
+        {
+            next();
+        }
+    }
+
+    public boolean isCanSearchDownCounting(boolean canEqual)
+    {
+        return isCanSearchDown(canEqual, true);
+    }
+
+    public void increment()
+    {
+        resetOrIncrementDigits(false, false);
+    }
+
+    public void initialize()
+    {
+        resetOrIncrementDigits(true, false);
+    }
+
+    public boolean incrementLastDigit()
+    {
+        DigitMatcher matcher = matchers[last];
+        int value = calendar.getValue(last);
+
+        if ( !matcher.hasPrev(value) ) return false;
+
+        calendar.setValue(last, matcher.getPrev(value));
+        return true;
+    }
+
+
+
+    /**
+     * Implements a direct search for the nearest date from a given date in the schedule.
+     *
+     * @param counting true, if the passes of the digits loop are counted; false folds the counting away
+     * @return false, if you can not continue further and an unambiguous result is obtained
+     *         true, if you need to go down to a lower level
+     *
+     * @throws IllegalStateException if the current date is out of the range of acceptable values
+     * and we have no more options that we could offer.
+     */
+    private boolean isCanSearchDown(boolean canEqual, boolean counting)
+    {
+        DigitMatcher matcher = matchers[current];
+        int value = calendar.getValue(current);
+
+        if ( matcher.isAbove(value) ) // the current value is above the allowed upper limit ('zero' of the digit)
+        {
+            resetOrIncrementDigits(true, counting);
+            return false;
+        }
+
+        if ( matcher.isBelow(value) ) // the current value is below the allowed lower limit (no more values)
+        {
+            prev(); // for YEAR throws IllegalStateException
+            resetOrIncrementDigits(false, counting);
+            return false;
+        }
+
+        // the current value is within the boundaries
+        if ( matcher.match(value) && calendar.isCorrect() ) // if the item matches the schedule
+        {
+            boolean isLast = current == last;
+
+            // we end the search if this is the last element and we are allowed to return the exact equivalent
+            if ( isLast && canEqual ) return false;
+
+            // if this is not the last level, let's go down below
+            if ( !isLast ) return true;
+        }
+
+        resetOrIncrementDigits(false, counting);
+        return false; // search is complete
+    }
+
+    /**
+     * Resets digits to 'zero' and may increment major digits, when
+     * gets overflow in day of month.
+     *
+     * @param init reset to initial (true) or increment (false)?
+     * @param counting true, if the passes are counted in {@link #carries}
+     * @throws IllegalStateException then we out of schedule (year out of range)
+     */
+    private void resetOrIncrementDigits(boolean init, boolean counting)
+    {
+        do
+        {
+            init = setupDigit(init);
+            if ( counting ) carries++;
+        }
+        while ( FIRST <= current && current <= last );
+
+
+        if ( current < FIRST ) throw new IllegalStateException(OUT_MESSAGE); // out of schedule bounds (on top)
+    }
+
+    /**
+     * Resets or increments the current digit, and moves to the minor digit (or to the major one on overflow).
+     *
+     * @param init reset to initial (true) or increment (false)?
+     * @return true, if the current digit is set up, and the next one is reset
+     */
+    private boolean setupDigit(boolean init)
+    {
+        DigitMatcher matcher = matchers[current];
+
+        if ( current != DAY_IDX )
+        {
+            if ( init )
+                calendar.setValue(current, matcher.getHigh());
+
+            else
+            {
+                int prev = calendar.getValue(current);
+                if ( init = matcher.hasPrev(prev) )
+                    calendar.setValue(current, matcher.getPrev(prev));
+            }
+        }
+        else
+            init = tryToSetupDayOfMonth(matcher, init);
+
+        if ( init ) current++; else current--;
+        return init;
+    }
+
+    /**
+     * Try to sets the day of month to a `zero` or to a `previous value`.
+     * If `init` is true - sets day of month to maximum.
+     * If `init` is false - decrements day of month to a `previous value`.
+     *
+     * @param init true, if need initialize; false - if need decrement
+     * @return true, if we can setup day
+     */
+    private boolean tryToSetupDayOfMonth(DigitMatcher matcher, boolean init)
+    {
+        if ( init )
+        {
+            int initial = matcher.getHigh();
+
+            boolean correct = matcher.match(initial);
+
+            if ( !correct )
+            {
+                correct = matcher.hasPrev(initial);
+                if ( correct )
+                {
+                    initial = matcher.getPrev(initial);
+                    correct = calendar.isCorrectDay(initial) && matcher.match(initial);
+                }
+            }
+
+            if ( correct )
+                calendar.day = initial;
+
+
+            return correct;
+        }
+        else
+        {
+            if ( !matcher.hasPrev(calendar.day) ) return false;
+
+            int next = matcher.getPrev(calendar.day);
+            boolean correct = calendar.isCorrectDay(next) && matcher.match(next);
+
+            if ( correct )
+                calendar.day = next;
+
+            return correct;
+        }
+    }
+}
@@ -4,16 +4,20 @@ package com.habr.cron;
  * Matcher of calendar element for list of ranges: a-b,c-d/n,e,f-g.
  *
  * Designed for checking milliseconds and years.
- * The maximum range of acceptable values is 0-1000.
+ * The range of acceptable values is any part of the years 0-9999 (the widest element).
  * It is used when the number of acceptable values is set by a large number of ranges.
  *
+ * The bits are scanned by the masked words (see {@link BitmapUtils}); the summary map marks
+ * the non-empty cells of the bit map, so the empty cells are skipped at once.
+ * One word of the summary covers 4096 values.
+ *
  * Difficulty:
  *  matching one value - O(1)
- *  find nearest value - O(n)
+ *  find nearest value - O(range / 4096): one word of the map and up to 3 words of the summary for years
  * Used memory:
- *  144 bytes maximum, 24 bytes minimum
+ *  160 bytes for milliseconds, 1.3 Kb for years
  *
- *  Maximum loop are: 17 (through long) + 63 (through bits)
+ *  Maximum loop are: 1 (through summary for milliseconds), 3 (for years)
  */
 class BitMapMatcher implements DigitMatcher, MapMatcher
 {
@@ -26,6 +30,10 @@ class BitMapMatcher implements DigitMatcher, MapMatcher
      * bit map for allow calendar element values
      */
     private final long map[];
+    /**
+     * bit map for non-empty cells of the map
+     */
+    private final long summary[];
 
     private final static int POWER = 6; // = log_2(64) for quick divide by 64
     private final static int MASK = 63; // = 64 - 1, for quick divide by module 64
@@ -39,6 +47,7 @@ class BitMapMatcher implements DigitMatcher, MapMatcher
         this.min = min;
         this.max = max;
         this.map = new long[((max - min) >> POWER) + 1];
+        this.summary = new long[((map.length - 1) >> POWER) + 1];
     }
 
 
@@ -75,18 +84,18 @@ class BitMapMatcher implements DigitMatcher, MapMatcher
 
         int v = value - min + 1; // search starts a next value
         int el = v >> POWER; // number of map's cell
-        int start = v & MASK; // position of bit to start searching (value + 1)
 
-        // now we are looking for the first low non-zero bit (from the 'start')
-        int pos = 64;
-        while ( pos == 64 && el < map.length )
+        // now we are looking for the first low non-zero bit (from the 'value + 1')
+        int pos = BitmapUtils.forwardScanBit(map[el], v & MASK);
+        if ( pos == BITES_IN_MAP_ELEMENT )
         {
-            if ( map[el] != 0 )
-                pos = BitmapUtils.forwardScanBit(map[el], start);
-            el++; start = 0; // go to next map cell
+            el = nextCell(el + 1);
+            if ( el < 0 ) return max + 1; // no more values
+
+            pos = Long.numberOfTrailingZeros(map[el]);
         }
 
-        return ((el-1) << POWER) + pos + min;
+        return (el << POWER) + pos + min;
     }
 
 
@@ -95,21 +104,57 @@ class BitMapMatcher implements DigitMatcher, MapMatcher
         if ( value <= min ) return value - 1; // out of bound
         if ( value > max  ) return max; // edge value
 
-        int v = value - min - 1; // search starts a next value
+        int v = value - min - 1; // search starts a previous value
         int el = v >> POWER; // number of map's cell
-        int start = v & MASK; // position of bit to start searching (value - 1)
 
-        // now we are looking for the first high non-zero bit (from the 'start')
-        int pos = -1;
-        while (pos == -1 && el >= 0)
+        // now we are looking for the first high non-zero bit (from the 'value - 1')
+        int pos = BitmapUtils.backwardScanBit(map[el], v & MASK);
+        if ( pos < 0 )
         {
-            if ( map[el] != 0 )
-                pos = BitmapUtils.backwardScanBit(map[el], start);
+            el = prevCell(el - 1);
+            if ( el < 0 ) return min - 1; // no more values
+
+            pos = BITES_IN_MAP_ELEMENT - 1 - Long.numberOfLeadingZeros(map[el]);
+        }
 
-            el--; start = BITES_IN_MAP_ELEMENT-1; // go to next map cell
+        return (el << POWER) + pos + min;
+    }
+
+
+    /**
+     * @return the first non-empty cell of the map from the given (inclusive), or -1
+     */
+    private int nextCell(int from)
+    {
+        int s = from >> POWER; // number of summary's cell
+        if ( s >= summary.length ) return -1;
+
+        int pos = BitmapUtils.forwardScanBit(summary[s], from & MASK);
+        while ( pos == BITES_IN_MAP_ELEMENT )
+        {
+            if ( ++s == summary.length ) return -1;
+            pos = BitmapUtils.forwardScanBit(summary[s], 0);
+        }
+
+        return (s << POWER) + pos;
+    }
+
+    /**
+     * @return the last non-empty cell of the map until the given (inclusive), or -1
+     */
+    private int prevCell(int from)
+    {
+        if ( from < 0 ) return -1;
+
+        int s = from >> POWER; // number of summary's cell
+        int pos = BitmapUtils.backwardScanBit(summary[s], from & MASK);
+        while ( pos < 0 )
+        {
+            if ( --s < 0 ) return -1;
+            pos = BitmapUtils.backwardScanBit(summary[s], BITES_IN_MAP_ELEMENT - 1);
         }
 
-        return ((el+1) << POWER) + pos + min;
+        return (s << POWER) + pos;
     }
 
 
@@ -158,6 +203,7 @@ class BitMapMatcher implements DigitMatcher, MapMatcher
         long b = 1L << bt; // bit in cell
 
         map[el] |= b;
+        summary[el >> POWER] |= 1L << (el & MASK);
     }
 
 }
\ No newline at end of file
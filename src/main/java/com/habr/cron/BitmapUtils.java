@@ -17,17 +17,10 @@ final class BitmapUtils
      */
     public static int forwardScanBit(long map, int start)
     {
-        if ( start < 64 )
-        {
-            start = Math.max(start, 0);
-            long bit = 1L << start;
+        if ( start >= 64 ) return 64;
 
-            for (int i = start; i <= 63; i++, bit <<= 1)
-            {
-                if ((map & bit) != 0) return i;
-            }
-        }
-        return 64;
+        long masked = map & (-1L << Math.max(start, 0)); // clear the bits below the start
+        return Long.numberOfTrailingZeros(masked); // 64 for zero
     }
 
     /**
@@ -40,16 +33,9 @@ final class BitmapUtils
      */
     public static int backwardScanBit(long map, int start)
     {
-        if ( start >= 0 )
-        {
-            start = Math.min(start, 63);
-            long bit = 1L << start;
+        if ( start < 0 ) return -1;
 
-            for (int i = start; i >= 0; i--, bit >>= 1)
-            {
-                if ((map & bit) != 0) return i;
-            }
-        }
-        return -1;
+        long masked = map & (-1L >>> (63 - Math.min(start, 63))); // clear the bits above the start
+        return 63 - Long.numberOfLeadingZeros(masked); // -1 for zero
     }
 }
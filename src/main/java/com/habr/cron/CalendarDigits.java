@@ -4,14 +4,34 @@ import static com.habr.cron.ScheduleElements.FEBRUARY_LEAP_DAY;
 
 /**
  * Not thread safe. Stateful class. Internal used.
+ *
+ * The pseudo-"number" of the calendar digits: the navigation between the digits and their matchers.
+ * The search loop is implemented by the final subclass of every direction: {@link ForwardDigits} searches
+ * next values, and resets every digits to low bound; {@link BackwardDigits} searches prev values, and resets
+ * every digits to high bound. So the loop calls the matchers directly, without the check of the direction
+ * and without the virtual calls of the opposite direction.
  */
-class CalendarDigits implements DigitMatcher
+abstract class CalendarDigits
 {
-    private final DigitMatcher matchers[];
-    private final GregCalendar calendar;
+    static final int FIRST = 0; // year matcher
+    static final int MILLIS_IDX = 6;
+    static final int LAST = 8; // nanos matcher = matchers.length - 1
 
-    private int current = FIRST;
-    final boolean toZero;
+    static final int YEAR_IDX = 0;
+    static final int MONTH_IDX = 1;
+    static final int DAY_IDX = 2;
+    static final int HOURS_IDX = 3;
+
+    static final String OUT_MESSAGE = "Out of schedule interval";
+
+    final DigitMatcher matchers[] = new DigitMatcher[LAST + 1];
+    final GregCalendar calendar;
+    private final LastDayOfMonthProxy dayProxy; // reused for all schedules, which need it
+    private final DaysIndexProxy indexProxy; // reused for all schedules with the days of week
+
+    int current = FIRST;
+    int last = MILLIS_IDX; // the last searched digit: milliseconds, or nanoseconds
+    int carries; // the passes of the digits loop; counted by the instrumented search only (see {@link ScheduleStats})
 
     /**
      * Creates a pseudo-"number" consists digits based on calendar.
@@ -21,39 +41,83 @@ class CalendarDigits implements DigitMatcher
      * @param resetMode direction of operations:
      *                  if <b>true</b> we search next values, resets every digits to low bound;
      *                  if <b>false</b> we search prev values, resets every digits to high bound.
+     * @param precise true, if the microseconds and nanoseconds are searched too
+     * @return the digits for the direction
+     */
+    public static CalendarDigits create(MatcherPool pool, GregCalendar calendar, boolean resetMode, boolean precise)
+    {
+        CalendarDigits digits = resetMode ? new ForwardDigits(calendar) : new BackwardDigits(calendar);
+        digits.reset(pool, precise);
+        return digits;
+    }
+
+    /**
+     * Creates an unbound pseudo-"number" for reusing in many searches.
+     * IMPORTANT: {@link #reset(MatcherPool, boolean)} MUST be called before use.
+     *
+     * @param calendar the calendar, which will be used for all searches
      */
-    public CalendarDigits(MatcherPool pool, GregCalendar calendar, boolean resetMode)
+    CalendarDigits(GregCalendar calendar)
+    {
+        this.calendar = calendar;
+        this.dayProxy = new LastDayOfMonthProxy(null, calendar);
+        this.indexProxy = new DaysIndexProxy(null, calendar);
+    }
+
+    /**
+     * Binds digits to the schedule.
+     * Doesn't create any objects, so it can be called for every search.
+     *
+     * @param pool storage of matchers for all date components.
+     * @param precise true, if the microseconds and nanoseconds are searched too;
+     *                false, if the search stops at milliseconds (it finds the milliseconds, which have events)
+     */
+    public void reset(MatcherPool pool, boolean precise)
     {
         DigitMatcher m[] = pool.getMatchersForSchedule();
         DigitMatcher dayMatcher = m[ScheduleElements.DAY_OF_MONTH.ordinal()];
-        if ( isNeedProxy(dayMatcher)  )
+        DigitMatcher yearMatcher = m[ScheduleElements.YEAR.ordinal()];
+        if ( pool.isIndexedDays() ) // the matched days are matched by the weekdays (or the special day) too
         {
-            dayMatcher = new LastDayOfMonthProxy(dayMatcher, calendar);
+            indexProxy.setIndex(pool.getDaysIndex());
+            dayMatcher = indexProxy;
+            yearMatcher = pool.getDaysIndex().getMatchedYears();
+        }
+        else if ( isNeedProxy(dayMatcher)  )
+        {
+            dayProxy.setMatcher(dayMatcher);
+            dayMatcher = dayProxy;
         }
 
-        matchers = new DigitMatcher[]{
-                m[ScheduleElements.YEAR.ordinal()],      // 0 = FIRST = YEAR_IDX
-                m[ScheduleElements.MONTH.ordinal()],     // 1 = MONTH_IDX
-                dayMatcher,                              // 2 = DAY_IDX
-                m[ScheduleElements.HOURS.ordinal()],     // 3 = HOURS_IDX
-                m[ScheduleElements.MINUTES.ordinal()],   // 4
-                m[ScheduleElements.SECONDS.ordinal()],   // 5
-                m[ScheduleElements.MILLIS.ordinal()]     // 6 = LAST
-        };
-        this.calendar = calendar;
-        this.toZero = resetMode;
-    }
-
-    private static final int FIRST = 0; // year matcher
-    private static final int LAST = 6; // millis matcher = matchers.length - 1
+        matchers[YEAR_IDX] = yearMatcher;                               // 0 = FIRST = YEAR_IDX
+        matchers[MONTH_IDX] = m[ScheduleElements.MONTH.ordinal()];      // 1 = MONTH_IDX
+        matchers[DAY_IDX] = dayMatcher;                                 // 2 = DAY_IDX
+        matchers[HOURS_IDX] = m[ScheduleElements.HOURS.ordinal()];      // 3 = HOURS_IDX
+        matchers[4] = m[ScheduleElements.MINUTES.ordinal()];            // 4
+        matchers[5] = m[ScheduleElements.SECONDS.ordinal()];            // 5
+        matchers[MILLIS_IDX] = m[ScheduleElements.MILLIS.ordinal()];    // 6 = MILLIS_IDX
+        matchers[7] = m[ScheduleElements.MICROS.ordinal()];             // 7
+        matchers[LAST] = m[ScheduleElements.NANOS.ordinal()];           // 8 = LAST
 
-    private static final int YEAR_IDX = 0;
-    private static final int MONTH_IDX = 1;
-    private static final int DAY_IDX = 2;
-    private static final int HOURS_IDX = 3;
+        last = precise ? LAST : MILLIS_IDX;
+        current = FIRST;
+    }
 
-    private static final String OUT_MESSAGE = "Out of schedule interval";
+    /**
+     * Binds digits to the matchers of the schedule, which are not kept in the pool (see {@link ScheduleStore}).
+     * Doesn't create any objects, so it can be called for every search.
+     *
+     * @param digits the matchers of year, month, day of month, hours, ... nanoseconds;
+     *               the day matcher matches the days of month, the days of week and the last day of month
+     * @param precise true, if the microseconds and nanoseconds are searched too
+     */
+    void reset(DigitMatcher[] digits, boolean precise)
+    {
+        System.arraycopy(digits, 0, matchers, 0, matchers.length);
 
+        last = precise ? LAST : MILLIS_IDX;
+        current = FIRST;
+    }
 
     private boolean isNeedProxy(DigitMatcher dayMatcher)
     {
@@ -86,11 +150,11 @@ class CalendarDigits implements DigitMatcher
     }
 
     /**
-     * @return true, is this digit of the milliseconds
+     * @return true, is this digit of the milliseconds (or nanoseconds for the precise search)
      */
     public boolean isLast()
     {
-        return current == LAST;
+        return current == last;
     }
 
     public void gotoYear()
@@ -115,7 +179,7 @@ class CalendarDigits implements DigitMatcher
 
     public void gotoLastDigit()
     {
-        current = LAST;
+        current = last;
     }
 
     /**
@@ -128,194 +192,61 @@ class CalendarDigits implements DigitMatcher
 
 
 
-    public boolean match(int value)
-    {
-        return matchers[current].match(value);
-    }
-
-    public boolean isAbove(int value)
-    {
-        return toZero ? matchers[current].isAbove(value) : matchers[current].isBelow(value);
-    }
-
-    public boolean isBelow(int value)
-    {
-        return toZero ? matchers[current].isBelow(value) : matchers[current].isAbove(value);
-    }
-
-    public int getLow()
-    {
-        return toZero ? matchers[current].getLow() : matchers[current].getHigh();
-    }
-
-    public int getHigh()
-    {
-        throw new AssertionError("This code MUST not be called");
-    }
-
-    public int getNext(int value)
-    {
-        return toZero ? matchers[current].getNext(value) : matchers[current].getPrev(value);
-    }
-
-    public boolean hasNext(int value)
-    {
-        return toZero ? matchers[current].hasNext(value) : matchers[current].hasPrev(value);
-    }
-
-    public int getPrev(int value)
-    {
-        throw new AssertionError("This code MUST not be called");
-    }
-
-    public boolean hasPrev(int value)
-    {
-        throw new AssertionError("This code MUST not be called");
-    }
-
-
-
-
-
-
     /**
-     * Reset all calendar digits to 'zero' according to the schedule, starts from this digit.
-     *
-     * @throws IllegalStateException if we can't implement this operation (schedule restriction)
+     * @return the matcher of active digit
      */
-    public void increment()
+    final DigitMatcher matcher()
     {
-        resetOrIncrementDigits(false);
+        return matchers[current];
     }
 
     /**
-     * Increments a current digit to next, and reset to 'zero' all minor digits.
+     * @return true, if the value of active digit matches the schedule
      */
-    public void initialize()
+    public boolean match(int value)
     {
-        resetOrIncrementDigits(true);
+        return matchers[current].match(value);
     }
 
 
 
     /**
-     * Resets only date to 'zero' (not a time) and may increment major digits, when
-     * gets overflow in day of month.
+     * Searches the event from the current value of the calendar: goes down the digits, while they match
+     * the schedule, and moves the calendar to the nearest event in the direction of search.
      *
-     * @throws IllegalStateException then we out of schedule (year out of range)
+     * @param canEqual true, if the current value of the calendar can be the event itself
+     * @throws IllegalStateException if the schedule has no events in the direction of search
      */
-    public void resetDate()
-    {
-        boolean init = true;
-
-        do
-        {
-            if ( current != DAY_IDX )
-            {
-                if ( init )
-                    calendar.setValue(current, getLow());
-
-                else
-                {
-                    int prev = getValue();
-                    if ( init = hasNext(prev) )
-                        calendar.setValue(current, getNext(prev));
-                }
-            }
-            else
-                init = tryToSetupDayOfMonth(init);
-
-            if ( init ) current++; else current--;
-        }
-        while ( YEAR_IDX <= current && current <= DAY_IDX  );
-
-
-        if ( current < FIRST ) throw new IllegalStateException(OUT_MESSAGE); // out of schedule bounds (on top)
-    }
-
-
-
-
+    public abstract void search(boolean canEqual);
 
     /**
-     * Resets digits to 'zero' and may increment major digits, when
-     * gets overflow in day of month.
+     * One step of the search of the instrumented schedules, which counts the passes of the digits loop
+     * in {@link #carries}; the caller moves to the minor digit, while it returns true.
+     * The plain {@link #search(boolean)} doesn't count anything.
      *
-     * @param init reset to initial (true) or increment (false)?
-     * @throws IllegalStateException then we out of schedule (year out of range)
+     * @param canEqual true, if the current value of the calendar can be the event itself
+     * @return true, if the search goes down to the minor digit
+     * @throws IllegalStateException if the schedule has no events in the direction of search
      */
-    private void resetOrIncrementDigits(boolean init)
-    {
-        do
-        {
-            if ( current != DAY_IDX )
-            {
-                if ( init )
-                    calendar.setValue(current, getLow());
-
-                else
-                {
-                    int prev = getValue();
-                    if ( init = hasNext(prev) )
-                        calendar.setValue(current, getNext(prev));
-                }
-            }
-            else
-                init = tryToSetupDayOfMonth(init);
-
-            if ( init ) current++; else current--;
-        }
-        while ( FIRST <= current && current <= LAST );
-
-
-        if ( current < FIRST ) throw new IllegalStateException(OUT_MESSAGE); // out of schedule bounds (on top)
-    }
+    public abstract boolean isCanSearchDownCounting(boolean canEqual);
 
     /**
-     * Try to sets the day of month to a `zero` or to a `next value`.
-     * If `toZero` is true, and `init` is true - sets day of month to minimum.
-     * If `toZero` is true, and `init` is false - increments day of month to a `next value`.
-     * If `toZero` is false, and `init` is true - sets day of month to maximum.
-     * If `toZero` is false, and `init` is false - decrements day of month to a `previous value`.
+     * Reset all calendar digits to 'zero' according to the schedule, starts from this digit.
      *
-     * @param init true, if need initialize; false - if need increment/decrement
-     * @return true, if we can setup day
+     * @throws IllegalStateException if we can't implement this operation (schedule restriction)
      */
-    private boolean tryToSetupDayOfMonth(boolean init)
-    {
-        if ( init )
-        {
-            int initial = getLow();
-
-            boolean correct = match(initial);
-
-            if ( !correct )
-            {
-                correct = hasNext(initial);
-                if ( correct )
-                {
-                    initial = getNext(initial);
-                    correct = calendar.isCorrectDay(initial) && match(initial);
-                }
-            }
-
-            if ( correct )
-                calendar.day = initial;
+    public abstract void increment();
 
+    /**
+     * Moves only the milliseconds (nanoseconds for the precise search) to the next value according to the schedule,
+     * without overflow into the major digits.
+     *
+     * @return false, if the last digit has no next value (nothing is changed)
+     */
+    public abstract boolean incrementLastDigit();
 
-            return correct;
-        }
-        else
-        {
-            if ( !hasNext(calendar.day) ) return false;
-
-            int next = getNext(calendar.day);
-            boolean correct = calendar.isCorrectDay(next) && match(next);
-
-            if ( correct )
-                calendar.day = next;
-
-            return correct;
-        }
-    }
+    /**
+     * Increments a current digit to next, and reset to 'zero' all minor digits.
+     */
+    public abstract void initialize();
 }
@@ -0,0 +1,609 @@
+package com.habr.cron;
+
+import java.util.Date;
+
+/**
+ * The schedule composed from other schedules by the set operations: union, intersection and difference.
+ * For example, "every 15 minutes on weekdays except 12:00-13:00 and except the last day of month":
+ * <pre>
+ *     Cron cron = CompositeCron.difference(new Schedule("*.*.* 1-5 *:*&#47;15:00"),
+ *             new Schedule("12:*:*"), new Schedule("*.*.32 *:*:*"));
+ * </pre>
+ *
+ * The search doesn't step over the events of the children, it leapfrogs their searches:
+ * the intersection asks every child for its nearest event from the candidate, and the candidate jumps
+ * to the answer until all children agree; the union takes the nearest of the children's events;
+ * the difference skips the events of the first child, which are the events of any other child.
+ * When the excluded child is a {@link Schedule}, the difference jumps over the whole run of its events
+ * (for example, over the days 1-20 of "*.*.1-20 *:*:*"), instead of stepping over the events of the first child
+ * inside the run (see {@link EventRuns}).
+ * The children can be any {@link Cron}, including other composite schedules.
+ *
+ * The events generator of the union merges the generators of the children lazily;
+ * the generator of the difference checks the excluded children only when it passes their next event,
+ * and restarts the generator of the first child after the run of the excluded events.
+ *
+ * The intersection and the difference without events (for example, "*:*:00" and "*:*:30") would search
+ * to the end of the years; the search throws IllegalStateException after {@link #MAX_ROUNDS} jumps.
+ *
+ * Thread-safe and unmodifiable, if the children are.
+ */
+public abstract class CompositeCron implements Cron
+{
+    /**
+     * The maximum number of jumps of one search of the intersection or difference
+     */
+    public static final int MAX_ROUNDS = 1000000;
+
+    private static final String OUT_MESSAGE = "Out of schedule interval";
+
+    final Cron[] crons;
+
+
+    CompositeCron(Cron[] crons)
+    {
+        if ( crons == null || crons.length == 0 )
+            throw new IllegalArgumentException("The schedules MUST be set");
+
+        for (Cron cron : crons)
+            if ( cron == null ) throw new IllegalArgumentException("The schedule is null");
+
+        this.crons = crons.clone();
+    }
+
+
+    /**
+     * @param crons the schedules
+     * @return the schedule with the events of any of the schedules
+     */
+    public static CompositeCron union(Cron... crons)
+    {
+        return new Union(crons);
+    }
+
+    /**
+     * @param crons the schedules
+     * @return the schedule with the events of all schedules at the same time
+     */
+    public static CompositeCron intersection(Cron... crons)
+    {
+        return new Intersection(crons);
+    }
+
+    /**
+     * @param base the schedule
+     * @param excluded the excluded schedules
+     * @return the schedule with the events of the base schedule, which are not the events of the excluded schedules
+     */
+    public static CompositeCron difference(Cron base, Cron... excluded)
+    {
+        Cron[] crons = new Cron[excluded.length + 1];
+        crons[0] = base;
+        System.arraycopy(excluded, 0, crons, 1, excluded.length);
+
+        return new Difference(crons);
+    }
+
+
+
+    public Date NearestEvent(Date d) {
+        return new Date(NearestEvent(d.getTime()));
+    }
+
+    public Date NearestPrevEvent(Date d) {
+        return new Date(NearestPrevEvent(d.getTime()));
+    }
+
+    public Date NextEvent(Date d) {
+        return new Date(NextEvent(d.getTime()));
+    }
+
+    public Date PrevEvent(Date d) {
+        return new Date(PrevEvent(d.getTime()));
+    }
+
+    public long NearestEvent(long timestamp) {
+        return find(timestamp, true, true);
+    }
+
+    public long NearestPrevEvent(long timestamp) {
+        return find(timestamp, false, true);
+    }
+
+    public long NextEvent(long timestamp) {
+        return find(timestamp, true, false);
+    }
+
+    public long PrevEvent(long timestamp) {
+        return find(timestamp, false, false);
+    }
+
+    /**
+     * Create instance for serial generation events (see {@link Schedule#getEventsGenerator(long, boolean)}).
+     *
+     * @param start timestamp to start serial (milliseconds since 1 Jan 1970, UTC); it's not generated
+     * @param forward direction mode; true - is forward, false - is backward.
+     * @return generator instance. Not thread safe.
+     */
+    public abstract ScheduleEventsGenerator getEventsGenerator(long start, boolean forward);
+
+    @Override
+    public String toString()
+    {
+        StringBuilder result = new StringBuilder("(");
+        for (int i = 0; i < crons.length; i++)
+        {
+            if ( i > 0 ) result.append(' ').append(operator()).append(' ');
+            result.append(crons[i]);
+        }
+        return result.append(')').toString();
+    }
+
+
+
+    /**
+     * Finds the event by the search mode.
+     *
+     * @param timestamp the start of search
+     * @param forward the direction of search
+     * @param canEqual true, if the start can be returned
+     * @return the found event
+     * @throws IllegalStateException if there is no event
+     */
+    abstract long find(long timestamp, boolean forward, boolean canEqual);
+
+    /**
+     * @return the sign of operation for {@link #toString()}
+     */
+    abstract char operator();
+
+
+    static long search(Cron cron, long timestamp, boolean forward, boolean canEqual)
+    {
+        if ( canEqual )
+            return forward ? cron.NearestEvent(timestamp) : cron.NearestPrevEvent(timestamp);
+        else
+            return forward ? cron.NextEvent(timestamp) : cron.PrevEvent(timestamp);
+    }
+
+    /**
+     * @return true, if the moment is the event of the schedule
+     */
+    static boolean contains(Cron cron, long timestamp)
+    {
+        try
+        {
+            return cron.NearestEvent(timestamp) == timestamp;
+        }
+        catch (IllegalStateException e) // the schedule is over
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @return the digit of the runs of every excluded child (from 1); {@link EventRuns#NONE}, if it has no runs
+     */
+    static int[] runDigitsOf(Cron[] crons)
+    {
+        Schedule base = crons[0] instanceof Schedule ? (Schedule) crons[0] : null;
+
+        int[] result = new int[crons.length];
+        for (int i = 1; i < crons.length; i++)
+            result[i] = crons[i] instanceof Schedule ? ((Schedule) crons[i]).getRunDigit(base) : EventRuns.NONE;
+
+        return result;
+    }
+
+    /**
+     * @return the fast generator of the schedule, or the generator by the searches for the other crons
+     */
+    static ScheduleEventsGenerator generatorOf(Cron cron, long start, boolean forward)
+    {
+        if ( cron instanceof CompositeCron ) return ((CompositeCron) cron).getEventsGenerator(start, forward);
+
+        if ( cron instanceof Schedule )
+        {
+            try
+            {
+                return ((Schedule) cron).getEventsGenerator(start, forward);
+            }
+            catch (IllegalStateException e)
+            {
+                // the start is after the schedule; the searching generator throws the same by the first event
+            }
+        }
+        return new SearchGenerator(cron, start, forward);
+    }
+
+    private static void checkRounds(int rounds)
+    {
+        if ( rounds > MAX_ROUNDS )
+            throw new IllegalStateException("No event is found in " + MAX_ROUNDS + " rounds");
+    }
+
+
+
+    /**
+     * The events of any child.
+     */
+    private static final class Union extends CompositeCron
+    {
+        Union(Cron[] crons)
+        {
+            super(crons);
+        }
+
+        @Override
+        long find(long timestamp, boolean forward, boolean canEqual)
+        {
+            long result = 0;
+            boolean found = false;
+
+            for (Cron cron : crons)
+            {
+                try
+                {
+                    long event = search(cron, timestamp, forward, canEqual);
+                    if ( !found || (forward ? event < result : event > result) ) result = event;
+                    found = true;
+                }
+                catch (IllegalStateException e)
+                {
+                    // this schedule is over; the others can have events
+                }
+            }
+
+            if ( !found ) throw new IllegalStateException(OUT_MESSAGE);
+            return result;
+        }
+
+        @Override
+        char operator()
+        {
+            return '|';
+        }
+
+        @Override
+        public ScheduleEventsGenerator getEventsGenerator(long start, boolean forward)
+        {
+            return new UnionGenerator(this, start, forward);
+        }
+    }
+
+    /**
+     * The events of all children at the same time.
+     */
+    private static final class Intersection extends CompositeCron
+    {
+        Intersection(Cron[] crons)
+        {
+            super(crons);
+        }
+
+        @Override
+        long find(long timestamp, boolean forward, boolean canEqual)
+        {
+            long candidate = search(crons[0], timestamp, forward, canEqual);
+            int agreed = 1; // the number of children in a row, which have the candidate
+            int rounds = 0;
+
+            for (int i = 1 % crons.length; agreed < crons.length; i = (i + 1) % crons.length)
+            {
+                long event = search(crons[i], candidate, forward, true);
+                if ( event == candidate )
+                    agreed++;
+                else
+                {
+                    candidate = event; // the child jumps over the events of others
+                    agreed = 1;
+                    checkRounds(++rounds);
+                }
+            }
+            return candidate;
+        }
+
+        @Override
+        char operator()
+        {
+            return '&';
+        }
+
+        @Override
+        public ScheduleEventsGenerator getEventsGenerator(long start, boolean forward)
+        {
+            return new SearchGenerator(this, start, forward); // every search leapfrogs the children
+        }
+    }
+
+    /**
+     * The events of the first child, which are not the events of the others.
+     */
+    private static final class Difference extends CompositeCron
+    {
+        final int[] runs; // the digit of the runs of every excluded child (see EventRuns)
+
+        Difference(Cron[] crons)
+        {
+            super(crons);
+            runs = runDigitsOf(this.crons);
+        }
+
+        @Override
+        long find(long timestamp, boolean forward, boolean canEqual)
+        {
+            long event = search(crons[0], timestamp, forward, canEqual);
+
+            int rounds = 0;
+            for (int i = excludedBy(event); i > 0; i = excludedBy(event))
+            {
+                if ( runs[i] == EventRuns.NONE )
+                    event = search(crons[0], event, forward, false);
+                else
+                    event = search(crons[0], ((Schedule) crons[i]).skipRun(event, runs[i], forward), forward, true);
+
+                checkRounds(++rounds);
+            }
+            return event;
+        }
+
+        /**
+         * @return the excluded child, which has the event; 0, if there is no one
+         */
+        private int excludedBy(long event)
+        {
+            for (int i = 1; i < crons.length; i++)
+                if ( contains(crons[i], event) ) return i;
+
+            return 0;
+        }
+
+        @Override
+        char operator()
+        {
+            return '-';
+        }
+
+        @Override
+        public ScheduleEventsGenerator getEventsGenerator(long start, boolean forward)
+        {
+            return new DifferenceGenerator(this, start, forward);
+        }
+    }
+
+
+
+    /**
+     * The base of the generators: the next event is kept pending, when it is beyond the limit of {@link #fill}.
+     */
+    private abstract static class Generator implements ScheduleEventsGenerator
+    {
+        final Cron cron;
+        final boolean forward;
+
+        private long last;
+        private long pending;
+        private boolean hasPending;
+        private boolean exhausted; // the schedule has no more events
+
+        Generator(Cron cron, long start, boolean forward)
+        {
+            this.cron = cron;
+            this.forward = forward;
+            this.last = start;
+        }
+
+        /**
+         * @return the event after the previous one
+         * @throws IllegalStateException if there is no more events
+         */
+        abstract long advance();
+
+        public Date last()
+        {
+            return new Date(last);
+        } // for first call returns 'start'
+
+        public Date next()
+        {
+            if ( !hasPending )
+            {
+                if ( exhausted ) throw new IllegalStateException(OUT_MESSAGE);
+                try
+                {
+                    pending = advance();
+                }
+                catch (IllegalStateException e)
+                {
+                    exhausted = true;
+                    throw e;
+                }
+            }
+
+            hasPending = false;
+            return new Date(last = pending);
+        }
+
+        public int fill(long[] out, int offset, int max, long until)
+        {
+            int count = 0;
+            while ( count < max )
+            {
+                if ( !hasPending )
+                {
+                    if ( exhausted ) break;
+                    try
+                    {
+                        pending = advance();
+                        hasPending = true;
+                    }
+                    catch (IllegalStateException e)
+                    {
+                        exhausted = true; // the events already written are valid
+                        break;
+                    }
+                }
+
+                if ( forward ? pending > until : pending < until ) break; // it stays pending
+
+                out[offset + count++] = last = pending;
+                hasPending = false;
+            }
+            return count;
+        }
+
+        public String schedule()
+        {
+            return cron.toString();
+        }
+
+        @Override
+        public String toString() {
+            return schedule();
+        }
+    }
+
+    /**
+     * Generator by the searches of the next events.
+     */
+    private static final class SearchGenerator extends Generator
+    {
+        private long position;
+
+        SearchGenerator(Cron cron, long start, boolean forward)
+        {
+            super(cron, start, forward);
+            position = start;
+        }
+
+        @Override
+        long advance()
+        {
+            return position = search(cron, position, forward, false);
+        }
+    }
+
+    /**
+     * Merges the generators of the children: the next event of every child is kept,
+     * and the nearest one is taken (once, if the children have the same event).
+     */
+    private static final class UnionGenerator extends Generator
+    {
+        private final ScheduleEventsGenerator[] generators;
+        private final long[] heads; // the next event of every child
+        private final boolean[] alive;
+        private final long[] buffer = new long[1];
+
+        UnionGenerator(CompositeCron cron, long start, boolean forward)
+        {
+            super(cron, start, forward);
+
+            int count = cron.crons.length;
+            generators = new ScheduleEventsGenerator[count];
+            heads = new long[count];
+            alive = new boolean[count];
+
+            for (int i = 0; i < count; i++)
+            {
+                generators[i] = generatorOf(cron.crons[i], start, forward);
+                pull(i);
+            }
+        }
+
+        @Override
+        long advance()
+        {
+            long result = 0;
+            boolean found = false;
+
+            for (int i = 0; i < heads.length; i++)
+                if ( alive[i] && (!found || (forward ? heads[i] < result : heads[i] > result)) )
+                {
+                    result = heads[i];
+                    found = true;
+                }
+
+            if ( !found ) throw new IllegalStateException(OUT_MESSAGE);
+
+            for (int i = 0; i < heads.length; i++)
+                if ( alive[i] && heads[i] == result ) pull(i);
+
+            return result;
+        }
+
+        private void pull(int i)
+        {
+            alive[i] = generators[i].fill(buffer, 0, 1, forward ? Long.MAX_VALUE : Long.MIN_VALUE) == 1;
+            heads[i] = buffer[0];
+        }
+    }
+
+    /**
+     * Generates the events of the first child; the next event of every excluded child is found
+     * only when the generated events pass it.
+     */
+    private static final class DifferenceGenerator extends Generator
+    {
+        private final Difference difference;
+        private ScheduleEventsGenerator base; // restarted after the runs of the excluded events
+        private final long[] excluded; // the next event of every excluded child (from 1)
+        private final boolean[] known;
+        private final long[] buffer = new long[1];
+
+        DifferenceGenerator(Difference cron, long start, boolean forward)
+        {
+            super(cron, start, forward);
+            difference = cron;
+            base = generatorOf(cron.crons[0], start, forward);
+            excluded = new long[cron.crons.length];
+            known = new boolean[cron.crons.length];
+        }
+
+        @Override
+        long advance()
+        {
+            for (int rounds = 0; ; checkRounds(++rounds))
+            {
+                if ( base.fill(buffer, 0, 1, forward ? Long.MAX_VALUE : Long.MIN_VALUE) == 0 )
+                    throw new IllegalStateException(OUT_MESSAGE);
+
+                long event = buffer[0];
+                int i = excludedBy(event);
+                if ( i == 0 ) return event;
+
+                int digit = difference.runs[i];
+                if ( digit != EventRuns.NONE )
+                {
+                    long end = ((Schedule) difference.crons[i]).skipRun(event, digit, forward);
+                    base = generatorOf(difference.crons[0], forward ? end - 1 : end + 1, forward); // from the end
+                }
+            }
+        }
+
+        /**
+         * @return the excluded child, which has the event; 0, if there is no one
+         */
+        private int excludedBy(long event)
+        {
+            Cron[] crons = difference.crons;
+            for (int i = 1; i < crons.length; i++)
+            {
+                if ( !known[i] || (forward ? excluded[i] < event : excluded[i] > event) )
+                {
+                    try
+                    {
+                        excluded[i] = search(crons[i], event, forward, true);
+                    }
+                    catch (IllegalStateException e) // no more excluded events
+                    {
+                        excluded[i] = forward ? Long.MAX_VALUE : Long.MIN_VALUE;
+                    }
+                    known[i] = true;
+                }
+
+                if ( excluded[i] == event ) return i;
+            }
+            return 0;
+        }
+    }
+}
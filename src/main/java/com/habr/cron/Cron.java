@@ -44,4 +44,64 @@ public interface Cron
      * @throws IllegalStateException when the next value if out of schedule
      */
     Date PrevEvent(Date d);
+
+
+
+    /**
+     * Returns the next moment in the schedule closest to the specified time,
+     * or the specified time itself, if it is in the schedule.
+     * The implementations work without creating of {@link Date} objects;
+     * the default method delegates to the {@link Date} one.
+     *
+     * @param timestamp the specified time (milliseconds since 1 Jan 1970, UTC)
+     * @return the nearest time in the schedule (milliseconds since 1 Jan 1970, UTC)
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    default long NearestEvent(long timestamp)
+    {
+        return NearestEvent(new Date(timestamp)).getTime();
+    }
+
+    /**
+     * Returns the previous moment in the schedule closest to the specified time,
+     * or the specified time itself, if it is in the schedule.
+     * The implementations work without creating of {@link Date} objects;
+     * the default method delegates to the {@link Date} one.
+     *
+     * @param timestamp the specified time (milliseconds since 1 Jan 1970, UTC)
+     * @return the nearest time in the schedule (milliseconds since 1 Jan 1970, UTC)
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    default long NearestPrevEvent(long timestamp)
+    {
+        return NearestPrevEvent(new Date(timestamp)).getTime();
+    }
+
+    /**
+     * Returns the next time point in the schedule.
+     * The implementations work without creating of {@link Date} objects;
+     * the default method delegates to the {@link Date} one.
+     *
+     * @param timestamp the specified time (milliseconds since 1 Jan 1970, UTC)
+     * @return the nearest time in the schedule (milliseconds since 1 Jan 1970, UTC)
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    default long NextEvent(long timestamp)
+    {
+        return NextEvent(new Date(timestamp)).getTime();
+    }
+
+    /**
+     * Returns the previous time point in the schedule.
+     * The implementations work without creating of {@link Date} objects;
+     * the default method delegates to the {@link Date} one.
+     *
+     * @param timestamp the specified time (milliseconds since 1 Jan 1970, UTC)
+     * @return the nearest time in the schedule (milliseconds since 1 Jan 1970, UTC)
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    default long PrevEvent(long timestamp)
+    {
+        return PrevEvent(new Date(timestamp)).getTime();
+    }
 }
@@ -0,0 +1,557 @@
+package com.habr.cron;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executor of tasks by schedules: hundreds of thousands of jobs are run by one timer thread.
+ *
+ * The jobs wait for their next events in the hashed timing wheel: the ring of buckets, one bucket per tick
+ * of the timer. The job lays in the bucket of the tick of its next event, so the timer thread visits only
+ * the jobs of the passed tick (and the jobs of the later rounds of the wheel, which stay in the bucket).
+ * The next event is taken from the events generator of the job, so the runs don't drift:
+ * the times are calculated by the schedule, not by the delays between the runs.
+ *
+ * The due tasks are dispatched to the executor, the timer thread never runs them itself.
+ * By default it's the executor of virtual threads, if the runtime has them (Java 21+),
+ * otherwise the cached pool of daemon threads.
+ *
+ * The event is missed (misfired), when the timer reaches it later than the misfire threshold
+ * (the timer thread was stalled, or the clock jumped forward); see {@link MisfirePolicy}.
+ * The scheduling lag (the delay between the event and its dispatching) is collected for all runs.
+ *
+ * The job is finished, when the executor of tasks or its schedule throws an unexpected exception;
+ * the timer continues with the other jobs.
+ *
+ * Thread-safe.
+ *
+ * Difficulty:
+ *  adding or cancelling of a job - O(1)
+ *  one tick - O(jobs in bucket)
+ */
+public final class CronExecutor
+{
+    private static final long DEFAULT_TICK = 10; // milliseconds
+    private static final int DEFAULT_WHEEL_SIZE = 1024; // ~10 seconds per round
+    private static final long DEFAULT_MISFIRE_THRESHOLD = 1000;
+
+    private static final int ACTIVE = 0;
+    private static final int CANCELLED = 1;
+    private static final int FINISHED = 2;
+
+    private final long tick;
+    private final long misfireThreshold;
+    private final Job[] wheel; // the heads of the lists of jobs; the timer thread only
+    private final int mask;
+
+    private final Executor executor;
+    private final boolean ownExecutor; // created here, and is shut down with the timer
+
+    private final ConcurrentLinkedQueue<Job> added = new ConcurrentLinkedQueue<Job>();
+    private final long[] buffer = new long[1]; // for the next event from generator; the timer thread only
+    private long current; // the next tick to process; the timer thread only
+
+    private final Thread timer;
+    private volatile boolean shutdown;
+
+    // written by the timer thread only
+    private volatile long dispatched;
+    private volatile long missed;
+    private volatile long rejected;
+    private volatile long failed;
+    private volatile long totalLag;
+    private volatile long maxLag;
+
+
+    /**
+     * What to do with the missed events of the job.
+     */
+    public enum MisfirePolicy
+    {
+        /**
+         * Runs the task for every missed event.
+         */
+        FIRE_ALL,
+
+        /**
+         * Runs the task once for all missed events, and continues by the schedule.
+         */
+        FIRE_ONCE,
+
+        /**
+         * Drops the missed events, and continues by the schedule.
+         */
+        SKIP
+    }
+
+
+    /**
+     * The job of the executor; the handle for cancellation and the state of the job.
+     */
+    public static final class Job
+    {
+        private final Schedule schedule;
+        private final Runnable task;
+        private final MisfirePolicy policy;
+        private final AtomicInteger state = new AtomicInteger(ACTIVE);
+
+        private ScheduleEventsGenerator generator; // the timer thread only, after adding
+        private long time; // the next event
+        private Job next; // in the bucket
+
+        private volatile long nextTime;
+        private volatile long lastLag;
+
+        private Job(Schedule schedule, Runnable task, MisfirePolicy policy)
+        {
+            this.schedule = schedule;
+            this.task = task;
+            this.policy = policy;
+        }
+
+        /**
+         * Cancels the job. The already dispatched runs are not interrupted.
+         * The job is removed from the timer, when its bucket is passed.
+         *
+         * @return false, if the job was already cancelled or finished
+         */
+        public boolean cancel()
+        {
+            return state.compareAndSet(ACTIVE, CANCELLED);
+        }
+
+        /**
+         * @return true, if the job was cancelled
+         */
+        public boolean isCancelled()
+        {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * @return true, if the job was cancelled, or its schedule has no more events
+         */
+        public boolean isDone()
+        {
+            return state.get() != ACTIVE;
+        }
+
+        /**
+         * @return the time of the next run (milliseconds since 1 Jan 1970, UTC), or Long.MAX_VALUE if the job is done
+         */
+        public long getNextTime()
+        {
+            return isDone() ? Long.MAX_VALUE : nextTime;
+        }
+
+        /**
+         * @return the delay of the last dispatching after its event in milliseconds, 0 if the job was not run yet
+         */
+        public long getLastLag()
+        {
+            return lastLag;
+        }
+
+        public Schedule getSchedule()
+        {
+            return schedule;
+        }
+
+        private void finish()
+        {
+            state.compareAndSet(ACTIVE, FINISHED);
+            nextTime = Long.MAX_VALUE;
+        }
+    }
+
+
+    /**
+     * Creates the executor with the default executor of tasks, the tick of 10 ms,
+     * and the misfire threshold of 1 second.
+     */
+    public CronExecutor()
+    {
+        this(newDefaultExecutor(), true, DEFAULT_TICK, DEFAULT_WHEEL_SIZE, DEFAULT_MISFIRE_THRESHOLD,
+                System.currentTimeMillis(), true);
+    }
+
+    /**
+     * Creates the executor with the tick of 10 ms, and the misfire threshold of 1 second.
+     *
+     * @param executor the executor of tasks; it's not shut down by this executor
+     */
+    public CronExecutor(Executor executor)
+    {
+        this(executor, DEFAULT_TICK, DEFAULT_WHEEL_SIZE, DEFAULT_MISFIRE_THRESHOLD);
+    }
+
+    /**
+     * @param executor the executor of tasks; it's not shut down by this executor
+     * @param tick the resolution of the timer in milliseconds; the tasks are dispatched after the end of tick
+     * @param wheelSize the number of buckets of the timing wheel, power of 2
+     * @param misfireThreshold the event is missed, when it's dispatched later (in milliseconds)
+     */
+    public CronExecutor(Executor executor, long tick, int wheelSize, long misfireThreshold)
+    {
+        this(executor, false, tick, wheelSize, misfireThreshold, System.currentTimeMillis(), true);
+    }
+
+    /**
+     * @param now the start of the timer
+     * @param startTimer false for the timer, which is advanced manually by {@link #advance(long)}
+     */
+    CronExecutor(Executor executor, boolean ownExecutor, long tick, int wheelSize, long misfireThreshold,
+                 long now, boolean startTimer)
+    {
+        if ( executor == null ) throw new IllegalArgumentException("The executor is null");
+        if ( tick <= 0 ) throw new IllegalArgumentException("The tick MUST be positive: " + tick);
+        if ( wheelSize <= 0 || (wheelSize & (wheelSize - 1)) != 0 )
+            throw new IllegalArgumentException("The wheel size MUST be a power of 2: " + wheelSize);
+        if ( misfireThreshold < 0 )
+            throw new IllegalArgumentException("The misfire threshold MUST NOT be negative: " + misfireThreshold);
+
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.tick = tick;
+        this.misfireThreshold = misfireThreshold;
+
+        wheel = new Job[wheelSize];
+        mask = wheelSize - 1;
+        current = now / tick;
+
+        timer = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                runTimer();
+            }
+        }, "cron-timer");
+        timer.setDaemon(true);
+        if ( startTimer ) timer.start();
+    }
+
+
+    /**
+     * Schedules the task with the {@link MisfirePolicy#FIRE_ONCE} policy.
+     *
+     * @param schedule the schedule of the task
+     * @param task the task; it's run after the events of the schedule
+     * @return the job; it's done at once, if the schedule has no events in the future
+     * @throws RejectedExecutionException if the executor is shut down
+     */
+    public Job schedule(Schedule schedule, Runnable task)
+    {
+        return schedule(schedule, task, MisfirePolicy.FIRE_ONCE);
+    }
+
+    /**
+     * Schedules the task.
+     *
+     * @param schedule the schedule of the task
+     * @param task the task; it's run after the events of the schedule
+     * @param policy what to do with the missed events
+     * @return the job; it's done at once, if the schedule has no events in the future
+     * @throws RejectedExecutionException if the executor is shut down
+     */
+    public Job schedule(Schedule schedule, Runnable task, MisfirePolicy policy)
+    {
+        return schedule(schedule, task, policy, System.currentTimeMillis());
+    }
+
+    /**
+     * @param start the task is run by the events after this moment
+     */
+    Job schedule(Schedule schedule, Runnable task, MisfirePolicy policy, long start)
+    {
+        if ( schedule == null || task == null || policy == null )
+            throw new IllegalArgumentException("The schedule, task and policy MUST NOT be null");
+        if ( shutdown ) throw new RejectedExecutionException("The executor is shut down");
+
+        Job job = new Job(schedule, task, policy);
+        long[] event = new long[1]; // the caller's thread
+        try
+        {
+            job.generator = schedule.getEventsGenerator(start, true);
+        }
+        catch (IllegalStateException e)
+        {
+            job.finish(); // the start is already after the schedule
+            return job;
+        }
+        if ( job.generator.fill(event, 0, 1, Long.MAX_VALUE) == 0 )
+        {
+            job.finish();
+            return job;
+        }
+
+        job.time = event[0];
+        job.nextTime = event[0];
+        added.add(job); // the timer thread puts it into the wheel
+        return job;
+    }
+
+
+    /**
+     * Stops the timer. The already dispatched tasks are not interrupted.
+     * The default executor of tasks is shut down too.
+     */
+    public void shutdown()
+    {
+        shutdown = true;
+        LockSupport.unpark(timer);
+        if ( ownExecutor ) ((ExecutorService) executor).shutdown();
+    }
+
+    public boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    /**
+     * Waits for the stop of the timer thread.
+     *
+     * @return false, if the timeout elapsed before the stop
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        timer.join(Math.max(unit.toMillis(timeout), 1));
+        return !timer.isAlive();
+    }
+
+
+    /**
+     * @return the number of the dispatched runs of tasks
+     */
+    public long getDispatchedCount()
+    {
+        return dispatched;
+    }
+
+    /**
+     * @return the number of the missed events (they are run or dropped according the policies of jobs)
+     */
+    public long getMissedCount()
+    {
+        return missed;
+    }
+
+    /**
+     * @return the number of runs, rejected by the executor of tasks
+     */
+    public long getRejectedCount()
+    {
+        return rejected;
+    }
+
+    /**
+     * @return the number of jobs, finished by the unexpected exceptions of the executor of tasks or of the schedules
+     */
+    public long getFailedCount()
+    {
+        return failed;
+    }
+
+    /**
+     * @return the maximum delay of dispatching after the event, in milliseconds
+     */
+    public long getMaxLag()
+    {
+        return maxLag;
+    }
+
+    /**
+     * @return the average delay of dispatching after the event, in milliseconds
+     */
+    public double getAverageLag()
+    {
+        long count = dispatched;
+        return count == 0 ? 0 : (double) totalLag / count;
+    }
+
+
+
+    private void runTimer()
+    {
+        while ( !shutdown )
+        {
+            long now = System.currentTimeMillis();
+            long end = (current + 1) * tick; // the end of the next tick
+
+            if ( now < end )
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(end - now));
+            else
+                advance(now);
+        }
+    }
+
+    /**
+     * Processes the ticks, which are over by the moment. The timer thread only.
+     *
+     * @param now the current time
+     */
+    void advance(long now)
+    {
+        long last = now / tick - 1; // the last passed tick
+        if ( last - current >= wheel.length ) current = last - mask; // whole rounds are passed; every bucket once
+
+        for (Job job = added.poll(); job != null; job = added.poll())
+            place(job);
+
+        for (; current <= last; current++)
+            processBucket((int) (current & mask), now);
+    }
+
+    private void processBucket(int index, long now)
+    {
+        Job job = wheel[index];
+        wheel[index] = null; // the due jobs are put into other buckets, the later rounds stay here
+
+        while ( job != null )
+        {
+            Job following = job.next;
+            job.next = null;
+
+            if ( job.isDone() )
+            {
+                job.generator = null; // the cancelled job is dropped
+            }
+            else if ( job.time > now )
+            {
+                job.next = wheel[index];
+                wheel[index] = job;
+            }
+            else
+            {
+                try
+                {
+                    fire(job, now);
+                }
+                catch (RuntimeException e)
+                {
+                    failed++; // the timer thread must survive; the job can't be continued
+                    job.finish();
+                    job.generator = null;
+                }
+            }
+
+            job = following;
+        }
+    }
+
+    private void fire(Job job, long now)
+    {
+        if ( now - job.time > misfireThreshold && job.policy != MisfirePolicy.FIRE_ALL )
+        {
+            // the missed events are counted, not enumerated: the generator restarts from the threshold
+            // on the grid of milliseconds, as the jobs are fired; the events inside a millisecond are one run
+            missed += job.schedule.countMilliseconds(job.time, now - misfireThreshold);
+            if ( job.policy == MisfirePolicy.FIRE_ONCE ) dispatch(job, now);
+
+            try
+            {
+                job.generator = job.schedule.getEventsGenerator(now - misfireThreshold - 1, true);
+            }
+            catch (IllegalStateException e)
+            {
+                job.finish();
+                job.generator = null;
+                return;
+            }
+            if ( !nextEvent(job) ) return;
+        }
+
+        while ( job.time <= now )
+        {
+            if ( now - job.time > misfireThreshold ) missed++; // FIRE_ALL
+            dispatch(job, now);
+            if ( !nextEvent(job) ) return;
+        }
+
+        job.nextTime = job.time;
+        place(job);
+    }
+
+    private boolean nextEvent(Job job)
+    {
+        if ( job.generator.fill(buffer, 0, 1, Long.MAX_VALUE) == 0 )
+        {
+            job.finish();
+            job.generator = null;
+            return false;
+        }
+        job.time = buffer[0];
+        return true;
+    }
+
+    private void dispatch(Job job, long now)
+    {
+        long lag = now - job.time;
+
+        job.lastLag = lag;
+        dispatched++;
+        totalLag += lag;
+        if ( lag > maxLag ) maxLag = lag;
+
+        try
+        {
+            executor.execute(job.task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            rejected++; // the executor of tasks is shut down or overloaded; the run is lost
+        }
+    }
+
+    /**
+     * Puts the job into the bucket of its next event, or into the next processed bucket, if it's already due.
+     */
+    private void place(Job job)
+    {
+        int index = (int) (Math.max(job.time / tick, current) & mask);
+
+        job.next = wheel[index];
+        wheel[index] = job;
+    }
+
+
+    /**
+     * @return the executor of virtual threads (Java 21+), or the cached pool of daemon threads
+     */
+    private static ExecutorService newDefaultExecutor()
+    {
+        try
+        {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (InvocationTargetException e)
+        {
+            // the method throws UnsupportedOperationException: the preview feature is not enabled (Java 19-20)
+        }
+        catch (ReflectiveOperationException e)
+        {
+            // no virtual threads in this runtime
+        }
+
+        return Executors.newCachedThreadPool(new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "cron-worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
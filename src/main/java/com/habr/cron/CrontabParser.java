@@ -0,0 +1,198 @@
+package com.habr.cron;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static com.habr.cron.ScheduleElements.*;
+
+/**
+ * Parser of the classic Unix crontab schedules (as Vixie cron sees them):
+ * <pre>
+ *     min hour day-of-month month day-of-week
+ * </pre>
+ * Constructs the same schedule model as {@link Parser}; the events are at the beginning of the minute.
+ *
+ * Every field is a list of 'a', 'a-b', 'a-b/n', '*', '* /n'. The months and the days of week can be
+ * set by names (jan-dec, sun-sat). The days of week are 0-7, both 0 and 7 are Sunday.
+ * When both the day of month and the day of week are restricted (they don't start with '*'),
+ * the day is matched by any of them: '0 0 1,15 * 1' fires on the 1st, the 15th and every Monday.
+ * The macros are @yearly (@annually), @monthly, @weekly, @daily (@midnight) and @hourly.
+ */
+final class CrontabParser
+{
+    private static final String[][] MACROS = {
+            {"@YEARLY", "0 0 1 1 *"},
+            {"@ANNUALLY", "0 0 1 1 *"},
+            {"@MONTHLY", "0 0 1 * *"},
+            {"@WEEKLY", "0 0 * * 0"},
+            {"@DAILY", "0 0 * * *"},
+            {"@MIDNIGHT", "0 0 * * *"},
+            {"@HOURLY", "0 * * * *"},
+    };
+    private static final int FIELDS = 5;
+
+    private ScheduleModel model;
+
+    private String schedule; // the source of the current parsing
+    private String chars; // the source (or the macro) in the upper case
+    private FieldScanner scanner; // the fields of the chars
+    private final int[] bounds = new int[2 * FIELDS]; // begin & end of the fields
+
+
+    public ScheduleModel getScheduleModel()
+    {
+        if ( model == null )
+            throw new IllegalStateException();
+
+        return model;
+    }
+
+
+    /**
+     * @param schedule the crontab schedule: five fields or the macro, without the command
+     * @throws ScheduleFormatException
+     */
+    public void parse(String schedule) throws ScheduleFormatException
+    {
+        if ( schedule == null || schedule.trim().isEmpty() )
+            throw new ScheduleFormatException("Empty schedule.", schedule);
+
+        this.schedule = schedule;
+        this.chars = expandMacro(schedule.trim().toUpperCase(Locale.ROOT));
+        this.scanner = new FieldScanner(chars, chars);
+        model = new ScheduleModel();
+
+        if ( scanner.splitFields(bounds) != FIELDS )
+            throw new ScheduleFormatException("Wrong crontab schedule (expected 5 fields).", schedule);
+
+        int[] b = bounds;
+        processElement(MINUTES, b[0], b[1]);
+        processElement(HOURS, b[2], b[3]);
+        processElement(DAY_OF_MONTH, b[4], b[5]);
+        processElement(MONTH, b[6], b[7]);
+        processElement(DAY_OF_WEEK, b[8], b[9]);
+
+        // Vixie cron: the day of month OR the day of week, if both are restricted
+        model.setDaysUnion(scanner.charAt(b[4]) != '*' && scanner.charAt(b[8]) != '*');
+
+        model.setModelFor(YEAR, RangeList.ASTERISK);
+        model.setModelFor(SECONDS, new RangeList(new Range(0)));
+
+
+        model.initDefaults();
+        model.check(schedule);
+        model.fixup();
+    }
+
+    private String expandMacro(String source) throws ScheduleFormatException
+    {
+        if ( !source.startsWith("@") ) return source;
+
+        for (String[] macro : MACROS)
+            if ( macro[0].equals(source) ) return macro[1];
+
+        throw new ScheduleFormatException("Unknown macro of the crontab schedule.", schedule);
+    }
+
+
+
+    private void processElement(ScheduleElements element, int start, int end) throws ScheduleFormatException
+    {
+        List<Range> ranges = new ArrayList<Range>();
+
+        int item = start;
+        while ( item <= end )
+        {
+            int next = scanner.indexOf(',', item, end);
+            parseItem(element, item, next, ranges);
+            item = next + 1;
+        }
+
+        RangeList result = new RangeList(ranges.size());
+        for (Range range : ranges) result.add(range);
+
+        model.setModelFor(element, result.isAlone() && result.getSingle() == Range.ASTERISK ? RangeList.ASTERISK : result);
+    }
+
+    /**
+     * Parses one item of the list: '*', '* /n', 'a', 'a-b', 'a-b/n'.
+     */
+    private void parseItem(ScheduleElements element, int start, int end, List<Range> ranges) throws ScheduleFormatException
+    {
+        if ( start == end )
+            throw new ScheduleFormatException("Empty item in the list.", schedule);
+
+        if ( scanner.charAt(start) == '*' )
+        {
+            if ( start + 1 == end )
+            {
+                ranges.add(Range.ASTERISK);
+                return;
+            }
+            if ( scanner.charAt(start + 1) == '/' )
+            {
+                int step = scanner.parseStep(start + 2, end, start, end);
+                ranges.add(step > 1 ? new Range(step, true) : Range.ASTERISK);
+                return;
+            }
+        }
+        else
+        {
+            int minEnd = scanner.skipValue(start, end);
+            int min = parseValue(element, start, minEnd, start, end);
+
+            if ( minEnd == end )
+            {
+                ranges.add(new Range(element == DAY_OF_WEEK ? min % 7 : min));
+                return;
+            }
+
+            if ( scanner.charAt(minEnd) == '-' )
+            {
+                int maxEnd = scanner.skipValue(minEnd + 1, end);
+                int max = parseValue(element, minEnd + 1, maxEnd, start, end);
+
+                int step = 1;
+                if ( maxEnd < end )
+                {
+                    if ( scanner.charAt(maxEnd) != '/' )
+                        throw new ScheduleFormatException("Invalid format of the schedule element.", scanner.substring(start, end));
+
+                    step = scanner.parseStep(maxEnd + 1, end, start, end);
+                }
+
+                if ( element == DAY_OF_WEEK && max == 7 && min <= max ) // Sunday at the end: '5-7'
+                {
+                    for (int day = min; day <= max; day += step)
+                        ranges.add(new Range(day % 7));
+                }
+                else
+                    ranges.add(new Range(min, max, step));
+                return;
+            }
+        }
+
+        throw new ScheduleFormatException("Invalid format of the schedule element.", scanner.substring(start, end));
+    }
+
+
+
+    /**
+     * Parses the number or the name of month or day of week (0-7 for the days of week).
+     */
+    private int parseValue(ScheduleElements element, int start, int end, int elementStart, int elementEnd)
+            throws ScheduleFormatException
+    {
+        if ( !scanner.isNumber(start, end) )
+            return scanner.parseName(element, start, end, elementStart, elementEnd);
+
+        int value = scanner.parseNumber(start, end, elementStart, elementEnd);
+        if ( element == DAY_OF_WEEK && value > 7 )
+            throw new ScheduleFormatException("The day of week MUST be 0-7 or sun-sat.", scanner.substring(elementStart, elementEnd));
+        if ( element == DAY_OF_MONTH && value > 31 ) // no last day of month (32) in crontab
+            throw new ScheduleFormatException("The day of month MUST be 1-31.", scanner.substring(elementStart, elementEnd));
+
+        return value;
+    }
+}
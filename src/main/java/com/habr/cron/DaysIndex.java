@@ -0,0 +1,441 @@
+package com.habr.cron;
+
+import static com.habr.cron.ScheduleElements.*;
+
+/**
+ * Index of the matched days of the schedule: for every year it keeps the bit map of the days of year,
+ * which match the months, the days of month (with the last day of month) and the days of week at the same time,
+ * or the special day of month of the Quartz schedules ({@link SpecialDay}).
+ * For the crontab schedules with both restricted days, the day of month OR the day of week is matched.
+ * So the next or previous matched date is found by a couple of scans of 64-bits words,
+ * and the search doesn't correct the found date by the days of week.
+ *
+ * The excluded days of the holiday calendar are removed from the maps of months (see {@link HolidayCalendar}).
+ *
+ * The maps of years are created lazily, on the first request, and are kept in a small cache
+ * (the years of a search are usually close to each other).
+ * The cache is bounded: a year replaces another one with the same slot.
+ *
+ * The matched days of a year depend only on its kind: leap or not, and the weekday of 1 Jan (14 kinds).
+ * The days of an interval of years are counted by the numbers of the matched years of every kind
+ * (see {@link #countYearDays(int, int)}); the numbers are kept for the blocks of 128 years,
+ * and only the years of the incomplete blocks at the ends are checked one by one.
+ *
+ * Unmodified object (from the outside). Thread-safe: the map of year is filled before the constructor
+ * of {@link YearDays}, so the final field publishes it safely by the plain write into the cache;
+ * the race between threads only creates the same map twice.
+ *
+ * Difficulty:
+ *  matching one day - O(1)
+ *  find nearest day in the year - O(1), up to 6 words
+ * Used memory:
+ *  ~6 Kb for the full cache
+ *  ~4.5 Kb for the numbers of years of the blocks, created on the first count of days
+ */
+final class DaysIndex
+{
+    private static final int CACHE_SIZE = 64; // the number of cached years; power of 2
+    private static final int WORDS = 6; // 366 bits of the days of year
+    private static final int KINDS = 14; // the kinds of years: leap (0/1) and weekday of 1 Jan
+    private static final int BLOCK_BITS = 7; // the blocks of 128 years
+    private static final int BLOCKS = ((YEAR.max + 1) >> BLOCK_BITS) + 2; // the bounds of blocks for the years 0..10000
+
+    private final DigitMatcher years;
+    private final DigitMatcher months;
+
+    private final int[] dayMaps = new int[4]; // the matched days (bits 1..31) for months of 28, 29, 30, 31 days
+    private final int[] weekMaps = new int[7]; // the days (bits 1..31) matched the weekdays, by weekday of 1st day
+    private final int[] monthMaps = new int[4 * 7]; // the matched days of month, by its length and weekday of 1st day
+    private final int[] yearDays = new int[KINDS]; // the matched days of year by its kind, without the dated holidays
+
+    private final DigitMatcher matchedYears; // the years, which have the matched days
+    private final HolidayCalendar holidays; // the excluded days; null, if there is no one
+
+    private final YearDays[] cache = new YearDays[CACHE_SIZE];
+
+    /**
+     * The numbers of the matched years of every kind before the first year of every block (prefix sums);
+     * null, until the first count.
+     */
+    private volatile int[] yearKinds;
+
+
+    /**
+     * The bit map of the matched days of one year (the bit 0 is 1 Jan).
+     */
+    static final class YearDays
+    {
+        final int year;
+        final long[] map;
+
+        /**
+         * @param map the filled map; it's published by the final field, so it MUST NOT be changed after
+         */
+        YearDays(int year, long[] map)
+        {
+            this.year = year;
+            this.map = map;
+        }
+    }
+
+
+    /**
+     * Creates index for the schedule.
+     * The maps of years are not created here.
+     *
+     * @param years the matcher of years
+     * @param months the matcher of months
+     * @param days the matcher of days of month (the last day of month is the day 32)
+     * @param weekMap the bitmap of weekdays according the schedule
+     * @param specialDay the special day of month; null, if the schedule has no one
+     * @param union true, if the day of month OR the day of week is matched
+     */
+    public DaysIndex(DigitMatcher years, DigitMatcher months, DigitMatcher days, DaysMap weekMap,
+                     SpecialDay specialDay, boolean union)
+    {
+        this.years = years;
+        this.months = months;
+        holidays = null;
+
+        createDayMaps(days);
+        createWeekMaps(weekMap);
+        createMonthMaps(specialDay, union);
+        createYearDays();
+
+        matchedYears = new IndexedYearsMatcher(years, this);
+    }
+
+    /**
+     * Creates the same index without the excluded days.
+     * The maps of the lengths of months are shared with the source index.
+     *
+     * @param source the index of the schedule
+     * @param holidays the excluded days
+     */
+    private DaysIndex(DaysIndex source, HolidayCalendar holidays)
+    {
+        years = source.years;
+        months = source.months;
+
+        System.arraycopy(source.dayMaps, 0, dayMaps, 0, dayMaps.length);
+        System.arraycopy(source.weekMaps, 0, weekMaps, 0, weekMaps.length);
+        System.arraycopy(source.monthMaps, 0, monthMaps, 0, monthMaps.length);
+
+        this.holidays = source.holidays != null ? source.holidays.union(holidays) : holidays;
+        createYearDays(); // without the days of every year
+        yearKinds = source.yearKinds; // the same matcher of years
+
+        matchedYears = new IndexedYearsMatcher(years, this);
+    }
+
+    /**
+     * @param holidays the excluded days
+     * @return new index of the same schedule without the excluded days
+     */
+    public DaysIndex excluding(HolidayCalendar holidays)
+    {
+        return new DaysIndex(this, holidays);
+    }
+
+
+    /**
+     * @param year the year number
+     * @param month 1..12
+     * @return the bits map of the matched days of the month (bits 1..31), without the check of the month
+     */
+    public int getMonthMap(int year, int month)
+    {
+        int length = GregCalendar.maxDays(year, month);
+        int map = monthMaps[(length - MIN_LAST_DAY) * 7 + GregCalendar.dayOfWeek(year, month, 1)];
+
+        return holidays != null ? map & ~holidays.getMonthMap(year, month) : map;
+    }
+
+    /**
+     * @param length the length of month (28..31)
+     * @param first the weekday of the 1st day of month (see {@link GregCalendar#dayOfWeek(int, int, int)})
+     * @return the bits map of the matched days of such month (bits 1..31), without the excluded days
+     */
+    public int getLengthMap(int length, int first)
+    {
+        return monthMaps[(length - MIN_LAST_DAY) * 7 + first];
+    }
+
+    /**
+     * @return true, if the index has the excluded days (see {@link #excluding(HolidayCalendar)})
+     */
+    public boolean hasHolidays()
+    {
+        return holidays != null;
+    }
+
+    /**
+     * @param year the year number
+     * @return the number of the matched days of the year, without the check of the year
+     */
+    public int getYearDays(int year)
+    {
+        if ( holidays != null && holidays.hasDays(year) ) return countDays(year, true);
+
+        return yearDays[kindOf(year)];
+    }
+
+    /**
+     * Counts the matched days of the matched years by the kinds of years:
+     * the number of the years of every kind is multiplied by the days of the kind.
+     * The years with the dated holidays are corrected one by one.
+     *
+     * @param from the first year (inclusive)
+     * @param to the last year (exclusive), up to the year after the maximum
+     * @return the number of the matched days of the matched years [from, to)
+     */
+    public long countYearDays(int from, int to)
+    {
+        if ( from >= to ) return 0;
+
+        int[] kinds = getYearKinds();
+        int first = (from >> BLOCK_BITS) * KINDS, last = (to >> BLOCK_BITS) * KINDS;
+
+        long result = 0;
+        for (int kind = 0; kind < KINDS; kind++)
+            result += (long) (kinds[last + kind] - kinds[first + kind]) * yearDays[kind];
+
+        result += countYears(to & -(1 << BLOCK_BITS), to) - countYears(from & -(1 << BLOCK_BITS), from);
+
+        if ( holidays != null )
+            for (int year : holidays.getYears())
+                if ( from <= year && year < to && matches(years, year) )
+                    result += countDays(year, true) - yearDays[kindOf(year)];
+
+        return result;
+    }
+
+    /**
+     * @return the matcher of years, which skips the years without the matched days
+     */
+    public DigitMatcher getMatchedYears()
+    {
+        return matchedYears;
+    }
+
+    /**
+     * @param year the year number
+     * @return the map of the matched days of the year; empty, if the year is not matched
+     */
+    public YearDays getYear(int year)
+    {
+        int slot = year & (CACHE_SIZE - 1);
+
+        YearDays days = cache[slot];
+        if ( days == null || days.year != year )
+        {
+            days = createYear(year);
+            cache[slot] = days; // the race is harmless: the map is published by the final field
+        }
+        return days;
+    }
+
+    /**
+     * Search the first matched day of year, starting from this one (inclusive).
+     *
+     * @param days the map of year
+     * @param dayOfYear the day of year to start from (0 - 1 Jan)
+     * @return the matched day of year, or 366, if the year has no matched days further
+     */
+    public static int next(YearDays days, int dayOfYear)
+    {
+        for (int word = Math.max(dayOfYear, 0) >> 6; word < WORDS; word++)
+        {
+            int bit = BitmapUtils.forwardScanBit(days.map[word], dayOfYear - (word << 6));
+            if ( bit < 64 ) return (word << 6) + bit;
+        }
+        return 366;
+    }
+
+    /**
+     * Search the last matched day of year, starting from this one (inclusive) toward the 1 Jan.
+     *
+     * @param days the map of year
+     * @param dayOfYear the day of year to start from (0 - 1 Jan)
+     * @return the matched day of year, or -1, if the year has no matched days before
+     */
+    public static int prev(YearDays days, int dayOfYear)
+    {
+        for (int word = Math.min(dayOfYear >> 6, WORDS - 1); word >= 0; word--)
+        {
+            int bit = BitmapUtils.backwardScanBit(days.map[word], dayOfYear - (word << 6));
+            if ( bit >= 0 ) return (word << 6) + bit;
+        }
+        return -1;
+    }
+
+    /**
+     * @param days the map of year
+     * @param dayOfYear the day of year (0 - 1 Jan)
+     * @return true, if the day is matched
+     */
+    public static boolean match(YearDays days, int dayOfYear)
+    {
+        return (days.map[dayOfYear >> 6] & (1L << dayOfYear)) != 0;
+    }
+
+
+
+    private YearDays createYear(int year)
+    {
+        long[] result = new long[WORDS];
+        if ( !matches(years, year) ) return new YearDays(year, result);
+
+        int offset = 0; // the day of year of the 1st day of month
+        for (int month = 1; month <= 12; month++)
+        {
+            if ( matches(months, month) )
+            {
+                long map = (getMonthMap(year, month) & 0xFFFFFFFFL) >>> 1; // the day 1 is the bit 0
+
+                int word = offset >> 6, shift = offset & 63;
+                result[word] |= map << shift;
+                if ( shift > 32 ) result[word + 1] |= map >>> (64 - shift); // the month crosses the words
+            }
+            offset += GregCalendar.maxDays(year, month);
+        }
+        return new YearDays(year, result); // the map is filled before the final field is frozen
+    }
+
+    /**
+     * Checks the value by the matcher; the matchers don't control the overflow themselves.
+     */
+    private static boolean matches(DigitMatcher matcher, int value)
+    {
+        return matcher.getLow() <= value && value <= matcher.getHigh() && matcher.match(value);
+    }
+
+    /**
+     * Creates the maps of days for every length of month.
+     * The proxy checks the bounds, and resolves the last day of month, as it does for the search.
+     */
+    private void createDayMaps(DigitMatcher matcher)
+    {
+        GregCalendar calendar = new GregCalendar(0);
+        DigitMatcher days = new LastDayOfMonthProxy(matcher, calendar);
+
+        for (int length = MIN_LAST_DAY; length <= MAX_LAST_DAY; length++)
+        {
+            calendar.year = length == FEBRUARY_LEAP_DAY ? 2000 : 2001;
+            calendar.month = length <= FEBRUARY_LEAP_DAY ? 2 : length == 30 ? 4 : 1; // February, April, January
+
+            int map = 0;
+            for (int day = 1; day <= length; day++)
+                if ( days.match(day) ) map |= 1 << day;
+
+            dayMaps[length - MIN_LAST_DAY] = map;
+        }
+    }
+
+    private void createWeekMaps(DaysMap weekMap)
+    {
+        for (int first = 0; first < 7; first++)
+        {
+            int map = 0;
+            for (int day = 1; day <= MAX_LAST_DAY; day++)
+                if ( weekMap.contains((first + day - 1) % 7) ) map |= 1 << day;
+
+            weekMaps[first] = map;
+        }
+    }
+
+    private void createMonthMaps(SpecialDay specialDay, boolean union)
+    {
+        for (int length = MIN_LAST_DAY; length <= MAX_LAST_DAY; length++)
+            for (int first = 0; first < 7; first++)
+            {
+                int days = dayMaps[length - MIN_LAST_DAY];
+                int weeks = weekMaps[first] & (-1 >>> (31 - length)); // the days 1..length
+                int map = union ? days | weeks : days & weeks;
+                if ( specialDay != null ) map &= specialDay.getMonthMap(length, first);
+
+                monthMaps[(length - MIN_LAST_DAY) * 7 + first] = map;
+            }
+    }
+
+    private void createYearDays()
+    {
+        for (int leap = 0; leap <= 1; leap++)
+            for (int first = 0; first < 7; first++)
+                yearDays[leap * 7 + first] = countDays(findYear(leap, first), false);
+    }
+
+    /**
+     * @param dated false, if only the holidays of every year are excluded (the days of the kind of the year)
+     * @return the number of the matched days of the year by the months
+     */
+    private int countDays(int year, boolean dated)
+    {
+        int days = 0;
+        for (int month = 1; month <= 12; month++)
+            if ( matches(months, month) )
+            {
+                int map = getLengthMap(GregCalendar.maxDays(year, month), GregCalendar.dayOfWeek(year, month, 1));
+                if ( holidays != null )
+                    map &= ~(dated ? holidays.getMonthMap(year, month) : holidays.getAnnualMap(month));
+
+                days += Integer.bitCount(map);
+            }
+
+        return days;
+    }
+
+    /**
+     * @return the matched days of the matched years [from, to) of one block, by the kinds
+     */
+    private long countYears(int from, int to)
+    {
+        long days = 0;
+        for (int year = from; year < to; year++)
+            if ( matches(years, year) )
+                days += yearDays[kindOf(year)];
+
+        return days;
+    }
+
+    /**
+     * The race is harmless: the threads create the same numbers, published by the volatile field.
+     */
+    private int[] getYearKinds()
+    {
+        int[] kinds = yearKinds;
+        if ( kinds != null ) return kinds;
+
+        kinds = new int[BLOCKS * KINDS];
+        for (int block = 1; block < BLOCKS; block++)
+        {
+            int offset = block * KINDS;
+            System.arraycopy(kinds, offset - KINDS, kinds, offset, KINDS);
+
+            for (int year = (block - 1) << BLOCK_BITS; year < block << BLOCK_BITS && year <= YEAR.max; year++)
+                if ( matches(years, year) )
+                    kinds[offset + kindOf(year)]++;
+        }
+        return yearKinds = kinds;
+    }
+
+    /**
+     * @return the kind of the year: leap (0/1) and weekday of 1 Jan
+     */
+    private static int kindOf(int year)
+    {
+        return GregCalendar.isLeap(year) * 7 + GregCalendar.dayOfWeek(year, 1, 1);
+    }
+
+    /**
+     * @return the year of the kind (leap or not, and weekday of 1 Jan)
+     */
+    private static int findYear(int leap, int first)
+    {
+        int year = 2000;
+        while ( GregCalendar.isLeap(year) != leap || GregCalendar.dayOfWeek(year, 1, 1) != first )
+            year++;
+
+        return year;
+    }
+}
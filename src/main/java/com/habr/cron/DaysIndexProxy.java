@@ -0,0 +1,136 @@
+package com.habr.cron;
+
+/**
+ * Proxy-matcher for days, when the schedule has the days of week.
+ * The days of the current month of the calendar are taken from the {@link DaysIndex},
+ * so the matched day is matched by the days of week too, and the found date needs no correction.
+ *
+ * The month, which has no matched days, has the bounds 32..0 (the low bound is above the high one),
+ * so any day of it is out of bounds, and the search goes to the next month.
+ *
+ * Bound to the calendar of a single search; the index can be replaced
+ * when the search context is reused for another schedule.
+ * Not thread safe (as the calendar it bound to).
+ */
+final class DaysIndexProxy implements DigitMatcher
+{
+    private static final int NO_DAY_ABOVE = 32; // out of any month
+    private static final int NO_DAY_BELOW = 0;
+
+    private DaysIndex index;
+    private final GregCalendar calendar;
+
+    // the month of the calendar, for which the fields below are calculated
+    private int year;
+    private int month; // 0 - not calculated
+    private DaysIndex.YearDays days;
+    private int offset; // the day of year before the 1st day of month (0 for 1 Jan)
+    private int low; // the first & last matched days of the month
+    private int high;
+
+
+    public DaysIndexProxy(DaysIndex index, GregCalendar calendar)
+    {
+        this.index = index;
+        this.calendar = calendar;
+    }
+
+    /**
+     * Replaces the index of days.
+     *
+     * @param index new index of days for the same calendar
+     */
+    public void setIndex(DaysIndex index)
+    {
+        if ( this.index == index ) return; // the same schedule; the month is still valid
+
+        this.index = index;
+        this.month = 0;
+    }
+
+    /**
+     * Recalculates the month, if the calendar was moved to another one.
+     */
+    private void update()
+    {
+        if ( calendar.month == month && calendar.year == year ) return;
+
+        year = calendar.year;
+        month = calendar.month;
+        days = index.getYear(year);
+        offset = GregCalendar.epochDay(year, month, 1) - GregCalendar.epochDay(year, 1, 1) - 1;
+
+        int length = GregCalendar.maxDays(year, month);
+        int first = DaysIndex.next(days, offset + 1) - offset;
+        if ( first <= length )
+        {
+            low = first;
+            high = DaysIndex.prev(days, offset + length) - offset;
+        }
+        else
+        {
+            low = NO_DAY_ABOVE;
+            high = NO_DAY_BELOW;
+        }
+    }
+
+    public boolean match(int value)
+    {
+        update();
+        return low <= value && value <= high && DaysIndex.match(days, offset + value);
+    }
+
+    public int getNext(int value)
+    {
+        update();
+        if ( value >= high ) return NO_DAY_ABOVE; // return overflow (for any month)
+        if ( value < low ) return low;
+
+        return DaysIndex.next(days, offset + value + 1) - offset;
+    }
+
+    public int getPrev(int value)
+    {
+        update();
+        if ( value <= low ) return NO_DAY_BELOW; // return overflow (for any month)
+        if ( value > high ) return high;
+
+        return DaysIndex.prev(days, offset + value - 1) - offset;
+    }
+
+    public boolean hasNext(int value)
+    {
+        update();
+        return value < high;
+    }
+
+    public boolean hasPrev(int value)
+    {
+        update();
+        return value > low;
+    }
+
+    public int getLow()
+    {
+        update();
+        return low;
+    }
+
+    public int getHigh()
+    {
+        update();
+        return high;
+    }
+
+    public boolean isAbove(int value)
+    {
+        update();
+        return value > high;
+    }
+
+    public boolean isBelow(int value)
+    {
+        update();
+        return value < low;
+    }
+}
@@ -138,9 +138,7 @@ class DaysMap
             In the future, to get a map for a specific year / month,
             we simply scroll to a given number of years / months
          */
-        int years = year - 1995; // how many years have passed since 1995?
-        int leaps = (year - 1993) / 4; // and how many leap years?
-        int shift = years + leaps;
+        int shift = GregCalendar.dayOfWeek(year, 1, 1); // the position of January 1 in the map
 
         return rollWeekMap(map, shift);
     }
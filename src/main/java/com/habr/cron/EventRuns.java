@@ -0,0 +1,232 @@
+package com.habr.cron;
+
+import static com.habr.cron.ScheduleElements.*;
+
+/**
+ * The search of the end of the run of events of a schedule: the nearest unit of time (the day, the hour,
+ * the minute or the second), which has no events of the schedule. The difference of schedules jumps over
+ * the runs of the excluded schedule, instead of stepping over the base events inside them (see {@link CompositeCron}).
+ *
+ * The run is measured by the digit, below which the schedule covers the events of the base schedule:
+ * for example, "*.*.1-20 *:*:*" covers the events of "*:*:*" inside every matched day, so its run
+ * from 1 July is all days from 1 to 20 July, and the next base event out of the run is 21 July 00:00:00.
+ *
+ * Works in the local time of the fixed time zone; the zones with transitions are not supported (the local
+ * time may repeat). Stateless, thread-safe. Internal used.
+ */
+final class EventRuns
+{
+    static final int NONE = -1; // the runs are not covered
+
+    private static final int DAY = 2; // the digits (see CalendarDigits)
+    private static final int HOURS_DIGIT = 3;
+    private static final int SECONDS_DIGIT = 5;
+    private static final int LAST = 8;
+
+    private static final ScheduleElements[] ELEMENTS =
+            {YEAR, MONTH, DAY_OF_MONTH, HOURS, MINUTES, SECONDS, MILLIS, MICROS, NANOS};
+    private static final long[] UNITS = {0, 0, 86400000L, 3600000L, 60000L, 1000L}; // the length of units
+
+    private static final String OUT_MESSAGE = "Out of schedule interval";
+
+    private EventRuns()
+    {
+    }
+
+
+    /**
+     * Finds the digit of the runs: the schedule has all events of the base schedule inside the unit of this digit,
+     * if it has one of them there (the minor digits of the schedule match every value of the base ones).
+     *
+     * @param matchers the matchers of the schedule (see {@link MatcherPool#getMatchersForSchedule()})
+     * @param base the matchers of the base schedule in the same time zone; null, if they are not known
+     *             (then the minor digits of the schedule must match every value)
+     * @return the digit: 2 - day, 3 - hours, 4 - minutes, 5 - seconds; {@link #NONE}, if the milliseconds differ
+     */
+    static int getRunDigit(DigitMatcher[] matchers, DigitMatcher[] base)
+    {
+        int digit = LAST;
+        while ( digit > DAY && covers(matchers, base, ELEMENTS[digit]) ) digit--;
+
+        return digit <= SECONDS_DIGIT ? digit : NONE;
+    }
+
+    /**
+     * Finds the nearest unit of the digit, which has no events of the schedule.
+     *
+     * @param pool the matchers of the schedule
+     * @param local the event of the schedule (milliseconds since 1 Jan 1970, in the local time)
+     * @param digit the digit of the runs (see {@link #getRunDigit(DigitMatcher[], DigitMatcher[])})
+     * @param forward the direction of search
+     * @return the start of the unit (forward) or its last millisecond (backward), in the local time
+     * @throws IllegalStateException if the schedule has the events till the bound of years
+     */
+    static long skipRun(MatcherPool pool, long local, int digit, boolean forward)
+    {
+        DigitMatcher[] matchers = pool.getMatchersForSchedule();
+        long epochDay = Math.floorDiv(local, UNITS[DAY]);
+        long time = local - epochDay * UNITS[DAY];
+
+        int[] values = new int[SECONDS_DIGIT + 1]; // hours, minutes, seconds of the current unit
+        for (int i = HOURS_DIGIT; i <= digit; i++)
+            values[i] = (int) (time / UNITS[i] % (ELEMENTS[i].max + 1));
+
+        // the next (prev) unit inside the same day
+        for (int i = digit; i >= HOURS_DIGIT; i--)
+        {
+            boolean minorGaps = hasGaps(matchers, i + 1, digit);
+            for (int value = values[i] + (forward ? 1 : -1); ELEMENTS[i].min <= value && value <= ELEMENTS[i].max;
+                 value += forward ? 1 : -1)
+            {
+                boolean matched = matches(matchers[ELEMENTS[i].ordinal()], value);
+                if ( !matched || minorGaps )
+                {
+                    values[i] = value;
+                    fillGap(matchers, i + 1, digit, values, forward, matched);
+                    return toLocal(epochDay, values, digit, forward);
+                }
+            }
+        }
+
+        // the next (prev) day: any day, if the hours have the gaps, or the day without events
+        boolean timeGaps = hasGaps(matchers, HOURS_DIGIT, digit);
+        DaysIndex index = pool.getDaysIndex();
+
+        GregCalendar calendar = new GregCalendar(epochDay * UNITS[DAY]);
+        int year = calendar.year;
+        int dayOfYear = (int) (epochDay - GregCalendar.epochDay(year, 1, 1));
+
+        while ( true )
+        {
+            dayOfYear += forward ? 1 : -1;
+            if ( dayOfYear < 0 || dayOfYear >= 365 + GregCalendar.isLeap(year) )
+            {
+                year += forward ? 1 : -1;
+                if ( year < YEAR.min || year > YEAR.max ) break;
+
+                // the year of events is skipped at once
+                while ( !timeGaps && isFullYear(index, year) )
+                {
+                    year += forward ? 1 : -1;
+                    if ( year < YEAR.min || year > YEAR.max ) throw new IllegalStateException(OUT_MESSAGE);
+                }
+                dayOfYear = forward ? 0 : 364 + GregCalendar.isLeap(year);
+            }
+
+            boolean matched = DaysIndex.match(index.getYear(year), dayOfYear);
+            if ( !matched || timeGaps )
+            {
+                fillGap(matchers, HOURS_DIGIT, digit, values, forward, matched);
+                return toLocal(GregCalendar.epochDay(year, 1, 1) + dayOfYear, values, digit, forward);
+            }
+        }
+        throw new IllegalStateException(OUT_MESSAGE);
+    }
+
+
+
+    /**
+     * @return true, if the matcher of the schedule matches the values of the base one (or every value)
+     */
+    private static boolean covers(DigitMatcher[] matchers, DigitMatcher[] base, ScheduleElements element)
+    {
+        DigitMatcher matcher = matchers[element.ordinal()];
+        if ( base == null )
+        {
+            for (int value = element.min; value <= element.max; value++)
+                if ( !matches(matcher, value) ) return false;
+
+            return true;
+        }
+
+        DigitMatcher other = base[element.ordinal()];
+        for (int value = other.getLow(); value <= other.getHigh(); value = other.getNext(value))
+        {
+            if ( matches(other, value) && !matches(matcher, value) ) return false;
+            if ( !other.hasNext(value) ) break;
+        }
+        return true;
+    }
+
+    /**
+     * @return true, if every day of the year is matched
+     */
+    private static boolean isFullYear(DaysIndex index, int year)
+    {
+        long[] map = index.getYear(year).map;
+
+        int count = 0;
+        for (long word : map) count += Long.bitCount(word);
+
+        return count == 365 + GregCalendar.isLeap(year);
+    }
+
+    /**
+     * @return true, if any digit from..to has a value without events
+     */
+    private static boolean hasGaps(DigitMatcher[] matchers, int from, int to)
+    {
+        for (int i = from; i <= to; i++)
+            if ( getGap(matchers, i, true) >= 0 ) return true;
+
+        return false;
+    }
+
+    /**
+     * @return the first (last for backward) value of the digit without events; -1, if the digit matches every value
+     */
+    private static int getGap(DigitMatcher[] matchers, int digit, boolean forward)
+    {
+        ScheduleElements element = ELEMENTS[digit];
+        DigitMatcher matcher = matchers[element.ordinal()];
+        for (int i = 0; i <= element.max - element.min; i++)
+        {
+            int value = forward ? element.min + i : element.max - i;
+            if ( !matches(matcher, value) ) return value;
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the digits from..to to the first (last for backward) unit without events inside the major unit.
+     *
+     * @param matched true, if the major unit is matched by the schedule
+     */
+    private static void fillGap(DigitMatcher[] matchers, int from, int to, int[] values, boolean forward,
+                                boolean matched)
+    {
+        for (int i = from; i <= to; i++)
+        {
+            values[i] = forward ? ELEMENTS[i].min : ELEMENTS[i].max;
+            matched &= matches(matchers[ELEMENTS[i].ordinal()], values[i]);
+        }
+
+        if ( !matched ) return; // the edge of the major unit has no events
+
+        for (int i = to; i >= from; i--) // the minor gap is the nearest one
+        {
+            int gap = getGap(matchers, i, forward);
+            if ( gap >= 0 )
+            {
+                values[i] = gap;
+                return;
+            }
+        }
+    }
+
+    private static long toLocal(long epochDay, int[] values, int digit, boolean forward)
+    {
+        long result = epochDay * UNITS[DAY];
+        for (int i = HOURS_DIGIT; i <= digit; i++) result += values[i] * UNITS[i];
+
+        return forward ? result : result + UNITS[digit] - 1;
+    }
+
+    /**
+     * Checks the value by the matcher; the matchers don't control the overflow themselves.
+     */
+    private static boolean matches(DigitMatcher matcher, int value)
+    {
+        return matcher.getLow() <= value && value <= matcher.getHigh() && matcher.match(value);
+    }
+}
@@ -0,0 +1,160 @@
+package com.habr.cron;
+
+import static com.habr.cron.ScheduleElements.*;
+
+/**
+ * Counts the events of the schedule in the interval of the local time without enumerating them.
+ *
+ * The number of events before a moment is calculated digit by digit (like a number is compared with another):
+ * the matched days before the date (years, months, days) multiplied by the count of the matched times in a day,
+ * plus the matched times of the day before the time (hours, minutes, seconds, milliseconds).
+ * Every matched millisecond has the same number of events inside (microseconds and nanoseconds),
+ * so the count of milliseconds is multiplied by it.
+ *
+ * The matched days of a month are taken from the index of days of the schedule (see {@link DaysIndex}),
+ * the matched days of the whole years are counted there by the kinds of years.
+ *
+ * Unmodified object. Thread-safe.
+ */
+final class EventsCounter
+{
+    private static final long FIRST_DAY = GregCalendar.epochDay(YEAR.min, 1, 1) * 86400000L; // the lowest moment
+    private static final long LAST_DAY = GregCalendar.epochDay(YEAR.max + 1, 1, 1) * 86400000L; // the upper bound
+
+    private final DigitMatcher years;
+    private final DigitMatcher months;
+
+    private final DaysIndex daysIndex;
+
+    // the number of matched values less than index (prefix sums); the last item is the total count
+    private final int[] hours;
+    private final int[] minutes;
+    private final int[] seconds;
+    private final int[] millis;
+
+    private final long timesInDay; // the number of matched milliseconds in the matched day
+    private final long timesInMillisecond; // the number of events in the matched millisecond
+
+
+    public EventsCounter(MatcherPool pool)
+    {
+        DigitMatcher[] matchers = pool.getMatchersForSchedule();
+        years = matchers[YEAR.ordinal()];
+        months = matchers[MONTH.ordinal()];
+
+        hours = prefixCounts(matchers[HOURS.ordinal()], HOURS);
+        minutes = prefixCounts(matchers[MINUTES.ordinal()], MINUTES);
+        seconds = prefixCounts(matchers[SECONDS.ordinal()], SECONDS);
+        millis = prefixCounts(matchers[MILLIS.ordinal()], MILLIS);
+
+        timesInDay = (long) hours[HOURS.max + 1] * minutes[MINUTES.max + 1] * seconds[SECONDS.max + 1] * millis[MILLIS.max + 1];
+        timesInMillisecond = (long) prefixCounts(matchers[MICROS.ordinal()], MICROS)[MICROS.max + 1]
+                * prefixCounts(matchers[NANOS.ordinal()], NANOS)[NANOS.max + 1];
+
+        daysIndex = pool.getDaysIndex();
+    }
+
+
+    /**
+     * Counts the events in the interval of the local time.
+     *
+     * @param from the local time of the begin of interval (inclusive)
+     * @param to the local time of the end of interval (exclusive)
+     * @return the number of events
+     * @throws ArithmeticException if the number of events of the high resolution schedule overflows long
+     */
+    public long count(long from, long to)
+    {
+        return Math.multiplyExact(countMillis(from, to), timesInMillisecond);
+    }
+
+    /**
+     * Counts the milliseconds with events in the interval of the local time:
+     * the events of the schedule, as they are seen with milliseconds resolution.
+     *
+     * @param from the local time of the begin of interval (inclusive)
+     * @param to the local time of the end of interval (exclusive)
+     * @return the number of milliseconds, which have events
+     */
+    public long countMillis(long from, long to)
+    {
+        from = Math.max(from, FIRST_DAY);
+        to = Math.min(to, LAST_DAY);
+        if ( from >= to ) return 0;
+
+        GregCalendar calendar = new GregCalendar(from);
+        int base = calendar.year; // the years before are not counted for both bounds
+
+        long result = countBefore(calendar, base);
+
+        calendar.setTimestamp(to);
+        return countBefore(calendar, base) - result;
+    }
+
+
+    /**
+     * @return the number of the matched milliseconds from 1 Jan of the base year until the calendar's moment (exclusive)
+     */
+    private long countBefore(GregCalendar calendar, int base)
+    {
+        int year = calendar.year;
+        long days = daysIndex.countYearDays(base, year);
+
+        if ( !matches(years, year) ) return days * timesInDay;
+
+        for (int month = 1; month < calendar.month; month++)
+            if ( matches(months, month) )
+                days += Integer.bitCount(daysIndex.getMonthMap(year, month));
+
+        if ( !matches(months, calendar.month) ) return days * timesInDay;
+
+        int map = daysIndex.getMonthMap(year, calendar.month);
+        int day = calendar.day;
+        days += Integer.bitCount(map & ((1 << day) - 1)); // the days before
+
+        long result = days * timesInDay;
+
+        if ( (map & (1 << day)) != 0 ) // the day is matched; count the times before
+        {
+            int m = minutes[MINUTES.max + 1], s = seconds[SECONDS.max + 1], f = millis[MILLIS.max + 1];
+
+            result += (long) hours[calendar.hours] * m * s * f;
+            if ( isMatch(hours, calendar.hours) )
+            {
+                result += (long) minutes[calendar.minutes] * s * f;
+                if ( isMatch(minutes, calendar.minutes) )
+                {
+                    result += (long) seconds[calendar.seconds] * f;
+                    if ( isMatch(seconds, calendar.seconds) )
+                        result += millis[calendar.milliseconds];
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks the value by the matcher; the matchers don't control the overflow themselves.
+     */
+    private static boolean matches(DigitMatcher matcher, int value)
+    {
+        return matcher.getLow() <= value && value <= matcher.getHigh() && matcher.match(value);
+    }
+
+    private static boolean isMatch(int[] prefix, int value)
+    {
+        return prefix[value + 1] != prefix[value];
+    }
+
+
+
+    private static int[] prefixCounts(DigitMatcher matcher, ScheduleElements element)
+    {
+        int[] result = new int[element.max + 2];
+        for (int value = element.min; value <= element.max; value++)
+            result[value + 1] = result[value] + (matches(matcher, value) ? 1 : 0);
+
+        return result;
+    }
+}
@@ -0,0 +1,207 @@
+package com.habr.cron;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Spliterator of the events of the schedule in the interval [from, to) (milliseconds since 1 Jan 1970, UTC).
+ *
+ * The interval is split on the calendar boundary (year, month, day, hour, ...) near its middle,
+ * and the second half starts from the nearest event after the boundary: so the halves are never empty,
+ * and the interval without events is cut off without any enumeration.
+ * The events are enumerated by the generator of the schedule in bulk (see {@link ScheduleEventsGenerator#fill}).
+ *
+ * The size is exact (it's counted by {@link Schedule#countEvents}), if the schedule has milliseconds resolution;
+ * the schedule with micro- or nanoseconds has the events in milliseconds, and the count is only an upper estimate.
+ *
+ * Mutable object. Not thread-safe (as any spliterator).
+ */
+final class EventsSpliterator implements Spliterator.OfLong
+{
+    private static final int BATCH = 256; // the number of events generated at once
+    private static final long[] UNITS = {3600000L, 60000L, 1000L}; // the boundaries of time after days
+
+    private final Schedule schedule;
+    private final boolean exact; // the count of events is the size
+
+    private long from; // the next event (after the first split) or the begin of interval
+    private long to;
+    private long size = -1; // the number of remaining events; unknown yet
+
+    private ScheduleEventsGenerator generator; // created by the first traverse; then splitting is over
+    private long[] buffer;
+    private int position;
+    private int limit;
+
+
+    /**
+     * @param schedule the schedule of events
+     * @param from the begin of interval, inclusive
+     * @param to the end of interval, exclusive
+     * @param exact true, if the count of events is exact for the schedule
+     */
+    EventsSpliterator(Schedule schedule, long from, long to, boolean exact)
+    {
+        this.schedule = schedule;
+        this.from = from;
+        this.to = Math.max(from, to);
+        this.exact = exact;
+    }
+
+
+    @Override
+    public boolean tryAdvance(LongConsumer action)
+    {
+        if ( position == limit && !fillBuffer() ) return false;
+
+        if ( size > 0 ) size--;
+        action.accept(buffer[position++]);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(LongConsumer action)
+    {
+        while ( position < limit || fillBuffer() )
+        {
+            while ( position < limit ) action.accept(buffer[position++]);
+        }
+        size = 0;
+    }
+
+    /**
+     * Splits the interval on the calendar boundary; the first half is returned.
+     *
+     * @return the spliterator of the first half; null, if the traverse is started or the interval has one event
+     */
+    @Override
+    public Spliterator.OfLong trySplit()
+    {
+        if ( generator != null ) return null;
+
+        from = nearest(from, to);
+        size = -1;
+
+        while ( to - from > 1 )
+        {
+            long split = boundary(from, to);
+            long next = nearest(split, to);
+
+            if ( next == to ) // no events after the boundary; the tail is cut off
+            {
+                to = split;
+                continue;
+            }
+
+            EventsSpliterator prefix = new EventsSpliterator(schedule, from, split, exact);
+            from = next;
+            return prefix;
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        if ( size < 0 )
+        {
+            try
+            {
+                size = schedule.countEvents(from, to);
+            }
+            catch (ArithmeticException e)
+            {
+                size = Long.MAX_VALUE; // too many nanoseconds events
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics()
+    {
+        int result = ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE;
+        return exact ? result | SIZED | SUBSIZED : result;
+    }
+
+    @Override
+    public Comparator<? super Long> getComparator()
+    {
+        return null; // the natural order
+    }
+
+
+
+    /**
+     * @return the first event in [start, end); end, if there is no one
+     */
+    private long nearest(long start, long end)
+    {
+        if ( start >= end ) return end;
+
+        try
+        {
+            long event = schedule.NearestEvent(start);
+            return event < end ? event : end;
+        }
+        catch (IllegalStateException e) // the schedule is over
+        {
+            return end;
+        }
+    }
+
+    /**
+     * Finds the largest calendar unit (year, month, day, hour, minute, second), which has its beginning
+     * in the middle half of the interval.
+     *
+     * @return the moment of split; from &lt; result &lt; end
+     */
+    private static long boundary(long from, long end)
+    {
+        long length = end - from;
+        long middle = from + (length >>> 1);
+        long low = from + (length >>> 2); // the boundaries in the middle half only
+        long high = end - (length >>> 2);
+
+        GregCalendar calendar = new GregCalendar(middle);
+
+        long year = GregCalendar.epochDay(calendar.year, 1, 1) * 86400000L;
+        if ( year > low && year < high ) return year;
+
+        long month = GregCalendar.epochDay(calendar.year, calendar.month, 1) * 86400000L;
+        if ( month > low && month < high ) return month;
+
+        long day = Math.floorDiv(middle, 86400000L) * 86400000L;
+        if ( day > low && day < high ) return day;
+
+        for (long unit : UNITS)
+        {
+            long time = Math.floorDiv(middle, unit) * unit;
+            if ( time > low && time < high ) return time;
+        }
+        return middle > from ? middle : from + 1;
+    }
+
+    /**
+     * Generates the next portion of events.
+     *
+     * @return false, if there is no more events
+     */
+    private boolean fillBuffer()
+    {
+        if ( generator == null )
+        {
+            from = nearest(from, to);
+            if ( from >= to ) return false; // also the schedule without events: the generator can't start
+
+            estimateSize(); // the size is counted down by the traverse
+            generator = schedule.getEventsGenerator(from - 1, true); // the events after it: from is inclusive
+            buffer = new long[BATCH];
+        }
+
+        position = 0;
+        limit = generator.fill(buffer, 0, BATCH, to - 1);
+        return limit > 0;
+    }
+}
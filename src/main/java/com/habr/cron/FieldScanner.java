@@ -0,0 +1,159 @@
+package com.habr.cron;
+
+import static com.habr.cron.ScheduleElements.*;
+
+/**
+ * Scanner of the fields of the cron expressions: the fields split by spaces, the numbers, the steps
+ * and the names of months and days of week. Shared by {@link QuartzParser} and {@link CrontabParser};
+ * the meaning of the values (the numbers of days of week, the bounds) is checked by the parsers.
+ *
+ * The positions are the indexes in the expression; the errors show the part of the source.
+ * Not thread safe (as the parsers).
+ */
+final class FieldScanner
+{
+    static final String[] MONTH_NAMES = {
+            "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"
+    };
+    static final String[] DAY_NAMES = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+
+    private final String source; // the text of the errors
+    private final String chars; // the expression in the upper case
+
+
+    /**
+     * @param source the text for the messages of errors; it has the same positions as the expression
+     * @param chars the expression in the upper case
+     */
+    FieldScanner(String source, String chars)
+    {
+        this.source = source;
+        this.chars = chars;
+    }
+
+
+    /**
+     * Splits the expression by spaces and tabs.
+     *
+     * @param bounds receives the begin & end of the fields; the fields above its size are only counted
+     * @return the number of fields
+     */
+    public int splitFields(int[] bounds)
+    {
+        int count = 0;
+        int length = chars.length();
+        int i = 0;
+
+        while ( i < length )
+        {
+            char c = chars.charAt(i);
+            if ( c == ' ' || c == '\t' ) { i++; continue; }
+
+            int end = i;
+            while ( end < length && chars.charAt(end) != ' ' && chars.charAt(end) != '\t' ) end++;
+
+            if ( 2 * count < bounds.length )
+            {
+                bounds[2 * count] = i;
+                bounds[2 * count + 1] = end;
+            }
+            count++;
+            i = end;
+        }
+
+        return count;
+    }
+
+    public char charAt(int index)
+    {
+        return chars.charAt(index);
+    }
+
+    /**
+     * @return true, if the value starts with a digit
+     */
+    public boolean isNumber(int start, int end)
+    {
+        return start < end && isDigit(chars.charAt(start));
+    }
+
+    /**
+     * Parses the name of month (1-12) or day of week (0-6, 0 - Sunday).
+     */
+    public int parseName(ScheduleElements element, int start, int end, int elementStart, int elementEnd)
+            throws ScheduleFormatException
+    {
+        String[] names = element == MONTH ? MONTH_NAMES : element == DAY_OF_WEEK ? DAY_NAMES : null;
+        if ( names != null && end - start == 3 )
+            for (int i = 0; i < names.length; i++)
+                if ( chars.startsWith(names[i], start) )
+                    return element == MONTH ? i + 1 : i;
+
+        throw new ScheduleFormatException("Invalid format of the schedule element (expected number or name).",
+                substring(elementStart, elementEnd));
+    }
+
+    /**
+     * @return the end of the number or name
+     */
+    public int skipValue(int start, int end)
+    {
+        if ( isNumber(start, end) ) return skipDigits(start, end);
+
+        int i = start;
+        while ( i < end && i < start + 3 && Character.isLetter(chars.charAt(i)) ) i++;
+        return i;
+    }
+
+    public int parseStep(int start, int end, int elementStart, int elementEnd) throws ScheduleFormatException
+    {
+        int step = parseNumber(start, end, elementStart, elementEnd);
+        if ( step == 0 )
+            throw new ScheduleFormatException("The step MUST be positive.", substring(elementStart, elementEnd));
+
+        return step;
+    }
+
+    public int parseNumber(int start, int end, int elementStart, int elementEnd) throws ScheduleFormatException
+    {
+        if ( start == end || skipDigits(start, end) != end )
+            throw new ScheduleFormatException("Invalid format of the schedule element (expected number).",
+                    substring(elementStart, elementEnd));
+
+        long value = 0;
+        for (int i = start; i < end; i++)
+        {
+            value = value * 10 + (chars.charAt(i) - '0');
+
+            if ( value > Integer.MAX_VALUE )
+                throw new ScheduleFormatException("Invalid format of the schedule element (expected number).",
+                        substring(elementStart, elementEnd));
+        }
+        return (int) value;
+    }
+
+    public int skipDigits(int start, int end)
+    {
+        while ( start < end && isDigit(chars.charAt(start)) ) start++;
+        return start;
+    }
+
+    public int indexOf(char c, int start, int end)
+    {
+        while ( start < end && chars.charAt(start) != c ) start++;
+        return start;
+    }
+
+    /**
+     * @return the part of the source
+     */
+    public String substring(int start, int end)
+    {
+        return source.substring(start, end);
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+}
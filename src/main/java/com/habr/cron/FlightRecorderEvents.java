@@ -0,0 +1,148 @@
+package com.habr.cron;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The events of Java Flight Recorder.
+ * When there is no recording, an event is only checked by {@code shouldCommit()}; its fields are not filled.
+ *
+ * The library runs on Java 8, which may have no JFR API, so the events are created only by the static methods
+ * of this class, and their signatures don't refer to JFR types; the callers check {@link Probe#AVAILABLE} first.
+ */
+final class FlightRecorderEvents
+{
+    private FlightRecorderEvents()
+    {
+    }
+
+
+    /**
+     * The check of the JFR API in the runtime. The class doesn't refer to JFR, so it's loaded by any runtime,
+     * and the check is made once, on the first use.
+     */
+    static final class Probe
+    {
+        static final boolean AVAILABLE = isAvailable();
+
+        private Probe()
+        {
+        }
+
+        private static boolean isAvailable()
+        {
+            try
+            {
+                Class.forName("jdk.jfr.Event");
+                return true;
+            }
+            catch (ClassNotFoundException e)
+            {
+                return false; // no JFR in this runtime
+            }
+            catch (LinkageError e)
+            {
+                return false;
+            }
+        }
+    }
+
+
+    /**
+     * Emits the event of the matchers of the instrumented schedule.
+     */
+    static void commitBuild(String schedule, boolean indexedDays)
+    {
+        Build event = new Build();
+        if ( event.shouldCommit() )
+        {
+            event.schedule = schedule;
+            event.indexedDays = indexedDays;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return the started event of the search
+     */
+    static Object beginSearch()
+    {
+        Search event = new Search();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Emits the event of the search, if it's recorded.
+     *
+     * @param started the event of {@link #beginSearch()}
+     */
+    static void commitSearch(Object started, String schedule, boolean forward, int steps, int carries, boolean failed)
+    {
+        Search event = (Search) started;
+        if ( event.shouldCommit() )
+        {
+            event.schedule = schedule;
+            event.forward = forward;
+            event.steps = steps;
+            event.carries = carries;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+
+    /**
+     * The matchers of the instrumented schedule (see {@link Schedule#instrument()}).
+     * The plain schedules don't emit it, so their construction doesn't touch JFR.
+     */
+    @Name("com.habr.cron.Build")
+    @Label("Schedule Build")
+    @Category("CronEx")
+    @Description("The matchers of the instrumented schedule")
+    static final class Build extends Event
+    {
+        @Label("Schedule")
+        String schedule;
+
+        @Label("Indexed Days")
+        @Description("The days are matched by the index of days (the days of week or the special day)")
+        boolean indexedDays;
+    }
+
+    /**
+     * The search of the event by the instrumented schedule (see {@link Schedule#instrument()}).
+     * Only the slow searches are recorded by default.
+     */
+    @Name("com.habr.cron.Search")
+    @Label("Schedule Search")
+    @Category("CronEx")
+    @Description("Search of the event by the instrumented schedule")
+    @Threshold("10 us")
+    @StackTrace(false)
+    static final class Search extends Event
+    {
+        @Label("Schedule")
+        String schedule;
+
+        @Label("Forward")
+        boolean forward;
+
+        @Label("Steps")
+        @Description("The descents over the calendar digits")
+        int steps;
+
+        @Label("Carries")
+        @Description("The passes of the digits loop with the overflow to the major digits")
+        int carries;
+
+        @Label("Failed")
+        @Description("The schedule has no event")
+        boolean failed;
+    }
+}
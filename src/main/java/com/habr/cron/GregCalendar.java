@@ -1,11 +1,12 @@
 package com.habr.cron;
 
+import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.TimeZone;
 
 /**
  * Very optimized version of Gregorian calendar system.
- * IMPORTANT NOTICE: works correct only range 2000..2100; Don't use out of interval.
+ * Uses the proleptic Gregorian calendar (the Gregorian rules are applied to all years, also before 1582).
  * In order to optimize, many mandatory checks are omitted.
  * Do not use the class outside of the project.
  * In case of problems, it is recommended to replace it with GregorianCalendar.
@@ -20,9 +21,12 @@ class GregCalendar
     public int minutes;
     public int seconds;
     public int milliseconds;
+    public int microseconds; // the fraction of millisecond; not a part of the timestamp
+    public int nanoseconds;
 
 
-    private static final int[] ELAPSED_DAYS = new int[]{0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+    private static final int ERA_SHIFT = 1; // the calendar is counted from 1 March of year -400
+    private static final int EPOCH_SHIFT = 719468 + 146097 * ERA_SHIFT; // days from 1 March of year -400 to 1 Jan 1970
     private static final int MAX_DAYS[] = new int[]{31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
 
     /**
@@ -33,7 +37,7 @@ class GregCalendar
      */
     public GregCalendar(Date date, TimeZone tz)
     {
-        this(date.getTime(), tz.getRawOffset());
+        this(date.getTime(), tz.getOffset(date.getTime())); // the offset includes daylight saving time
     }
 
     /**
@@ -52,49 +56,99 @@ class GregCalendar
 
     private GregCalendar(long timestamp, int tzOffset)
     {
-        int time = (int) (timestamp % 86400000);
-        int days = (int) (timestamp / 86400000);     // days since January 1, 1970
+        setTimestamp(timestamp, tzOffset);
+    }
+
 
-        time += tzOffset;
+    /**
+     * Reinitializes calendar via timestamp without creating a new object.
+     * IMPORTANT: timestamp in UTC.
+     *
+     * @param timestamp of date; UTC timezone used.
+     */
+    public void setTimestamp(long timestamp)
+    {
+        setTimestamp(timestamp, 0);
+    }
+
+
+    private void setTimestamp(long timestamp, int tzOffset)
+    {
+        timestamp += tzOffset; // the local time
+
+        int days = (int) Math.floorDiv(timestamp, 86400000L); // days since January 1, 1970
+        int time = (int) (timestamp - days * 86400000L);
 
         milliseconds = time % 1000;     time /= 1000;
         seconds =      time % 60;       time /= 60;
         minutes =      time % 60;       time /= 60;
         hours =        time % 24;
 
-        int y = (days<<2)/1461; // Gregorian years elapsed  since 1970 ( = days / 365.25 )
-        int l = (y+1)>>2;     // Gregorian leap days since 1970  ( = (y+1)/4 )
-        int d = days - y*365 - l;   // Number of day passed from begin of year
-        if ( d > 364 && ((y+2)&3) > 0 ) // overflow control ( (y+2)&3 = is this a leap year?)
-        {
-            y++;
-            l = (y+1)>>2;
-            d = days - y*365 - l;
-        }
+        /*
+            The Euclidean affine functions of C. Neri and L. Schneider (only multiplications and shifts).
+            The years are counted from 1 March, so the leap day is the last day of the year.
+            The days are shifted by 400-years eras (the calendar repeats every 146097 days),
+            so all values are positive for the years of the schedule format.
+         */
+        int n = 4 * (days + EPOCH_SHIFT) + 3;
+        int century = n / 146097;
+        long p = 2939745L * ((n % 146097) | 3);
+        int yoc = (int) (p >>> 32);                                  // year of century
+        int doy = (int) ((p & 0xFFFFFFFFL) / 11758980L);             // day of year (from March)
+        int md = 2141 * doy + 197913;
+
+        int bump = doy >= 306 ? 1 : 0;                               // January or February
+        year = 100 * century + yoc + bump - ERA_SHIFT * 400;
+        month = (md >>> 16) - 12 * bump;
+        day = (md & 0xFFFF) / 2141 + 1;
+    }
 
-        y += 1970;
 
-        int m;
-        int lp = (y & 3) == 0 && y != 2100 ? 1 : 0;
-        int lm = 59+lp;
+    /**
+     * @return the nanoseconds of the millisecond (microseconds and nanoseconds)
+     */
+    public int getFraction()
+    {
+        return microseconds * 1000 + nanoseconds;
+    }
 
-        if ( d < lm ) // until 28/29th Feb
-        {
-            m = d / 31;
-            d -= ELAPSED_DAYS[m] - 1;
-        }
-        else // since 1st March
-        {
-            m = (d - lm) / 31 + 2; // March
-            int max = MAX_DAYS[m];
+    /**
+     * Sets the microseconds and nanoseconds; they are not changed by {@link #setTimestamp(long)}.
+     *
+     * @param fraction the nanoseconds of the millisecond (0..999999)
+     */
+    public void setFraction(int fraction)
+    {
+        microseconds = fraction / 1000;
+        nanoseconds = fraction % 1000;
+    }
 
-            d -= ELAPSED_DAYS[m] - 1 + lp;
-            if ( d > max ) { d -= max; m++; }
-        }
 
-        year = y;
-        month = m + 1;
-        day = d;
+    /**
+     * Reinitializes calendar by the fields of the local time, without the calculation of timestamp.
+     *
+     * @param time the local time
+     */
+    public void setLocalDateTime(LocalDateTime time)
+    {
+        year = time.getYear();
+        month = time.getMonthValue();
+        day = time.getDayOfMonth();
+        hours = time.getHour();
+        minutes = time.getMinute();
+        seconds = time.getSecond();
+
+        int nanos = time.getNano();
+        milliseconds = nanos / 1000000;
+        setFraction(nanos % 1000000);
+    }
+
+    /**
+     * @return calendar as local time (with microseconds and nanoseconds)
+     */
+    public LocalDateTime toLocalDateTime()
+    {
+        return LocalDateTime.of(year, month, day, hours, minutes, seconds, milliseconds * 1000000 + getFraction());
     }
 
 
@@ -103,21 +157,40 @@ class GregCalendar
      */
     public Date asDate()
     {
-        int y = year - 1970;
-        int leaps = (y + 1)>>2;
-        int days = y * 365 + leaps - 1;
-        int lp = month > 2 && (year & 3) == 0 && year != 2100 ? 1 : 0;
-
-        days += ELAPSED_DAYS[month-1] + lp;
+        return new Date(asTimestamp());
+    }
 
-        days += day; // days since 1 Jan 1970
 
+    /**
+     * @return calendar as timestamp (milliseconds since 1 Jan 1970); IMPORTANT: returns always in UTC time!
+     */
+    public long asTimestamp()
+    {
         int time = hours;
         time = time * 60 + minutes;
         time = time * 60 + seconds;
         time = time * 1000 + milliseconds;
 
-        return new Date(days * 86400000L + time);
+        return epochDay(year, month, day) * 86400000L + time;
+    }
+
+
+    /**
+     * Calculates the number of days since 1 Jan 1970 (proleptic Gregorian calendar).
+     *
+     * @param year the year number
+     * @param month 1..12
+     * @param day 1..31
+     * @return days since 1 Jan 1970; negative for earlier dates
+     */
+    public static int epochDay(int year, int month, int day)
+    {
+        int bump = month <= 2 ? 1 : 0;                           // January and February are in the previous year
+        int y = year + ERA_SHIFT * 400 - bump;
+        int m = month + 12 * bump;
+        int century = y / 100;
+
+        return (1461 * y >> 2) - century + (century >> 2) + (979 * m - 2919 >> 5) + day - 1 - EPOCH_SHIFT;
     }
 
 
@@ -126,18 +199,20 @@ class GregCalendar
      */
     public boolean isLeap()
     {
-        return (year & 3) == 0 && year != 2100;
+        return isLeap(year) == 1;
     }
 
     /**
      * Checks year for leap.
+     * The every 4th year is leap, except the centuries, which are not divisible by 400.
      *
      * @param year the year number
      * @return 1 for leap year, and 0 - for another.
      */
     public static int isLeap(int year)
     {
-        return (year & 3) == 0 && year != 2100 ? 1 : 0;
+        // the century is divisible by 400, if it is divisible by 16 (because 400 = 16 * 25)
+        return (year & 3) == 0 && (year % 25 != 0 || (year & 15) == 0) ? 1 : 0;
     }
 
     /**
@@ -171,7 +246,7 @@ class GregCalendar
     }
 
     /**
-     * @param year 2000..2100
+     * @param year the year number
      * @param month 1..12
      * @return the number of days in a month (numbering months from 1)
      */
@@ -188,10 +263,22 @@ class GregCalendar
      */
     public int getDayOfWeek()
     {
-        int a = (14 - month)/12;
-        int y = year - a;
-        int m = month + 12 * a - 2;
-        return (day + (31 * m)/12 + y + y/4 - y/100 + y/400) % 7;
+        return dayOfWeek(year, month, day);
+    }
+
+    /**
+     * Day of week for the date.
+     *
+     * @param year the year number
+     * @param month 1..12
+     * @param day 1..31
+     * @return 0 - sunday, 1 - monday, ... 6 - saturday
+     */
+    public static int dayOfWeek(int year, int month, int day)
+    {
+        int d = epochDay(year, month, day) + 4; // 1 Jan 1970 was thursday
+        int w = d % 7;
+        return w < 0 ? w + 7 : w;
     }
 
 
@@ -222,6 +309,12 @@ class GregCalendar
 
             case 6:
                 milliseconds = value;   break;
+
+            case 7:
+                microseconds = value;   break;
+
+            case 8:
+                nanoseconds = value;    break;
         }
     }
 
@@ -249,6 +342,12 @@ class GregCalendar
 
             case 6:
                 return milliseconds;
+
+            case 7:
+                return microseconds;
+
+            case 8:
+                return nanoseconds;
         }
 
         throw new AssertionError("This code is MUST BE unreachable!");
@@ -0,0 +1,281 @@
+package com.habr.cron;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Calendar of the excluded days (holidays) of the schedules (see {@link Schedule#excluding(HolidayCalendar)}).
+ *
+ * The days are kept as the bit maps of days of every month (bits 1..31), by years; the days of every year
+ * (like 1 Jan) are kept in one more map. The excluded days are removed from the index of days of the schedule
+ * (see {@link DaysIndex}), so the search skips them inside the date search, with the same scan of words,
+ * as it skips the unmatched days of week.
+ *
+ * The text format: a day in a line, the empty lines and the comments after '#' are ignored.
+ * <pre>
+ *     2024-12-25               the day
+ *     *-01-01                  the day of every year
+ *     2024-08-05..2024-08-09   the days from the first to the last (inclusive)
+ * </pre>
+ *
+ * Unmodified object. Thread-safe.
+ */
+public final class HolidayCalendar
+{
+    private final int[] years; // the sorted years, which have the excluded days
+    private final int[][] months; // the maps of days of months (1..12), by the index of year
+    private final int[] annual; // the days of every year, by months (1..12)
+
+
+    private HolidayCalendar(Map<Integer, int[]> days, int[] annual)
+    {
+        years = new int[days.size()];
+        int i = 0;
+        for (Integer year : days.keySet()) years[i++] = year;
+        Arrays.sort(years);
+
+        months = new int[years.length][];
+        for (i = 0; i < years.length; i++) months[i] = days.get(years[i]);
+
+        this.annual = annual;
+    }
+
+
+    /**
+     * Parses the calendar from the text (see the format above).
+     *
+     * @param text the lines of days
+     * @return new calendar
+     * @throws ScheduleFormatException if a line is not a day, or the day is wrong
+     */
+    public static HolidayCalendar parse(String text) throws ScheduleFormatException
+    {
+        try
+        {
+            return read(new StringReader(text));
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e); // it's impossible for the string
+        }
+    }
+
+    /**
+     * Loads the calendar from the file (UTF-8, see the format above).
+     *
+     * @param file the file with days
+     * @return new calendar
+     * @throws IOException if the file can't be read
+     * @throws ScheduleFormatException if a line is not a day, or the day is wrong
+     */
+    public static HolidayCalendar load(Path file) throws IOException, ScheduleFormatException
+    {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Reads the calendar (see the format above).
+     *
+     * @param source the lines of days
+     * @return new calendar
+     * @throws IOException if the source can't be read
+     * @throws ScheduleFormatException if a line is not a day, or the day is wrong
+     */
+    public static HolidayCalendar read(Reader source) throws IOException, ScheduleFormatException
+    {
+        Map<Integer, int[]> years = new HashMap<Integer, int[]>();
+        int[] annual = new int[13];
+
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        while ( (line = reader.readLine()) != null )
+        {
+            int comment = line.indexOf('#');
+            String text = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if ( text.isEmpty() ) continue;
+
+            int range = text.indexOf("..");
+            if ( range >= 0 )
+            {
+                int first = parseDay(text.substring(0, range).trim(), line);
+                int last = parseDay(text.substring(range + 2).trim(), line);
+                if ( first > last )
+                    throw new ScheduleFormatException("The first day of range MUST NOT be after the last one.", line);
+
+                for (int day = first; day <= last; day++) addDay(years, day);
+            }
+            else if ( text.startsWith("*-") )
+            {
+                int[] date = parseDate(text.substring(2), 2, line); // month and day
+                if ( date[1] > GregCalendar.maxDays(2000, date[0]) ) // the leap year allows 29 Feb
+                    throw new ScheduleFormatException("Invalid day of the calendar.", line);
+
+                annual[date[0]] |= 1 << date[1];
+            }
+            else
+                addDay(years, parseDay(text, line));
+        }
+        return new HolidayCalendar(years, annual);
+    }
+
+    /**
+     * @param days the excluded days
+     * @return new calendar
+     * @throws IllegalArgumentException if a day is out of years 0-9999
+     */
+    public static HolidayCalendar of(LocalDate... days)
+    {
+        Map<Integer, int[]> years = new HashMap<Integer, int[]>();
+        for (LocalDate day : days)
+        {
+            if ( day.getYear() < ScheduleElements.YEAR.min || day.getYear() > ScheduleElements.YEAR.max )
+                throw new IllegalArgumentException("The day is out of years of schedules: " + day);
+
+            addDay(years, GregCalendar.epochDay(day.getYear(), day.getMonthValue(), day.getDayOfMonth()));
+        }
+        return new HolidayCalendar(years, new int[13]);
+    }
+
+    /**
+     * @param other another calendar
+     * @return the calendar with the days of both calendars
+     */
+    public HolidayCalendar union(HolidayCalendar other)
+    {
+        Map<Integer, int[]> result = new HashMap<Integer, int[]>();
+        for (int i = 0; i < years.length; i++) result.put(years[i], months[i]);
+
+        for (int i = 0; i < other.years.length; i++)
+        {
+            int[] days = result.get(other.years[i]);
+            result.put(other.years[i], days == null ? other.months[i] : or(days, other.months[i]));
+        }
+        return new HolidayCalendar(result, or(annual, other.annual));
+    }
+
+    /**
+     * @param year the year
+     * @param month the month (1..12)
+     * @param day the day of month
+     * @return true, if the day is excluded
+     */
+    public boolean contains(int year, int month, int day)
+    {
+        return (getMonthMap(year, month) & (1 << day)) != 0;
+    }
+
+    /**
+     * @param year the year
+     * @param month the month (1..12)
+     * @return the bit map of the excluded days of the month (bits 1..31)
+     */
+    int getMonthMap(int year, int month)
+    {
+        int index = Arrays.binarySearch(years, year);
+        return (index >= 0 ? months[index][month] : 0) | annual[month];
+    }
+
+    /**
+     * @param month the month (1..12)
+     * @return the bit map of the excluded days of the month of every year (bits 1..31)
+     */
+    int getAnnualMap(int month)
+    {
+        return annual[month];
+    }
+
+    /**
+     * @param year the year
+     * @return true, if the year has the excluded days besides the days of every year
+     */
+    boolean hasDays(int year)
+    {
+        return Arrays.binarySearch(years, year) >= 0;
+    }
+
+    /**
+     * @return the sorted years, which have the excluded days besides the days of every year;
+     *         the array MUST NOT be changed
+     */
+    int[] getYears()
+    {
+        return years;
+    }
+
+
+
+    private static void addDay(Map<Integer, int[]> years, int epochDay)
+    {
+        GregCalendar calendar = new GregCalendar(epochDay * 86400000L);
+
+        int[] months = years.get(calendar.year);
+        if ( months == null ) years.put(calendar.year, months = new int[13]);
+
+        months[calendar.month] |= 1 << calendar.day;
+    }
+
+    /**
+     * @return the epoch day of the date 'yyyy-MM-dd'
+     */
+    private static int parseDay(String text, String line) throws ScheduleFormatException
+    {
+        int[] date = parseDate(text, 3, line);
+        if ( date[0] < ScheduleElements.YEAR.min || date[0] > ScheduleElements.YEAR.max
+                || date[2] > GregCalendar.maxDays(date[0], date[1]) )
+            throw new ScheduleFormatException("Invalid day of the calendar.", line);
+
+        return GregCalendar.epochDay(date[0], date[1], date[2]);
+    }
+
+    /**
+     * Parses the numbers separated by '-': year, month, day or month, day.
+     */
+    private static int[] parseDate(String text, int count, String line) throws ScheduleFormatException
+    {
+        String[] parts = text.split("-", -1);
+        if ( parts.length != count )
+            throw new ScheduleFormatException("Invalid format of the day (expected yyyy-MM-dd or *-MM-dd).", line);
+
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            String part = parts[i];
+            if ( part.isEmpty() || part.length() > 4 )
+                throw new ScheduleFormatException("Invalid format of the day (expected yyyy-MM-dd or *-MM-dd).", line);
+
+            for (int c = 0; c < part.length(); c++)
+            {
+                char digit = part.charAt(c);
+                if ( digit < '0' || digit > '9' )
+                    throw new ScheduleFormatException("Invalid format of the day (expected yyyy-MM-dd or *-MM-dd).", line);
+
+                result[i] = result[i] * 10 + (digit - '0');
+            }
+        }
+
+        int month = result[count - 2], day = result[count - 1];
+        if ( month < 1 || month > 12 || day < 1 || day > 31 )
+            throw new ScheduleFormatException("Invalid day of the calendar.", line);
+
+        return result;
+    }
+
+    private static int[] or(int[] a, int[] b)
+    {
+        int[] result = new int[13];
+        for (int i = 0; i < result.length; i++) result[i] = a[i] | b[i];
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+package com.habr.cron;
+
+/**
+ * Matcher of years, which skips the years without the matched days (see {@link DaysIndex}).
+ * The year has the matched days, if its kind (leap or not, and the weekday of 1 Jan) has them,
+ * so the search doesn't go down into the months and days of such years.
+ * For example, the schedule '*.02.29 6' has events only once in 28 years.
+ *
+ * Unmodified object. Thread-safe.
+ */
+final class IndexedYearsMatcher implements DigitMatcher
+{
+    private final DigitMatcher years;
+    private final DaysIndex index;
+
+    private final int low; // the first & last years with the matched days
+    private final int high;
+
+
+    /**
+     * @param years the matcher of years according the schedule
+     * @param index the index of days; its counts of days of years must be ready
+     */
+    public IndexedYearsMatcher(DigitMatcher years, DaysIndex index)
+    {
+        this.years = years;
+        this.index = index;
+
+        int first = years.getLow();
+        while ( !hasDays(first) && years.hasNext(first) ) first = years.getNext(first);
+
+        int last = years.getHigh();
+        while ( !hasDays(last) && years.hasPrev(last) ) last = years.getPrev(last);
+
+        if ( !hasDays(first) ) last = first; // no years at all; the search is out of schedule at once
+
+        low = first;
+        high = last;
+    }
+
+    private boolean hasDays(int year)
+    {
+        return years.match(year) && index.getYearDays(year) != 0;
+    }
+
+
+    public boolean match(int value)
+    {
+        return low <= value && value <= high && hasDays(value);
+    }
+
+    public boolean isAbove(int value)
+    {
+        return value > high;
+    }
+
+    public boolean isBelow(int value)
+    {
+        return value < low;
+    }
+
+    public int getNext(int value)
+    {
+        if ( value < low ) return low; // edge value
+        if ( value >= high ) return value + 1; // out of bound
+
+        do
+        {
+            value = years.getNext(value);
+        }
+        while ( !hasDays(value) ); // the high year has days, so it stops there
+
+        return value;
+    }
+
+    public int getPrev(int value)
+    {
+        if ( value > high ) return high; // edge value
+        if ( value <= low ) return value - 1; // out of bound
+
+        do
+        {
+            value = years.getPrev(value);
+        }
+        while ( !hasDays(value) ); // the low year has days, so it stops there
+
+        return value;
+    }
+
+    public boolean hasNext(int value)
+    {
+        return value < high;
+    }
+
+    public boolean hasPrev(int value)
+    {
+        return value > low;
+    }
+
+    public int getLow()
+    {
+        return low;
+    }
+
+    public int getHigh()
+    {
+        return high;
+    }
+}
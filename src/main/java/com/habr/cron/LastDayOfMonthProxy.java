@@ -4,11 +4,13 @@ import static com.habr.cron.ScheduleElements.FEBRUARY_LEAP_DAY;
 import static com.habr.cron.ScheduleElements.LAST_DAY_OF_MONTH_CODE;
 /**
  * Proxy-matcher for days, then in condition used single magic day ',32,'
- * Unmodified object. Thread-safe.
+ * Bound to the calendar of a single search; the proxied matcher can be replaced
+ * when the search context is reused for another schedule.
+ * Not thread safe (as the calendar it bound to).
  */
 class LastDayOfMonthProxy implements DigitMatcher
 {
-    private final DigitMatcher matcher;
+    private DigitMatcher matcher;
     private final GregCalendar calendar;
 
     public LastDayOfMonthProxy(DigitMatcher matcher, GregCalendar calendar)
@@ -17,6 +19,16 @@ class LastDayOfMonthProxy implements DigitMatcher
         this.calendar = calendar;
     }
 
+    /**
+     * Replaces the proxied matcher of days.
+     *
+     * @param matcher new matcher of days for the same calendar
+     */
+    public void setMatcher(DigitMatcher matcher)
+    {
+        this.matcher = matcher;
+    }
+
     public boolean match(int value)
     {
         int min = matcher.getLow();
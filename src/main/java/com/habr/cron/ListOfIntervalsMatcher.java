@@ -47,8 +47,8 @@ class ListOfIntervalsMatcher extends ListsMatcher
         if ( index == NOT_FOUND )
             return value-1; // this should not happen if you call hasPrev() before
 
-        if ( value > max[LAST] )
-            return max[LAST];
+        if ( value > max[index] ) // between the intervals, or above the last one
+            return max[index];
 
         if ( value > min[index] )
             return value-1;
@@ -1,20 +1,143 @@
 package com.habr.cron;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Helper class.
  * Help to select the best map matcher.
+ *
+ * The matchers are unmodified after the creation, so the matchers of the same element and ranges
+ * are shared by all schedules: most of schedules have the same fields ('*', '0', '*&#47;5').
+ * The shared matchers are kept in the bounded table; the matchers beyond the bound are not shared.
+ * Thread-safe.
  */
 class MatcherFactory
 {
+    private static final int MAX_SHARED = 4096; // the bound of the table of shared matchers
+    private static final int STEP_YEAR = 2000; // the years '*&#47;n' are counted from it, as the first year of the old range
+
+    /**
+     * The shared matchers by the element and the sorted ranges (for example, 'MINUTES|*&#47;5').
+     */
+    private static final ConcurrentHashMap<String, DigitMatcher> shared = new ConcurrentHashMap<String, DigitMatcher>();
+
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong created = new AtomicLong();
+
+
     /**
      * Help to select the best matcher for specified ranges list.
-     * Constructs and initializes matcher.
+     * Returns the shared matcher, if it was created for the same element and ranges before.
      *
-     * @param ranges source ranges for initialize
+     * @param ranges source ranges for initialize; the list is not modified, the matcher is built
+     *               from its canonical copy (see {@link #canonicalize(RangeList, ScheduleElements)})
      * @param element schedule element for which the matcher is being created
      * @return the best instance that uses the source ranges.
      */
     public static DigitMatcher createInstance(RangeList ranges, ScheduleElements element)
+    {
+        requests.incrementAndGet();
+
+        RangeList canonical = canonicalize(ranges, element); // the equivalent lists have the same key
+        String key = keyOf(canonical, element);
+
+        DigitMatcher matcher = shared.get(key);
+        if ( matcher != null ) return matcher;
+
+        matcher = newInstance(canonical, element);
+        if ( shared.size() >= MAX_SHARED )
+        {
+            created.incrementAndGet(); // not shared
+            return matcher;
+        }
+
+        DigitMatcher previous = shared.putIfAbsent(key, matcher);
+        if ( previous != null ) return previous; // created by another thread
+
+        created.incrementAndGet();
+        return matcher;
+    }
+
+    /**
+     * @return the number of the matchers requested by all schedules
+     */
+    public static long getRequestCount()
+    {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of the created matchers; the other requests got the shared ones
+     */
+    public static long getCreatedCount()
+    {
+        return created.get();
+    }
+
+
+
+    /**
+     * Brings the copy of the list of ranges to the canonical form: '13,13' is '13', '10-20,15-30' is '10-30',
+     * '0-59/5' of minutes is '*&#47;5', '0-59' is '*', '10-17/4' is '10-14/4' and '10-12/5' is '10'.
+     * The ranges with the special values beyond the element (the last day of month) are kept as is.
+     */
+    private static RangeList canonicalize(RangeList ranges, ScheduleElements element)
+    {
+        RangeList copy = new RangeList(ranges.getCount());
+        for (Range range : ranges)
+            copy.add(normalize(range, element)); // the ranges are merged below, so they are copied
+
+        if ( copy.isList() )
+        {
+            copy.sort();
+            copy.removeDuplicates();
+
+            if ( copy.isList() && copy.isSimpleRanges() )
+                copy.optimize(); // combines overlapped ranges
+        }
+
+        if ( copy.isAlone() )
+        {
+            Range range = copy.getSingle();
+            if ( !range.isAsterisk() && range.min == firstStep(element, range.step) && range.max + range.step > element.max )
+                return new RangeList(range.isStepped() ? new Range(range.step, true) : Range.ASTERISK);
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return the new range with the explicit bounds: '*&#47;n' is 'first-last/n', the maximum is the last stepped value
+     */
+    private static Range normalize(Range range, ScheduleElements element)
+    {
+        if ( range.isAsterisk() )
+        {
+            int first = firstStep(element, range.step);
+            return normalize(new Range(first, element.max, range.step), element);
+        }
+
+        if ( range.max > element.max || !range.isStepped() )
+            return new Range(range.min, range.max, range.step);
+
+        int max = range.max - (range.max - range.min) % range.step;
+        return max == range.min ? new Range(range.min) : new Range(range.min, max, range.step);
+    }
+
+    private static String keyOf(RangeList ranges, ScheduleElements element)
+    {
+        StringBuilder key = new StringBuilder(16).append(element.name()).append('|');
+        for (Range range : ranges)
+            key.append(range).append(',');
+
+        return key.toString();
+    }
+
+    /**
+     * Constructs and initializes the best matcher for specified ranges list.
+     */
+    private static DigitMatcher newInstance(RangeList ranges, ScheduleElements element)
     {
         return ranges.isAlone() ?
                     createSimpleMatcher(ranges.getSingle(), element)
@@ -30,7 +153,7 @@ class MatcherFactory
             return !range.isStepped() ?
                     new IntervalMatcher(element.min, element.max)
                     :
-                    new SteppingMatcher(element.min, element.max, range.step);
+                    new SteppingMatcher(firstStep(element, range.step), element.max, range.step);
 
         if ( range.isConstant() ) // single const value
             return new ConstantMatcher(range.min);
@@ -43,6 +166,19 @@ class MatcherFactory
 
 
 
+    /**
+     * @return the first value of '*&#47;n': the years are anchored at 2000 (2000, 2003, ... for '*&#47;3'),
+     *         and extended back to the year 0; the other elements start from the minimum
+     */
+    private static int firstStep(ScheduleElements element, int step)
+    {
+        return element == ScheduleElements.YEAR ? STEP_YEAR % step : element.min;
+    }
+
+
+    /**
+     * Ranges MUST be canonical (see {@link #canonicalize(RangeList, ScheduleElements)}).
+     */
     private static DigitMatcher createMapMatcher(RangeList ranges, ScheduleElements element)
     {
         int min = ranges.getMinimum();
@@ -56,8 +192,6 @@ class MatcherFactory
             return hash;
         }
 
-        ranges.sort(); // sort ranges before checks
-
         // if ranges have complexity - we use bit map
         if ( !ranges.isSimpleRanges() )
         {
@@ -66,12 +200,6 @@ class MatcherFactory
             return bits;
         }
 
-        ranges.optimize(); // combines overlapped ranges
-
-        // after optimize we can get only one range (for example: '10-20,15-30' = '10-30')
-        if ( ranges.isAlone() )
-            return createSimpleMatcher(ranges.getSingle(), element);
-
         // when count of ranges over than 8 the bits map will always better
         if ( ranges.getCount() > 10 )
         {
@@ -13,7 +13,7 @@ class MatcherPool
     /**
      * all matchers for calendar elements (month, year, ... except days of the week)
      */
-    private final DigitMatcher pool[] = new DigitMatcher[8];
+    private final DigitMatcher pool[] = new DigitMatcher[ScheduleElements.values().length];
     /**
      * the bitmap of weekdays according the schedule
      */
@@ -27,6 +27,10 @@ class MatcherPool
      */
     private final DaysMap normalYearMap; // default for 1995
     private final DaysMap leapYearMap; // default for 1996
+    /**
+     * the matched days of years (months, days of month and weekdays at the same time)
+     */
+    private final DaysIndex daysIndex;
 
     /**
      * Has true, if date skipped in schedule or equals to '*.*.*'
@@ -36,6 +40,14 @@ class MatcherPool
      * Has true, if weekday not present in schedule or equals to '*'
      */
     private final boolean anyWeekDay;
+    /**
+     * Has true, if the days are searched by the index: the schedule has weekdays or the special day
+     */
+    private final boolean indexedDays;
+    /**
+     * Has true, if the schedule has events inside the milliseconds
+     */
+    private final boolean highResolution;
 
 
     /**
@@ -65,6 +77,8 @@ class MatcherPool
 
         anyDate = model.isAnyDate();
         anyWeekDay = model.isAnyWeekDay();
+        indexedDays = !anyWeekDay || model.getSpecialDay() != null;
+        highResolution = model.isHighResolution();
 
         try {
             fixYearsForLastFebruaryDay(model); // fix schedule for "????.02.29"
@@ -73,6 +87,37 @@ class MatcherPool
         {
             throw new ScheduleFormatException(e.getMessage(), model.toString());
         }
+
+        daysIndex = new DaysIndex(pool[YEAR.ordinal()], pool[MONTH.ordinal()], pool[DAY_OF_MONTH.ordinal()], weekMap,
+                model.getSpecialDay(), model.isDaysUnion());
+    }
+
+    /**
+     * Creates the copy of the pool with the index of days without the excluded days.
+     * The matchers and the days maps are shared; the days are always searched by the index.
+     */
+    private MatcherPool(MatcherPool source, HolidayCalendar holidays)
+    {
+        System.arraycopy(source.pool, 0, pool, 0, pool.length);
+
+        weekMap = source.weekMap;
+        monthMap = source.monthMap;
+        normalYearMap = source.normalYearMap;
+        leapYearMap = source.leapYearMap;
+        daysIndex = source.daysIndex.excluding(holidays);
+        anyDate = false; // the date digits can't be skipped
+        anyWeekDay = source.anyWeekDay;
+        indexedDays = true;
+        highResolution = source.highResolution;
+    }
+
+    /**
+     * @param holidays the excluded days
+     * @return new pool for the same schedule without the excluded days
+     */
+    public MatcherPool excluding(HolidayCalendar holidays)
+    {
+        return new MatcherPool(this, holidays);
     }
 
     /**
@@ -103,6 +148,15 @@ class MatcherPool
         return leapYearMap;
     }
 
+    /**
+     * @return the index of the matched days; the search uses it, when the schedule has the days of week
+     *         or the special day (see {@link #isIndexedDays()})
+     */
+    public DaysIndex getDaysIndex()
+    {
+        return daysIndex;
+    }
+
     public boolean isAnyDate()
     {
         return anyDate;
@@ -113,6 +167,16 @@ class MatcherPool
         return anyWeekDay;
     }
 
+    public boolean isIndexedDays()
+    {
+        return indexedDays;
+    }
+
+    public boolean isHighResolution()
+    {
+        return highResolution;
+    }
+
 
 
 
@@ -258,9 +322,12 @@ class MatcherPool
      * Checks special schedule situation: User want only 29-th day in February.
      * This condition forces us to search only for leap years.
      * Leave only leap years in model.
+     * Not for the union of the days: the days of week of February are matched in any year.
      */
     private void fixYearsForLastFebruaryDay(ScheduleModel model)
     {
+        if ( model.isDaysUnion() ) return;
+
         RangeList monthRanges = model.getModelFor(MONTH);
         RangeList dayRanges = model.getModelFor(DAY_OF_MONTH);
 
@@ -287,13 +354,13 @@ class MatcherPool
      */
     private DigitMatcher applyLeapYearsForLastFebruaryDay(DigitMatcher planned)
     {
-        int min = findNearestLeapYearFrom(YEAR.min, +1); // for 2000 it returns 2000; for 2001 it returns 2004
-        int max = findNearestLeapYearFrom(YEAR.max, -1); // for 2100 it returns 2096
+        int min = findNearestLeapYearFrom(YEAR.min, +1); // for 0 it returns 0; for 2001 it returns 2004
+        int max = findNearestLeapYearFrom(YEAR.max, -1); // for 9999 it returns 9996
 
         BitMapMatcher filtered = new BitMapMatcher(min, max);
         int count = 0;
         for (int year = min; year <= max; year += 4) // intersect all leap years with source schedule
-            if ( planned.match(year) )
+            if ( GregCalendar.isLeap(year) == 1 && isPlanned(planned, year) ) // skip 2100, 2200, 2300, 2500...
             {
                 filtered.addValue(year);
                 count++;
@@ -309,6 +376,14 @@ class MatcherPool
     }
 
 
+    /**
+     * Checks the year by the matcher; the matchers don't control the overflow themselves.
+     */
+    private static boolean isPlanned(DigitMatcher planned, int year)
+    {
+        return planned.getLow() <= year && year <= planned.getHigh() && planned.match(year);
+    }
+
     /**
      * Find nearest or current leap year for 'start' (includes 'start').
      *
@@ -1,9 +1,5 @@
 package com.habr.cron;
 
-import java.util.StringTokenizer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Schedules parser.
  * Constructs the schedule model.
@@ -12,6 +8,10 @@ class Parser
 {
     private ScheduleModel model;
 
+    private CharSequence schedule; // the source of the current parsing
+    private final int[] bounds = new int[8]; // begin & end of first four elements of the last split
+
+
     public ScheduleModel getScheduleModel()
     {
         if ( model == null )
@@ -21,55 +21,67 @@ class Parser
     }
 
 
-    public void parse(String schedule) throws ScheduleFormatException
+    /**
+     * Parses the schedule in one pass, without regular expressions and intermediate strings.
+     *
+     * @param schedule the source schedule; the string, or the slice of any buffer
+     * @throws ScheduleFormatException
+     */
+    public void parse(CharSequence schedule) throws ScheduleFormatException
     {
-        if ( schedule == null || schedule.trim().isEmpty() )
-            throw new ScheduleFormatException("Empty schedule.", schedule);
+        if ( schedule == null || isBlank(schedule) )
+            throw new ScheduleFormatException("Empty schedule.", schedule == null ? null : schedule.toString());
 
 
 
+        this.schedule = schedule;
         model = new ScheduleModel();
 
 
-        StringTokenizer parts = new StringTokenizer(schedule, " "); // split by 'date', 'week day', 'time'
-        while ( parts.hasMoreTokens() )
+        int length = schedule.length();
+        int start = 0;
+        while ( start < length ) // split by 'date', 'week day', 'time'
         {
-            String part = parts.nextToken();
+            if ( schedule.charAt(start) == ' ' ) { start++; continue; }
+
+            int end = indexOf(' ', start, length);
+
+            boolean hasDot = indexOf('.', start, end) < end;
+            boolean hasColon = indexOf(':', start, end) < end;
 
-            if ( isDateSchedule(part) )
+            if ( hasDot && !hasColon ) // date
             {
                 if ( model.isTimePresent() || model.isDatePresent() )
-                    throw new ScheduleFormatException("Invalid schedule. Time MUST follow AFTER date.", schedule);
+                    throw new ScheduleFormatException("Invalid schedule. Time MUST follow AFTER date.", schedule.toString());
 
-                parseDate(part);
+                parseDate(start, end);
             }
-            else if ( isTimeSchedule(part) )
+            else if ( hasColon ) // time
             {
                 if ( model.isTimePresent() )
-                    throw new ScheduleFormatException("Invalid schedule. The Time element is redundant.", schedule);
+                    throw new ScheduleFormatException("Invalid schedule. The Time element is redundant.", schedule.toString());
 
-                parseTime(part);
+                parseTime(start, end);
             }
-
-            else if ( isWeekDaySchedule(part) )
+            else // week day
             {
                 if ( !model.isDatePresent() || model.isTimePresent() || model.isWeekDayPresent() )
-                    throw new ScheduleFormatException("Invalid schedule. Weekday MUST follow AFTER date.", schedule);
+                    throw new ScheduleFormatException("Invalid schedule. Weekday MUST follow AFTER date.", schedule.toString());
 
-                parseWeekDay(part);
+                processElement(ScheduleElements.DAY_OF_WEEK, start, end);
             }
-            else
-                throw new ScheduleFormatException("Unexpected element '" + part + "' in schedule.", schedule);
+
+            start = end;
         }
 
 
 
         if ( !model.isTimePresent() )
-            throw new ScheduleFormatException("Time is not present in schedule (it required).", schedule);
+            throw new ScheduleFormatException("Time is not present in schedule (it required).", schedule.toString());
 
 
         model.initDefaults();
-        model.check(schedule);
+        model.check(schedule.toString());
         model.fixup();
     }
 
@@ -77,62 +89,51 @@ class Parser
 
 
 
-    private boolean isDateSchedule(String schedule)
+    private void parseDate(int start, int end) throws ScheduleFormatException
     {
-        return schedule.contains(".") && !schedule.contains(":");
-    }
+        if ( split('.', start, end) != 3 ) // date elements separates via dot
+            throw new ScheduleFormatException("Wrong date in schedule (expected exactly 3 elements).", substring(start, end));
 
-    private boolean isTimeSchedule(String schedule)
-    {
-        return schedule.contains(":");
-    }
+        int[] b = bounds;
+        int monthStart = b[2], monthEnd = b[3], dayStart = b[4], dayEnd = b[5];
 
-    private boolean isWeekDaySchedule(String schedule)
-    {
-        return !schedule.contains(".") && !schedule.contains(":");
+        processElement(ScheduleElements.YEAR, b[0], b[1]);
+        processElement(ScheduleElements.MONTH, monthStart, monthEnd);
+        processElement(ScheduleElements.DAY_OF_MONTH, dayStart, dayEnd);
     }
 
-
-
-    private void parseDate(String scheduleDate) throws ScheduleFormatException
+    private void parseTime(int start, int end) throws ScheduleFormatException
     {
-        String elements[] = scheduleDate.split("\\."); // date elements separates via dot
-        if ( elements.length != 3 )
-            throw new ScheduleFormatException("Wrong date in schedule (expected exactly 3 elements).", scheduleDate);
+        if ( split(':', start, end) != 3 ) // time elements separates via colon
+            throw new ScheduleFormatException("Wrong time in schedule (expected exactly 3 elements).", substring(start, end));
 
-        processElement(ScheduleElements.YEAR, elements[0]);
-        processElement(ScheduleElements.MONTH, elements[1]);
-        processElement(ScheduleElements.DAY_OF_MONTH, elements[2]);
-    }
+        int[] b = bounds;
+        int minutesStart = b[2], minutesEnd = b[3], secondsStart = b[4], secondsEnd = b[5];
 
-    private void parseTime(String scheduleTime) throws ScheduleFormatException
-    {
-        String elements[] = scheduleTime.split(":"); // time elements separates via colon
-        if ( elements.length != 3 )
-            throw new ScheduleFormatException("Wrong time in schedule (expected exactly 3 elements).", scheduleTime);
+        processElement(ScheduleElements.HOURS, b[0], b[1]);
+        processElement(ScheduleElements.MINUTES, minutesStart, minutesEnd);
 
-        processElement(ScheduleElements.HOURS, elements[0]);
-        processElement(ScheduleElements.MINUTES, elements[1]);
-
-        if ( elements[2].contains(".") ) // seconds and milliseconds separates via dot
+        if ( indexOf('.', secondsStart, secondsEnd) < secondsEnd ) // seconds, milliseconds, ... separates via dot
         {
-            String last[] = elements[2].split("\\.");
+            int count = split('.', secondsStart, secondsEnd);
+            int millisStart = b[2], millisEnd = b[3], microsStart = b[4], microsEnd = b[5], nanosStart = b[6], nanosEnd = b[7];
+
+            processElement(ScheduleElements.SECONDS, b[0], b[1]);
 
-            processElement(ScheduleElements.SECONDS, last[0]);
-            processElement(ScheduleElements.MILLIS, last[1]);
+            if ( count < 2 || count > 4 ) // "ss." has no milliseconds; "ss.fff.uuu.nnn" is the most precise
+                throw new ScheduleFormatException("Invalid format of the schedule element.", substring(secondsStart, secondsEnd));
+
+            processElement(ScheduleElements.MILLIS, millisStart, millisEnd);
+            if ( count > 2 ) processElement(ScheduleElements.MICROS, microsStart, microsEnd);
+            if ( count > 3 ) processElement(ScheduleElements.NANOS, nanosStart, nanosEnd);
         }
         else
-            processElement(ScheduleElements.SECONDS, elements[2]);
+            processElement(ScheduleElements.SECONDS, secondsStart, secondsEnd);
     }
 
-    private void parseWeekDay(String scheduleDayOfWeek) throws ScheduleFormatException
+    private void processElement(ScheduleElements element, int start, int end) throws ScheduleFormatException
     {
-        processElement(ScheduleElements.DAY_OF_WEEK, scheduleDayOfWeek);
-    }
-
-    private void processElement(ScheduleElements element, String range) throws ScheduleFormatException
-    {
-        RangeList ranges = extractRanges(range);
+        RangeList ranges = extractRanges(start, end);
         model.setModelFor(element, ranges);
     }
 
@@ -140,76 +141,171 @@ class Parser
 
     /**
      * Parse a list of values for a single date element: a,b/n,c-d,e-f/n,...
+     * The empty items of list are skipped.
      *
-     * @param scheduleValues list of values for the date element
      * @return a group of value ranges for a date element
      */
-    private RangeList extractRanges(String scheduleValues) throws ScheduleFormatException
+    private RangeList extractRanges(int start, int end) throws ScheduleFormatException
     {
-        if ( !scheduleValues.contains(",") ) // simple range or single value
+        if ( indexOf(',', start, end) == end ) // simple range or single value
         {
-            return new RangeList(parseRange(scheduleValues));
+            return new RangeList(parseRange(start, end));
         }
         else // list of ranges/values
         {
-            StringTokenizer items = new StringTokenizer(scheduleValues, ",");
-            RangeList result = new RangeList(items.countTokens());
+            int count = 0;
+            for (int i = start; i < end; i++)
+                if ( schedule.charAt(i) != ',' && (i == start || schedule.charAt(i - 1) == ',') ) count++;
+
+            RangeList result = new RangeList(count);
 
-            while ( items.hasMoreTokens() )
-                result.add( parseRange( items.nextToken() ) );
+            int item = start;
+            while ( item < end )
+            {
+                int next = indexOf(',', item, end);
+                if ( next > item ) result.add( parseRange(item, next) );
+                item = next + 1;
+            }
 
             return result;
         }
     }
 
 
-    private static final Pattern ASTERISK = Pattern.compile("\\*(/(\\d+))?");
-    private static final Pattern VALUE = Pattern.compile("\\d+");
-    private static final Pattern INTERVAL = Pattern.compile("(\\d+)\\-(\\d+)(/(\\d+))?");
-
     /**
      * Parses the schedule element (single range), values of the form: "*", "a", "a-b", "* /3", "a-b/3".
      *
-     * @param scheduleElement schedule element
      * @return range of values
      */
-    private Range parseRange(String scheduleElement) throws ScheduleFormatException
+    private Range parseRange(int start, int end) throws ScheduleFormatException
     {
-        try
+        if ( start < end && schedule.charAt(start) == '*' ) // * or */n
         {
-            Matcher matcher;
+            if ( start + 1 == end ) return Range.ASTERISK;
 
-            matcher = ASTERISK.matcher(scheduleElement);
-            if ( matcher.matches() )
+            if ( schedule.charAt(start + 1) == '/' && skipDigits(start + 2, end) == end && start + 2 < end )
             {
-                int step = matcher.group(2) != null ? Integer.valueOf(matcher.group(2)) : 1;
+                int step = parseNumber(start + 2, end, start, end);
 
                 return step > 1 ?  new Range(step, true) : Range.ASTERISK;
             }
+        }
+        else
+        {
+            int minEnd = skipDigits(start, end);
 
-            matcher = VALUE.matcher(scheduleElement);
-            if ( matcher.matches() )
-            {
-                int v = Integer.valueOf(scheduleElement);
-
-                return new Range(v);
-            }
+            if ( minEnd > start && minEnd == end ) // a
+                return new Range(parseNumber(start, end, start, end));
 
-            matcher = INTERVAL.matcher(scheduleElement);
-            if ( matcher.matches() )
+            if ( minEnd > start && schedule.charAt(minEnd) == '-' ) // a-b or a-b/n
             {
-                int min = Integer.valueOf(matcher.group(1));
-                int max = Integer.valueOf(matcher.group(2));
-                int step = matcher.group(4) != null ? Integer.valueOf(matcher.group(4)) : 1;
-
-                return new Range(min, max, step);
+                int maxEnd = skipDigits(minEnd + 1, end);
+                boolean stepped = maxEnd < end && schedule.charAt(maxEnd) == '/';
+                int stepEnd = stepped ? skipDigits(maxEnd + 1, end) : maxEnd;
+
+                if ( maxEnd > minEnd + 1 && stepEnd == end && (!stepped || stepEnd > maxEnd + 1) )
+                {
+                    int min = parseNumber(start, minEnd, start, end);
+                    int max = parseNumber(minEnd + 1, maxEnd, start, end);
+                    int step = stepped ? parseNumber(maxEnd + 1, stepEnd, start, end) : 1;
+
+                    return new Range(min, max, step);
+                }
             }
         }
-        catch (NumberFormatException e)
+
+        throw new ScheduleFormatException("Invalid format of the schedule element.", substring(start, end));
+    }
+
+
+
+
+    /**
+     * Parses the decimal digits [start, end) as a number.
+     *
+     * @param elementStart the begin of the schedule element (for diagnostic messages)
+     * @param elementEnd the end of the schedule element (for diagnostic messages)
+     * @throws ScheduleFormatException if the number is too big
+     */
+    private int parseNumber(int start, int end, int elementStart, int elementEnd) throws ScheduleFormatException
+    {
+        long value = 0;
+        for (int i = start; i < end; i++)
         {
-            throw new ScheduleFormatException("Invalid format of the schedule element (expected number).", scheduleElement);
+            value = value * 10 + (schedule.charAt(i) - '0');
+
+            if ( value > Integer.MAX_VALUE )
+                throw new ScheduleFormatException("Invalid format of the schedule element (expected number).",
+                        substring(elementStart, elementEnd));
         }
+        return (int) value;
+    }
+
+    /**
+     * @return the index of the first not digit char, or end
+     */
+    private int skipDigits(int start, int end)
+    {
+        while ( start < end && isDigit(schedule.charAt(start)) ) start++;
+        return start;
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the index of the char, or end (if it is not found)
+     */
+    private int indexOf(char c, int start, int end)
+    {
+        while ( start < end && schedule.charAt(start) != c ) start++;
+        return start;
+    }
+
+    /**
+     * Splits the part of schedule by separator, as {@link String#split} does: the trailing empty elements are removed.
+     * The bounds of first four elements are stored in {@link #bounds}.
+     *
+     * @return the number of elements
+     */
+    private int split(char separator, int start, int end)
+    {
+        int count = 0; // all elements
+        int result = 0; // elements without the trailing empty ones
+        int begin = start;
+
+        for (int i = start; i <= end; i++)
+            if ( i == end || schedule.charAt(i) == separator )
+            {
+                if ( count < bounds.length / 2 )
+                {
+                    bounds[2 * count] = begin;
+                    bounds[2 * count + 1] = i;
+                }
+                count++;
+
+                if ( i > begin ) result = count;
+                begin = i + 1;
+            }
+
+        return result;
+    }
+
+    private String substring(int start, int end)
+    {
+        return schedule.subSequence(start, end).toString();
+    }
+
+    /**
+     * @return true, if the schedule has only white spaces (as {@link String#trim()} sees them)
+     */
+    private static boolean isBlank(CharSequence schedule)
+    {
+        for (int i = 0; i < schedule.length(); i++)
+            if ( schedule.charAt(i) > ' ' ) return false;
 
-        throw new ScheduleFormatException("Invalid format of the schedule element.", scheduleElement);
+        return true;
     }
 }
@@ -0,0 +1,308 @@
+package com.habr.cron;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static com.habr.cron.ScheduleElements.*;
+
+/**
+ * Parser of the Quartz cron expressions (as org.quartz.CronExpression sees them):
+ * <pre>
+ *     sec min hour day-of-month month day-of-week [year]
+ * </pre>
+ * Constructs the same schedule model as {@link Parser}, so the expressions are searched by the same matchers.
+ *
+ * Every field is a list of 'a', 'a-b', 'a/n' (from a to the maximum with step n), 'a-b/n', '*', '* /n'.
+ * The ranges like '22-2' wrap around the maximum (22,23,0,1,2). The months and the days of week can be
+ * set by names (JAN-DEC, SUN-SAT). The days of week are 1-7, 1 - Sunday.
+ * Exactly one of the day of month and the day of week MUST be '?' (no restriction).
+ * The special days ({@link SpecialDay}) are set alone in their field:
+ * <pre>
+ *     day of month:  L (last day), L-n, LW, L-nW, nW
+ *     day of week:   L (Saturday), nL, n#k
+ * </pre>
+ * The years are 0-9999 here ('* /n' starts from 1970, as in Quartz), Quartz limits them by 1970-2099.
+ */
+final class QuartzParser
+{
+    private static final int FIRST_YEAR = 1970; // the start of '* /n' for years
+    private static final int MAX_FIELDS = 7;
+
+    private ScheduleModel model;
+
+    private String expression; // the source of the current parsing
+    private FieldScanner scanner; // the fields of the source in the upper case
+    private final int[] bounds = new int[2 * MAX_FIELDS]; // begin & end of the fields
+    private SpecialDay special; // the special day of the last parsed item
+    private boolean noSpec; // the last parsed field is '?'
+
+
+    public ScheduleModel getScheduleModel()
+    {
+        if ( model == null )
+            throw new IllegalStateException();
+
+        return model;
+    }
+
+
+    /**
+     * @param expression the Quartz cron expression
+     * @throws ScheduleFormatException
+     */
+    public void parse(String expression) throws ScheduleFormatException
+    {
+        if ( expression == null || expression.trim().isEmpty() )
+            throw new ScheduleFormatException("Empty schedule.", expression);
+
+        this.expression = expression;
+        this.scanner = new FieldScanner(expression, expression.toUpperCase(Locale.ROOT));
+        model = new ScheduleModel();
+
+        int count = scanner.splitFields(bounds);
+        if ( count < 6 || count > MAX_FIELDS )
+            throw new ScheduleFormatException("Wrong Quartz expression (expected 6 or 7 fields).", expression);
+
+        int[] b = bounds;
+        processElement(SECONDS, b[0], b[1]);
+        processElement(MINUTES, b[2], b[3]);
+        processElement(HOURS, b[4], b[5]);
+        processElement(MONTH, b[8], b[9]);
+        processDays(b[6], b[7], b[10], b[11]);
+
+        if ( count == MAX_FIELDS )
+            processElement(YEAR, b[12], b[13]);
+        else
+            model.setModelFor(YEAR, RangeList.ASTERISK);
+
+
+        model.initDefaults();
+        model.check(expression);
+        model.fixup();
+    }
+
+
+
+    /**
+     * Parses the day of month and the day of week; exactly one of them is '?'.
+     */
+    private void processDays(int dayStart, int dayEnd, int weekStart, int weekEnd) throws ScheduleFormatException
+    {
+        processElement(DAY_OF_MONTH, dayStart, dayEnd);
+        boolean anyDay = noSpec;
+        SpecialDay daySpecial = special;
+
+        processElement(DAY_OF_WEEK, weekStart, weekEnd);
+        if ( anyDay == noSpec )
+            throw new ScheduleFormatException("Exactly one of the day of month and the day of week MUST be '?'.", expression);
+
+        if ( daySpecial != null ) model.setSpecialDay(daySpecial);
+        if ( special != null ) model.setSpecialDay(special);
+    }
+
+    private void processElement(ScheduleElements element, int start, int end) throws ScheduleFormatException
+    {
+        List<Range> ranges = new ArrayList<Range>();
+        special = null;
+        noSpec = false;
+
+        int item = start;
+        while ( item <= end )
+        {
+            int next = scanner.indexOf(',', item, end);
+            parseItem(element, item, next, ranges);
+            item = next + 1;
+        }
+
+        if ( (special != null || noSpec) && ranges.size() > 1 )
+            throw new ScheduleFormatException("The special day and '?' MUST be alone in the field.", scanner.substring(start, end));
+
+        RangeList result = new RangeList(ranges.size());
+        for (Range range : ranges) result.add(range);
+
+        model.setModelFor(element, result.isAlone() && result.getSingle() == Range.ASTERISK ? RangeList.ASTERISK : result);
+    }
+
+    /**
+     * Parses one item of the list: '*', '?', '* /n', 'a', 'a-b', 'a/n', 'a-b/n', or the special day.
+     */
+    private void parseItem(ScheduleElements element, int start, int end, List<Range> ranges) throws ScheduleFormatException
+    {
+        if ( start == end )
+            throw new ScheduleFormatException("Empty item in the list.", expression);
+
+        char c = scanner.charAt(start);
+        if ( c == '*' || c == '?' )
+        {
+            boolean days = element == DAY_OF_MONTH || element == DAY_OF_WEEK;
+            if ( c == '?' && (!days || start + 1 != end) )
+                throw new ScheduleFormatException("'?' is allowed only alone for the days.", scanner.substring(start, end));
+
+            noSpec |= c == '?';
+            if ( start + 1 == end )
+            {
+                ranges.add(Range.ASTERISK);
+                return;
+            }
+            if ( scanner.charAt(start + 1) == '/' )
+            {
+                int step = scanner.parseStep(start + 2, end, start, end);
+                if ( element == YEAR )
+                    ranges.add(new Range(FIRST_YEAR, YEAR.max, step));
+                else
+                    ranges.add(step > 1 ? new Range(step, true) : Range.ASTERISK);
+                return;
+            }
+        }
+        else if ( c == 'L' && (element == DAY_OF_MONTH || element == DAY_OF_WEEK) )
+        {
+            parseLast(element, start, end, ranges);
+            return;
+        }
+        else
+        {
+            int minEnd = scanner.skipValue(start, end);
+            int min = parseValue(element, start, minEnd, start, end);
+
+            if ( minEnd == end )
+            {
+                ranges.add(new Range(min));
+                return;
+            }
+
+            c = scanner.charAt(minEnd);
+            if ( c == 'W' && element == DAY_OF_MONTH && minEnd + 1 == end )
+            {
+                if ( min < 1 || min > 31 )
+                    throw new ScheduleFormatException("The day of 'W' MUST be 1-31.", scanner.substring(start, end));
+
+                special = SpecialDay.nearestWeekday(min);
+                ranges.add(Range.ASTERISK);
+                return;
+            }
+            if ( c == 'L' && element == DAY_OF_WEEK && minEnd + 1 == end )
+            {
+                special = SpecialDay.lastDayOfWeek(checkDayOfWeek(min, start, end));
+                ranges.add(Range.ASTERISK);
+                return;
+            }
+            if ( c == '#' && element == DAY_OF_WEEK )
+            {
+                int nth = scanner.parseNumber(minEnd + 1, end, start, end);
+                if ( nth < 1 || nth > 5 )
+                    throw new ScheduleFormatException("The number of '#' MUST be 1-5.", scanner.substring(start, end));
+
+                special = SpecialDay.nthDayOfWeek(checkDayOfWeek(min, start, end), nth);
+                ranges.add(Range.ASTERISK);
+                return;
+            }
+
+            int max = element.max; // 'a/n' is 'a-max/n'
+            int maxEnd = minEnd;
+            if ( c == '-' )
+            {
+                maxEnd = scanner.skipValue(minEnd + 1, end);
+                max = parseValue(element, minEnd + 1, maxEnd, start, end);
+            }
+
+            int step = 1;
+            if ( maxEnd < end )
+            {
+                if ( scanner.charAt(maxEnd) != '/' )
+                    throw new ScheduleFormatException("Invalid format of the schedule element.", scanner.substring(start, end));
+
+                step = scanner.parseStep(maxEnd + 1, end, start, end);
+            }
+            else if ( c != '-' )
+                throw new ScheduleFormatException("Invalid format of the schedule element.", scanner.substring(start, end));
+
+            if ( min <= max || element == YEAR )
+                ranges.add(new Range(min, max, step));
+            else
+                addWrapped(element, min, max, step, ranges);
+            return;
+        }
+
+        throw new ScheduleFormatException("Invalid format of the schedule element.", scanner.substring(start, end));
+    }
+
+    /**
+     * Parses 'L', 'L-n', 'LW', 'L-nW' of the day of month, and 'L' (Saturday) of the day of week.
+     */
+    private void parseLast(ScheduleElements element, int start, int end, List<Range> ranges) throws ScheduleFormatException
+    {
+        if ( element == DAY_OF_WEEK )
+        {
+            if ( start + 1 != end )
+                throw new ScheduleFormatException("Invalid format of the schedule element.", scanner.substring(start, end));
+
+            ranges.add(new Range(DAY_OF_WEEK.max)); // Saturday
+            return;
+        }
+
+        int offset = 0;
+        int i = start + 1;
+        if ( i < end && scanner.charAt(i) == '-' )
+        {
+            int offsetEnd = scanner.skipDigits(i + 1, end);
+            offset = scanner.parseNumber(i + 1, offsetEnd, start, end);
+            if ( offset > 30 )
+                throw new ScheduleFormatException("The offset of 'L' MUST be 0-30.", scanner.substring(start, end));
+            i = offsetEnd;
+        }
+
+        boolean weekday = i < end && scanner.charAt(i) == 'W';
+        if ( weekday ) i++;
+
+        if ( i != end )
+            throw new ScheduleFormatException("Invalid format of the schedule element.", scanner.substring(start, end));
+
+        if ( offset == 0 && !weekday )
+        {
+            ranges.add(new Range(LAST_DAY_OF_MONTH_CODE));
+        }
+        else
+        {
+            special = SpecialDay.lastDay(offset, weekday);
+            ranges.add(Range.ASTERISK);
+        }
+    }
+
+    /**
+     * Adds the range, which wraps around the maximum (for example, hours '22-2/2' are 22,0,2).
+     */
+    private static void addWrapped(ScheduleElements element, int min, int max, int step, List<Range> ranges)
+    {
+        int size = element.max - element.min + 1;
+
+        for (int value = min; value <= max + size; value += step)
+            ranges.add(new Range(element.min + (value - element.min) % size));
+    }
+
+    private int checkDayOfWeek(int value, int start, int end) throws ScheduleFormatException
+    {
+        if ( value < DAY_OF_WEEK.min || value > DAY_OF_WEEK.max )
+            throw new ScheduleFormatException("The day of week MUST be 1-7 or SUN-SAT.", scanner.substring(start, end));
+
+        return value;
+    }
+
+
+
+    /**
+     * Parses the number or the name of month or day of week.
+     * The days of week are converted from 1-7 (Quartz) to 0-6 (the model).
+     */
+    private int parseValue(ScheduleElements element, int start, int end, int elementStart, int elementEnd)
+            throws ScheduleFormatException
+    {
+        if ( scanner.isNumber(start, end) )
+        {
+            int value = scanner.parseNumber(start, end, elementStart, elementEnd);
+            return element == DAY_OF_WEEK ? value - 1 : value;
+        }
+
+        return scanner.parseName(element, start, end, elementStart, elementEnd);
+    }
+}
@@ -157,6 +157,15 @@ final class Range implements Comparable<Range>
     }
 
 
+    /**
+     * @param o another range
+     * @return true, if the ranges are the same ('13' and '13', '1-10/2' and '1-10/2')
+     */
+    public boolean isSame(Range o)
+    {
+        return min == o.min && max == o.max && step == o.step && asterisk == o.asterisk;
+    }
+
     /**
      * Checks that ranges intersects
      *
@@ -157,6 +157,28 @@ final class RangeList implements Iterable<Range>
         Arrays.sort(list);
     }
 
+    /**
+     * Removes the repeated ranges: '13,13' is '13'.
+     * Ranges MUST be sorted before
+     */
+    public void removeDuplicates()
+    {
+        int f = 0;
+        for (int n = 1; n < count; n++)
+        {
+            Range next = list[n];
+
+            boolean repeated = false;
+            for (int i = f; i >= 0 && list[i].min == next.min && !repeated; i--)
+                repeated = list[i].isSame(next);
+
+            if ( !repeated ) list[++f] = next;
+        }
+
+        count = f + 1;
+        list = Arrays.copyOf(list, count);
+    }
+
     /**
      * Merges overlapping ranges.
      * Ranges MUST be a simple intervals (isSimpleRanges() == true)
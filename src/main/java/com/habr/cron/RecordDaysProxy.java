@@ -0,0 +1,162 @@
+package com.habr.cron;
+
+/**
+ * Flyweight proxy-matcher for days over the encoded record of {@link ScheduleStore}.
+ * The record keeps the maps of the matched days of month (bits 1..31) by the length of month,
+ * and by the weekday of the 1st day of month, if the schedule has the days of week (see {@link DaysIndex}).
+ * So the days of month, the last day of month, the days of week and the special days are matched
+ * by one map of the current month of the calendar, as {@link DaysIndexProxy} does.
+ *
+ * The month, which has no matched days, has the bounds 32..0 (the low bound is above the high one),
+ * so any day of it is out of bounds, and the search goes to the next month.
+ *
+ * Bound to the calendar of a single search; the record is replaced for every search.
+ * Not thread safe (as the calendar it bound to).
+ */
+final class RecordDaysProxy implements DigitMatcher
+{
+    private static final int NO_DAY_ABOVE = 32; // out of any month
+    private static final int NO_DAY_BELOW = 0;
+
+    private final GregCalendar calendar;
+
+    private long[] data;
+    private int offset; // the offset of the maps in the record; two maps in a word
+    private boolean byWeekday; // 7 maps for every length of month
+
+    // the month of the calendar, for which the fields below are calculated
+    private int year;
+    private int month; // 0 - not calculated
+    private int map;
+    private int low; // the first & last matched days of the month
+    private int high;
+
+
+    public RecordDaysProxy(GregCalendar calendar)
+    {
+        this.calendar = calendar;
+    }
+
+    /**
+     * Binds the proxy to the maps of the record.
+     *
+     * @param data the shared array of records
+     * @param offset the offset of the maps
+     * @param byWeekday true, if the maps are kept for every weekday of the 1st day of month
+     * @return the offset of the next element of the record
+     */
+    public int bind(long[] data, int offset, boolean byWeekday)
+    {
+        this.data = data;
+        this.offset = offset;
+        this.byWeekday = byWeekday;
+        this.month = 0;
+
+        return offset + (byWeekday ? 4 * 7 : 4) / 2;
+    }
+
+    /**
+     * Encodes the maps of the matched days of the index.
+     *
+     * @param index the index of the days of the schedule
+     * @param out the buffer of the record
+     * @param offset the offset of the maps in the buffer
+     * @param byWeekday true, if the maps are encoded for every weekday of the 1st day of month
+     * @return the offset of the next element of the record
+     */
+    public static int encode(DaysIndex index, long[] out, int offset, boolean byWeekday)
+    {
+        int count = 0;
+        for (int length = 28; length <= 31; length++)
+            for (int first = 0; first < (byWeekday ? 7 : 1); first++, count++)
+                out[offset + (count >> 1)] |= (index.getLengthMap(length, first) & 0xFFFFFFFFL) << ((count & 1) << 5);
+
+        return offset + (count >> 1);
+    }
+
+    /**
+     * Recalculates the month, if the calendar was moved to another one.
+     */
+    private void update()
+    {
+        if ( calendar.month == month && calendar.year == year ) return;
+
+        year = calendar.year;
+        month = calendar.month;
+
+        int length = GregCalendar.maxDays(year, month);
+        int index = byWeekday ? (length - 28) * 7 + GregCalendar.dayOfWeek(year, month, 1) : length - 28;
+        map = (int) (data[offset + (index >> 1)] >>> ((index & 1) << 5));
+
+        if ( map != 0 )
+        {
+            low = Integer.numberOfTrailingZeros(map);
+            high = 31 - Integer.numberOfLeadingZeros(map);
+        }
+        else
+        {
+            low = NO_DAY_ABOVE;
+            high = NO_DAY_BELOW;
+        }
+    }
+
+    public boolean match(int value)
+    {
+        update();
+        return low <= value && value <= high && (map & (1 << value)) != 0;
+    }
+
+    public int getNext(int value)
+    {
+        update();
+        if ( value >= high ) return NO_DAY_ABOVE; // return overflow (for any month)
+        if ( value < low ) return low;
+
+        return Integer.numberOfTrailingZeros(map & (-1 << (value + 1)));
+    }
+
+    public int getPrev(int value)
+    {
+        update();
+        if ( value <= low ) return NO_DAY_BELOW; // return overflow (for any month)
+        if ( value > high ) return high;
+
+        return 31 - Integer.numberOfLeadingZeros(map & ((1 << value) - 1));
+    }
+
+    public boolean hasNext(int value)
+    {
+        update();
+        return value < high;
+    }
+
+    public boolean hasPrev(int value)
+    {
+        update();
+        return value > low;
+    }
+
+    public int getLow()
+    {
+        update();
+        return low;
+    }
+
+    public int getHigh()
+    {
+        update();
+        return high;
+    }
+
+    public boolean isAbove(int value)
+    {
+        update();
+        return value > high;
+    }
+
+    public boolean isBelow(int value)
+    {
+        update();
+        return value < low;
+    }
+}
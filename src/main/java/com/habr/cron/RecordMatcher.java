@@ -0,0 +1,182 @@
+package com.habr.cron;
+
+/**
+ * Flyweight matcher of calendar element over the encoded record of {@link ScheduleStore}.
+ * The matcher keeps no values of its own: it's bound to the shared array and the offset of the element
+ * before the search, so one instance serves all schedules of the store.
+ *
+ * The element is encoded by the header word (see {@link #encode(DigitMatcher, long[], int)}):
+ * the low (bits 0-15) and the high (bits 16-31) allowed values, the step (bits 32-47) and the number of words
+ * of the bit map (bits 48-63). The values 'low, low + step, ..., high' are encoded without the bit map (a-b/n, *, a);
+ * other values are encoded by the bit map of the values low..high, which follows the header.
+ *
+ * Not thread safe (it's bound to the search of one thread).
+ *
+ * Difficulty:
+ *  matching one value - O(1)
+ *  find nearest value - O(1) for the steps, up to 157 words for the bit map of years
+ * Used memory:
+ *  8 bytes per element in the record, plus 8 bytes per 64 values of the bit map
+ */
+final class RecordMatcher implements DigitMatcher
+{
+    private final static int POWER = 6; // = log_2(64) for quick divide by 64
+    private final static int MASK = 63; // = 64 - 1, for quick divide by module 64
+
+    private long[] data;
+    private int map; // the offset of the bit map; the bit 0 is the low value
+    private int low; // minimal & maximal allowed values according the schedule
+    private int high;
+    private int step; // 0, if the values are kept in the bit map
+
+
+    /**
+     * Binds the matcher to the element of the record.
+     *
+     * @param data the shared array of records
+     * @param offset the offset of the header word of the element
+     * @return the offset of the next element of the record
+     */
+    public int bind(long[] data, int offset)
+    {
+        long header = data[offset];
+        int words = (int) (header >>> 48);
+
+        this.data = data;
+        map = offset + 1;
+        low = (int) (header & 0xFFFF);
+        high = (int) ((header >>> 16) & 0xFFFF);
+        step = words == 0 ? (int) ((header >>> 32) & 0xFFFF) : 0;
+
+        return offset + 1 + words;
+    }
+
+    /**
+     * Encodes the allowed values of the matcher.
+     *
+     * @param matcher the matcher of calendar element
+     * @param out the buffer of the record
+     * @param offset the offset of the header word in the buffer
+     * @return the offset of the next element of the record
+     */
+    public static int encode(DigitMatcher matcher, long[] out, int offset)
+    {
+        int low = matcher.getLow();
+        int high = matcher.getHigh();
+
+        if ( matcher instanceof ConstantMatcher || matcher instanceof IntervalMatcher || matcher instanceof SteppingMatcher )
+        {
+            int step = low < high ? matcher.getNext(low) - low : 1;
+            out[offset] = header(low, high, step, 0);
+            return offset + 1;
+        }
+
+        // other matchers: the allowed values are enumerated; the regular values are encoded by the step too
+        while ( low < high && !matcher.match(low) ) low++;
+        while ( high > low && !matcher.match(high) ) high--;
+
+        int step = 0;
+        boolean regular = true;
+        for (int value = low; value < high && regular; )
+        {
+            int next = matcher.getNext(value);
+            if ( step == 0 ) step = next - low;
+            regular = next - value == step;
+            value = next;
+        }
+
+        if ( regular )
+        {
+            out[offset] = header(low, high, Math.max(step, 1), 0);
+            return offset + 1;
+        }
+
+        int words = ((high - low) >> POWER) + 1;
+        for (int value = low; value <= high; value = matcher.getNext(value))
+        {
+            int v = value - low;
+            out[offset + 1 + (v >> POWER)] |= 1L << (v & MASK);
+
+            if ( !matcher.hasNext(value) ) break;
+        }
+
+        out[offset] = header(low, high, 0, words);
+        return offset + 1 + words;
+    }
+
+    private static long header(int low, int high, int step, int words)
+    {
+        return low | (long) high << 16 | (long) step << 32 | (long) words << 48;
+    }
+
+
+    public boolean match(int value)
+    {
+        if ( value < low || value > high ) return false;
+
+        int v = value - low;
+        if ( step != 0 ) return v % step == 0;
+
+        return (data[map + (v >> POWER)] & (1L << (v & MASK))) != 0;
+    }
+
+    public boolean isAbove(int value)
+    {
+        return value > high;
+    }
+
+    public boolean isBelow(int value)
+    {
+        return value < low;
+    }
+
+    public int getNext(int value)
+    {
+        if ( value < low ) return low; // edge value
+        if ( value >= high ) return value + 1; // out of bound
+
+        int v = value - low + 1;
+        if ( step != 0 ) return low + (v + step - 1) / step * step;
+
+        for (int word = v >> POWER; ; word++)
+        {
+            int bit = BitmapUtils.forwardScanBit(data[map + word], v - (word << POWER));
+            if ( bit < 64 ) return low + (word << POWER) + bit; // the high value is in the map
+        }
+    }
+
+    public int getPrev(int value)
+    {
+        if ( value > high ) return high; // edge value
+        if ( value <= low ) return value - 1; // out of bound
+
+        int v = value - low - 1;
+        if ( step != 0 ) return low + v / step * step;
+
+        for (int word = v >> POWER; ; word--)
+        {
+            int bit = BitmapUtils.backwardScanBit(data[map + word], v - (word << POWER));
+            if ( bit >= 0 ) return low + (word << POWER) + bit; // the low value is in the map
+        }
+    }
+
+    public boolean hasNext(int value)
+    {
+        return value < high;
+    }
+
+    public boolean hasPrev(int value)
+    {
+        return value > low;
+    }
+
+    public int getLow()
+    {
+        return low;
+    }
+
+    public int getHigh()
+    {
+        return high;
+    }
+}
@@ -1,7 +1,16 @@
 package com.habr.cron;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.Date;
-import java.util.TimeZone;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -13,7 +22,13 @@ import java.util.TimeZone;
  * The average time of event search is 400ns.
  * Thread-Safe. Unmodifiable.
  *
+ * By default, the schedule works in UTC. The schedule created with a time zone works in the local time
+ * of this zone: the local time skipped by the daylight saving transition is fired at the moment of transition,
+ * the local time repeated by the transition is fired only once, with the earlier offset.
+ *
  * Format of schedule:
+ *     yyyy.MM.dd w HH:mm:ss.fff.uuu.nnn    date, day of week, time with nanoseconds
+ *     HH:mm:ss.fff.uuu                     time only, with microseconds
  *     yyyy.MM.dd w HH:mm:ss.fff            date, day of week, time with milliseconds
  *     yyyy.MM.dd HH:mm:ss.fff              date & time with milliseconds
  *     HH:mm:ss.fff                         time only
@@ -21,7 +36,7 @@ import java.util.TimeZone;
  *     yyyy.MM.dd HH:mm:ss                  date & time
  *     HH:mm:ss                             time only
  * Where are:
- *     yyyy - year (2000-2100)
+ *     yyyy - year (0-9999). The steps of any year are counted from 2000: * /3 means 2000, 2003, 2006, ...
  *     MM - month (1-12)
  *     dd - day of month (1-31 or 32). The 32th means a last day of month.  означает последнее число месяца
  *     w - day of weed (0-6). 0 - sunday, 1 - monday, ... 6 - saturday
@@ -29,6 +44,8 @@ import java.util.TimeZone;
  *     mm - minutes (0-59)
  *     ss - seconds (0-59)
  *     fff - milliseconds (0-999). If not present, default is 0.
+ *     uuu - microseconds (0-999). If not present, default is 0.
+ *     nnn - nanoseconds (0-999). If not present, default is 0.
  * Each part of the date/time can be set as lists and ranges.
  * For example:
  *     1,2,3-5,10-20/3
@@ -47,8 +64,13 @@ import java.util.TimeZone;
  *     *.9.* /2 1-5 10:00:00.000 means exactly at 10:00 on all days from Mon. to Fri. on odd numbers in September
  *     *:00:00 means the beginning of any hour
  *     *.*.01 01:30:00 means exactly at 01:30 on the first days of each month
+ *     *:*:*.*.0-999/250 means four times in every millisecond
+ *
+ * The events inside the milliseconds are found by the methods with nanoseconds (see {@link #NextEventNanos(long)}).
+ * The methods with milliseconds see such schedule with milliseconds resolution:
+ * they find the milliseconds, in which the events happen.
  */
-public class Schedule implements Cron
+public class Schedule implements Cron, TemporalCron
 {
     private enum Direction { FORWARD, BACKWARD }
     private enum Equality { OR_EQUAL, NO_EQUAL }
@@ -58,7 +80,13 @@ public class Schedule implements Cron
         public final Direction direction;
         public final Equality equality;
 
-        public SearchMode(Direction direction, Equality equality) {
+        // all possible search modes; they are immutable, so we don't create them for every search
+        public static final SearchMode NEAREST = new SearchMode(Direction.FORWARD, Equality.OR_EQUAL);
+        public static final SearchMode NEAREST_PREV = new SearchMode(Direction.BACKWARD, Equality.OR_EQUAL);
+        public static final SearchMode NEXT = new SearchMode(Direction.FORWARD, Equality.NO_EQUAL);
+        public static final SearchMode PREV = new SearchMode(Direction.BACKWARD, Equality.NO_EQUAL);
+
+        private SearchMode(Direction direction, Equality equality) {
             this.direction = direction;
             this.equality = equality;
         }
@@ -92,334 +120,1046 @@ public class Schedule implements Cron
      */
     public Schedule(String schedule) throws ScheduleFormatException
     {
-        this.schedule = schedule;
+        this(schedule, (ZoneTransitions) null);
+    }
 
-        Parser parser = new Parser();
-        parser.parse(schedule);
+    /**
+     * Creates instance for specified schedule defined by any chars sequence (StringBuilder, CharBuffer, ...).
+     *
+     * @param schedule see format in class description.
+     * @throws ScheduleFormatException
+     */
+    public Schedule(CharSequence schedule) throws ScheduleFormatException
+    {
+        this(schedule == null ? null : schedule.toString());
+    }
 
-        ScheduleModel model = parser.getScheduleModel();
-        pool = new MatcherPool(model);
+    /**
+     * Creates instance for specified schedule in the part of buffer (ASCII chars), for example, read from a file.
+     *
+     * @param buffer the buffer
+     * @param offset the index of the first byte of schedule
+     * @param length the number of bytes of schedule
+     * @throws ScheduleFormatException
+     */
+    public Schedule(byte[] buffer, int offset, int length) throws ScheduleFormatException
+    {
+        this(new String(buffer, offset, length, StandardCharsets.US_ASCII));
     }
 
-    public Date NearestEvent(Date d) {
-        return findEvent(d, new SearchMode(Direction.FORWARD, Equality.OR_EQUAL));
+    /**
+     * Creates instance for specified schedule defined by string, which works in the local time of the zone.
+     *
+     * @param schedule see format in class description.
+     * @param zone the time zone of the schedule
+     * @throws ScheduleFormatException
+     */
+    public Schedule(String schedule, ZoneId zone) throws ScheduleFormatException
+    {
+        this(schedule, transitionsOf(zone));
     }
 
-    public Date NearestPrevEvent(Date d) {
-        return findEvent(d, new SearchMode(Direction.BACKWARD, Equality.OR_EQUAL));
+    private Schedule(String schedule, ZoneTransitions zone) throws ScheduleFormatException
+    {
+        this(schedule, new MatcherPool(parse(schedule)), zone);
     }
 
-    public Date NextEvent(Date d) {
-        return findEvent(d, new SearchMode(Direction.FORWARD, Equality.NO_EQUAL));
+    /**
+     * Creates instance, which shares the matchers with other schedules (see {@link ScheduleCache}).
+     *
+     * @param schedule the source schedule
+     * @param pool the matchers of the same schedule; unmodified
+     * @param zone the time zone of the schedule; null for UTC
+     */
+    Schedule(String schedule, MatcherPool pool, ZoneTransitions zone)
+    {
+        this(schedule, pool, zone, null);
     }
 
-    public Date PrevEvent(Date d) {
-        return findEvent(d, new SearchMode(Direction.BACKWARD, Equality.NO_EQUAL));
+    private Schedule(String schedule, MatcherPool pool, ZoneTransitions zone, ScheduleStats stats)
+    {
+        this.schedule = schedule;
+        this.pool = pool;
+        this.zone = zone;
+        this.stats = stats;
     }
 
+    /**
+     * Creates instance for the Quartz cron expression: 'sec min hour day-of-month month day-of-week [year]'
+     * (see {@link QuartzParser}). The expression is searched by the same matchers, as the own format.
+     *
+     * @param expression the Quartz cron expression, for example, '0 15 10 ? * 6L 2022-2025'
+     * @throws ScheduleFormatException
+     */
+    public static Schedule fromQuartz(String expression) throws ScheduleFormatException
+    {
+        return new Schedule(expression, new MatcherPool(parseQuartz(expression)), null);
+    }
 
+    /**
+     * Creates instance for the Quartz cron expression, which works in the local time of the zone.
+     *
+     * @param expression the Quartz cron expression
+     * @param zone the time zone of the schedule
+     * @throws ScheduleFormatException
+     */
+    public static Schedule fromQuartz(String expression, ZoneId zone) throws ScheduleFormatException
+    {
+        return new Schedule(expression, new MatcherPool(parseQuartz(expression)), transitionsOf(zone));
+    }
 
+    /**
+     * Creates instance for the Unix crontab schedule: 'min hour day-of-month month day-of-week' or the macro
+     * like '@daily' (see {@link CrontabParser}). When both the day of month and the day of week are restricted,
+     * the day is matched by any of them, as Vixie cron does.
+     *
+     * @param schedule the crontab schedule without the command, for example, '30 4 1,15 * 5'
+     * @throws ScheduleFormatException
+     */
+    public static Schedule fromCrontab(String schedule) throws ScheduleFormatException
+    {
+        return new Schedule(schedule, new MatcherPool(parseCrontab(schedule)), null);
+    }
 
     /**
-     * Create instance for quick serial generation events.
-     * Generator does not consume memory. Works faster. No memory leaks.
-     * Generator non thread safe and mutable. Don't cache generator.
+     * Creates instance for the Unix crontab schedule, which works in the local time of the zone.
      *
-     * @param start date to start serial
-     * @param forward direction mode; true - is forward, false - is backward.
-     * @return generator instance. Not thread safe.
-     * The outside process must work with generator with synchronized instruction.
+     * @param schedule the crontab schedule without the command
+     * @param zone the time zone of the schedule
+     * @throws ScheduleFormatException
      */
-    public ScheduleEventsGenerator getEventsGenerator(Date start, boolean forward)
+    public static Schedule fromCrontab(String schedule, ZoneId zone) throws ScheduleFormatException
     {
-        SearchMode mode = new SearchMode(forward ? Direction.FORWARD : Direction.BACKWARD, Equality.NO_EQUAL);
-        return new EventsGenerator(start, mode);
+        return new Schedule(schedule, new MatcherPool(parseCrontab(schedule)), transitionsOf(zone));
     }
 
+    static ScheduleModel parse(CharSequence schedule) throws ScheduleFormatException
+    {
+        Parser parser = new Parser();
+        parser.parse(schedule);
 
+        return parser.getScheduleModel();
+    }
 
+    static ScheduleModel parseQuartz(String expression) throws ScheduleFormatException
+    {
+        QuartzParser parser = new QuartzParser();
+        parser.parse(expression);
 
+        return parser.getScheduleModel();
+    }
 
+    static ScheduleModel parseCrontab(String schedule) throws ScheduleFormatException
+    {
+        CrontabParser parser = new CrontabParser();
+        parser.parse(schedule);
 
+        return parser.getScheduleModel();
+    }
 
-    private final MatcherPool pool; // pool of schedule's matchers
-    private static final TimeZone UTC = TimeZone.getTimeZone("UTC"); // default work timezone
+    static ZoneTransitions transitionsOf(ZoneId zone)
+    {
+        return ZoneOffset.UTC.equals(zone.normalized()) ? null : ZoneTransitions.of(zone);
+    }
 
     /**
-     * The main function of finding a date that meets the schedule and search mode.
-     * It works for a maximum of 8 checks (if no days of the week are specified).
-     * Days of the week can add a few more checks.
+     * The matchers of calendar elements are shared by all schedules (the same element and the same values).
      *
-     * @param date the start date of the search
-     * @param mode the search mode (direction and severity)
-     * @return suitable date for the conditions (can be equal to the original if mode.equality == OR_EQUAL)
-     * @throws IllegalStateException it is not possible to find a date that meets the schedule,
-     * for example, when a schedule of the form is set "20.01.02 10-20/2:*:*.*",
-     * and now it's 2021 and mode.direction == FORWARD.
+     * @return the number of the matchers requested by all schedules per the created one (1.0, if nothing is shared)
      */
-    private Date findEvent(Date date, SearchMode mode)
+    public static double getMatcherDedupRatio()
     {
-        GregCalendar calendar = new GregCalendar(date, UTC);
-        CalendarDigits digits = new CalendarDigits(pool, calendar, mode.toZero());
+        long created = MatcherFactory.getCreatedCount();
+        return created == 0 ? 1.0 : MatcherFactory.getRequestCount() / (double) created;
+    }
 
-        // skip date check, if not present in schedule
-        if ( pool.isAnyDate() ) digits.gotoHours();
+    /**
+     * @return the number of the matchers of calendar elements requested by all schedules
+     */
+    public static long getMatcherRequestCount()
+    {
+        return MatcherFactory.getRequestCount();
+    }
 
-        while ( isCanSearchDown(digits, calendar, mode.canEqual()) )
-        {
-            digits.next();
-        }
+    /**
+     * @return the number of the requests of matchers, which got the shared matcher
+     */
+    public static long getSharedMatcherCount()
+    {
+        return MatcherFactory.getRequestCount() - MatcherFactory.getCreatedCount();
+    }
 
-        return pool.isAnyWeekDay() ? calendar.asDate() : fixWeekDay(digits, calendar);
+    /**
+     * @return the time zone of the schedule
+     */
+    public ZoneId getZone()
+    {
+        return zone != null ? zone.getZone() : ZoneOffset.UTC;
     }
 
+    /**
+     * Creates the same schedule, which records the statistics of its searches (see {@link ScheduleStats}):
+     * the steps over the calendar digits, the carries between them, and the latency.
+     * If the runtime has Java Flight Recorder, the instrumented schedule emits the event 'com.habr.cron.Build',
+     * and its searches emit the event 'com.habr.cron.Search' (only the searches longer than 10 us, by default).
+     * The source schedule is not changed, and its searches cost the same as before.
+     *
+     * @return new schedule with the same matchers, string and time zone, and with its own statistics
+     */
+    public Schedule instrument()
+    {
+        if ( FlightRecorderEvents.Probe.AVAILABLE ) FlightRecorderEvents.commitBuild(schedule, pool.isIndexedDays());
+
+        return new Schedule(schedule, pool, zone, new ScheduleStats());
+    }
 
     /**
-     * Makes events generator.
+     * Creates the same schedule without the excluded days of the calendar (holidays, maintenance windows, ...).
+     * The days are removed from the index of the matched days, so the search skips them inside the date search,
+     * as well as countEvents and the generators. The calls can be chained: the calendars are united.
+     *
+     * @param holidays the excluded days
+     * @return new schedule with the same matchers, string, time zone and statistics
      */
-    private final class EventsGenerator implements ScheduleEventsGenerator
+    public Schedule excluding(HolidayCalendar holidays)
     {
-        // mutable objects
-        private final GregCalendar calendar;
-        private final CalendarDigits digits;
-        private Date date;
-        boolean fix;
+        if ( holidays == null ) throw new IllegalArgumentException("The calendar MUST NOT be null.");
 
-        public EventsGenerator(Date start, SearchMode mode)
-        {
-            calendar = new GregCalendar(start, UTC);
-            digits = new CalendarDigits(pool, calendar, mode.toZero());
-            fix = pool.isAnyWeekDay();
-            date = start;
+        return new Schedule(schedule, pool.excluding(holidays), zone, stats);
+    }
 
-            while ( isCanSearchDown(digits, calendar, mode.canEqual()) )
-            {
-                digits.next();
-            }
+    /**
+     * @return the statistics of the searches; null, if the schedule is not instrumented (see {@link #instrument()})
+     */
+    public ScheduleStats getStats()
+    {
+        return stats;
+    }
 
-            // don't do it; next() calls it first
-            // fixWeekDay(digits, calendar);
-        }
+    /**
+     * @return the matchers of the schedule; can be shared by the equivalent schedules
+     */
+    MatcherPool getMatcherPool()
+    {
+        return pool;
+    }
 
-        public Date last()
-        {
-            return date;
-        } // for first call returns 'start'
+    /**
+     * Finds the digit of the runs of events, which cover the events of the base schedule (see {@link EventRuns}).
+     *
+     * @param base the schedule, whose events are excluded by this one; null, if the base is not a schedule
+     * @return the digit of the runs; {@link EventRuns#NONE}, if the difference can't jump over the runs
+     */
+    int getRunDigit(Schedule base)
+    {
+        if ( zone != null && !zone.isFixed() ) return EventRuns.NONE; // the local time may repeat
 
-        public Date next()
-        {
-            date = fix ? calendar.asDate() : fixWeekDay(digits, calendar); // fix date for previous result
+        boolean sameZone = base != null && getZone().equals(base.getZone());
+        return EventRuns.getRunDigit(pool.getMatchersForSchedule(),
+                sameZone ? base.pool.getMatchersForSchedule() : null);
+    }
 
-            // prepare to calculate the next result
-            digits.gotoLastDigit();
-            digits.increment();
+    /**
+     * Searches the next non-event: the nearest unit of the digit without events of the schedule.
+     *
+     * @param timestamp the event of the schedule (milliseconds since 1 Jan 1970, UTC)
+     * @param digit the digit of the runs (see {@link #getRunDigit(Schedule)})
+     * @param forward the direction of search
+     * @return the start of the unit without events (forward), or its last millisecond (backward)
+     * @throws IllegalStateException if the schedule has events till the bound of years
+     */
+    long skipRun(long timestamp, int digit, boolean forward)
+    {
+        int offset = zone != null ? zone.getOffset(timestamp) : 0;
+        return EventRuns.skipRun(pool, timestamp + offset, digit, forward) - offset;
+    }
 
-            return date; // return fixed previous result
-        }
+    public Date NearestEvent(Date d) {
+        return new Date(NearestEvent(d.getTime()));
+    }
 
-        public String schedule()
-        {
-            return schedule;
-        }
+    public Date NearestPrevEvent(Date d) {
+        return new Date(NearestPrevEvent(d.getTime()));
+    }
 
-        @Override
-        public String toString() {
-            return schedule;
-        }
+    public Date NextEvent(Date d) {
+        return new Date(NextEvent(d.getTime()));
+    }
+
+    public Date PrevEvent(Date d) {
+        return new Date(PrevEvent(d.getTime()));
+    }
+
+    public long NearestEvent(long timestamp) {
+        return findEvent(timestamp, SearchMode.NEAREST, CONTEXT.get());
+    }
+
+    public long NearestPrevEvent(long timestamp) {
+        return findEvent(timestamp, SearchMode.NEAREST_PREV, CONTEXT.get());
+    }
+
+    public long NextEvent(long timestamp) {
+        return findEvent(timestamp, SearchMode.NEXT, CONTEXT.get());
+    }
+
+    public long PrevEvent(long timestamp) {
+        return findEvent(timestamp, SearchMode.PREV, CONTEXT.get());
+    }
+
+
+    /*
+     * The same searches with nanoseconds resolution.
+     * The time is in nanoseconds since 1 Jan 1970 (UTC), so it's limited by years 1677-2262.
+     * They throw ArithmeticException, if the found event is out of these years.
+     */
+
+    public long NearestEventNanos(long epochNanos) {
+        return findEventNanos(epochNanos, SearchMode.NEAREST, CONTEXT.get());
+    }
+
+    public long NearestPrevEventNanos(long epochNanos) {
+        return findEventNanos(epochNanos, SearchMode.NEAREST_PREV, CONTEXT.get());
+    }
+
+    public long NextEventNanos(long epochNanos) {
+        return findEventNanos(epochNanos, SearchMode.NEXT, CONTEXT.get());
+    }
+
+    public long PrevEventNanos(long epochNanos) {
+        return findEventNanos(epochNanos, SearchMode.PREV, CONTEXT.get());
+    }
+
+
+    /*
+     * The same searches for the java.time types (see TemporalCron), with nanoseconds resolution.
+     */
+
+    public Instant NearestEvent(Instant instant) {
+        return findInstant(instant.getEpochSecond(), instant.getNano(), SearchMode.NEAREST, CONTEXT.get());
+    }
+
+    public Instant NearestPrevEvent(Instant instant) {
+        return findInstant(instant.getEpochSecond(), instant.getNano(), SearchMode.NEAREST_PREV, CONTEXT.get());
+    }
+
+    public Instant NextEvent(Instant instant) {
+        return findInstant(instant.getEpochSecond(), instant.getNano(), SearchMode.NEXT, CONTEXT.get());
+    }
+
+    public Instant PrevEvent(Instant instant) {
+        return findInstant(instant.getEpochSecond(), instant.getNano(), SearchMode.PREV, CONTEXT.get());
+    }
+
+    public LocalDateTime NearestEvent(LocalDateTime time) {
+        return findLocalDateTime(time, SearchMode.NEAREST, CONTEXT.get());
+    }
+
+    public LocalDateTime NearestPrevEvent(LocalDateTime time) {
+        return findLocalDateTime(time, SearchMode.NEAREST_PREV, CONTEXT.get());
+    }
+
+    public LocalDateTime NextEvent(LocalDateTime time) {
+        return findLocalDateTime(time, SearchMode.NEXT, CONTEXT.get());
+    }
+
+    public LocalDateTime PrevEvent(LocalDateTime time) {
+        return findLocalDateTime(time, SearchMode.PREV, CONTEXT.get());
+    }
+
+    public ZonedDateTime NearestEvent(ZonedDateTime time) {
+        return findInstant(time.toEpochSecond(), time.getNano(), SearchMode.NEAREST, CONTEXT.get()).atZone(time.getZone());
+    }
+
+    public ZonedDateTime NearestPrevEvent(ZonedDateTime time) {
+        return findInstant(time.toEpochSecond(), time.getNano(), SearchMode.NEAREST_PREV, CONTEXT.get()).atZone(time.getZone());
+    }
+
+    public ZonedDateTime NextEvent(ZonedDateTime time) {
+        return findInstant(time.toEpochSecond(), time.getNano(), SearchMode.NEXT, CONTEXT.get()).atZone(time.getZone());
+    }
+
+    public ZonedDateTime PrevEvent(ZonedDateTime time) {
+        return findInstant(time.toEpochSecond(), time.getNano(), SearchMode.PREV, CONTEXT.get()).atZone(time.getZone());
+    }
+
+
+    /*
+     * The same searches with the context supplied by the caller.
+     * The context MUST NOT be shared between threads.
+     */
+
+    public long NearestEvent(long timestamp, SearchContext context) {
+        return findEvent(timestamp, SearchMode.NEAREST, context);
+    }
+
+    public long NearestPrevEvent(long timestamp, SearchContext context) {
+        return findEvent(timestamp, SearchMode.NEAREST_PREV, context);
+    }
+
+    public long NextEvent(long timestamp, SearchContext context) {
+        return findEvent(timestamp, SearchMode.NEXT, context);
+    }
+
+    public long PrevEvent(long timestamp, SearchContext context) {
+        return findEvent(timestamp, SearchMode.PREV, context);
     }
 
+
+
+
     /**
-     * Implements a direct search for the nearest date from a given date in the schedule.
+     * Counts the events of the schedule in the interval without enumerating them.
+     * The time of counting doesn't depend on the number of events.
      *
-     * @param digit digits of calendar
-     * @return false, if you can not continue further and an unambiguous result is obtained
-     *         true, if you need to go down to a lower level
+     * @param from the begin of interval, inclusive (milliseconds since 1 Jan 1970, UTC)
+     * @param to the end of interval, exclusive (milliseconds since 1 Jan 1970, UTC)
+     * @return the number of events in [from, to); 0 for empty interval
+     * @throws ArithmeticException if the number of events inside the milliseconds overflows long
+     */
+    public long countEvents(long from, long to)
+    {
+        return countEvents(from, to, false);
+    }
+
+    /**
+     * Counts the events of the schedule, as they are seen with milliseconds resolution
+     * (by {@link #NextEvent(long)} or by the generators in milliseconds): the milliseconds, which have events.
      *
-     * @throws IllegalStateException if the current date is out of the range of acceptable values
-     * and we have no more options that we could offer.
+     * @param from the begin of interval, inclusive (milliseconds since 1 Jan 1970, UTC)
+     * @param to the end of interval, exclusive (milliseconds since 1 Jan 1970, UTC)
+     * @return the number of milliseconds with events in [from, to)
      */
-    private boolean isCanSearchDown(CalendarDigits digit, GregCalendar calendar, boolean canEqual)
+    long countMilliseconds(long from, long to)
     {
-        int value = digit.getValue();
+        return countEvents(from, to, true);
+    }
 
-        if ( digit.isBelow(value) ) // the current value of the element is less than the allowed lower limit
-        {
-            digit.initialize();
-            return false;
-        }
+    /**
+     * @param millis true, if the milliseconds with events are counted, instead of the events inside them
+     */
+    private long countEvents(long from, long to, boolean millis)
+    {
+        EventsCounter counter = this.counter;
+        if ( counter == null ) this.counter = counter = new EventsCounter(pool); // it's unmodified; races are harmless
 
-        if ( digit.isAbove(value) ) // the current value of the element is above the allowed upper limit
+        if ( zone == null ) return count(counter, from, to, millis);
+
+        if ( zone.isFixed() )
         {
-            digit.prev(); // for YEAR throws IllegalStateException
-            digit.increment();
-            return false;
+            int offset = zone.getOffset(from);
+            return count(counter, from + offset, to + offset, millis);
         }
 
-        // the current value is within the boundaries
-        if ( digit.match(value) && calendar.isCorrect() ) // if the item matches the schedule
+        long result = 0;
+        while ( from < to ) // by the intervals with the constant offset
         {
-            boolean isLast = digit.isLast();
+            long end = Math.min(zone.nextTransition(from), to);
+            int offset = zone.getOffset(from);
+            int before = zone.getOffset(from - 1);
+            long local = from + offset;
+
+            long repeatedEnd = zone.getRepeatedEnd(from);
+            if ( repeatedEnd != ZoneTransitions.NONE )
+                local = repeatedEnd; // the repeated local times were already fired with the earlier offset
 
-            // we end the search if this is the last element and we are allowed to return the exact equivalent
-            if ( isLast && canEqual ) return false;
+            else if ( before < offset ) // the moment of the gap; the skipped local times are fired only once now
+            {
+                if ( counter.countMillis(from + before, local + 1) > 0 ) result++;
+                local++;
+            }
 
-            // if this is not the last level, let's go down below
-            if ( !isLast ) return true;
+            result += count(counter, local, end + offset, millis);
+            from = end;
         }
+        return result;
+    }
 
-        digit.increment();
-        return false; // search is complete
+    private static long count(EventsCounter counter, long from, long to, boolean millis)
+    {
+        return millis ? counter.countMillis(from, to) : counter.count(from, to);
     }
 
 
 
+
+    /**
+     * Stream of the events in the interval; the stream is sequential, but it can be made parallel:
+     * the interval is split on the calendar boundaries, and each part is generated independently.
+     * The size of the stream is exact for the schedule with milliseconds resolution.
+     *
+     * @param from the begin of interval, inclusive (milliseconds since 1 Jan 1970, UTC)
+     * @param to the end of interval, exclusive (milliseconds since 1 Jan 1970, UTC)
+     * @return the ordered stream of the timestamps of events (milliseconds since 1 Jan 1970, UTC)
+     */
+    public LongStream events(long from, long to)
+    {
+        return StreamSupport.longStream(new EventsSpliterator(this, from, to, !pool.isHighResolution()), false);
+    }
+
     /**
-     * Corrects the found date in accordance with the restrictions set by the acceptable days of the week.
+     * Stream of the events in the interval (see {@link #events(long, long)}).
      *
-     * @param digits digits of calendar
-     * @return fixed date
-     * @throws IllegalStateException if a suitable date cannot be found in the schedule
+     * @param from the begin of interval, inclusive
+     * @param to the end of interval, exclusive
+     * @return the ordered stream of the moments of events (with milliseconds resolution)
      */
-    private Date fixWeekDay(CalendarDigits digits, GregCalendar calendar)
+    public Stream<Instant> events(Instant from, Instant to)
     {
-        DaysMap weekMap = pool.getWeekDaysMap();
-        if ( !weekMap.contains(calendar.getDayOfWeek()) )
+        return events(ceilMillis(from), ceilMillis(to)).mapToObj(new LongFunction<Instant>()
         {
-            findBestDate(digits, calendar, weekMap);
+            public Instant apply(long event)
+            {
+                return Instant.ofEpochMilli(event);
+            }
+        });
+    }
 
-            digits.gotoHours();
-            digits.initialize();
-        }
-        return calendar.asDate();
+    /**
+     * @return the first millisecond not before the moment
+     */
+    private static long ceilMillis(Instant instant)
+    {
+        long millis = instant.toEpochMilli();
+        return instant.getNano() % NANOS_IN_MILLI != 0 ? millis + 1 : millis;
     }
 
 
 
 
+    /**
+     * Create instance for quick serial generation events.
+     * Generator does not consume memory. Works faster. No memory leaks.
+     * Generator non thread safe and mutable. Don't cache generator.
+     *
+     * @param start date to start serial
+     * @param forward direction mode; true - is forward, false - is backward.
+     * @return generator instance. Not thread safe.
+     * The outside process must work with generator with synchronized instruction.
+     */
+    public ScheduleEventsGenerator getEventsGenerator(Date start, boolean forward)
+    {
+        return getEventsGenerator(start.getTime(), forward);
+    }
 
-    private void findBestDate(CalendarDigits digits, GregCalendar calendar, DaysMap weekMap)
+    /**
+     * Create instance for quick serial generation events (see {@link #getEventsGenerator(Date, boolean)}).
+     *
+     * @param start timestamp to start serial (milliseconds since 1 Jan 1970, UTC)
+     * @param forward direction mode; true - is forward, false - is backward.
+     * @return generator instance. Not thread safe.
+     */
+    public ScheduleEventsGenerator getEventsGenerator(long start, boolean forward)
     {
-        do
-        {
-            // find a day in the month that corresponds to the schedule of days of the week
-            if ( findBestDay(digits, calendar, weekMap) ) break;
+        return new EventsGenerator(start, 0, false, forward ? SearchMode.NEXT : SearchMode.PREV);
+    }
 
-            // find a month in the year that exactly contains at least one day that falls on the selected days of the week
-            if ( !findBestMonth(digits, calendar, weekMap, false) )
-            {
-                // find the next year that exactly contains at least one day that falls on the selected days of the week
-                findBestYear(digits, calendar, weekMap);
+    /**
+     * Create instance for quick serial generation events with nanoseconds resolution.
+     * The {@link ScheduleEventsGenerator#fill} of the generator works in nanoseconds since 1 Jan 1970 (UTC);
+     * {@link ScheduleEventsGenerator#next()} returns the date of the millisecond of event.
+     *
+     * @param startNanos time to start serial (nanoseconds since 1 Jan 1970, UTC)
+     * @param forward direction mode; true - is forward, false - is backward.
+     * @return generator instance. Not thread safe.
+     */
+    public ScheduleEventsGenerator getEventsGeneratorNanos(long startNanos, boolean forward)
+    {
+        long start = Math.floorDiv(startNanos, NANOS_IN_MILLI);
+        int fraction = (int) Math.floorMod(startNanos, NANOS_IN_MILLI);
 
-                // find a month in the next year that exactly contains at least one day that falls on the selected days of the week
-                findBestMonth(digits, calendar, weekMap, true);
-            }
-            /*
-            There may be a situation where findBestMonth has found a suitable month,
-            but the resetDate() automatically moved to another month,
-            because it takes into account the schedule and overflows.
-            And in the new month there are no dates falling on the selected days of the week.
-            Therefore, we are forced to repeat the cycle again.
-            In other words, this cycle can be performed more than 2 times (in extremely rare cases).
-            */
+        return new EventsGenerator(start, fraction, true, forward ? SearchMode.NEXT : SearchMode.PREV);
+    }
+
+
+
+
+
+
+
+    private final MatcherPool pool; // pool of schedule's matchers
+    private final ZoneTransitions zone; // time zone of schedule; null for UTC
+    private final ScheduleStats stats; // null, if the schedule is not instrumented
+    private volatile EventsCounter counter; // created by the first counting
+
+    private static final long NANOS_IN_MILLI = 1000000L;
+
+    /**
+     * The search context of the current thread; shared by all schedules.
+     */
+    private static final ThreadLocal<SearchContext> CONTEXT = new ThreadLocal<SearchContext>()
+    {
+        @Override
+        protected SearchContext initialValue()
+        {
+            return new SearchContext();
         }
-        while ( true ); // until we get an IllegalStateException when searching for the year
+    };
+
+    /**
+     * Finds the event in the time zone of the schedule with milliseconds resolution.
+     *
+     * @see #findEvent(long, int, boolean, SearchMode, SearchContext)
+     */
+    private long findEvent(long timestamp, SearchMode mode, SearchContext context)
+    {
+        return findEvent(timestamp, 0, false, mode, context);
     }
 
+    /**
+     * Finds the event in the time zone of the schedule with nanoseconds resolution.
+     *
+     * @param epochNanos the start time of the search (nanoseconds since 1 Jan 1970, UTC)
+     * @return suitable time for the conditions (nanoseconds since 1 Jan 1970, UTC)
+     * @throws ArithmeticException if the event is out of range of the nanoseconds time
+     */
+    private long findEventNanos(long epochNanos, SearchMode mode, SearchContext context)
+    {
+        long timestamp = Math.floorDiv(epochNanos, NANOS_IN_MILLI);
+        int fraction = (int) Math.floorMod(epochNanos, NANOS_IN_MILLI);
 
-    private void findBestYear(CalendarDigits digits, GregCalendar calendar, DaysMap weekMap)
+        long event = findEvent(timestamp, fraction, true, mode, context);
+        return Math.addExact(Math.multiplyExact(event, NANOS_IN_MILLI), context.fraction);
+    }
+
+    /**
+     * Finds the event in the time zone of the schedule with nanoseconds resolution.
+     *
+     * @param seconds the start time of the search (seconds since 1 Jan 1970, UTC)
+     * @param nanos the nanoseconds of the second
+     * @return suitable time for the conditions
+     */
+    private Instant findInstant(long seconds, int nanos, SearchMode mode, SearchContext context)
     {
-        byte ly = pool.getLeapYearMap().getMap();
-        byte ny = pool.getNormalYearMap().getMap();
-        int year = calendar.year;
-        byte ym;
+        long timestamp = Math.addExact(Math.multiplyExact(seconds, 1000L), nanos / NANOS_IN_MILLI);
 
-        digits.gotoYear();
-        do
-        {
-            if ( !digits.hasNext(year) )
-                throw new IllegalStateException("Out of schedule interval"); // we went beyond the schedule
+        long event = findEvent(timestamp, (int) (nanos % NANOS_IN_MILLI), true, mode, context);
+        return Instant.ofEpochSecond(Math.floorDiv(event, 1000L),
+                Math.floorMod(event, 1000L) * NANOS_IN_MILLI + context.fraction);
+    }
 
-            year = digits.getNext(year);
-            byte yearMap = GregCalendar.isLeap(year) == 1 ? ly : ny;
-            ym = DaysMap.rollMapByYear(yearMap, year);
+    /**
+     * Finds the event in the local time of the schedule with nanoseconds resolution.
+     * The calendar is set by the fields of the time, without the conversion to the timestamp and back.
+     *
+     * @param time the start time of the search (in the local time)
+     * @return suitable local time for the conditions
+     */
+    private LocalDateTime findLocalDateTime(LocalDateTime time, SearchMode mode, SearchContext context)
+    {
+        GregCalendar calendar = context.calendar;
+        calendar.setLocalDateTime(time);
+
+        boolean precise = pool.isHighResolution();
+        if ( !precise && calendar.getFraction() != 0 )
+        {
+            // the events are only at the start of milliseconds; the search in milliseconds is enough
+            mode = lowerMode(mode);
+            calendar.setFraction(0);
         }
-        while ( !weekMap.intersects(ym) );
 
-        calendar.year = year;
-        digits.gotoMonth();
-        digits.resetDate(); // here sometimes it can be calendar.year != year
-        // this is not a problem, because the findBestDate() will correct this in a loop
+        findCalendarEvent(precise, mode, context);
+        return calendar.toLocalDateTime();
     }
 
+    /**
+     * The start time inside a millisecond is between the events of the schedule without fractions of milliseconds,
+     * so the search from the start of this millisecond must not return it for the forward search,
+     * and may return it for the backward search.
+     *
+     * @param mode the search mode from the time inside the millisecond
+     * @return the search mode from the start of this millisecond
+     */
+    private static SearchMode lowerMode(SearchMode mode)
+    {
+        return mode.toZero() ? SearchMode.NEXT : SearchMode.NEAREST_PREV;
+    }
 
-    private boolean findBestMonth(CalendarDigits digits, GregCalendar calendar, DaysMap weekMap, boolean repeat)
+    /**
+     * Finds the event in the time zone of the schedule.
+     *
+     * @param timestamp the start date of the search (milliseconds since 1 Jan 1970, UTC)
+     * @param fraction the nanoseconds of the start millisecond; 0 for the search with milliseconds resolution
+     * @param precise true, if the events are searched inside the milliseconds too
+     * @param mode the search mode (direction and severity)
+     * @param context the reusable calendar and digits; must not be used by another thread at the same time;
+     *                receives the nanoseconds of the millisecond of the found event
+     * @return suitable date for the conditions (milliseconds since 1 Jan 1970, UTC)
+     */
+    private long findEvent(long timestamp, int fraction, boolean precise, SearchMode mode, SearchContext context)
     {
-        boolean isLeap = calendar.isLeap();
-        int month = calendar.month;
+        if ( precise && !pool.isHighResolution() )
+        {
+            // the events are only at the start of milliseconds; the search in milliseconds is enough
+            if ( fraction != 0 ) mode = lowerMode(mode);
+            fraction = 0;
+            precise = false;
+        }
+
+        if ( zone == null ) return findLocalEvent(timestamp, fraction, precise, mode, context);
 
-        byte janMap = DaysMap.rollMapByYear(pool.getMonthDaysMap().getMap(), calendar.year);
-        byte mm = DaysMap.rollMapByMonth(janMap, month, isLeap);
+        if ( zone.isFixed() )
+        {
+            int offset = zone.getOffset(timestamp);
+            return findLocalEvent(timestamp + offset, fraction, precise, mode, context) - offset;
+        }
 
-        digits.gotoMonth();
+        long local;
+        int localFraction = fraction;
+        SearchMode localMode = mode;
 
-        // the 'repeat' suppresses the check for 'intersects' in the first iteration of the loop
-        // when we need to start the search from the current calendar value, repeat = false
-        // when we need to start the search strictly from the beginning of the year, then repeat = true
-        while ( !(repeat && weekMap.intersects(mm)) )
+        long repeatedEnd = zone.getRepeatedEnd(timestamp);
+        if ( repeatedEnd != ZoneTransitions.NONE )
+        {
+            // the repeated local time was already passed with the earlier offset; search from the end of overlap
+            local = repeatedEnd;
+            localFraction = 0;
+            localMode = mode.toZero() ? SearchMode.NEAREST : SearchMode.PREV;
+        }
+        else
         {
-            if ( !digits.hasNext(month) ) return false;
+            local = zone.toLocal(timestamp);
+
+            if ( mode.toZero() && mode.canEqual() )
+            {
+                long gapStart = zone.getGapStart(local - 1);
+                if ( gapStart != ZoneTransitions.NONE )
+                {
+                    local = gapStart; // it's the moment of transition; the skipped local times are fired at it
+                    localFraction = 0;
+                }
+            }
+        }
 
-            month = digits.getNext(month);
-            mm = DaysMap.rollMapByMonth(janMap, month, isLeap);
+        long event = findLocalEvent(local, localFraction, precise, localMode, context);
+        long result = zone.toInstant(event);
 
-            repeat = true; // now you can do a check intersects
+        if ( precise && zone.getGapStart(event) != ZoneTransitions.NONE )
+            context.fraction = 0; // the skipped local times are fired exactly at the moment of transition
+
+        if ( !mode.toZero() && (result > timestamp || result == timestamp &&
+                (context.fraction > fraction || context.fraction == fraction && !mode.canEqual())) )
+        {
+            // the event is in the gap and it was moved to the moment of transition; search before the gap
+            event = findLocalEvent(zone.getGapStart(event), 0, precise, SearchMode.PREV, context);
+            result = zone.toInstant(event);
         }
 
-        calendar.month = month;
-        digits.gotoDay();
-        digits.resetDate(); // here sometimes it can be calendar.month != month
-        return true; // this is not a problem, because the findBestDate() will correct this in a loop
+        return result;
     }
 
 
-    private boolean findBestDay(CalendarDigits digits, GregCalendar calendar, DaysMap weekMap)
+    /**
+     * The main function of finding a date that meets the schedule and search mode.
+     * It works for a maximum of 8 checks (if no days of the week are specified).
+     * The days of the week are matched with the days of month by the index of days (see {@link DaysIndex}),
+     * the months without such days are skipped one by one.
+     *
+     * @param timestamp the start date of the search (milliseconds since 1 Jan 1970, in the local time)
+     * @param fraction the nanoseconds of the start millisecond
+     * @param precise true, if the microseconds and nanoseconds are searched too
+     * @param mode the search mode (direction and severity)
+     * @param context the reusable calendar and digits; must not be used by another thread at the same time;
+     *                receives the nanoseconds of the millisecond of the found event
+     * @return suitable date for the conditions (can be equal to the original if mode.equality == OR_EQUAL)
+     * @throws IllegalStateException it is not possible to find a date that meets the schedule,
+     * for example, when a schedule of the form is set "20.01.02 10-20/2:*:*.*",
+     * and now it's 2021 and mode.direction == FORWARD.
+     */
+    private long findLocalEvent(long timestamp, int fraction, boolean precise, SearchMode mode, SearchContext context)
     {
-        int day = calendar.day;
-        byte dm = (byte)(1 << calendar.getDayOfWeek());
+        GregCalendar calendar = context.calendar;
+        calendar.setTimestamp(timestamp);
+        calendar.setFraction(fraction);
 
-        digits.gotoDay();
+        findCalendarEvent(precise, mode, context);
 
-        while ( !weekMap.intersects(dm) )
+        context.fraction = calendar.getFraction();
+        return calendar.asTimestamp();
+    }
+
+    /**
+     * Moves the calendar of the context to the event, which meets the schedule and search mode.
+     * The calendar of the context MUST be set to the start date of the search.
+     *
+     * @throws IllegalStateException it is not possible to find a date that meets the schedule
+     */
+    private void findCalendarEvent(boolean precise, SearchMode mode, SearchContext context)
+    {
+        if ( stats != null )
         {
-            if ( !digits.hasNext(day) ) return false;
+            findInstrumented(precise, mode, context);
+            return;
+        }
+
+        CalendarDigits digits = mode.toZero() ? context.forward : context.backward;
+        digits.reset(pool, precise);
+
+        // skip date check, if not present in schedule
+        if ( pool.isAnyDate() && pool.isAnyWeekDay() ) digits.gotoHours();
+
+        if ( mode.toZero() )
+            context.forward.search(mode.canEqual());
+        else
+            context.backward.search(mode.canEqual());
+    }
+
+    /**
+     * The same search as {@link #findCalendarEvent}, which records the statistics and the event of JFR.
+     * The steps are counted by its own loop, and the carries by the counting steps of the digits,
+     * so the plain search doesn't count anything.
+     */
+    private void findInstrumented(boolean precise, SearchMode mode, SearchContext context)
+    {
+        CalendarDigits digits = mode.toZero() ? context.forward : context.backward;
+        digits.reset(pool, precise);
+
+        // skip date check, if not present in schedule
+        if ( pool.isAnyDate() && pool.isAnyWeekDay() ) digits.gotoHours();
 
-            int next = digits.getNext(day);
-            int shift;
-            if ( digits.toZero )
+        Object event = FlightRecorderEvents.Probe.AVAILABLE ? FlightRecorderEvents.beginSearch() : null;
+
+        long start = System.nanoTime();
+        int carries = digits.carries;
+        int steps = 0;
+        boolean failed = true;
+        try
+        {
+            while ( digits.isCanSearchDownCounting(mode.canEqual()) )
             {
-                shift = next - day;
+                digits.next();
+                steps++;
             }
-            else
+            failed = false;
+        }
+        finally
+        {
+            carries = digits.carries - carries;
+            stats.record(steps, carries, System.nanoTime() - start, failed);
+
+            if ( event != null )
+                FlightRecorderEvents.commitSearch(event, schedule, mode.toZero(), steps, carries, failed);
+        }
+    }
+
+    /**
+     * Makes events generator.
+     */
+    private final class EventsGenerator implements ScheduleEventsGenerator
+    {
+        // mutable objects
+        private final GregCalendar calendar;
+        private final CalendarDigits digits;
+        private final boolean forward;
+        private final boolean precise; // the events are in nanoseconds; otherwise, in milliseconds
+        private long last;
+        private boolean exhausted; // the schedule has no more events
+
+        public EventsGenerator(long start, int fraction, boolean precise, SearchMode mode)
+        {
+            boolean canEqual = mode.canEqual();
+            long local = start;
+
+            if ( zone != null )
             {
-                shift = 7 - (day - next) % 7; // reverse to roll '>>'
+                long repeatedEnd = zone.getRepeatedEnd(start);
+                if ( repeatedEnd != ZoneTransitions.NONE )
+                {
+                    local = repeatedEnd; // the repeated local time was already passed with the earlier offset
+                    fraction = 0;
+                    canEqual = mode.toZero();
+                }
+                else
+                    local = zone.toLocal(start);
             }
-            dm = DaysMap.rollWeekMap(dm, shift);
-            day = next;
+
+            calendar = new GregCalendar(local);
+            calendar.setFraction(fraction);
+            digits = CalendarDigits.create(pool, calendar, mode.toZero(), precise);
+            forward = mode.toZero();
+            this.precise = precise;
+            last = precise ? start * NANOS_IN_MILLI + fraction : start;
+
+            digits.search(canEqual);
         }
 
-        calendar.day = day;
-        return true;
-    }
+        public Date last()
+        {
+            return new Date(precise ? Math.floorDiv(last, NANOS_IN_MILLI) : last);
+        } // for first call returns 'start'
+
+        public Date next()
+        {
+            long event = nextTimestamp();
+            return new Date(precise ? Math.floorDiv(event, NANOS_IN_MILLI) : event);
+        }
+
+        private long nextTimestamp()
+        {
+            if ( exhausted ) throw new IllegalStateException("Out of schedule interval");
+
+            long event;
+            try
+            {
+                do
+                {
+                    long local = calendar.asTimestamp();
+                    event = zone != null ? zone.toInstant(local) : local;
+
+                    if ( precise )
+                    {
+                        if ( skipGap(local) ) // the skipped local times are fired exactly at the moment of transition
+                        {
+                            event *= NANOS_IN_MILLI;
+                            continue;
+                        }
+                        event = event * NANOS_IN_MILLI + calendar.getFraction();
+                    }
+
+                    // prepare to calculate the next result
+                    digits.gotoLastDigit();
+                    digits.increment();
+                }
+                // the local times in the gap are moved to the same moment; skip the duplicates
+                while ( zone != null && (forward ? event <= last : event >= last) );
+            }
+            catch (IllegalStateException e)
+            {
+                exhausted = true;
+                throw e;
+            }
 
+            return last = event; // return fixed previous result
+        }
 
+        public int fill(long[] out, int offset, int max, long until)
+        {
+            if ( precise ) return fillNanos(out, offset, max, until);
 
+            int count = 0;
+            try
+            {
+                while ( count < max && !exhausted )
+                {
+                    long second = calendar.asTimestamp() - calendar.milliseconds;
+                    boolean stepped;
+
+                    do // the events inside one second differ only by milliseconds; the date is not recalculated
+                    {
+                        long event = second + calendar.milliseconds;
+                        if ( zone != null ) event = zone.toInstant(event);
+
+                        if ( forward ? event > until : event < until ) return count; // it stays pending
+
+                        // the local times in the gap are moved to the same moment; skip the duplicates
+                        if ( zone == null || (forward ? event > last : event < last) )
+                            out[offset + count++] = last = event;
+
+                        stepped = digits.incrementLastDigit();
+                    }
+                    while ( stepped && count < max );
+
+                    if ( !stepped ) // the milliseconds are over; go to the next second, minute, ...
+                    {
+                        digits.gotoLastDigit();
+                        digits.increment();
+                    }
+                }
+            }
+            catch (IllegalStateException e)
+            {
+                exhausted = true; // the events already written are valid
+            }
+            return count;
+        }
 
+        /**
+         * The same as {@link #fill}, but the events are in nanoseconds.
+         */
+        private int fillNanos(long[] out, int offset, int max, long until)
+        {
+            int count = 0;
+            try
+            {
+                while ( count < max && !exhausted )
+                {
+                    long local = calendar.asTimestamp();
+                    long instant = (zone != null ? zone.toInstant(local) : local) * NANOS_IN_MILLI;
+
+                    if ( zone != null && zone.getGapStart(local) != ZoneTransitions.NONE )
+                    {
+                        // the skipped local times are fired exactly at the moment of transition
+                        if ( forward ? instant > until : instant < until ) return count; // it stays pending
+                        if ( forward ? instant > last : instant < last ) out[offset + count++] = last = instant;
+
+                        skipGap(local);
+                        continue;
+                    }
+
+                    long micro = instant + calendar.microseconds * 1000L;
+                    boolean stepped;
+
+                    do // the events inside one microsecond differ only by nanoseconds; the time is not recalculated
+                    {
+                        long event = micro + calendar.nanoseconds;
+
+                        if ( forward ? event > until : event < until ) return count; // it stays pending
+
+                        // the end of the gap is the same moment as the gap itself; skip the duplicate
+                        if ( zone == null || (forward ? event > last : event < last) )
+                            out[offset + count++] = last = event;
+
+                        stepped = digits.incrementLastDigit();
+                    }
+                    while ( stepped && count < max );
+
+                    if ( !stepped ) // the nanoseconds are over; go to the next microsecond, millisecond, ...
+                    {
+                        digits.gotoLastDigit();
+                        digits.increment();
+                    }
+                }
+            }
+            catch (IllegalStateException e)
+            {
+                exhausted = true; // the events already written are valid
+            }
+            return count;
+        }
 
+        /**
+         * Moves the calendar beyond the gap of the daylight saving transition.
+         * All local times in the gap are fired at the same moment, so they are not enumerated.
+         *
+         * @param local the local time of the calendar
+         * @return false, if the local time is not in the gap (nothing is changed)
+         * @throws IllegalStateException if the schedule has no events beyond the gap
+         */
+        private boolean skipGap(long local)
+        {
+            if ( zone == null ) return false;
 
+            long gapStart = zone.getGapStart(local);
+            if ( gapStart == ZoneTransitions.NONE ) return false;
 
+            // the end of the gap is the local time of the transition moment
+            calendar.setTimestamp(forward ? zone.toLocal(zone.toInstant(local)) : gapStart);
+            calendar.setFraction(0);
+            digits.reset(pool, precise);
 
+            digits.search(forward);
+            return true;
+        }
 
+        public String schedule()
+        {
+            return schedule;
+        }
 
+        @Override
+        public String toString() {
+            return schedule;
+        }
+    }
 
     private final String schedule;
 
@@ -0,0 +1,210 @@
+package com.habr.cron;
+
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of schedules.
+ * The same schedule string returns the same instance of {@link Schedule}.
+ * The equivalent schedules (for example, '12:00:00' and '*.*.* 12:0:0.000') share the same matchers,
+ * so the parsing and the building of matchers are done only once for them.
+ *
+ * Every schedule shares the matchers of the same fields ('*', '0', '*&#47;5') with all other schedules,
+ * cached or not; the ratio of the sharing is reported by {@link Schedule#getMatcherDedupRatio()}.
+ *
+ * The schedules not used recently are evicted, when the cache is full (the 'clock' approximation of LRU:
+ * the used schedule gets the second chance, the lookups do not lock).
+ * Thread-safe.
+ */
+public final class ScheduleCache
+{
+    private final ClockMap<Schedule> schedules; // by source schedule (and zone)
+    private final ClockMap<MatcherPool> pools; // by canonical presentation of the schedule model
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+
+    /**
+     * @param capacity the maximum number of cached schedules
+     */
+    public ScheduleCache(int capacity)
+    {
+        if ( capacity <= 0 ) throw new IllegalArgumentException("The capacity MUST be positive: " + capacity);
+
+        schedules = new ClockMap<Schedule>(capacity);
+        pools = new ClockMap<MatcherPool>(capacity);
+    }
+
+
+    /**
+     * Returns the schedule in UTC from the cache, or creates it.
+     *
+     * @param schedule see format in {@link Schedule}
+     * @return the schedule; unmodified and thread-safe
+     * @throws ScheduleFormatException
+     */
+    public Schedule get(String schedule) throws ScheduleFormatException
+    {
+        return get(schedule, schedule, null);
+    }
+
+    /**
+     * Returns the schedule in the local time of the zone from the cache, or creates it.
+     *
+     * @param schedule see format in {@link Schedule}
+     * @param zone the time zone of the schedule
+     * @return the schedule; unmodified and thread-safe
+     * @throws ScheduleFormatException
+     */
+    public Schedule get(String schedule, ZoneId zone) throws ScheduleFormatException
+    {
+        ZoneTransitions transitions = Schedule.transitionsOf(zone);
+
+        return transitions == null ?
+                get(schedule, schedule, null)
+                :
+                get(zone.getId() + '|' + schedule, schedule, transitions);
+    }
+
+
+    private Schedule get(String key, String schedule, ZoneTransitions zone) throws ScheduleFormatException
+    {
+        Schedule result = schedules.get(key);
+        if ( result != null )
+        {
+            hits.incrementAndGet();
+            return result;
+        }
+
+        misses.incrementAndGet();
+
+        ScheduleModel model = Schedule.parse(schedule); // out of lock; parsing is slower than a map search
+        String canonical = model.toCanonicalString();
+
+        MatcherPool pool = pools.get(canonical);
+        if ( pool == null )
+            pool = pools.putIfAbsent(canonical, new MatcherPool(model)); // or created by another thread
+
+        return schedules.putIfAbsent(key, new Schedule(schedule, pool, zone)); // or created by another thread
+    }
+
+
+    /**
+     * @return the number of requests, which found the schedule in the cache
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests, which created the schedule
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of cached schedules
+     */
+    public int size()
+    {
+        return schedules.size();
+    }
+
+    /**
+     * Removes all schedules from the cache. The counters are not reset.
+     */
+    public void clear()
+    {
+        schedules.clear();
+        pools.clear();
+    }
+
+
+
+    /**
+     * The bounded concurrent map with the 'clock' eviction.
+     * The keys are queued in the order of the insertion; the used entry is marked and gets the second chance
+     * (it is moved to the tail of the queue), the first not used entry is evicted.
+     */
+    private static final class ClockMap<V>
+    {
+        private final ConcurrentHashMap<String, Node<V>> map = new ConcurrentHashMap<String, Node<V>>();
+        private final ConcurrentLinkedQueue<Node<V>> clock = new ConcurrentLinkedQueue<Node<V>>();
+        private final int capacity;
+
+        ClockMap(int capacity)
+        {
+            this.capacity = capacity;
+        }
+
+        V get(String key)
+        {
+            Node<V> node = map.get(key);
+            if ( node == null ) return null;
+
+            if ( !node.used ) node.used = true; // avoids the writes to the shared line on the hot path
+            return node.value;
+        }
+
+        /**
+         * @return the value of the map: the previous one, if the key is present, or the specified one
+         */
+        V putIfAbsent(String key, V value)
+        {
+            Node<V> node = new Node<V>(key, value);
+            Node<V> previous = map.putIfAbsent(key, node);
+            if ( previous != null ) return previous.value;
+
+            clock.offer(node);
+            evict();
+            return value;
+        }
+
+        private void evict()
+        {
+            while ( map.size() > capacity )
+            {
+                Node<V> node = clock.poll();
+                if ( node == null ) return; // evicted by other threads
+
+                if ( node.used )
+                {
+                    node.used = false; // the second chance
+                    clock.offer(node);
+                }
+                else
+                    map.remove(node.key, node); // no-op for the node removed by clear()
+            }
+        }
+
+        int size()
+        {
+            return map.size();
+        }
+
+        void clear()
+        {
+            clock.clear(); // before the map: the inserted entry is always queued
+            map.clear();
+        }
+    }
+
+    private static final class Node<V>
+    {
+        final String key;
+        final V value;
+        volatile boolean used;
+
+        Node(String key, V value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
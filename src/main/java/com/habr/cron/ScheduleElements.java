@@ -5,7 +5,7 @@ package com.habr.cron;
  */
 enum ScheduleElements
 {
-    YEAR(2000, 2100),
+    YEAR(0, 9999),
 
     MONTH(1, 12),
 
@@ -19,7 +19,11 @@ enum ScheduleElements
 
     SECONDS(0, 59),
 
-    MILLIS(0, 999);
+    MILLIS(0, 999),
+
+    MICROS(0, 999),
+
+    NANOS(0, 999);
 
     public static final int LAST_DAY_OF_MONTH_CODE = 32;
 
@@ -19,6 +19,48 @@ public interface ScheduleEventsGenerator
      */
     Date next();
 
+    /**
+     * Writes the timestamps of next events into the array in one pass, without creating any objects.
+     * The timestamps are in milliseconds since 1 Jan 1970 (UTC), or in nanoseconds
+     * for the generator created by {@link Schedule#getEventsGeneratorNanos(long, boolean)}.
+     *
+     * The first event, which is beyond the limit, is not written. Whether it's returned by the next call
+     * depends on the implementation: the generators of this library keep it pending, so the next call
+     * (of fill or next) returns it. The default implementation is built on {@link #next()}, so it consumes
+     * that event and drops it: the generator, which doesn't override this method, loses one event
+     * every time the limit is reached.
+     *
+     * @param out the array for events
+     * @param offset the index of the first written event
+     * @param max the maximum number of events to write
+     * @param until the limit of events (inclusive); the latest event for forward generator,
+     *              the earliest event for backward generator
+     * @return the number of written events; less than max, when the limit is reached or the schedule is over
+     */
+    default int fill(long[] out, int offset, int max, long until)
+    {
+        int count = 0;
+        while ( count < max )
+        {
+            long previous = last().getTime();
+            long event;
+            try
+            {
+                event = next().getTime();
+            }
+            catch (IllegalStateException e)
+            {
+                break; // the schedule is over
+            }
+
+            boolean forward = event != previous ? event > previous : until >= event; // the first event may be the start
+            if ( forward ? event > until : event < until ) break;
+
+            out[offset + count++] = event;
+        }
+        return count;
+    }
+
     /**
      * @return string presentation of source schedule
      */
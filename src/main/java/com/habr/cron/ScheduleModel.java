@@ -1,6 +1,5 @@
 package com.habr.cron;
 
-import java.util.GregorianCalendar;
 
 import static com.habr.cron.ScheduleElements.*;
 
@@ -12,6 +11,8 @@ import static com.habr.cron.ScheduleElements.*;
 class ScheduleModel
 {
     private final RangeList[] model;
+    private SpecialDay specialDay; // 'LW', '15W', '5#3', ... of the Quartz schedules
+    private boolean daysUnion; // the day of month OR the day of week is matched (Vixie cron)
 
     public ScheduleModel()
     {
@@ -30,11 +31,40 @@ class ScheduleModel
         model[element.ordinal()] = ranges;
     }
 
+    public SpecialDay getSpecialDay()
+    {
+        return specialDay;
+    }
+
+    /**
+     * Sets the special day of month. The ranges of its element (day of month or day of week) are '*',
+     * so the special day is the only restriction of this element.
+     */
+    public void setSpecialDay(SpecialDay specialDay)
+    {
+        this.specialDay = specialDay;
+    }
+
+
+    /**
+     * @return true, if the day is matched by the day of month OR by the day of week (as Vixie cron does,
+     *         when both are restricted); by default, they are matched both
+     */
+    public boolean isDaysUnion()
+    {
+        return daysUnion;
+    }
+
+    public void setDaysUnion(boolean daysUnion)
+    {
+        this.daysUnion = daysUnion;
+    }
 
     /**
      * Initializes missing schedule conditions by default.
      * For example, if day of week is missing in schedule, we use asterisk (any day).
-     * Also, we use asterisk for date, and use zero for milliseconds, if these fields not present.
+     * Also, we use asterisk for date, and use zero for milliseconds (microseconds, nanoseconds),
+     * if these fields not present.
      */
     public void initDefaults()
     {
@@ -51,6 +81,11 @@ class ScheduleModel
         if ( !isMillisecondsPresent() ) // skipped milliseconds is equals to '0' exactly
             setModelFor(MILLIS, new RangeList(new Range(0)));
 
+        if ( !isMicrosecondsPresent() ) // skipped microseconds is equals to '0' exactly
+            setModelFor(MICROS, new RangeList(new Range(0)));
+
+        if ( !isNanosecondsPresent() ) // skipped nanoseconds is equals to '0' exactly
+            setModelFor(NANOS, new RangeList(new Range(0)));
     }
     public boolean isDatePresent()
     {
@@ -68,6 +103,31 @@ class ScheduleModel
     {
         return model[MILLIS.ordinal()] != null;
     }
+    public boolean isMicrosecondsPresent()
+    {
+        return model[MICROS.ordinal()] != null;
+    }
+    public boolean isNanosecondsPresent()
+    {
+        return model[NANOS.ordinal()] != null;
+    }
+
+    /**
+     * <p>Checks, that schedule has events inside the milliseconds (microseconds or nanoseconds are not zero).<br/>
+     * <b>IMPORTANT:</b> must called after {@link #initDefaults()}</p>
+     *
+     * @return true, if the schedule has resolution better than milliseconds
+     */
+    public boolean isHighResolution()
+    {
+        return !isZero(MICROS) || !isZero(NANOS);
+    }
+
+    private boolean isZero(ScheduleElements element)
+    {
+        RangeList list = model[element.ordinal()];
+        return list.isAlone() && list.getSingle().isConstant() && list.getSingle().getValue() == 0;
+    }
 
     /**
      * <p>Checks, that date in schedule equals to '*.*.*'.<br/>
@@ -79,7 +139,8 @@ class ScheduleModel
     {
         return model[YEAR.ordinal()] == RangeList.ASTERISK
             && model[MONTH.ordinal()] == RangeList.ASTERISK
-            && model[DAY_OF_MONTH.ordinal()] == RangeList.ASTERISK;
+            && model[DAY_OF_MONTH.ordinal()] == RangeList.ASTERISK
+            && (specialDay == null || specialDay.isDayOfWeek());
     }
 
     /**
@@ -90,7 +151,8 @@ class ScheduleModel
      */
     public boolean isAnyWeekDay()
     {
-        return model[DAY_OF_WEEK.ordinal()] == RangeList.ASTERISK;
+        return model[DAY_OF_WEEK.ordinal()] == RangeList.ASTERISK
+            && (specialDay == null || !specialDay.isDayOfWeek());
     }
 
     /**
@@ -137,7 +199,7 @@ class ScheduleModel
 
             if ( month.isFebruary() && day.isLeapDay() && year.isConstant() )
             {
-                if ( !(new GregorianCalendar().isLeapYear(year.getValue())) )
+                if ( GregCalendar.isLeap(year.getValue()) == 0 )
                     throw new ScheduleFormatException("Invalid schedule for leap day", sourceSchedule);
 
             }
@@ -204,12 +266,39 @@ class ScheduleModel
 
 
 
+    /**
+     * Sorts the lists of ranges, so the equivalent schedules (for example, '1,2:00:00' and '2,1:0:0')
+     * have the same presentation.
+     * IMPORTANT: must called after {@link #initDefaults()}
+     *
+     * @return the canonical presentation of the model
+     */
+    public String toCanonicalString()
+    {
+        for (RangeList list : model)
+            if ( list.isList() ) list.sort();
+
+        return toString();
+    }
+
+
     @Override
     public String toString()
     {
-        return String.format("[%s.%s.%s] %s [%s:%s:%s.%s]",
-                getModelFor(YEAR), getModelFor(MONTH), getModelFor(DAY_OF_MONTH), getModelFor(DAY_OF_WEEK),
+        boolean weekSpecial = specialDay != null && specialDay.isDayOfWeek();
+        boolean daySpecial = specialDay != null && !specialDay.isDayOfWeek();
+
+        String result = String.format("[%s.%s.%s] %s%s [%s:%s:%s.%s]",
+                getModelFor(YEAR), getModelFor(MONTH),
+                daySpecial ? specialDay : getModelFor(DAY_OF_MONTH),
+                daysUnion ? "|" : "", // the weekdays are added to the days of month
+                weekSpecial ? specialDay : getModelFor(DAY_OF_WEEK),
                 getModelFor(HOURS), getModelFor(MINUTES), getModelFor(SECONDS), getModelFor(MILLIS)
         );
+
+        if ( getModelFor(MICROS) == null || !isHighResolution() ) return result;
+
+        return String.format("%s.%s.%s]", result.substring(0, result.length() - 1),
+                getModelFor(MICROS), getModelFor(NANOS));
     }
 }
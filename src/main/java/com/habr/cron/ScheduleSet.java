@@ -0,0 +1,304 @@
+package com.habr.cron;
+
+import java.util.Arrays;
+
+/**
+ * The set of schedules, which answers "what schedule fires next, and when".
+ *
+ * Every schedule has its own events generator; the next event of every schedule is kept in the binary min-heap
+ * on primitive arrays. Only the generator of the fired schedule is advanced, so the poll of the next event
+ * costs O(log N), and it doesn't create any objects (except the growing of arrays by adding).
+ *
+ * The schedules are identified by the integer id, returned by {@link #add(Schedule, long)}.
+ * The ids of removed schedules are reused. The schedule, which is finished by {@link #poll()},
+ * keeps its id till the next poll (or its explicit removing), so the fired id still refers to it.
+ *
+ * Not thread safe. Mutable.
+ */
+public final class ScheduleSet
+{
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int REMOVED = -1; // the positions of the schedules out of heap
+    private static final int FINISHED = -2;
+
+    // by id
+    private Schedule[] schedules = new Schedule[INITIAL_CAPACITY];
+    private ScheduleEventsGenerator[] generators = new ScheduleEventsGenerator[INITIAL_CAPACITY];
+    private long[] times = new long[INITIAL_CAPACITY]; // the next event of schedule
+    private int[] positions = new int[INITIAL_CAPACITY]; // the index in heap; REMOVED or FINISHED
+
+    private int[] heap = new int[INITIAL_CAPACITY]; // the ids, ordered by the next event
+    private int size = 0;
+
+    private int[] free = new int[INITIAL_CAPACITY]; // the stack of ids of removed schedules
+    private int freeCount = 0;
+    private int[] finished = new int[INITIAL_CAPACITY]; // the ids of schedules, finished by the last poll
+    private int finishedCount = 0;
+    private int ids = 0; // the number of used ids
+
+    private final long[] buffer = new long[1]; // for the next event from generator
+
+
+    /**
+     * Adds the schedule into set.
+     *
+     * @param schedule the schedule
+     * @param start the schedule fires after this moment (milliseconds since 1 Jan 1970, UTC)
+     * @return the id of the schedule in this set, or -1 if the schedule has no events after start
+     */
+    public int add(Schedule schedule, long start)
+    {
+        ScheduleEventsGenerator generator;
+        try
+        {
+            generator = schedule.getEventsGenerator(start, true);
+        }
+        catch (IllegalStateException e)
+        {
+            return -1; // the start is already after the schedule
+        }
+        if ( generator.fill(buffer, 0, 1, Long.MAX_VALUE) == 0 ) return -1;
+
+        int id = freeCount > 0 ? free[--freeCount] : newId();
+
+        schedules[id] = schedule;
+        generators[id] = generator;
+        times[id] = buffer[0];
+
+        heap[size] = id;
+        positions[id] = size;
+        siftUp(size++);
+
+        return id;
+    }
+
+    /**
+     * Removes the schedule from set. The schedule, finished by the last poll, releases its id.
+     *
+     * @param id the id of schedule
+     * @return false, if the schedule was already removed
+     */
+    public boolean remove(int id)
+    {
+        if ( id < 0 || id >= ids || positions[id] == REMOVED ) return false;
+
+        if ( positions[id] == FINISHED )
+        {
+            for (int i = 0; i < finishedCount; i++)
+                if ( finished[i] == id ) finished[i] = finished[--finishedCount];
+
+            release(id);
+        }
+        else
+            removeAt(positions[id], true);
+
+        return true;
+    }
+
+    /**
+     * @return the number of schedules, which have events
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * @return the moment of the next event of all schedules, or {@link Long#MAX_VALUE} if the set is empty
+     */
+    public long peekTime()
+    {
+        return size > 0 ? times[heap[0]] : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the id of the schedule, which fires next, or -1 if the set is empty
+     */
+    public int peek()
+    {
+        return size > 0 ? heap[0] : -1;
+    }
+
+    /**
+     * Fires the next event: returns the schedule, which fires next, and advances it to the following event.
+     * The moment of the event is {@link #peekTime()} before the call.
+     * The schedule without more events is removed from set, but its id is released only by the next poll
+     * (or by {@link #remove(int)}): till then {@link #getSchedule(int)} returns it, and the id is not reused.
+     *
+     * @return the id of the fired schedule, or -1 if the set is empty
+     */
+    public int poll()
+    {
+        releaseFinished();
+        return fire();
+    }
+
+    /**
+     * Fires all events until the moment (inclusive), in the order of time.
+     * The schedules, finished by these events, keep their ids till the next poll (see {@link #poll()}).
+     *
+     * @param until the last moment
+     * @param firedIds the ids of fired schedules
+     * @param firedTimes the moments of events
+     * @return the number of fired events; at most the length of arrays
+     */
+    public int poll(long until, int[] firedIds, long[] firedTimes)
+    {
+        releaseFinished();
+
+        int count = 0;
+        int max = Math.min(firedIds.length, firedTimes.length);
+
+        while ( count < max && size > 0 && times[heap[0]] <= until )
+        {
+            firedTimes[count] = times[heap[0]];
+            firedIds[count++] = fire();
+        }
+        return count;
+    }
+
+    /**
+     * @param id the id of schedule
+     * @return the schedule, or null if it was removed
+     */
+    public Schedule getSchedule(int id)
+    {
+        return id >= 0 && id < ids ? schedules[id] : null;
+    }
+
+    /**
+     * @param id the id of schedule
+     * @return the moment of the next event of schedule, or {@link Long#MAX_VALUE} if it was removed or finished
+     */
+    public long getNextTime(int id)
+    {
+        return id >= 0 && id < ids && positions[id] >= 0 ? times[id] : Long.MAX_VALUE;
+    }
+
+
+
+
+    private int fire()
+    {
+        if ( size == 0 ) return -1;
+
+        int id = heap[0];
+        if ( generators[id].fill(buffer, 0, 1, Long.MAX_VALUE) == 0 )
+        {
+            removeAt(0, false); // the schedule is over
+        }
+        else
+        {
+            times[id] = buffer[0];
+            siftDown(0);
+        }
+        return id;
+    }
+
+    private int newId()
+    {
+        if ( ids == schedules.length )
+        {
+            int capacity = ids * 2;
+            schedules = Arrays.copyOf(schedules, capacity);
+            generators = Arrays.copyOf(generators, capacity);
+            times = Arrays.copyOf(times, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            free = Arrays.copyOf(free, capacity);
+            finished = Arrays.copyOf(finished, capacity);
+        }
+        return ids++;
+    }
+
+    /**
+     * @param release false for the finished schedule, which keeps its id till the next poll
+     */
+    private void removeAt(int index, boolean release)
+    {
+        int id = heap[index];
+
+        generators[id] = null;
+        if ( release )
+            release(id);
+        else
+        {
+            positions[id] = FINISHED;
+            finished[finishedCount++] = id;
+        }
+
+        int last = heap[--size];
+        if ( index == size ) return;
+
+        heap[index] = last;
+        positions[last] = index;
+        siftDown(index);
+        siftUp(positions[last]);
+    }
+
+    private void release(int id)
+    {
+        schedules[id] = null;
+        positions[id] = REMOVED;
+        free[freeCount++] = id;
+    }
+
+    private void releaseFinished()
+    {
+        while ( finishedCount > 0 ) release(finished[--finishedCount]);
+    }
+
+    private void siftUp(int index)
+    {
+        int id = heap[index];
+        long time = times[id];
+
+        while ( index > 0 )
+        {
+            int parent = (index - 1) >>> 1;
+            int parentId = heap[parent];
+            if ( times[parentId] <= time ) break;
+
+            heap[index] = parentId;
+            positions[parentId] = index;
+            index = parent;
+        }
+
+        heap[index] = id;
+        positions[id] = index;
+    }
+
+    private void siftDown(int index)
+    {
+        int id = heap[index];
+        long time = times[id];
+        int half = size >>> 1;
+
+        while ( index < half )
+        {
+            int child = 2 * index + 1;
+            int childId = heap[child];
+
+            int right = child + 1;
+            if ( right < size && times[heap[right]] < times[childId] )
+            {
+                child = right;
+                childId = heap[child];
+            }
+
+            if ( time <= times[childId] ) break;
+
+            heap[index] = childId;
+            positions[childId] = index;
+            index = child;
+        }
+
+        heap[index] = id;
+        positions[id] = index;
+    }
+}
@@ -0,0 +1,209 @@
+package com.habr.cron;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the searches of the instrumented schedule (see {@link Schedule#instrument()}):
+ * the number of searches, the steps of the search over the calendar digits, the carries between digits,
+ * and the histogram of the search latency.
+ *
+ * The steps are the descents from a digit to the lower one (year, month, day, ..., milliseconds);
+ * the carries are the passes of the digits loop, when a digit is reset or moved to its next value
+ * with the overflow to the major digits. Both are data-dependent: the expensive schedules have many of them.
+ *
+ * The histogram is log-linear (as HdrHistogram): the values are kept with the precision of 1/16 of their magnitude,
+ * so the percentiles are never less than the real ones and are up to ~6% greater.
+ *
+ * Thread-safe. The recording doesn't block and doesn't create objects.
+ */
+public final class ScheduleStats
+{
+    private static final int SUB_BITS = 4; // 16 sub-buckets in every power of 2
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder carries = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+
+    private final AtomicLong maxSteps = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+
+
+    ScheduleStats()
+    {
+    }
+
+
+    /**
+     * Records one search.
+     *
+     * @param steps the number of steps over the digits
+     * @param carries the number of carries between digits
+     * @param latency the time of search, in nanoseconds
+     * @param failed true, if the schedule has no event (the search was out of schedule)
+     */
+    void record(int steps, int carries, long latency, boolean failed)
+    {
+        searches.increment();
+        if ( failed ) failures.increment();
+
+        this.steps.add(steps);
+        this.carries.add(carries);
+        updateMax(maxSteps, steps);
+
+        if ( latency < 0 ) latency = 0; // the clock is not monotonic on some systems
+        totalLatency.add(latency);
+        updateMax(maxLatency, latency);
+        latencies.incrementAndGet(indexOf(latency));
+    }
+
+
+    /**
+     * @return the number of searches
+     */
+    public long getSearchCount()
+    {
+        return searches.sum();
+    }
+
+    /**
+     * @return the number of searches, which are out of schedule (they threw IllegalStateException)
+     */
+    public long getFailureCount()
+    {
+        return failures.sum();
+    }
+
+    /**
+     * @return the total number of steps over the calendar digits
+     */
+    public long getStepCount()
+    {
+        return steps.sum();
+    }
+
+    /**
+     * @return the total number of carries between the calendar digits
+     */
+    public long getCarryCount()
+    {
+        return carries.sum();
+    }
+
+    /**
+     * @return the maximum number of steps of one search
+     */
+    public long getMaxSteps()
+    {
+        return maxSteps.get();
+    }
+
+    /**
+     * @return the maximum time of one search, in nanoseconds
+     */
+    public long getMaxLatency()
+    {
+        return maxLatency.get();
+    }
+
+    /**
+     * @return the average time of search, in nanoseconds
+     */
+    public double getAverageLatency()
+    {
+        long count = searches.sum();
+        return count == 0 ? 0 : (double) totalLatency.sum() / count;
+    }
+
+    /**
+     * @param percentile 0..100
+     * @return the time, which is not exceeded by this percent of searches, in nanoseconds; 0, if there is no searches
+     */
+    public long getLatencyAtPercentile(double percentile)
+    {
+        if ( percentile < 0 || percentile > 100 )
+            throw new IllegalArgumentException("The percentile MUST be 0..100: " + percentile);
+
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += counts[i] = latencies.get(i);
+        if ( total == 0 ) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long passed = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            passed += counts[i];
+            if ( passed >= rank ) return Math.min(highestValueOf(i), maxLatency.get());
+        }
+        return maxLatency.get();
+    }
+
+    /**
+     * Clears all statistics. The searches in progress can be recorded partially.
+     */
+    public void reset()
+    {
+        searches.reset();
+        failures.reset();
+        steps.reset();
+        carries.reset();
+        totalLatency.reset();
+        maxSteps.set(0);
+        maxLatency.set(0);
+        for (int i = 0; i < BUCKETS; i++) latencies.set(i, 0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("searches: %d, failures: %d, steps: %.2f (max %d), carries: %.2f, latency ns: %.0f (p50 %d, p99 %d, max %d)",
+                getSearchCount(), getFailureCount(), average(getStepCount()), getMaxSteps(), average(getCarryCount()),
+                getAverageLatency(), getLatencyAtPercentile(50), getLatencyAtPercentile(99), getMaxLatency());
+    }
+
+
+
+    private double average(long total)
+    {
+        long count = searches.sum();
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    private static void updateMax(AtomicLong max, long value)
+    {
+        long current;
+        while ( value > (current = max.get()) && !max.compareAndSet(current, value) ) ;
+    }
+
+    /**
+     * @return the bucket of the value: the values less than 16 have their own buckets,
+     *         the greater values have 16 buckets in every power of 2
+     */
+    static int indexOf(long value)
+    {
+        if ( value < SUB_COUNT ) return (int) value;
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS
+        int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_COUNT - 1);
+        return (magnitude - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * @return the greatest value of the bucket
+     */
+    static long highestValueOf(int index)
+    {
+        if ( index < SUB_COUNT ) return index;
+
+        int shift = index / SUB_COUNT - 1; // the magnitude - SUB_BITS
+        long lowest = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
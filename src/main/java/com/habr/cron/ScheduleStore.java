@@ -0,0 +1,267 @@
+package com.habr.cron;
+
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static com.habr.cron.ScheduleElements.*;
+
+/**
+ * Compact store of many schedules (millions of jobs).
+ * Every schedule is encoded into the record of the shared array of longs, and it's addressed by its number;
+ * the store keeps no objects per schedule. The record keeps the allowed values of the calendar elements
+ * (see {@link RecordMatcher}) and the maps of the matched days of month (see {@link RecordDaysProxy}):
+ * usually 9 words for the schedule without the days of week, and 21 words with them.
+ *
+ * The events are searched by the same digits algorithm, as {@link Schedule} does, over the flyweight matchers,
+ * which are bound to the record for every search; a repeated search does not create any objects.
+ * The events are found in milliseconds and in UTC (the schedule without the time zone),
+ * and the schedules with the excluded days are not stored (see {@link Schedule#excluding(HolidayCalendar)}).
+ *
+ * <pre>
+ *     ScheduleStore store = new ScheduleStore();
+ *     int job = store.add("*.*.* 1-5 9:00:00");
+ *     long next = store.NextEvent(job, System.currentTimeMillis());
+ * </pre>
+ *
+ * Thread-safe: the schedules are added under the lock, and the searches don't lock
+ * (a search sees all schedules, which were added before the search has got their numbers).
+ *
+ * Used memory:
+ *  8 bytes per word of the record, plus 4 bytes for the offset of the record
+ */
+public final class ScheduleStore
+{
+    private static final int SKIP_DATE = 1; // the flags of the record: the schedule has no date
+    private static final int BY_WEEKDAY = 2; // the maps of days are kept for every weekday of the 1st day of month
+
+    private static final int MAX_RECORD = 1 + 4 * 7 / 2 + 6 * (1 + (YEAR.max >> 6) + 1); // in words
+
+    private volatile long[] data; // the records
+    private volatile int[] offsets; // the offsets of the records, by their numbers
+    private volatile int count; // the number of the records; it's written after the record
+    private int used; // the words of data
+
+    private final long[] buffer = new long[MAX_RECORD]; // the record to add; used under the lock
+
+
+    /**
+     * The flyweight matchers of the search of the current thread; shared by all stores.
+     */
+    private static final ThreadLocal<Searcher> SEARCHER = new ThreadLocal<Searcher>()
+    {
+        @Override
+        protected Searcher initialValue()
+        {
+            return new Searcher();
+        }
+    };
+
+
+    public ScheduleStore()
+    {
+        this(1024);
+    }
+
+    /**
+     * @param capacity the expected number of schedules
+     */
+    public ScheduleStore(int capacity)
+    {
+        if ( capacity <= 0 ) throw new IllegalArgumentException("The capacity MUST be positive: " + capacity);
+
+        data = new long[capacity * 16];
+        offsets = new int[capacity];
+    }
+
+
+    /**
+     * Parses the schedule and adds it to the store.
+     *
+     * @param schedule see format in {@link Schedule}
+     * @return the number of the schedule in the store
+     * @throws ScheduleFormatException
+     */
+    public int add(String schedule) throws ScheduleFormatException
+    {
+        return add(new Schedule(schedule));
+    }
+
+    /**
+     * Adds the schedule to the store; the schedule object is not kept.
+     *
+     * @param schedule the schedule in UTC
+     * @return the number of the schedule in the store
+     * @throws IllegalArgumentException if the schedule has the time zone or the excluded days
+     */
+    public synchronized int add(Schedule schedule)
+    {
+        if ( !ZoneOffset.UTC.equals(schedule.getZone()) )
+            throw new IllegalArgumentException("The schedule MUST NOT have the time zone: " + schedule);
+
+        MatcherPool pool = schedule.getMatcherPool();
+        if ( pool.getDaysIndex().hasHolidays() )
+            throw new IllegalArgumentException("The schedule MUST NOT have the excluded days: " + schedule);
+
+        int length = encode(pool, buffer);
+
+        long[] records = data;
+        if ( used + length > records.length )
+            records = Arrays.copyOf(records, Math.max(records.length + (records.length >> 1), used + length));
+
+        int[] index = offsets;
+        if ( count == index.length )
+            index = Arrays.copyOf(index, index.length + (index.length >> 1) + 1);
+
+        System.arraycopy(buffer, 0, records, used, length);
+        index[count] = used;
+
+        data = records;
+        offsets = index;
+        used += length;
+
+        int number = count;
+        count = number + 1; // publishes the record
+        return number;
+    }
+
+    /**
+     * @return the number of the schedules in the store
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * @return the bytes of the records and their offsets, without the reserved capacity
+     */
+    public synchronized long getMemoryUsage()
+    {
+        return used * 8L + count * 4L;
+    }
+
+    /**
+     * Releases the reserved capacity of the store.
+     */
+    public synchronized void trimToSize()
+    {
+        data = Arrays.copyOf(data, used);
+        offsets = Arrays.copyOf(offsets, count);
+    }
+
+
+    public long NearestEvent(int schedule, long timestamp) {
+        return findEvent(schedule, timestamp, true, true);
+    }
+
+    public long NearestPrevEvent(int schedule, long timestamp) {
+        return findEvent(schedule, timestamp, false, true);
+    }
+
+    public long NextEvent(int schedule, long timestamp) {
+        return findEvent(schedule, timestamp, true, false);
+    }
+
+    public long PrevEvent(int schedule, long timestamp) {
+        return findEvent(schedule, timestamp, false, false);
+    }
+
+
+
+    /**
+     * @param schedule the number of the schedule in the store
+     * @param timestamp the start time of the search
+     * @param forward true for the search of the next events
+     * @param canEqual true, if the start time can be returned
+     * @return suitable time for the conditions
+     * @throws IllegalStateException it is not possible to find a date that meets the schedule
+     */
+    private long findEvent(int schedule, long timestamp, boolean forward, boolean canEqual)
+    {
+        int size = count; // read before the arrays
+        if ( schedule < 0 || schedule >= size )
+            throw new IllegalArgumentException("The number of schedule MUST be in 0.." + (size - 1) + ": " + schedule);
+
+        int offset = offsets[schedule];
+        return SEARCHER.get().find(data, offset, timestamp, forward, canEqual);
+    }
+
+    /**
+     * Encodes the record of the schedule: the flags, the maps of days, and the matchers of
+     * years, months, hours, minutes, seconds and milliseconds.
+     *
+     * @return the length of the record in words
+     */
+    private static int encode(MatcherPool pool, long[] out)
+    {
+        Arrays.fill(out, 0L);
+
+        DaysIndex index = pool.getDaysIndex();
+        boolean byWeekday = false;
+        for (int length = MIN_LAST_DAY; length <= MAX_LAST_DAY; length++)
+            for (int first = 1; first < 7; first++)
+                byWeekday |= index.getLengthMap(length, first) != index.getLengthMap(length, 0);
+
+        out[0] = (pool.isAnyDate() && pool.isAnyWeekDay() ? SKIP_DATE : 0) | (byWeekday ? BY_WEEKDAY : 0);
+
+        int offset = RecordDaysProxy.encode(index, out, 1, byWeekday);
+
+        DigitMatcher[] matchers = pool.getMatchersForSchedule();
+        for (ScheduleElements element : Searcher.ELEMENTS)
+            offset = RecordMatcher.encode(matchers[element.ordinal()], out, offset);
+
+        return offset;
+    }
+
+
+    /**
+     * The calendar, the digits and the flyweight matchers of the searches of one thread.
+     * Not thread safe.
+     */
+    private static final class Searcher
+    {
+        static final ScheduleElements[] ELEMENTS = {YEAR, MONTH, HOURS, MINUTES, SECONDS, MILLIS};
+        static final int[] DIGITS = {0, 1, 3, 4, 5, 6}; // the digits of elements (see CalendarDigits)
+
+        final GregCalendar calendar = new GregCalendar(0);
+        final ForwardDigits forward = new ForwardDigits(calendar);
+        final BackwardDigits backward = new BackwardDigits(calendar);
+
+        final RecordMatcher[] elements = new RecordMatcher[ELEMENTS.length];
+        final RecordDaysProxy days = new RecordDaysProxy(calendar);
+        final DigitMatcher[] matchers = new DigitMatcher[9];
+
+        Searcher()
+        {
+            for (int i = 0; i < elements.length; i++)
+                matchers[DIGITS[i]] = elements[i] = new RecordMatcher();
+
+            matchers[2] = days;
+            matchers[7] = matchers[8] = new ConstantMatcher(0); // the search stops at milliseconds
+        }
+
+        long find(long[] data, int offset, long timestamp, boolean forward, boolean canEqual)
+        {
+            int flags = (int) data[offset];
+            offset = days.bind(data, offset + 1, (flags & BY_WEEKDAY) != 0);
+            for (RecordMatcher element : elements)
+                offset = element.bind(data, offset);
+
+            calendar.setTimestamp(timestamp);
+            calendar.setFraction(0);
+
+            CalendarDigits digits = forward ? this.forward : backward;
+            digits.reset(matchers, false);
+
+            // skip date check, if not present in schedule
+            if ( (flags & SKIP_DATE) != 0 ) digits.gotoHours();
+
+            if ( forward )
+                this.forward.search(canEqual);
+            else
+                backward.search(canEqual);
+
+            return calendar.asTimestamp();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.habr.cron;
+
+/**
+ * Reusable state of the event search: the calendar and its digits.
+ * One context can be used for any number of searches in any schedules,
+ * so a repeated search does not create any objects.
+ *
+ * Not thread safe. Mutable. Use one context per thread;
+ * by default, the schedule uses its own context for each thread.
+ */
+public final class SearchContext
+{
+    final GregCalendar calendar;
+    final ForwardDigits forward; // both digits share the calendar
+    final BackwardDigits backward;
+    int fraction; // the nanoseconds of the millisecond of the last found event
+
+
+    public SearchContext()
+    {
+        calendar = new GregCalendar(0);
+        forward = new ForwardDigits(calendar);
+        backward = new BackwardDigits(calendar);
+    }
+}
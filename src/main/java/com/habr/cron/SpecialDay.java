@@ -0,0 +1,140 @@
+package com.habr.cron;
+
+/**
+ * The special day of month of the Quartz schedules, which can't be written by the ranges:
+ * <pre>
+ *     15W     the weekday nearest to the 15th day of month (not crossing the month)
+ *     L-3     the third day before the last day of month
+ *     LW      the last weekday of month; L-3W - the weekday nearest to the third day before the last one
+ *     5L      the last Friday of month (the days of week are 0-6, 0 - Sunday)
+ *     5#3     the third Friday of month
+ * </pre>
+ * The day depends only on the length of month and the day of week of its first day,
+ * so the {@link DaysIndex} precalculates it for all 28 kinds of months.
+ *
+ * Unmodified object. Thread-safe.
+ */
+final class SpecialDay
+{
+    private static final int SUNDAY = 0;
+    private static final int SATURDAY = 6;
+
+    private enum Kind { DAY, LAST_DAY, LAST_DAY_OF_WEEK, NTH_DAY_OF_WEEK }
+
+    private final Kind kind;
+    private final int value; // the day of month, the offset from the last day, or the day of week
+    private final int nth; // the number of the day of week in month (1..5)
+    private final boolean nearestWeekday;
+
+
+    private SpecialDay(Kind kind, int value, int nth, boolean nearestWeekday)
+    {
+        this.kind = kind;
+        this.value = value;
+        this.nth = nth;
+        this.nearestWeekday = nearestWeekday;
+    }
+
+    /**
+     * @param day the day of month (1..31)
+     * @return 'nW': the weekday nearest to the day
+     */
+    public static SpecialDay nearestWeekday(int day)
+    {
+        return new SpecialDay(Kind.DAY, day, 0, true);
+    }
+
+    /**
+     * @param offset the number of days before the last day of month (0..30)
+     * @param nearestWeekday true, if the weekday nearest to this day is matched
+     * @return 'L-n', 'LW' or 'L-nW'
+     */
+    public static SpecialDay lastDay(int offset, boolean nearestWeekday)
+    {
+        return new SpecialDay(Kind.LAST_DAY, offset, 0, nearestWeekday);
+    }
+
+    /**
+     * @param dayOfWeek the day of week (0..6, 0 - Sunday)
+     * @return 'nL': the last such day of week in month
+     */
+    public static SpecialDay lastDayOfWeek(int dayOfWeek)
+    {
+        return new SpecialDay(Kind.LAST_DAY_OF_WEEK, dayOfWeek, 0, false);
+    }
+
+    /**
+     * @param dayOfWeek the day of week (0..6, 0 - Sunday)
+     * @param nth the number of such day of week in month (1..5)
+     * @return 'n#k': the k-th such day of week in month
+     */
+    public static SpecialDay nthDayOfWeek(int dayOfWeek, int nth)
+    {
+        return new SpecialDay(Kind.NTH_DAY_OF_WEEK, dayOfWeek, nth, false);
+    }
+
+
+    /**
+     * @return true, if it's the rule of the days of week; false for the rule of the days of month
+     */
+    public boolean isDayOfWeek()
+    {
+        return kind == Kind.LAST_DAY_OF_WEEK || kind == Kind.NTH_DAY_OF_WEEK;
+    }
+
+    /**
+     * @param length the number of days in month (28..31)
+     * @param first the day of week of the 1st day of month (0..6, 0 - Sunday)
+     * @return the bits map of the matched days of month (bits 1..31); 0, if the month has no such day
+     */
+    public int getMonthMap(int length, int first)
+    {
+        int day;
+        switch (kind)
+        {
+            case LAST_DAY_OF_WEEK:
+                return 1 << (length - (dayOfWeek(length, first) - value + 7) % 7);
+
+            case NTH_DAY_OF_WEEK:
+                day = 1 + (value - first + 7) % 7 + (nth - 1) * 7;
+                return day <= length ? 1 << day : 0;
+
+            case LAST_DAY:
+                day = length - value;
+                break;
+
+            default:
+                day = value;
+        }
+
+        if ( day < 1 || day > length ) return 0; // '31W' in a short month, 'L-30' in February
+
+        if ( nearestWeekday )
+        {
+            int dayOfWeek = dayOfWeek(day, first);
+
+            if ( dayOfWeek == SATURDAY ) day = day == 1 ? day + 2 : day - 1; // Monday 3rd, or Friday
+            else if ( dayOfWeek == SUNDAY ) day = day == length ? day - 2 : day + 1; // Friday, or Monday
+        }
+        return 1 << day;
+    }
+
+    private static int dayOfWeek(int day, int first)
+    {
+        return (first + day - 1) % 7;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        String weekday = nearestWeekday ? "W" : "";
+        switch (kind)
+        {
+            case LAST_DAY: return (value == 0 ? "L" : "L-" + value) + weekday;
+            case LAST_DAY_OF_WEEK: return value + "L";
+            case NTH_DAY_OF_WEEK: return value + "#" + nth;
+            default: return value + weekday;
+        }
+    }
+}
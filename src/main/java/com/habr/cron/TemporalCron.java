@@ -0,0 +1,138 @@
+package com.habr.cron;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+
+/**
+ * Event scheduler interface for the java.time types.
+ * The searches are done with nanoseconds resolution, and they don't create {@link java.util.Date} objects.
+ */
+public interface TemporalCron
+{
+    /**
+     * Returns the next moment in the schedule closest to the specified time,
+     * or the specified time itself, if it is in the schedule.
+     *
+     * @param instant the specified time
+     * @return the nearest time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    Instant NearestEvent(Instant instant);
+
+    /**
+     * Returns the previous moment in the schedule closest to the specified time,
+     * or the specified time itself, if it is in the schedule.
+     *
+     * @param instant the specified time
+     * @return the nearest time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    Instant NearestPrevEvent(Instant instant);
+
+    /**
+     * Returns the next time point in the schedule.
+     *
+     * @param instant the specified time
+     * @return the nearest time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    Instant NextEvent(Instant instant);
+
+    /**
+     * Returns the previous time point in the schedule.
+     *
+     * @param instant the specified time
+     * @return the nearest time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    Instant PrevEvent(Instant instant);
+
+
+
+    /**
+     * Returns the next moment in the schedule closest to the specified local time,
+     * or the specified time itself, if it is in the schedule.
+     * The local time is the time of the schedule's zone; it has no daylight saving transitions.
+     *
+     * @param time the specified local time
+     * @return the nearest local time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    LocalDateTime NearestEvent(LocalDateTime time);
+
+    /**
+     * Returns the previous moment in the schedule closest to the specified local time,
+     * or the specified time itself, if it is in the schedule.
+     * The local time is the time of the schedule's zone; it has no daylight saving transitions.
+     *
+     * @param time the specified local time
+     * @return the nearest local time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    LocalDateTime NearestPrevEvent(LocalDateTime time);
+
+    /**
+     * Returns the next local time point in the schedule.
+     * The local time is the time of the schedule's zone; it has no daylight saving transitions.
+     *
+     * @param time the specified local time
+     * @return the nearest local time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    LocalDateTime NextEvent(LocalDateTime time);
+
+    /**
+     * Returns the previous local time point in the schedule.
+     * The local time is the time of the schedule's zone; it has no daylight saving transitions.
+     *
+     * @param time the specified local time
+     * @return the nearest local time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    LocalDateTime PrevEvent(LocalDateTime time);
+
+
+
+    /**
+     * Returns the next moment in the schedule closest to the specified time,
+     * or the specified time itself, if it is in the schedule.
+     * The schedule works in its own zone; the result is in the zone of the specified time.
+     *
+     * @param time the specified time
+     * @return the nearest time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    ZonedDateTime NearestEvent(ZonedDateTime time);
+
+    /**
+     * Returns the previous moment in the schedule closest to the specified time,
+     * or the specified time itself, if it is in the schedule.
+     * The schedule works in its own zone; the result is in the zone of the specified time.
+     *
+     * @param time the specified time
+     * @return the nearest time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    ZonedDateTime NearestPrevEvent(ZonedDateTime time);
+
+    /**
+     * Returns the next time point in the schedule.
+     * The schedule works in its own zone; the result is in the zone of the specified time.
+     *
+     * @param time the specified time
+     * @return the nearest time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    ZonedDateTime NextEvent(ZonedDateTime time);
+
+    /**
+     * Returns the previous time point in the schedule.
+     * The schedule works in its own zone; the result is in the zone of the specified time.
+     *
+     * @param time the specified time
+     * @return the nearest time in the schedule
+     * @throws IllegalStateException when the next value if out of schedule
+     */
+    ZonedDateTime PrevEvent(ZonedDateTime time);
+}
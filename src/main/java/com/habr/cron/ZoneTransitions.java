@@ -0,0 +1,304 @@
+package com.habr.cron;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Precomputed table of the offset transitions of a time zone.
+ * Converts the instants (UTC) to the local time and back, without calling {@link ZoneRules}
+ * for the years 1900..2200.
+ *
+ * The local time, which does not exist (a gap, when clocks go forward), is resolved
+ * to the moment of the transition. The local time, which occurs twice (an overlap, when clocks go back),
+ * is resolved to the earlier offset, so every scheduled local time happens only once.
+ *
+ * All times are in milliseconds. Unmodified object. Thread-safe.
+ */
+final class ZoneTransitions
+{
+    /**
+     * The result of searches, when instant (or local time) is not near of any transition
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * The years covered by the tables; other years of the schedule format are converted by {@link ZoneRules}
+     */
+    private static final int FIRST_YEAR = 1900;
+    private static final int LAST_YEAR = 2200;
+
+    private static final ConcurrentMap<ZoneId, ZoneTransitions> CACHE = new ConcurrentHashMap<ZoneId, ZoneTransitions>();
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private final boolean fixed;
+
+    private final long windowStart; // the table covers instants [windowStart, windowEnd)
+    private final long windowEnd;
+    private final int baseOffset; // the offset before first transition in the table
+
+    private final long[] instants; // moments of transitions
+    private final int[] before; // offsets before the transition
+    private final int[] after; // offsets after the transition
+    private final long[] localStarts; // local times of the begin of gap/overlap
+    private final long[] localEnds; // local times of the end of gap/overlap
+
+
+    /**
+     * Returns the table for the time zone; tables are created once for every zone.
+     *
+     * @param zone the time zone
+     * @return table of transitions
+     */
+    public static ZoneTransitions of(ZoneId zone)
+    {
+        ZoneTransitions result = CACHE.get(zone);
+        if ( result == null )
+        {
+            result = new ZoneTransitions(zone, FIRST_YEAR, LAST_YEAR);
+            ZoneTransitions previous = CACHE.putIfAbsent(zone, result);
+            if ( previous != null ) result = previous;
+        }
+        return result;
+    }
+
+
+    ZoneTransitions(ZoneId zone, int fromYear, int toYear)
+    {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.fixed = rules.isFixedOffset();
+
+        Instant start = LocalDateTime.of(fromYear, 1, 1, 0, 0).toInstant(ZoneOffset.UTC);
+        Instant end = LocalDateTime.of(toYear + 1, 1, 1, 0, 0).toInstant(ZoneOffset.UTC);
+
+        windowStart = start.toEpochMilli();
+        windowEnd = end.toEpochMilli();
+        baseOffset = rules.getOffset(start).getTotalSeconds() * 1000;
+
+        List<ZoneOffsetTransition> list = new ArrayList<ZoneOffsetTransition>();
+        if ( !fixed )
+        {
+            ZoneOffsetTransition transition = rules.nextTransition(start);
+            while ( transition != null && transition.getInstant().isBefore(end) )
+            {
+                list.add(transition);
+                transition = rules.nextTransition(transition.getInstant());
+            }
+        }
+
+        int count = list.size();
+        instants = new long[count];
+        before = new int[count];
+        after = new int[count];
+        localStarts = new long[count];
+        localEnds = new long[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            ZoneOffsetTransition transition = list.get(i);
+            instants[i] = transition.getInstant().toEpochMilli();
+            before[i] = transition.getOffsetBefore().getTotalSeconds() * 1000;
+            after[i] = transition.getOffsetAfter().getTotalSeconds() * 1000;
+            localStarts[i] = instants[i] + Math.min(before[i], after[i]);
+            localEnds[i] = instants[i] + Math.max(before[i], after[i]);
+        }
+    }
+
+
+    /**
+     * @return the time zone of this table
+     */
+    public ZoneId getZone()
+    {
+        return zone;
+    }
+
+    /**
+     * @return true, if zone has no transitions, and the offset is constant
+     */
+    public boolean isFixed()
+    {
+        return fixed;
+    }
+
+    /**
+     * @param instant the moment (UTC)
+     * @return offset of the local time at this moment
+     */
+    public int getOffset(long instant)
+    {
+        if ( fixed ) return baseOffset;
+        if ( !inWindow(instant) ) return offsetOf(Instant.ofEpochMilli(instant));
+
+        int i = search(instants, instant);
+        return i < 0 ? baseOffset : after[i];
+    }
+
+    /**
+     * @param instant the moment (UTC)
+     * @return the local time at this moment
+     */
+    public long toLocal(long instant)
+    {
+        return instant + getOffset(instant);
+    }
+
+    /**
+     * Converts the local time to the moment.
+     * The local time in the gap is resolved to the moment of the transition,
+     * the local time in the overlap is resolved with the earlier offset.
+     *
+     * @param local the local time
+     * @return the moment (UTC)
+     */
+    public long toInstant(long local)
+    {
+        if ( fixed ) return local - baseOffset;
+        if ( !inWindow(local) ) return toInstantByRules(local);
+
+        int i = search(localStarts, local);
+
+        if ( i < 0 ) return local - baseOffset;
+
+        if ( local < localEnds[i] ) // in the gap or in the overlap
+        {
+            return after[i] > before[i] ? instants[i] : local - before[i];
+        }
+
+        return local - after[i];
+    }
+
+    /**
+     * Checks that moment is in the second pass of the overlap (the repeated local time).
+     *
+     * @param instant the moment (UTC)
+     * @return the local time of the end of the overlap, or {@link #NONE}
+     */
+    public long getRepeatedEnd(long instant)
+    {
+        if ( fixed ) return NONE;
+
+        if ( !inWindow(instant) )
+        {
+            ZoneOffsetTransition transition = rules.previousTransition(Instant.ofEpochMilli(instant + 1));
+            if ( transition == null || transition.isGap() ) return NONE;
+
+            long moment = transition.getInstant().toEpochMilli();
+            int offsetBefore = transition.getOffsetBefore().getTotalSeconds() * 1000;
+            int offsetAfter = transition.getOffsetAfter().getTotalSeconds() * 1000;
+
+            return instant < moment + offsetBefore - offsetAfter ? moment + offsetBefore : NONE;
+        }
+
+        int i = search(instants, instant);
+        if ( i < 0 || after[i] >= before[i] ) return NONE; // not an overlap
+
+        return instant < instants[i] + before[i] - after[i] ? localEnds[i] : NONE;
+    }
+
+    /**
+     * Checks that local time is in the gap (the skipped local time).
+     *
+     * @param local the local time
+     * @return the local time of the begin of the gap, or {@link #NONE}
+     */
+    public long getGapStart(long local)
+    {
+        if ( fixed ) return NONE;
+
+        if ( !inWindow(local) )
+        {
+            ZoneOffsetTransition transition = rules.getTransition(toLocalDateTime(local));
+            if ( transition == null || transition.isOverlap() ) return NONE;
+
+            return transition.getInstant().toEpochMilli() + transition.getOffsetBefore().getTotalSeconds() * 1000;
+        }
+
+        int i = search(localStarts, local);
+        if ( i < 0 || after[i] <= before[i] || local >= localEnds[i] ) return NONE;
+
+        return localStarts[i];
+    }
+
+
+
+
+
+    /**
+     * @param instant the moment (UTC)
+     * @return the moment of the first transition after the instant, or {@link Long#MAX_VALUE}
+     */
+    public long nextTransition(long instant)
+    {
+        if ( fixed ) return Long.MAX_VALUE;
+
+        if ( inWindow(instant) )
+        {
+            int i = search(instants, instant) + 1;
+            if ( i < instants.length ) return instants[i];
+        }
+
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(instant));
+        return transition == null ? Long.MAX_VALUE : transition.getInstant().toEpochMilli();
+    }
+
+
+
+    private boolean inWindow(long time)
+    {
+        return windowStart <= time && time < windowEnd;
+    }
+
+    /**
+     * @return index of the last element, which is less or equal to the value, or -1
+     */
+    private static int search(long[] array, long value)
+    {
+        int left = -1, right = array.length - 1;
+        while ( left < right )
+        {
+            int i = (left + right + 1) >>> 1;
+
+            if ( array[i] <= value )
+                left = i;
+            else
+                right = i - 1;
+        }
+        return left;
+    }
+
+    private int offsetOf(Instant instant)
+    {
+        return rules.getOffset(instant).getTotalSeconds() * 1000;
+    }
+
+    private long toInstantByRules(long local)
+    {
+        LocalDateTime time = toLocalDateTime(local);
+        ZoneOffsetTransition transition = rules.getTransition(time);
+
+        if ( transition == null )
+            return local - rules.getOffset(time).getTotalSeconds() * 1000L;
+
+        return transition.isGap() ?
+                transition.getInstant().toEpochMilli()
+                :
+                local - transition.getOffsetBefore().getTotalSeconds() * 1000L;
+    }
+
+    private static LocalDateTime toLocalDateTime(long local)
+    {
+        long seconds = Math.floorDiv(local, 1000L);
+        int nanos = (int) Math.floorMod(local, 1000L) * 1000000;
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+}
@@ -160,6 +160,20 @@ public class ArrayMatcherTest
         };
     }
 
+    @Test
+    public void testSingleValue() throws Exception
+    {
+        ArrayMatcher matcher = new ArrayMatcher(13, 13);
+        matcher.addValue(13);
+        matcher.finishRange();
+
+        assertEquals(matcher.getLow(), 13);
+        assertEquals(matcher.getHigh(), 13);
+        assertTrue(matcher.match(13));
+        assertFalse(matcher.hasNext(13));
+        assertFalse(matcher.hasPrev(13));
+    }
+
     @Test
     public void testGetHigh() throws Exception
     {
@@ -3,6 +3,8 @@ package com.habr.cron;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Random;
+
 import static org.testng.Assert.*;
 
 public class BitMapMatcherTest
@@ -140,4 +142,40 @@ public class BitMapMatcherTest
     }
 
 
+
+    @Test
+    public void testSparseAndDenseMaps() throws Exception
+    {
+        Random random = new Random(1);
+        int[] densities = {1, 10, 100, 1000, 5000}; // the number of values of the years range
+
+        for (int count : densities)
+        {
+            boolean[] expected = new boolean[10000];
+            BitMapMatcher m = new BitMapMatcher(0, 9999);
+
+            for (int i = 0; i < count; i++)
+            {
+                int value = random.nextInt(10000);
+                expected[value] = true;
+                m.addValue(value);
+            }
+            m.finishRange();
+
+            for (int value = 0; value < 10000; value++)
+            {
+                assertEquals(m.match(value), expected[value]);
+
+                int next = value + 1;
+                while ( next < 10000 && !expected[next] ) next++;
+                if ( next < 10000 ) assertEquals(m.getNext(value), next, "next of " + value);
+                assertEquals(m.hasNext(value), next < 10000);
+
+                int prev = value - 1;
+                while ( prev >= 0 && !expected[prev] ) prev--;
+                if ( prev >= 0 ) assertEquals(m.getPrev(value), prev, "prev of " + value);
+                assertEquals(m.hasPrev(value), prev >= 0);
+            }
+        }
+    }
 }
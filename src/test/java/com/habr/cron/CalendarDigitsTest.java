@@ -30,7 +30,7 @@ public class CalendarDigitsTest
     @BeforeMethod
     public void setUp() throws Exception
     {
-        digits = new CalendarDigits(pool, calendar, false);
+        digits = CalendarDigits.create(pool, calendar, false, false);
     }
 
     @Test
@@ -159,4 +159,26 @@ public class CalendarDigitsTest
 
         assertEquals(actual, "09.12.2021 12:30:51.100");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCreate_ByDirection() throws Exception
+    {
+        assertEquals(CalendarDigits.create(pool, calendar, true, false).getClass(), ForwardDigits.class);
+        assertEquals(CalendarDigits.create(pool, calendar, false, false).getClass(), BackwardDigits.class);
+    }
+
+    @Test
+    public void testSearch_BothDirections() throws Exception
+    {
+        SimpleDateFormat format = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss.SSS");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        calendar.setTimestamp(946684800000L); // 01.01.2000
+        CalendarDigits.create(pool, calendar, true, false).search(false);
+        assertEquals(format.format(calendar.asDate()), "09.12.2021 12:30:51.100");
+
+        calendar.setTimestamp(1893456000000L); // 01.01.2030
+        CalendarDigits.create(pool, calendar, false, false).search(false);
+        assertEquals(format.format(calendar.asDate()), "09.12.2021 12:30:51.100");
+    }
+}
@@ -0,0 +1,265 @@
+package com.habr.cron;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.testng.Assert.*;
+
+/**
+ * The events of the composite schedules are compared with the set operations over the events of the children.
+ */
+public class CompositeCronTest
+{
+    private static final long START = 1609459200000L; // 2021.01.01, Friday
+    private static final long DAY = 86400000L;
+
+    @DataProvider
+    private Object[][] schedulesDataProvider()
+    {
+        return new Object[][] {
+                {"*:*/15:00", "*:*/20:00", "*:*/25:00", 10},
+                {"*.*.* 1-5 *:*/15:00", "12:*:00", "*.*.32 *:*/5:00", 40},
+                {"*:*:*/7", "*:*:*/3", "*:*/2:*", 1},
+                {"*.*.* 0,6 10:00:00", "*.*.1-7 *:00:00", "*.*.* 6 *:*/10:00", 400},
+        };
+    }
+
+    @Test(dataProvider = "schedulesDataProvider")
+    public void testSetOperations(String first, String second, String third, int days) throws Exception
+    {
+        Schedule[] schedules = {new Schedule(first), new Schedule(second), new Schedule(third)};
+        long from = START, to = START + days * DAY;
+
+        TreeSet<Long> a = events(schedules[0], from, to);
+        TreeSet<Long> b = events(schedules[1], from, to);
+        TreeSet<Long> c = events(schedules[2], from, to);
+
+        TreeSet<Long> union = new TreeSet<Long>(a);
+        union.addAll(b);
+        union.addAll(c);
+        check(CompositeCron.union(schedules), union, from, to);
+
+        TreeSet<Long> intersection = new TreeSet<Long>(a);
+        intersection.retainAll(b);
+        check(CompositeCron.intersection(schedules[0], schedules[1]), intersection, from, to);
+
+        TreeSet<Long> difference = new TreeSet<Long>(a);
+        difference.removeAll(b);
+        difference.removeAll(c);
+        check(CompositeCron.difference(schedules[0], schedules[1], schedules[2]), difference, from, to);
+
+        // nested: (a | b) - (b & c)
+        TreeSet<Long> bc = new TreeSet<Long>(b);
+        bc.retainAll(c);
+        TreeSet<Long> nested = new TreeSet<Long>(a);
+        nested.addAll(b);
+        nested.removeAll(bc);
+        check(CompositeCron.difference(CompositeCron.union(schedules[0], schedules[1]),
+                CompositeCron.intersection(schedules[1], schedules[2])), nested, from, to);
+    }
+
+    @Test
+    public void testWeekdaysExceptLunchAndLastDay() throws Exception
+    {
+        Cron cron = CompositeCron.difference(new Schedule("*.*.* 1-5 *:*/15:00"),
+                new Schedule("12:*:*"), new Schedule("*.*.32 *:*:*"));
+
+        long friday = GregCalendar.epochDay(2021, 4, 30) * DAY; // the last day of April
+        long monday = GregCalendar.epochDay(2021, 5, 3) * DAY;
+
+        assertEquals(cron.NextEvent(friday - 1), monday);
+        assertEquals(cron.NextEvent(monday + 11 * 3600000L + 45 * 60000L), monday + 13 * 3600000L);
+        assertEquals(cron.PrevEvent(monday), friday - DAY + 23 * 3600000L + 45 * 60000L); // Thursday
+        assertEquals(cron.NearestEvent(monday), monday);
+        assertEquals(cron.NearestPrevEvent(monday + 12 * 3600000L), monday + 11 * 3600000L + 45 * 60000L);
+        assertEquals(cron.toString(), "(*.*.* 1-5 *:*/15:00 - 12:*:* - *.*.32 *:*:*)");
+    }
+
+    @Test
+    public void testOutOfSchedule() throws Exception
+    {
+        Cron union = CompositeCron.union(new Schedule("2020.*.* 12:00:00"), new Schedule("2022.*.* 12:00:00"));
+        assertEquals(union.NextEvent(START), GregCalendar.epochDay(2022, 1, 1) * DAY + 12 * 3600000L);
+        assertEquals(union.PrevEvent(START), GregCalendar.epochDay(2020, 12, 31) * DAY + 12 * 3600000L);
+
+        try
+        {
+            union.NextEvent(GregCalendar.epochDay(2023, 1, 1) * DAY);
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+
+        ScheduleEventsGenerator generator = ((CompositeCron) union).getEventsGenerator(START - 2 * DAY, true);
+        long[] events = new long[1000];
+        assertEquals(generator.fill(events, 0, events.length, Long.MAX_VALUE), 2 + 365);
+
+        try // the intersection without events
+        {
+            CompositeCron.intersection(new Schedule("*:*:00"), new Schedule("*:*:30")).NextEvent(START);
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testJumpOverRuns() throws Exception
+    {
+        long july = GregCalendar.epochDay(2017, 7, 1) * DAY;
+        CompositeCron cron = CompositeCron.difference(new Schedule("*:*:*"), new Schedule("*.*.1-20 *:*:*"));
+
+        assertEquals(cron.NextEvent(july), july + 20 * DAY);
+        assertEquals(cron.NearestEvent(july + 5 * DAY), july + 20 * DAY);
+        assertEquals(cron.PrevEvent(july + 10 * DAY), july - 1000);
+        assertEquals(cron.getEventsGenerator(july, true).next().getTime(), july + 20 * DAY);
+        assertEquals(cron.getEventsGenerator(july + 10 * DAY, false).next().getTime(), july - 1000);
+
+        // the excluded days of the calendar: the years without them are skipped at once
+        LocalDate holiday = LocalDate.of(2021, 5, 3);
+        Cron open = CompositeCron.difference(new Schedule("*:*/10:00"),
+                new Schedule("*:*:*").excluding(HolidayCalendar.of(holiday)));
+        long monday = GregCalendar.epochDay(2021, 5, 3) * DAY;
+
+        assertEquals(open.NextEvent(START), monday);
+        assertEquals(open.PrevEvent(START + 1000 * DAY), monday + DAY - 10 * 60000L);
+        try
+        {
+            open.NextEvent(monday + DAY);
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            // expected: no days without events
+        }
+    }
+
+    @Test
+    public void testJumpsAsSteps() throws Exception
+    {
+        ZoneId india = ZoneId.of("+05:30");
+        Cron[][] differences = {
+                {new Schedule("*:*:*/10"), new Schedule("*.*.* 9-17:*:*")},
+                {new Schedule("*:*/5:0"), new Schedule("*.*.1-3 *:*:*"), new Schedule("*.*.* 0-1,22-23:*:*")},
+                {new Schedule("*:*:0"), new Schedule("*.*.* *:0-29:*")},
+                {new Schedule("*:*:*.0,500"), new Schedule("*:*:*")}, // the milliseconds are not covered
+                {new Schedule("*.*.* 1-5 *:*/15:00"), new Schedule("*.*.* 10-12:*:*"), new Schedule("*.*.* 6 *:*:*")},
+                {new Schedule("*:*:*/30", india), new Schedule("*.*.* 9-17:*:*", india)},
+                {new Schedule("*:*:*/30"), new Schedule("*.*.* 9-17:*:*", india)},
+                {new Schedule("*:*/30:0"), CompositeCron.union(new Schedule("*.*.* 1-3:*:*"), new Schedule("5:*:*"))},
+        };
+
+        Random random = new Random(7);
+        for (Cron[] crons : differences)
+        {
+            Cron[] excluded = Arrays.copyOfRange(crons, 1, crons.length);
+            CompositeCron cron = CompositeCron.difference(crons[0], excluded);
+
+            for (int n = 0; n < 300; n++)
+            {
+                long timestamp = START + (long) (random.nextDouble() * 60 * DAY);
+                if ( n % 2 == 0 ) timestamp -= timestamp % 1000L;
+
+                for (int mode = 0; mode < 4; mode++)
+                {
+                    boolean forward = mode < 2, canEqual = mode % 2 == 0;
+                    assertEquals(CompositeCron.search(cron, timestamp, forward, canEqual),
+                            stepOver(crons[0], excluded, timestamp, forward, canEqual), cron + " " + timestamp);
+                }
+            }
+
+            long[] events = generate(cron.getEventsGenerator(START, true), START + 3 * DAY);
+            for (int i = 1; i < events.length; i++)
+                assertEquals(events[i], cron.NextEvent(events[i - 1]), cron.toString());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmpty()
+    {
+        CompositeCron.union();
+    }
+
+
+
+    private static void check(CompositeCron cron, TreeSet<Long> expected, long from, long to)
+    {
+        // the searches from every event and between events
+        for (Long event : expected)
+        {
+            if ( event.equals(expected.first()) || event.equals(expected.last()) ) continue;
+
+            assertEquals(cron.NearestEvent(event), (long) event, cron + " " + event);
+            assertEquals(cron.NearestPrevEvent(event), (long) event, cron + " " + event);
+            assertEquals(cron.NextEvent(event), (long) expected.higher(event), cron + " " + event);
+            assertEquals(cron.PrevEvent(event), (long) expected.lower(event), cron + " " + event);
+            assertEquals(cron.NearestEvent(event - 1), (long) event, cron + " " + event);
+            assertEquals(cron.NearestPrevEvent(event + 1), (long) event, cron + " " + event);
+        }
+
+        // the generators in both directions
+        long[] forward = generate(cron.getEventsGenerator(from - 1, true), to - 1);
+        assertEquals(forward, toArray(expected), cron.toString());
+
+        long[] backward = generate(cron.getEventsGenerator(to, false), from);
+        long[] reversed = toArray(expected.descendingSet());
+        assertEquals(backward, reversed, cron.toString());
+
+        if ( expected.size() > 1 )
+        {
+            ScheduleEventsGenerator generator = cron.getEventsGenerator(from - 1, true);
+            assertEquals(generator.next().getTime(), (long) expected.first());
+            assertEquals(generator.next().getTime(), (long) expected.higher(expected.first()));
+        }
+    }
+
+    /**
+     * The difference by the steps over the base events.
+     */
+    private static long stepOver(Cron base, Cron[] excluded, long timestamp, boolean forward, boolean canEqual)
+    {
+        long event = CompositeCron.search(base, timestamp, forward, canEqual);
+        for (int i = 0; i < excluded.length; i++)
+        {
+            if ( CompositeCron.contains(excluded[i], event) )
+            {
+                event = CompositeCron.search(base, event, forward, false);
+                i = -1;
+            }
+        }
+        return event;
+    }
+
+    private static TreeSet<Long> events(Schedule schedule, long from, long to)
+    {
+        TreeSet<Long> result = new TreeSet<Long>();
+        for (long event : generate(schedule.getEventsGenerator(from - 1, true), to - 1)) result.add(event);
+        return result;
+    }
+
+    private static long[] generate(ScheduleEventsGenerator generator, long until)
+    {
+        long[] events = new long[1 << 20];
+        int count = generator.fill(events, 0, events.length, until);
+        return Arrays.copyOf(events, count);
+    }
+
+    private static long[] toArray(Set<Long> set)
+    {
+        long[] result = new long[set.size()];
+        int i = 0;
+        for (Long value : set) result[i++] = value;
+        return result;
+    }
+}
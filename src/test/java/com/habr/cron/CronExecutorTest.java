@@ -0,0 +1,265 @@
+package com.habr.cron;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class CronExecutorTest
+{
+    private static final long START = 1500000000000L;
+
+    private static final Executor DIRECT = new Executor()
+    {
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    @Test
+    public void testRunsByEvents() throws Exception
+    {
+        CronExecutor executor = manual(DIRECT, 64);
+        Counter counter = new Counter();
+        CronExecutor.Job job = executor.schedule(new Schedule("*:*:*.*/100"), counter, CronExecutor.MisfirePolicy.FIRE_ONCE, START);
+        assertEquals(job.getNextTime(), START + 100);
+
+        for (long now = START; now < START + 1010; now++)
+            executor.advance(now);
+        assertEquals(counter.get(), 9); // the event is dispatched after the end of its tick
+
+        executor.advance(START + 1010);
+        assertEquals(counter.get(), 10);
+        assertEquals(job.getNextTime(), START + 1100);
+
+        assertEquals(executor.getDispatchedCount(), 10);
+        assertEquals(executor.getMissedCount(), 0);
+        assertEquals(executor.getMaxLag(), 10);
+        assertEquals(executor.getAverageLag(), 10.0);
+        assertEquals(job.getLastLag(), 10);
+    }
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        CronExecutor executor = manual(DIRECT, 64);
+        Counter counter = new Counter();
+        CronExecutor.Job job = executor.schedule(new Schedule("*:*:*.*/100"), counter, CronExecutor.MisfirePolicy.FIRE_ONCE, START);
+
+        executor.advance(START + 310);
+        assertEquals(counter.get(), 3);
+
+        assertTrue(job.cancel());
+        assertFalse(job.cancel());
+        assertTrue(job.isCancelled());
+        assertTrue(job.isDone());
+        assertEquals(job.getNextTime(), Long.MAX_VALUE);
+
+        executor.advance(START + 1000);
+        assertEquals(counter.get(), 3);
+    }
+
+    @Test
+    public void testFinishedSchedule() throws Exception
+    {
+        CronExecutor executor = manual(DIRECT, 64);
+        Counter counter = new Counter();
+
+        CronExecutor.Job past = executor.schedule(new Schedule("2000.1.1 12:00:00"), counter, CronExecutor.MisfirePolicy.FIRE_ONCE, START);
+        assertTrue(past.isDone());
+        assertFalse(past.isCancelled());
+
+        CronExecutor.Job once = executor.schedule(new Schedule("2017.07.14 02:40:00.500"), counter, CronExecutor.MisfirePolicy.FIRE_ONCE, START);
+        assertEquals(once.getNextTime(), START + 500); // 1500000000000 is 2017-07-14 02:40:00 UTC
+
+        executor.advance(START + 1000);
+        assertEquals(counter.get(), 1);
+        assertTrue(once.isDone());
+        assertFalse(once.cancel());
+    }
+
+    @Test(dataProvider = "misfireDataProvider")
+    public void testMisfire(CronExecutor.MisfirePolicy policy, int runs, long missed) throws Exception
+    {
+        CronExecutor executor = manual(DIRECT, 64); // the round of wheel is 640 ms
+        Counter counter = new Counter();
+        CronExecutor.Job job = executor.schedule(new Schedule("*:*:*"), counter, policy, START);
+
+        executor.advance(START + 10500); // the events from START + 1000 to START + 10000 are due
+        assertEquals(counter.get(), runs);
+        assertEquals(executor.getMissedCount(), missed);
+        assertEquals(job.getNextTime(), START + 11000);
+
+        executor.advance(START + 11010);
+        assertEquals(counter.get(), runs + 1);
+        assertEquals(job.getLastLag(), 10);
+    }
+
+    @DataProvider
+    private Object[][] misfireDataProvider()
+    {
+        return new Object[][] {
+                {CronExecutor.MisfirePolicy.FIRE_ALL, 10, 9},
+                {CronExecutor.MisfirePolicy.FIRE_ONCE, 2, 9},   // once for the missed events, and START + 10000
+                {CronExecutor.MisfirePolicy.SKIP, 1, 9},        // the events from START + 1000 to START + 9000
+        };
+    }
+
+    @Test
+    public void testMisfireOfMicroseconds() throws Exception
+    {
+        CronExecutor executor = manual(DIRECT, 64);
+        Counter counter = new Counter();
+        executor.schedule(new Schedule("*:*:*.0.*/250"), counter, CronExecutor.MisfirePolicy.SKIP, START); // 4 events per second
+
+        executor.advance(START + 10500);
+        assertEquals(counter.get(), 1);
+        assertEquals(executor.getMissedCount(), 9); // the runs of the milliseconds, not the events inside them
+    }
+
+    @Test
+    public void testManyJobs() throws Exception
+    {
+        CronExecutor executor = manual(DIRECT, 1024);
+        Counter counter = new Counter();
+        String[] schedules = {"*:*:*", "*:*:*.*/250", "*:*:*.100,700", "*:*:*/2.5"};
+
+        for (int i = 0; i < 100000; i++)
+            executor.schedule(new Schedule(schedules[i % schedules.length]), counter, CronExecutor.MisfirePolicy.FIRE_ONCE, START);
+
+        for (long now = START; now <= START + 4000; now += 10)
+            executor.advance(now);
+
+        // the tick of START + 4000 is not passed yet
+        assertEquals(counter.get(), 25000 * (3 + 15 + 8 + 2));
+        assertEquals(executor.getMissedCount(), 0);
+        assertEquals(executor.getMaxLag(), 10);
+    }
+
+    @Test
+    public void testRejected() throws Exception
+    {
+        CronExecutor executor = manual(new Executor()
+        {
+            public void execute(Runnable command)
+            {
+                throw new RejectedExecutionException();
+            }
+        }, 64);
+        executor.schedule(new Schedule("*:*:*.*/100"), new Counter(), CronExecutor.MisfirePolicy.FIRE_ONCE, START);
+
+        executor.advance(START + 510);
+        assertEquals(executor.getRejectedCount(), 5);
+        assertEquals(executor.getDispatchedCount(), 5);
+    }
+
+    @Test
+    public void testFailedJob() throws Exception
+    {
+        final Counter failing = new Counter();
+        CronExecutor executor = manual(new Executor()
+        {
+            public void execute(Runnable command)
+            {
+                if ( command == failing ) throw new IllegalStateException("the failure of the task");
+                command.run();
+            }
+        }, 64);
+        Counter counter = new Counter();
+        CronExecutor.Job bad = executor.schedule(new Schedule("*:*:*.*/100"), failing, CronExecutor.MisfirePolicy.FIRE_ONCE, START);
+        CronExecutor.Job good = executor.schedule(new Schedule("*:*:*.*/100"), counter, CronExecutor.MisfirePolicy.FIRE_ONCE, START);
+
+        executor.advance(START + 510); // the failure doesn't stop the other jobs of the bucket
+        assertTrue(bad.isDone());
+        assertFalse(bad.isCancelled());
+        assertFalse(good.isDone());
+        assertEquals(counter.get(), 5);
+        assertEquals(executor.getFailedCount(), 1);
+
+        executor.advance(START + 1010);
+        assertEquals(counter.get(), 10);
+        assertEquals(executor.getFailedCount(), 1);
+    }
+
+    @Test
+    public void testTimerThread() throws Exception
+    {
+        CronExecutor executor = new CronExecutor(DIRECT, 1, 256, 1000);
+        final CountDownLatch latch = new CountDownLatch(5);
+
+        CronExecutor.Job job = executor.schedule(new Schedule("*:*:*.*/20"), new Runnable()
+        {
+            public void run()
+            {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(executor.getDispatchedCount() >= 5);
+        assertTrue(job.getNextTime() > System.currentTimeMillis() - 1000);
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(executor.isShutdown());
+    }
+
+    @Test
+    public void testDefaultExecutor() throws Exception
+    {
+        CronExecutor executor = new CronExecutor();
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        executor.schedule(new Schedule("*:*:*.*/50"), new Runnable()
+        {
+            public void run()
+            {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expectedExceptions = RejectedExecutionException.class)
+    public void testScheduleAfterShutdown() throws Exception
+    {
+        CronExecutor executor = manual(DIRECT, 64);
+        executor.shutdown();
+        executor.schedule(new Schedule("*:*:*"), new Counter());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongWheelSize() throws Exception
+    {
+        new CronExecutor(DIRECT, 10, 1000, 1000);
+    }
+
+    private static CronExecutor manual(Executor executor, int wheelSize)
+    {
+        return new CronExecutor(executor, false, 10, wheelSize, 1000, START, false);
+    }
+
+    private static final class Counter implements Runnable
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public void run()
+        {
+            count.incrementAndGet();
+        }
+
+        int get()
+        {
+            return count.get();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.habr.cron;
+
+import org.testng.annotations.Test;
+
+import java.util.Date;
+
+import static org.testng.Assert.*;
+
+public class CronTest
+{
+    private static final long START = 1609459200000L; // 2021.01.01
+
+    @Test
+    public void testDefaultTimestampMethods() throws Exception
+    {
+        final Schedule schedule = new Schedule("*.*.* 1-5 12:00:00");
+
+        Cron cron = new Cron() // the implementation of the Date methods only
+        {
+            public Date NearestEvent(Date d)
+            {
+                return schedule.NearestEvent(d);
+            }
+
+            public Date NearestPrevEvent(Date d)
+            {
+                return schedule.NearestPrevEvent(d);
+            }
+
+            public Date NextEvent(Date d)
+            {
+                return schedule.NextEvent(d);
+            }
+
+            public Date PrevEvent(Date d)
+            {
+                return schedule.PrevEvent(d);
+            }
+        };
+
+        for (long time = START; time < START + 8 * 86400000L; time += 3600000L)
+        {
+            assertEquals(cron.NearestEvent(time), schedule.NearestEvent(time));
+            assertEquals(cron.NearestPrevEvent(time), schedule.NearestPrevEvent(time));
+            assertEquals(cron.NextEvent(time), schedule.NextEvent(time));
+            assertEquals(cron.PrevEvent(time), schedule.PrevEvent(time));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.habr.cron;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class CrontabParserTest
+{
+    @Test(expectedExceptions = {ScheduleFormatException.class},
+            dataProvider = "parseInvalid_DataProvider")
+    public void testParse_WhenScheduleHasInvalidFormat(String schedule) throws Exception
+    {
+        new CrontabParser().parse(schedule);
+    }
+
+    @DataProvider
+    private Object[][] parseInvalid_DataProvider()
+    {
+        return new Object[][] {
+            {""}, {null}, {"  \t "}, {"tarabarschina"},
+            // wrong number of fields; the command is not a part of schedule
+            {"0 0 * *"}, {"0 0 * * * /bin/true"}, {"0 0 0 * * *"},
+            // unknown macros
+            {"@reboot"}, {"@daily 1"}, {"@"},
+            // out of range
+            {"60 * * * *"}, {"* 24 * * *"}, {"* * 0 * *"}, {"* * 32 * *"}, {"* * * 13 * "}, {"* * * * 8"},
+            // wrong syntax
+            {"1/5 * * * *"}, {"*/0 * * * *"}, {"1-5/0 * * * *"}, {"5-1 * * * *"}, {"* * * foo *"}, {"* * * * monday"},
+            {"1, * * * *"}, {"? * * * *"}, {"* * L * *"}, {"* * * * 5-2"},
+        };
+    }
+
+
+
+    @Test(dataProvider = "scheduleAndItsModels_DataProvider")
+    public void testModelBuilding(String schedule, String expected) throws Exception
+    {
+        CrontabParser parser = new CrontabParser();
+        parser.parse(schedule);
+        Assert.assertEquals(parser.getScheduleModel().toString(), expected);
+    }
+
+    @DataProvider
+    private Object[][] scheduleAndItsModels_DataProvider()
+    {
+        return new Object[][] {
+            {"* * * * *",                   "[*.*.*] * [*:*:0.0]"},
+            {"*/15 9-17 * * mon-fri",       "[*.*.*] 2-6 [9-17:*/15:0.0]"},
+            {"30 4 1,15 * 5",               "[*.*.1,15] |6 [4:30:0.0]"},    // the day of month OR Friday
+            {"30 4 */2 * 5",                "[*.*.*/2] 6 [4:30:0.0]"},      // '*' in the day of month: AND
+            {"30 4 1 * *",                  "[*.*.1] * [4:30:0.0]"},
+            {"0 0 * JAN,jul-Sep 7",         "[*.1,7-9.*] 1 [0:0:0.0]"},
+            {"0 0 * * 5-7",                 "[*.*.*] 6,7,1 [0:0:0.0]"},
+            {"0 0 * * 0-7/3",               "[*.*.*] 1,4,7 [0:0:0.0]"},
+            {"@yearly",                     "[*.1.1] * [0:0:0.0]"},
+            {"@Monthly",                    "[*.*.1] * [0:0:0.0]"},
+            {"@weekly",                     "[*.*.*] 1 [0:0:0.0]"},
+            {"  @daily ",                   "[*.*.*] * [0:0:0.0]"},
+            {"@hourly",                     "[*.*.*] * [*:0:0.0]"},
+        };
+    }
+}
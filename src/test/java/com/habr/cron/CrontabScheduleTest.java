@@ -0,0 +1,171 @@
+package com.habr.cron;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * The events of the crontab schedules are compared with the straightforward implementation of Vixie cron rules.
+ */
+public class CrontabScheduleTest
+{
+    private static final long FROM = 946684800000L; // 2000.01.01
+    private static final long TO = 2208988800000L; // 2040.01.01
+
+    @Test(dataProvider = "scheduleDataProvider")
+    public void testSameAsVixie(String line) throws Exception
+    {
+        Schedule schedule = Schedule.fromCrontab(line);
+        Vixie vixie = new Vixie(line);
+
+        Random random = new Random(line.hashCode());
+        for (int n = 0; n < 10; n++)
+        {
+            long start = FROM + (long) (random.nextDouble() * (TO - FROM));
+
+            long prev = -1;
+            for (int i = 0; i < 30; i++)
+            {
+                long expected = vixie.next(start);
+                String message = line + " after " + LocalDateTime.ofEpochSecond(start / 1000, 0, ZoneOffset.UTC);
+
+                assertEquals(schedule.NextEvent(start), expected, message);
+                if ( prev >= 0 ) assertEquals(schedule.PrevEvent(expected), prev, message);
+
+                prev = start = expected;
+            }
+        }
+    }
+
+    @DataProvider
+    private Object[][] scheduleDataProvider()
+    {
+        return new Object[][] {
+                {"* * * * *"},
+                {"*/15 9-17 * * mon-fri"},
+                {"30 4 1,15 * 5"},              // the 1st, the 15th and every Friday
+                {"30 4 */2 * 5"},               // odd days, if they are Fridays
+                {"0 0 13 * 5"},                 // the 13th and every Friday
+                {"0 12 31 * 1-3"},
+                {"0 12 29 2 0"},                // 29 Feb and every Sunday of February
+                {"0 12 29 2 *"},
+                {"0 0 30 2 1"},                 // only Mondays of February
+                {"5 0 * 8 *"},
+                {"0 22 * * 1-5"},
+                {"23 0-20/2 * * *"},
+                {"0 0 1-7 * 7"},
+                {"0 0 20-31/3 jan,jun-aug 6-7"},
+                {"@weekly"},
+                {"5,5 * * * *"},                // the repeated values
+                {"0 0 1,1 * *"},
+                {"@monthly"},
+        };
+    }
+
+    @Test
+    public void testDaysUnion() throws Exception
+    {
+        // 2021: 1 September is Wednesday
+        Schedule schedule = Schedule.fromCrontab("0 0 1,15 * wed");
+
+        assertEquals(schedule.NextEvent(utc(2021, 9, 1)), utc(2021, 9, 8));
+        assertEquals(schedule.NextEvent(utc(2021, 9, 9)), utc(2021, 9, 15));
+        assertEquals(schedule.NextEvent(utc(2021, 9, 15)), utc(2021, 9, 22));
+        assertEquals(schedule.PrevEvent(utc(2021, 9, 8)), utc(2021, 9, 1));
+        assertEquals(schedule.countEvents(utc(2021, 9, 1), utc(2021, 10, 1)), 5); // 1, 8, 15, 22, 29
+
+        // '*' in the day of month: only Wednesdays
+        assertEquals(Schedule.fromCrontab("0 0 * * wed").countEvents(utc(2021, 9, 1), utc(2021, 10, 1)), 5);
+        assertEquals(Schedule.fromCrontab("0 0 */14 * wed").countEvents(utc(2021, 9, 1), utc(2021, 10, 1)), 3); // 1, 15, 29
+    }
+
+    private static long utc(int year, int month, int day)
+    {
+        return GregCalendar.epochDay(year, month, day) * 86400000L;
+    }
+
+    /**
+     * Straightforward Vixie cron: the sets of values by the fields, and the search day by day.
+     */
+    private static final class Vixie
+    {
+        private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"};
+        private static final String[] DAYS = {"sun", "mon", "tue", "wed", "thu", "fri", "sat"};
+
+        private final boolean[] minutes, hours, days, months, weekdays;
+        private final boolean union;
+
+        Vixie(String line)
+        {
+            if ( line.equals("@weekly") ) line = "0 0 * * 0";
+            if ( line.equals("@monthly") ) line = "0 0 1 * *";
+
+            String[] fields = line.split(" ");
+            minutes = values(fields[0], 0, 59, null);
+            hours = values(fields[1], 0, 23, null);
+            days = values(fields[2], 1, 31, null);
+            months = values(fields[3], 1, 12, MONTHS);
+            weekdays = values(fields[4], 0, 7, DAYS);
+            weekdays[0] |= weekdays[7];
+            union = !fields[2].startsWith("*") && !fields[4].startsWith("*");
+        }
+
+        long next(long start)
+        {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(start, 60000) * 60, 0, ZoneOffset.UTC).plusMinutes(1);
+            LocalDate date = time.toLocalDate();
+            int minute = time.getHour() * 60 + time.getMinute(); // the first minute of the day to check
+
+            for (;; date = date.plusDays(1), minute = 0)
+            {
+                boolean day = days[date.getDayOfMonth()];
+                boolean weekday = weekdays[date.getDayOfWeek().getValue() % 7];
+                if ( !months[date.getMonthValue()] || !(union ? day || weekday : day && weekday) ) continue;
+
+                for (; minute < 1440; minute++)
+                    if ( hours[minute / 60] && minutes[minute % 60] )
+                        return (date.toEpochDay() * 1440 + minute) * 60000;
+            }
+        }
+
+        private static boolean[] values(String field, int min, int max, String[] names)
+        {
+            boolean[] result = new boolean[max + 1];
+            for (String item : field.split(","))
+            {
+                int step = 1;
+                if ( item.contains("/") )
+                {
+                    step = Integer.parseInt(item.substring(item.indexOf('/') + 1));
+                    item = item.substring(0, item.indexOf('/'));
+                }
+
+                int from = min, to = max;
+                if ( !item.equals("*") )
+                {
+                    String[] bounds = item.split("-");
+                    from = value(bounds[0], names);
+                    to = bounds.length > 1 ? value(bounds[1], names) : from;
+                }
+
+                for (int i = from; i <= to; i += step) result[i] = true;
+            }
+            return result;
+        }
+
+        private static int value(String value, String[] names)
+        {
+            if ( names != null )
+                for (int i = 0; i < names.length; i++)
+                    if ( names[i].equals(value) ) return names == MONTHS ? i + 1 : i;
+
+            return Integer.parseInt(value);
+        }
+    }
+}
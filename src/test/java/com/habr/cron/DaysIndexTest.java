@@ -0,0 +1,157 @@
+package com.habr.cron;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static com.habr.cron.ScheduleElements.*;
+import static org.testng.Assert.assertEquals;
+
+public class DaysIndexTest
+{
+    @Test(dataProvider = "scheduleDataProvider")
+    public void testSameAsMatchers(String schedule) throws Exception
+    {
+        MatcherPool pool = new MatcherPool(Schedule.parse(schedule));
+        DigitMatcher[] matchers = pool.getMatchersForSchedule();
+        DaysIndex index = pool.getDaysIndex();
+
+        GregCalendar calendar = new GregCalendar(0);
+        DigitMatcher days = new LastDayOfMonthProxy(matchers[DAY_OF_MONTH.ordinal()], calendar);
+
+        for (int year = 1999; year <= 2030; year++)
+        {
+            DaysIndex.YearDays map = index.getYear(year);
+            int dayOfYear = 0;
+
+            for (int month = 1; month <= 12; month++)
+            {
+                calendar.year = year;
+                calendar.month = month;
+
+                for (int day = 1; day <= calendar.getMaxDay(); day++, dayOfYear++)
+                {
+                    calendar.day = day;
+                    boolean expected = matches(matchers[YEAR.ordinal()], year)
+                            && matches(matchers[MONTH.ordinal()], month)
+                            && days.match(day)
+                            && pool.getWeekDaysMap().contains(calendar.getDayOfWeek());
+
+                    assertEquals(DaysIndex.match(map, dayOfYear), expected, schedule + ", " + year + "." + month + "." + day);
+                }
+            }
+        }
+    }
+
+    @Test(dataProvider = "scheduleDataProvider")
+    public void testProxySameAsScan(String schedule) throws Exception
+    {
+        MatcherPool pool = new MatcherPool(Schedule.parse(schedule));
+        GregCalendar calendar = new GregCalendar(0);
+        DaysIndexProxy proxy = new DaysIndexProxy(pool.getDaysIndex(), calendar);
+
+        for (int year = 2019; year <= 2021; year++)
+            for (int month = 1; month <= 12; month++)
+            {
+                calendar.year = year;
+                calendar.month = month;
+                int length = calendar.getMaxDay();
+
+                for (int day = 1; day <= length; day++)
+                {
+                    String message = schedule + ", " + year + "." + month + "." + day;
+
+                    int next = day + 1;
+                    while ( next <= length && !proxy.match(next) ) next++;
+                    assertEquals(proxy.hasNext(day), next <= length, message);
+                    if ( next <= length ) assertEquals(proxy.getNext(day), next, message);
+
+                    int prev = day - 1;
+                    while ( prev >= 1 && !proxy.match(prev) ) prev--;
+                    assertEquals(proxy.hasPrev(day), prev >= 1, message);
+                    if ( prev >= 1 ) assertEquals(proxy.getPrev(day), prev, message);
+                }
+            }
+    }
+
+    @Test(dataProvider = "scheduleDataProvider")
+    public void testCountYearDaysSameAsSum(String schedule) throws Exception
+    {
+        MatcherPool pool = new MatcherPool(Schedule.parse(schedule));
+        DigitMatcher years = pool.getMatchersForSchedule()[YEAR.ordinal()];
+        HolidayCalendar holidays = HolidayCalendar.parse("*-01-01\n2021-02-01..2021-03-15\n2400-02-29\n9999-12-31");
+
+        for (DaysIndex index : new DaysIndex[] {pool.getDaysIndex(), pool.getDaysIndex().excluding(holidays)})
+        {
+            long[] sums = new long[YEAR.max + 2]; // the days of the years before
+            for (int year = YEAR.min; year <= YEAR.max; year++)
+                sums[year + 1] = sums[year] + (matches(years, year) ? index.getYearDays(year) : 0);
+
+            int[] bounds = {0, 1, 127, 128, 129, 1999, 2000, 2021, 2022, 2399, 2401, 5000, 9999, 10000};
+            for (int from : bounds)
+                for (int to : bounds)
+                    assertEquals(index.countYearDays(from, to), from < to ? sums[to] - sums[from] : 0,
+                            schedule + ", " + from + ".." + to + (index.hasHolidays() ? " with holidays" : ""));
+        }
+    }
+
+    @DataProvider
+    private Object[][] scheduleDataProvider()
+    {
+        return new Object[][] {
+                {"*.*.* 1-5 12:00:00"},
+                {"*.*.32 0 12:00:00"},                  // the last Sunday of month
+                {"*.*.20-32/3 6 12:00:00"},
+                {"*.2.29 1 12:00:00"},                  // Monday on 29 Feb, once in 28 years
+                {"2020-2024.1,5,9-11.1-5,20-31 3,4 12:00:00"},
+                {"*.*.31 2 12:00:00"},                  // the months without 31th are empty
+                {"*/7.3.1-7 5 12:00:00"},               // the first Friday of March of every 7th year
+        };
+    }
+
+    @Test
+    public void testNextAndPrevInYear() throws Exception
+    {
+        MatcherPool pool = new MatcherPool(Schedule.parse("*.1,12.1,31 *:*:*"));
+        DaysIndex.YearDays map = pool.getDaysIndex().getYear(2021);
+
+        assertEquals(DaysIndex.next(map, 0), 0); // 1 Jan
+        assertEquals(DaysIndex.next(map, 1), 30); // 31 Jan
+        assertEquals(DaysIndex.next(map, 31), 334); // 1 Dec
+        assertEquals(DaysIndex.next(map, 335), 364); // 31 Dec
+        assertEquals(DaysIndex.next(map, 365), 366); // no more days
+
+        assertEquals(DaysIndex.prev(map, 363), 334);
+        assertEquals(DaysIndex.prev(map, 333), 30);
+        assertEquals(DaysIndex.prev(map, -1), -1);
+
+        assertEquals(DaysIndex.next(pool.getDaysIndex().getYear(2020), 336), 365); // 31 Dec of the leap year
+    }
+
+    @Test
+    public void testMatchedYears() throws Exception
+    {
+        MatcherPool pool = new MatcherPool(Schedule.parse("2000-2100.02.29 6 12:00:00")); // Saturday
+        DigitMatcher years = pool.getDaysIndex().getMatchedYears();
+
+        assertEquals(years.getLow(), 2020);
+        assertEquals(years.getHigh(), 2076);
+        assertEquals(years.match(2048), true);
+        assertEquals(years.match(2024), false);
+        assertEquals(years.getNext(2020), 2048);
+        assertEquals(years.getPrev(2048), 2020);
+        assertEquals(years.getNext(2000), 2020);
+        assertEquals(years.hasNext(2076), false);
+        assertEquals(years.hasPrev(2020), false);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testNoMatchedYears() throws Exception
+    {
+        new Schedule("2022.02.28 0 12:00:00").NextEvent(0); // it's Monday
+    }
+
+    private static boolean matches(DigitMatcher matcher, int value)
+    {
+        return matcher.getLow() <= value && value <= matcher.getHigh() && matcher.match(value);
+    }
+}
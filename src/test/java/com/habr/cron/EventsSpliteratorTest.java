@@ -0,0 +1,156 @@
+package com.habr.cron;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+import static org.testng.Assert.*;
+
+public class EventsSpliteratorTest
+{
+    private static final long FROM = 1609459200000L; // 2021.01.01
+
+    @DataProvider
+    private Object[][] scheduleDataProvider()
+    {
+        return new Object[][] {
+                {"*:*:*", 86400000L},
+                {"*:*:*.*/10", 3600000L},
+                {"*:*/7:0", 40 * 86400000L},
+                {"*.*.* 1,3,5 *:*/5:0", 400 * 86400000L},
+                {"*.*.32 12:00:00", 10 * 366 * 86400000L},
+                {"2021.06.10-20 10:*:*", 366 * 86400000L},
+                {"*:*:*.*.*/250", 60000L}, // events in microseconds: the size is not exact
+        };
+    }
+
+    @Test(dataProvider = "scheduleDataProvider")
+    public void testSameAsGenerator(String line, long length) throws Exception
+    {
+        Schedule schedule = new Schedule(line);
+        long from = FROM + 123, to = FROM + length;
+
+        long[] expected = generate(schedule, from, to);
+
+        assertEquals(schedule.events(from, to).toArray(), expected);
+        assertEquals(schedule.events(from, to).parallel().toArray(), expected);
+        assertEquals(schedule.events(from, to).parallel().count(), expected.length);
+    }
+
+    @Test(dataProvider = "scheduleDataProvider")
+    public void testSplitting(String line, long length) throws Exception
+    {
+        Schedule schedule = new Schedule(line);
+        long from = FROM, to = FROM + length;
+        long[] expected = generate(schedule, from, to);
+
+        List<Spliterator.OfLong> parts = new ArrayList<Spliterator.OfLong>();
+        split(schedule.events(from, to).spliterator(), parts, 6);
+        assertTrue(parts.size() > 1, "the interval is not split");
+
+        long[] actual = new long[expected.length];
+        final int[] count = {0};
+        for (Spliterator.OfLong part : parts)
+        {
+            long size = part.getExactSizeIfKnown();
+            int before = count[0];
+
+            final long[] out = actual;
+            part.forEachRemaining(new LongConsumer()
+            {
+                public void accept(long event)
+                {
+                    out[count[0]++] = event;
+                }
+            });
+
+            assertTrue(count[0] > before, "empty part");
+            if ( !line.endsWith("/250") ) assertEquals(count[0] - before, size);
+        }
+
+        assertEquals(count[0], expected.length);
+        assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testExactSize() throws Exception
+    {
+        Spliterator.OfLong events = new Schedule("*:*:*/10").events(FROM, FROM + 86400000L).spliterator();
+        assertTrue(events.hasCharacteristics(Spliterator.SIZED | Spliterator.SORTED | Spliterator.DISTINCT));
+        assertEquals(events.getExactSizeIfKnown(), 8640);
+
+        events.tryAdvance(new LongConsumer()
+        {
+            public void accept(long event)
+            {
+                assertEquals(event, FROM);
+            }
+        });
+        assertEquals(events.getExactSizeIfKnown(), 8639);
+        assertNull(events.trySplit()); // the traverse is started
+
+        assertFalse(new Schedule("*:*:*.*.*/250").events(FROM, FROM + 1000).spliterator()
+                .hasCharacteristics(Spliterator.SIZED));
+    }
+
+    @Test
+    public void testEmptyIntervals() throws Exception
+    {
+        assertEquals(new Schedule("*:*:*").events(FROM, FROM).count(), 0);
+        assertEquals(new Schedule("*:*:*").events(FROM + 1, FROM + 1000).count(), 0);
+        assertEquals(new Schedule("*:*:*").events(FROM + 1000, FROM).count(), 0);
+        assertEquals(new Schedule("2020.*.* *:*:*").events(FROM, FROM + 86400000L).parallel().count(), 0); // it's over
+        assertNull(new Schedule("*.*.* 12:00:00").events(FROM, FROM + 86400000L).spliterator().trySplit()); // one event
+    }
+
+    @Test
+    public void testZone() throws Exception
+    {
+        Schedule schedule = new Schedule("*.*.* *:*/30:00", ZoneId.of("Europe/Berlin"));
+        long from = 1616893200000L - 86400000L, to = from + 3 * 86400000L; // around 28 Mar 2021, clocks go forward
+
+        long[] expected = generate(schedule, from, to);
+        assertEquals(schedule.events(from, to).parallel().toArray(), expected);
+        assertEquals(schedule.events(from, to).count(), schedule.countEvents(from, to));
+    }
+
+    @Test
+    public void testInstants() throws Exception
+    {
+        Schedule schedule = new Schedule("*:*:*.0-999/250");
+        Instant from = Instant.ofEpochMilli(FROM).plusNanos(1), to = Instant.ofEpochMilli(FROM + 1000).plusNanos(1);
+
+        Instant[] events = schedule.events(from, to).toArray(Instant[]::new);
+        assertEquals(Arrays.asList(events), Arrays.asList(Instant.ofEpochMilli(FROM + 250),
+                Instant.ofEpochMilli(FROM + 500), Instant.ofEpochMilli(FROM + 750), Instant.ofEpochMilli(FROM + 1000)));
+    }
+
+
+
+    private static long[] generate(Schedule schedule, long from, long to)
+    {
+        ScheduleEventsGenerator generator = schedule.getEventsGenerator(from - 1, true);
+        long[] events = new long[1 << 22];
+        int count = generator.fill(events, 0, events.length, to - 1);
+        return Arrays.copyOf(events, count);
+    }
+
+    private static void split(Spliterator.OfLong spliterator, List<Spliterator.OfLong> parts, int depth)
+    {
+        Spliterator.OfLong prefix = depth > 0 ? spliterator.trySplit() : null;
+        if ( prefix != null )
+        {
+            split(prefix, parts, depth - 1);
+            split(spliterator, parts, depth - 1);
+        }
+        else
+            parts.add(spliterator);
+    }
+}
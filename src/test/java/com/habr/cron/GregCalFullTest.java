@@ -2,6 +2,7 @@ package com.habr.cron;
 
 import org.testng.annotations.Test;
 
+import java.time.LocalDate;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -45,4 +46,27 @@ public class GregCalFullTest
             javaCal.add(Calendar.DAY_OF_YEAR, 1);
         }
     }
+
+    @Test
+    public void testProlepticRange() throws Exception
+    {
+        LocalDate date = LocalDate.of(ScheduleElements.YEAR.min, 1, 1);
+        LocalDate end = LocalDate.of(ScheduleElements.YEAR.max, 12, 31);
+        GregCalendar gregCal = new GregCalendar(0);
+
+        while ( !date.isAfter(end) ) // java.util.GregorianCalendar is Julian before 1582, so java.time used
+        {
+            long timestamp = date.toEpochDay() * 86400000L + 45296789L; // at 12:34:56.789
+            gregCal.setTimestamp(timestamp);
+
+            assertEquals(gregCal.year, date.getYear(), "Year not equals " + date);
+            assertEquals(gregCal.month, date.getMonthValue(), "Month not equals " + date);
+            assertEquals(gregCal.day, date.getDayOfMonth(), "Days not equals " + date);
+            assertEquals(gregCal.getDayOfWeek(), date.getDayOfWeek().getValue() % 7, "Weekday not equals " + date);
+            assertEquals(gregCal.getMaxDay(), date.lengthOfMonth(), "Month length not equals " + date);
+            assertEquals(gregCal.asTimestamp(), timestamp, "The reverse conversion was performed incorrectly " + date);
+
+            date = date.plusDays(1);
+        }
+    }
 }
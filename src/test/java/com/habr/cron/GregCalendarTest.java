@@ -88,6 +88,14 @@ public class GregCalendarTest
 
                 {"01.01.2100 00:00:00.000"},
                 {"31.12.2100 23:59:59.999"},
+                {"01.03.2100 00:00:00.000"},
+                {"29.02.2400 12:00:00.000"},
+                {"31.12.9999 23:59:59.999"},
+
+                {"31.12.1969 23:59:59.999"},
+                {"28.02.1900 07:15:00.001"},
+                {"01.03.1900 00:00:00.000"},
+                {"29.02.1600 12:00:00.000"},
         };
     }
     @Test(dataProvider = "testConstructorData")
@@ -114,6 +122,12 @@ public class GregCalendarTest
         assertFalse(calendar.isLeap());
         calendar.year = 1970;
         assertFalse(calendar.isLeap());
+        calendar.year = 1900;
+        assertFalse(calendar.isLeap());
+        calendar.year = 2400;
+        assertTrue(calendar.isLeap());
+        calendar.year = 0;
+        assertTrue(calendar.isLeap());
     }
 
     @Test
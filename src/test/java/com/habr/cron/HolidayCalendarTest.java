@@ -0,0 +1,181 @@
+package com.habr.cron;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * The events of the schedules without the holidays are compared with the filtered events of the source schedules.
+ */
+public class HolidayCalendarTest
+{
+    private static final long START = 1609459200000L; // 2021.01.01, Friday
+    private static final long DAY = 86400000L;
+
+    private static final String HOLIDAYS =
+            "# public holidays\n" +
+            "*-01-01\n" +
+            "*-12-25          # Christmas\n" +
+            "2021-05-03..2021-05-10\n" +
+            "\n" +
+            "2021-06-14\n" +
+            "2022-02-28\n" +
+            "2024-02-29\n";
+
+    @Test
+    public void testParse() throws Exception
+    {
+        HolidayCalendar calendar = HolidayCalendar.parse(HOLIDAYS);
+
+        assertTrue(calendar.contains(2021, 1, 1));
+        assertTrue(calendar.contains(2150, 1, 1));
+        assertTrue(calendar.contains(2023, 12, 25));
+        assertTrue(calendar.contains(2021, 5, 3));
+        assertTrue(calendar.contains(2021, 5, 7));
+        assertTrue(calendar.contains(2021, 5, 10));
+        assertFalse(calendar.contains(2021, 5, 11));
+        assertFalse(calendar.contains(2022, 6, 14));
+        assertTrue(calendar.contains(2024, 2, 29));
+
+        HolidayCalendar range = HolidayCalendar.parse("2021-12-30..2022-01-02");
+        assertTrue(range.contains(2021, 12, 31));
+        assertTrue(range.contains(2022, 1, 2));
+        assertFalse(range.contains(2022, 1, 3));
+
+        HolidayCalendar union = range.union(HolidayCalendar.of(LocalDate.of(2030, 7, 4)));
+        assertTrue(union.contains(2030, 7, 4));
+        assertTrue(union.contains(2021, 12, 30));
+        assertFalse(range.contains(2030, 7, 4));
+    }
+
+    @DataProvider
+    private Object[][] invalidDataProvider()
+    {
+        return new Object[][] {
+                {"2021-13-01"},
+                {"2021-02-29"},
+                {"*-02-30"},
+                {"2021-1-1-1"},
+                {"2021/01/01"},
+                {"2021-01-0x"},
+                {"2021-01-10..2021-01-01"},
+                {"10000-01-01"},
+                {"*-04-31"},
+        };
+    }
+
+    @Test(dataProvider = "invalidDataProvider", expectedExceptions = ScheduleFormatException.class)
+    public void testInvalid(String text) throws Exception
+    {
+        HolidayCalendar.parse("2021-01-01\n" + text);
+    }
+
+    @DataProvider
+    private Object[][] schedulesDataProvider()
+    {
+        return new Object[][] {
+                {"*.*.* 12:00:00"},
+                {"*.*.* 1-5 9,17:00:00"},
+                {"*.*.1,15,32 8:30:00"},
+                {"*.2.* 0:0:0"},
+                {"*.*.* *:00:00"},
+                {"*.*.* 1 10:00:00"},
+        };
+    }
+
+    @Test(dataProvider = "schedulesDataProvider")
+    public void testExcludedDays(String text) throws Exception
+    {
+        HolidayCalendar calendar = HolidayCalendar.parse(HOLIDAYS);
+        Schedule source = new Schedule(text);
+        Schedule schedule = source.excluding(calendar);
+
+        long from = START, to = GregCalendar.epochDay(2025, 1, 1) * DAY;
+        long[] expected = filter(generate(source.getEventsGenerator(from - 1, true), to - 1), calendar);
+
+        assertEquals(generate(schedule.getEventsGenerator(from - 1, true), to - 1), expected, text);
+        assertEquals(schedule.events(from, to).toArray(), expected, text);
+        assertEquals(schedule.countEvents(from, to), expected.length, text);
+
+        long[] reversed = generate(schedule.getEventsGenerator(to, false), from);
+        for (int i = 0; i < reversed.length; i++)
+            assertEquals(reversed[i], expected[expected.length - 1 - i], text);
+
+        for (int i = 1; i < expected.length - 1; i += 7)
+        {
+            long event = expected[i];
+            assertEquals(schedule.NextEvent(event), expected[i + 1], text);
+            assertEquals(schedule.PrevEvent(event), expected[i - 1], text);
+            assertEquals(schedule.NearestEvent(expected[i - 1] + 1), event, text);
+            assertEquals(schedule.NearestPrevEvent(expected[i + 1] - 1), event, text);
+        }
+    }
+
+    @Test
+    public void testWeekdaysWithoutHolidays() throws Exception
+    {
+        Schedule schedule = new Schedule("*.*.* 1-5 9:00:00").excluding(HolidayCalendar.parse(HOLIDAYS));
+
+        long friday = GregCalendar.epochDay(2021, 4, 30) * DAY;
+        assertEquals(schedule.NextEvent(friday + 9 * 3600000L), GregCalendar.epochDay(2021, 5, 11) * DAY + 9 * 3600000L);
+        assertEquals(schedule.PrevEvent(GregCalendar.epochDay(2021, 5, 11) * DAY), friday + 9 * 3600000L);
+        assertEquals(schedule.NextEvent(START - 1), GregCalendar.epochDay(2021, 1, 4) * DAY + 9 * 3600000L); // not 1 Jan
+        assertEquals(schedule.toString(), "*.*.* 1-5 9:00:00");
+    }
+
+    @Test
+    public void testChainedCalendars() throws Exception
+    {
+        Schedule schedule = new Schedule("*.*.* 12:00:00")
+                .excluding(HolidayCalendar.of(LocalDate.of(2021, 1, 2)))
+                .excluding(HolidayCalendar.parse("2021-01-03"));
+
+        assertEquals(schedule.NextEvent(START + 12 * 3600000L), START + 3 * DAY + 12 * 3600000L);
+        assertEquals(schedule.countEvents(START, START + 10 * DAY), 8);
+    }
+
+    @Test
+    public void testAllDaysExcluded() throws Exception
+    {
+        Schedule schedule = new Schedule("2021.01.* 12:00:00").excluding(HolidayCalendar.parse("2021-01-01..2021-01-31"));
+        try
+        {
+            schedule.NextEvent(START - 1);
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+        assertEquals(schedule.countEvents(START, START + 31 * DAY), 0);
+    }
+
+
+
+    private static long[] filter(long[] events, HolidayCalendar calendar)
+    {
+        List<Long> result = new ArrayList<Long>();
+        for (long event : events)
+        {
+            GregCalendar day = new GregCalendar(event);
+            if ( !calendar.contains(day.year, day.month, day.day) ) result.add(event);
+        }
+
+        long[] array = new long[result.size()];
+        for (int i = 0; i < array.length; i++) array[i] = result.get(i);
+        return array;
+    }
+
+    private static long[] generate(ScheduleEventsGenerator generator, long until)
+    {
+        long[] events = new long[1 << 16];
+        int count = generator.fill(events, 0, events.length, until);
+        return Arrays.copyOf(events, count);
+    }
+}
@@ -101,9 +101,12 @@ public class ListOfIntervalsTest
                 {49, 48},
                 {42, 41},
                 {41, 30},
+                {35, 30}, // between the intervals
+                {31, 30},
                 {30, 29},
                 {22, 21},
                 {21, 18},
+                {20, 18},
                 {18, 17},
                 {12, 10},
                 {10, 9},
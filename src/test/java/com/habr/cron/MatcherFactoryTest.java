@@ -3,7 +3,7 @@ package com.habr.cron;
 import org.testng.annotations.Test;
 
 import static com.habr.cron.ScheduleElements.*;
-import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.*;
 
 public class MatcherFactoryTest
 {
@@ -118,4 +118,76 @@ public class MatcherFactoryTest
 */
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSharedInstances() throws Exception
+    {
+        RangeList first = new RangeList(2);
+        first.add(new Range(40, 45));
+        first.add(new Range(5, 10));
+
+        RangeList second = new RangeList(2);
+        second.add(new Range(5, 10));
+        second.add(new Range(40, 45));
+
+        DigitMatcher matcher = MatcherFactory.createInstance(first, MINUTES);
+        assertSame(MatcherFactory.createInstance(second, MINUTES), matcher); // the lists are sorted for the key
+        assertNotSame(MatcherFactory.createInstance(new RangeList(Range.ASTERISK), MINUTES),
+                MatcherFactory.createInstance(new RangeList(Range.ASTERISK), SECONDS)); // '*' has other bounds
+
+        RangeList repeated = new RangeList(2); // '13,13' is '13'
+        repeated.add(new Range(13, 13));
+        repeated.add(new Range(13, 13));
+        assertSame(MatcherFactory.createInstance(repeated, HOURS), MatcherFactory.createInstance(new RangeList(new Range(13, 13)), HOURS));
+
+        RangeList overlapped = new RangeList(2); // '10-20,15-30' is '10-30'
+        overlapped.add(new Range(15, 30));
+        overlapped.add(new Range(10, 20));
+        assertSame(MatcherFactory.createInstance(overlapped, MINUTES), MatcherFactory.createInstance(new RangeList(new Range(10, 30)), MINUTES));
+
+        assertSame(MatcherFactory.createInstance(new RangeList(new Range(0, 59, 5)), MINUTES),
+                MatcherFactory.createInstance(new RangeList(new Range(5, true)), MINUTES)); // '0-59/5' is '*/5'
+        assertSame(MatcherFactory.createInstance(new RangeList(new Range(0, 59)), SECONDS),
+                MatcherFactory.createInstance(new RangeList(Range.ASTERISK), SECONDS)); // '0-59' is '*'
+        assertSame(MatcherFactory.createInstance(new RangeList(new Range(10, 17, 4)), HOURS),
+                MatcherFactory.createInstance(new RangeList(new Range(10, 14, 4)), HOURS)); // '10-17/4' is '10-14/4'
+        assertSame(MatcherFactory.createInstance(new RangeList(new Range(10, 12, 5)), HOURS),
+                MatcherFactory.createInstance(new RangeList(new Range(10)), HOURS)); // '10-12/5' is '10'
+
+        long requests = MatcherFactory.getRequestCount();
+        long created = MatcherFactory.getCreatedCount();
+        new Schedule("*.*.* *:5-10,40-45:0");
+
+        assertTrue(MatcherFactory.getRequestCount() >= requests + 8);
+        assertTrue(MatcherFactory.getCreatedCount() >= created);
+        assertTrue(MatcherFactory.getRequestCount() > MatcherFactory.getCreatedCount());
+    }
+
+    @Test
+    public void testSourceRangesAreNotModified() throws Exception
+    {
+        RangeList ranges = new RangeList(3);
+        ranges.add(new Range(15, 30));
+        ranges.add(new Range(10, 20));
+        ranges.add(new Range(10, 20));
+
+        DigitMatcher matcher = MatcherFactory.createInstance(ranges, MINUTES);
+
+        assertEquals(ranges.toString(), "15-30,10-20,10-20");
+        assertTrue(matcher.isBelow(9) && !matcher.isBelow(10) && !matcher.isAbove(30) && matcher.isAbove(31));
+    }
+
+    @Test
+    public void testSteppedListOfAsterisk() throws Exception
+    {
+        RangeList ranges = new RangeList(2); // '*/20,5' is '0-40/20,5'
+        ranges.add(new Range(20, true));
+        ranges.add(new Range(5));
+
+        DigitMatcher matcher = MatcherFactory.createInstance(ranges, MINUTES);
+
+        assertTrue(matcher.isAbove(41));
+        for (int value = 0; value <= 40; value++)
+            assertEquals(matcher.match(value), value % 20 == 0 || value == 5, "value " + value);
+    }
+}
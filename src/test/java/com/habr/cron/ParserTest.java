@@ -4,6 +4,8 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.nio.CharBuffer;
+
 public class ParserTest
 {
     @Test(expectedExceptions = {ScheduleFormatException.class},
@@ -33,11 +35,13 @@ public class ParserTest
             // out of range of the element
             {"1-8 12:00:00"},
             // going beyond the acceptable limits in the element schedule
-            {"24:00:00"}, {"1999.01.12 12:00:00"}, {"2000.13.01 12:00:00"}, {"2000.12.33 12:00:00"},
+            {"24:00:00"}, {"10000.01.12 12:00:00"}, {"2000.13.01 12:00:00"}, {"2000.12.33 12:00:00"},
             // the leap day 02.29 is explicitly set for a non-leap year
             {"2021.2.29 12:*:*"},
             // missing date or time component
             {"2021.2 12:*:*"}, {"2021.2.29 12:*"}, {"12:*.123"},
+            // missing milliseconds after dot; too big number
+            {"12:00:00."}, {"12:00:.5"}, {"12:00:00.1.2.3.4"}, {"12:00:00.0.1000"}, {"12:00:00.0.0.-1"}, {"2147483648:00:00"}, {"1-2147483648:00:00"}, {"*/2147483648:00:00"},
         };
     }
 
@@ -67,6 +71,54 @@ public class ParserTest
             {"2020.2.29 12:*:*",        "[2020.2.29] * [12:*:*.0]"},
             {"*.1-6/2.1,4-13/2,17,27 12:*/3:*",        "[*.1-6/2.1,4-13/2,17,27] * [12:*/3:*.0]"},
             {"002020.001.3 * 1:1:1.004",         "[2020.1.3] * [1:1:1.4]"},
+            // microseconds and nanoseconds; the zeros are not shown
+            {"*:*:*.*.500",             "[*.*.*] * [*:*:*.*.500.0]"},
+            {"*:*:*.1.*/250.1-999",     "[*.*.*] * [*:*:*.1.*/250.1-999]"},
+            {"*:*:*.1.0.0",             "[*.*.*] * [*:*:*.1]"},
+            // the quirks of the former String.split & StringTokenizer: trailing separators and empty items are skipped
+            {"2020.1.3.. 1:1:1.4.5..",  "[2020.1.3] * [1:1:1.4.5.0]"},
+            {"  *.*.*   1,,3,  *:*/1:*",  "[*.*.*] 2,4 [*:*:*.0]"},
+        };
+    }
+
+
+    @Test(dataProvider = "exceptionMessages_DataProvider")
+    public void testExceptionMessages(String schedule, String expected) throws Exception
+    {
+        try
+        {
+            new Parser().parse(schedule);
+            Assert.fail("The schedule is invalid: " + schedule);
+        }
+        catch (ScheduleFormatException e)
+        {
+            Assert.assertEquals(e.getMessage(), expected);
+        }
+    }
+
+    @DataProvider
+    private Object[][] exceptionMessages_DataProvider()
+    {
+        return new Object[][] {
+            {"  ",                  "Empty schedule.\nTrouble in this schedule:   "},
+            {"*.*.* 12:00:00 1",    "Invalid schedule. Weekday MUST follow AFTER date.\nTrouble in this schedule: *.*.* 12:00:00 1"},
+            {"*.*.* 1.2.3 12:00",   "Invalid schedule. Time MUST follow AFTER date.\nTrouble in this schedule: *.*.* 1.2.3 12:00"},
+            {"1:0:0 1:0:0",         "Invalid schedule. The Time element is redundant.\nTrouble in this schedule: 1:0:0 1:0:0"},
+            {"*.*.* 1",             "Time is not present in schedule (it required).\nTrouble in this schedule: *.*.* 1"},
+            {"1.2 12:00:00",        "Wrong date in schedule (expected exactly 3 elements).\nTrouble in this schedule: 1.2"},
+            {"12:00",               "Wrong time in schedule (expected exactly 3 elements).\nTrouble in this schedule: 12:00"},
+            {"12:00:1,5-x",         "Invalid format of the schedule element.\nTrouble in this schedule: 5-x"},
+            {"12:00:99999999999",   "Invalid format of the schedule element (expected number).\nTrouble in this schedule: 99999999999"},
+            {"12:00:1-5/0,*",       "Asterisk (*) MUST NOT follow in values list.\nProblem in element: *\nTrouble in this schedule: 12:00:1-5/0,*"},
         };
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParseCharSequence() throws Exception
+    {
+        Parser parser = new Parser();
+        parser.parse(CharBuffer.wrap("[*.*.* 1-5 12:00:00]").subSequence(1, 19));
+
+        Assert.assertEquals(parser.getScheduleModel().toString(), "[*.*.*] 2-6 [12:0:0.0]");
+    }
+}
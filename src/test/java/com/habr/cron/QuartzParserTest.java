@@ -0,0 +1,86 @@
+package com.habr.cron;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class QuartzParserTest
+{
+    @Test(expectedExceptions = {ScheduleFormatException.class},
+            dataProvider = "parseInvalid_DataProvider")
+    public void testParse_WhenExpressionHasInvalidFormat(String expression) throws Exception
+    {
+        new QuartzParser().parse(expression);
+    }
+
+    @DataProvider
+    private Object[][] parseInvalid_DataProvider()
+    {
+        return new Object[][] {
+            {""}, {null}, {"  \t "}, {"tarabarschina"},
+            // wrong number of fields
+            {"0 0 12 * *"}, {"0 0 12 ? * MON 2020 1"},
+            // both days or none of them are '?'
+            {"0 0 12 * * MON"}, {"0 0 12 ? * ?"}, {"0 0 12 1 * 1"},
+            // '?' in other fields, or in list
+            {"? 0 12 ? * *"}, {"0 0 12 ?,1 * *"},
+            // out of range
+            {"60 0 12 ? * *"}, {"0 0 24 ? * *"}, {"0 0 12 0 * ?"}, {"0 0 12 ? 13 *"}, {"0 0 12 ? * 0"}, {"0 0 12 ? * 8"},
+            // the special days
+            {"0 0 12 ? * 6#6"}, {"0 0 12 ? * 6#0"}, {"0 0 12 ? * 8L"}, {"0 0 12 L-31 * ?"}, {"0 0 12 32W * ?"},
+            {"0 0 12 15W,16 * ?"}, {"0 0 12 ? * 6#3,5"}, {"0 0 12 L-3X * ?"}, {"0 0 12 ? * LW"}, {"0 0 12 ? * 5W"},
+            // wrong names and syntax
+            {"0 0 12 ? FOO *"}, {"0 0 12 ? * MONDAY"}, {"0 0 12 ? * MON-"}, {"0 0 12 1, * ?"}, {"0 0 12 1-2-3 * ?"},
+            {"0/ 0 12 ? * *"}, {"0 0 12 ? * 2147483648"},
+            // the step 0
+            {"0/0 0 12 ? * *"}, {"0 0 12 ? * */0"}, {"0 0 0-12/0 ? * *"},
+        };
+    }
+
+
+
+    @Test(dataProvider = "expressionAndItsModels_DataProvider")
+    public void testModelBuilding(String expression, String expected) throws Exception
+    {
+        QuartzParser parser = new QuartzParser();
+        parser.parse(expression);
+        Assert.assertEquals(parser.getScheduleModel().toString(), expected);
+    }
+
+    @DataProvider
+    private Object[][] expressionAndItsModels_DataProvider()
+    {
+        return new Object[][] {
+            {"0 0 12 * * ?",                        "[*.*.*] * [12:0:0.0]"},
+            {"0 0 12 ? * MON-FRI",                  "[*.*.*] 2-6 [12:0:0.0]"},
+            {"0/5 14,18 * ? JAN-MAR,DEC WED",       "[*.1-3,12.*] 4 [*:14,18:0-59/5.0]"},
+            {"0 0 22-2 ? * *",                      "[*.*.*] * [22,23,0,1,2:0:0.0]"},
+            {"0 0 0 ? * */2 */4",                   "[1970-9999/4.*.*] */2 [0:0:0.0]"},
+            {"0 0 0 1/10 * ? 2020-2030",            "[2020-2030.*.1-31/10] * [0:0:0.0]"},
+            {"0 0 0 ? * FRI-MON",                   "[*.*.*] 6,7,1,2 [0:0:0.0]"},
+            // the special days
+            {"0 15 10 L * ?",                       "[*.*.32] * [10:15:0.0]"},
+            {"0 15 10 L-2 * ?",                     "[*.*.L-2] * [10:15:0.0]"},
+            {"0 15 10 LW * ?",                      "[*.*.LW] * [10:15:0.0]"},
+            {"0 15 10 l-3w * ?",                    "[*.*.L-3W] * [10:15:0.0]"},
+            {"0 15 10 15W * ?",                     "[*.*.15W] * [10:15:0.0]"},
+            {"0 15 10 ? * L",                       "[*.*.*] 7 [10:15:0.0]"},
+            {"0 15 10 ? * 6L 2002-2005",            "[2002-2005.*.*] 5L [10:15:0.0]"},
+            {"0 15 10 ? * fri#3",                   "[*.*.*] 5#3 [10:15:0.0]"},
+        };
+    }
+
+    @Test
+    public void testSpecialDayIsNotAnyDay() throws Exception
+    {
+        QuartzParser parser = new QuartzParser();
+
+        parser.parse("0 0 12 15W * ?");
+        Assert.assertFalse(parser.getScheduleModel().isAnyDate());
+        Assert.assertTrue(parser.getScheduleModel().isAnyWeekDay());
+
+        parser.parse("0 0 12 ? * 2#1");
+        Assert.assertTrue(parser.getScheduleModel().isAnyDate());
+        Assert.assertFalse(parser.getScheduleModel().isAnyWeekDay());
+    }
+}
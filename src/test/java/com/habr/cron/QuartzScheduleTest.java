@@ -0,0 +1,113 @@
+package com.habr.cron;
+
+import org.quartz.CronExpression;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * The events of the Quartz expressions are compared with the reference implementation (org.quartz.CronExpression).
+ */
+public class QuartzScheduleTest
+{
+    private static final long FROM = 946684800000L; // 2000.01.01
+    private static final long TO = 2208988800000L; // 2040.01.01
+
+    @Test(dataProvider = "expressionDataProvider")
+    public void testSameAsQuartz(String expression) throws Exception
+    {
+        Schedule schedule = Schedule.fromQuartz(expression);
+        CronExpression quartz = new CronExpression(expression);
+        quartz.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Random random = new Random(expression.hashCode());
+        for (int n = 0; n < 20; n++)
+        {
+            long start = FROM + (long) (random.nextDouble() * (TO - FROM));
+            if ( n % 2 == 0 ) start -= start % 1000; // whole seconds too
+
+            long prev = -1;
+            for (int i = 0; i < 50; i++)
+            {
+                Date expected = quartz.getNextValidTimeAfter(new Date(start));
+                if ( expected == null ) break; // Quartz has no years after the current one + 100
+
+                String message = expression + " after " + new Date(start).toInstant();
+
+                assertEquals(schedule.NextEvent(start), expected.getTime(), message);
+                if ( prev >= 0 ) assertEquals(schedule.PrevEvent(expected.getTime()), prev, message);
+
+                prev = start = expected.getTime();
+            }
+        }
+    }
+
+    @DataProvider
+    private Object[][] expressionDataProvider()
+    {
+        return new Object[][] {
+                {"0 0 12 * * ?"},
+                {"0 15 10 ? * MON-FRI"},
+                {"0 0/5 14,18 * * ?"},
+                {"0 0-5 14 * * ?"},
+                {"0 10,44 14 ? 3 WED"},
+                {"30 */7 * ? JAN,JUN-AUG *"},
+                {"0 0 12 1/5 * ?"},
+                {"0 11 11 11 11 ?"},
+                {"0 0 0 29 2 ?"},
+                {"0 0 12 ? * SAT,SUN"},
+                {"0 0 22-2 ? * FRI-MON"},
+                {"0 0 9 ? * 2/2"},
+                {"0 0 12 ? * * 2030/3"},
+                {"0 0 0 31 * ?"},
+                // the special days
+                {"0 15 10 L * ?"},
+                {"0 15 10 L-2 * ?"},
+                {"0 0 0 L-30 * ?"},
+                {"0 15 10 LW * ?"},
+                {"0 15 10 L-3W * ?"},
+                {"0 0 12 15W * ?"},
+                {"0 0 12 1W * ?"},
+                {"0 0 12 28W * ?"},
+                {"0 15 10 ? * 6L"},
+                {"0 15 10 ? * 1L"},
+                {"0 15 10 ? * 6#3"},
+                {"0 0 0 ? * 2#5"},
+                {"0 0 0 ? 2 2#5"},
+                {"0 0 8 ? * L"},
+                // the repeated values
+                {"0 0 13,13 * * ?"},
+                {"0 5,5 * * * ?"},
+                {"0 0 12 1,1,15 * ?"},
+                {"0 10,44,10 14 ? 3 WED,WED"},
+        };
+    }
+
+    @Test
+    public void testSpecialDays() throws Exception
+    {
+        // 2021: 1 May is Saturday, 31 Oct is Sunday
+        assertEquals(Schedule.fromQuartz("0 0 0 1W * ?").NextEvent(utc(2021, 4, 20)), utc(2021, 5, 3));
+        assertEquals(Schedule.fromQuartz("0 0 0 LW * ?").NextEvent(utc(2021, 10, 1)), utc(2021, 10, 29));
+        assertEquals(Schedule.fromQuartz("0 0 0 ? * 6#5").NextEvent(utc(2021, 1, 1)), utc(2021, 1, 29));
+        assertEquals(Schedule.fromQuartz("0 0 0 ? * 6L").PrevEvent(utc(2021, 10, 1)), utc(2021, 9, 24));
+        assertEquals(Schedule.fromQuartz("0 0 0 L-2 2 ?").NextEvent(utc(2024, 1, 1)), utc(2024, 2, 27));
+    }
+
+    @Test
+    public void testEventsCount() throws Exception
+    {
+        Schedule schedule = Schedule.fromQuartz("0 0 12 ? * 2#1");
+        assertEquals(schedule.countEvents(utc(2021, 1, 1), utc(2022, 1, 1)), 12);
+    }
+
+    private static long utc(int year, int month, int day)
+    {
+        return GregCalendar.epochDay(year, month, day) * 86400000L;
+    }
+}
@@ -0,0 +1,133 @@
+package com.habr.cron;
+
+import org.testng.annotations.Test;
+
+import java.time.ZoneId;
+
+import static org.testng.Assert.*;
+
+public class ScheduleCacheTest
+{
+    @Test
+    public void testSameSchedule() throws Exception
+    {
+        ScheduleCache cache = new ScheduleCache(10);
+
+        Schedule first = cache.get("*.*.* 12:00:00");
+        Schedule second = cache.get("*.*.* 12:00:00");
+
+        assertSame(first, second);
+        assertEquals(cache.getHitCount(), 1);
+        assertEquals(cache.getMissCount(), 1);
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testEquivalentSchedulesShareMatchers() throws Exception
+    {
+        ScheduleCache cache = new ScheduleCache(10);
+
+        Schedule first = cache.get("10,5:00:00");
+        Schedule second = cache.get("*.*.* 5,10:0:0.000");
+
+        assertNotSame(first, second);
+        assertEquals(second.toString(), "*.*.* 5,10:0:0.000"); // the source schedule is kept
+        assertSame(first.getMatcherPool(), second.getMatcherPool());
+        assertEquals(second.NextEvent(0), 5 * 3600000L);
+        assertEquals(cache.getMissCount(), 2);
+    }
+
+    @Test
+    public void testMatchersSharedWithoutCache() throws Exception
+    {
+        Schedule first = new Schedule("*.*.* 1-5 */5:00:00");
+        Schedule second = new Schedule("*.*.* 6 */5:30:00");
+
+        DigitMatcher[] a = first.getMatcherPool().getMatchersForSchedule();
+        DigitMatcher[] b = second.getMatcherPool().getMatchersForSchedule();
+
+        assertSame(a[ScheduleElements.HOURS.ordinal()], b[ScheduleElements.HOURS.ordinal()]);
+        assertSame(a[ScheduleElements.YEAR.ordinal()], b[ScheduleElements.YEAR.ordinal()]);
+        assertNotSame(a[ScheduleElements.MINUTES.ordinal()], b[ScheduleElements.MINUTES.ordinal()]);
+
+        assertTrue(Schedule.getMatcherDedupRatio() > 1.0);
+        assertTrue(Schedule.getSharedMatcherCount() > 0);
+        assertTrue(Schedule.getMatcherRequestCount() > Schedule.getSharedMatcherCount());
+    }
+
+    @Test
+    public void testZones() throws Exception
+    {
+        ScheduleCache cache = new ScheduleCache(10);
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+
+        Schedule utc = cache.get("12:00:00", ZoneId.of("UTC"));
+        Schedule local = cache.get("12:00:00", berlin);
+
+        assertSame(utc, cache.get("12:00:00"));
+        assertSame(local, cache.get("12:00:00", berlin));
+        assertEquals(local.getZone(), berlin);
+        assertSame(utc.getMatcherPool(), local.getMatcherPool());
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        ScheduleCache cache = new ScheduleCache(2);
+
+        Schedule first = cache.get("1:00:00");
+        cache.get("2:00:00");
+        cache.get("1:00:00"); // now the second is the least recently used
+        cache.get("3:00:00");
+
+        assertEquals(cache.size(), 2);
+        assertSame(cache.get("1:00:00"), first);
+        assertEquals(cache.getMissCount(), 3);
+
+        cache.get("2:00:00");
+        assertEquals(cache.getMissCount(), 4);
+    }
+
+    @Test
+    public void testConcurrentGet() throws Exception
+    {
+        final ScheduleCache cache = new ScheduleCache(4);
+        final Schedule[][] results = new Schedule[8][100];
+        Thread[] threads = new Thread[results.length];
+
+        for (int t = 0; t < threads.length; t++)
+        {
+            final Schedule[] found = results[t];
+            threads[t] = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try {
+                        for (int i = 0; i < found.length; i++)
+                            found[i] = cache.get((i % 2) + ":00:00"); // two schedules, never evicted
+                    }
+                    catch (ScheduleFormatException e)
+                    {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        for (Schedule[] found : results)
+            for (int i = 0; i < found.length; i++)
+                assertSame(found[i], results[0][i % 2]);
+
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getHitCount() + cache.getMissCount(), 800);
+    }
+
+    @Test(expectedExceptions = ScheduleFormatException.class)
+    public void testInvalidSchedule() throws Exception
+    {
+        new ScheduleCache(10).get("25:00:00");
+    }
+}
@@ -0,0 +1,178 @@
+package com.habr.cron;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class ScheduleSetTest
+{
+    private static final String[] SCHEDULES = {
+            "*:*:*",
+            "*:*/7:0",
+            "*:*:*/13.500",
+            "*.*.* 1,3,5 *:*/5:0",
+            "*.*.32 12:00:00",
+            "*:*/2:30.100-101",
+    };
+
+    @Test
+    public void testOrderOfEvents() throws Exception
+    {
+        long start = 1500000000000L;
+        ScheduleSet set = new ScheduleSet();
+        Schedule[] schedules = new Schedule[SCHEDULES.length];
+        long[] expected = new long[SCHEDULES.length]; // the next event of every schedule
+
+        for (int i = 0; i < SCHEDULES.length; i++)
+        {
+            schedules[i] = new Schedule(SCHEDULES[i]);
+            assertEquals(set.add(schedules[i], start), i);
+            expected[i] = schedules[i].NextEvent(start);
+        }
+        assertEquals(set.size(), SCHEDULES.length);
+
+        for (int n = 0; n < 10000; n++)
+        {
+            long time = set.peekTime();
+            int id = set.poll();
+
+            assertEquals(time, min(expected), "event #" + n);
+            assertEquals(expected[id], time, "event #" + n);
+            expected[id] = schedules[id].NextEvent(time);
+            assertEquals(set.getNextTime(id), expected[id]);
+        }
+    }
+
+    @Test
+    public void testPollUntil() throws Exception
+    {
+        ScheduleSet set = new ScheduleSet();
+        int seconds = set.add(new Schedule("*:*:*"), 0);
+        int minutes = set.add(new Schedule("*:*:0"), 0);
+
+        int[] ids = new int[100];
+        long[] times = new long[100];
+
+        assertEquals(set.poll(59999, ids, times), 59);
+        assertEquals(times[0], 1000);
+        assertEquals(times[58], 59000);
+        assertEquals(set.peekTime(), 60000);
+
+        assertEquals(set.poll(60000, ids, times), 2); // both schedules at this moment
+        assertEquals(times[1], 60000);
+        assertEquals(ids[0] + ids[1], seconds + minutes);
+        assertEquals(set.peekTime(), 61000);
+
+        assertEquals(set.poll(Long.MAX_VALUE, ids, new long[3]), 3); // limited by array
+    }
+
+    @Test
+    public void testRemove() throws Exception
+    {
+        ScheduleSet set = new ScheduleSet();
+        int first = set.add(new Schedule("*:*:10"), 0);
+        int second = set.add(new Schedule("*:*:20"), 0);
+
+        assertEquals(set.peek(), first);
+        assertTrue(set.remove(first));
+        assertFalse(set.remove(first));
+        assertNull(set.getSchedule(first));
+        assertEquals(set.getNextTime(first), Long.MAX_VALUE);
+
+        assertEquals(set.peek(), second);
+        assertEquals(set.peekTime(), 20000);
+
+        assertEquals(set.add(new Schedule("*:*:5"), 0), first); // the id is reused
+        assertEquals(set.peekTime(), 5000);
+    }
+
+    @Test
+    public void testFinishedSchedule() throws Exception
+    {
+        ScheduleSet set = new ScheduleSet();
+        int once = set.add(new Schedule("2000.01.01 00:00:00"), 0);
+        int daily = set.add(new Schedule("00:00:00"), 0);
+
+        assertEquals(set.add(new Schedule("1990.01.01 00:00:00"), 946684800000L), -1); // no events
+
+        assertEquals(set.poll(), daily); // 2 Jan 1970
+        set.poll(946684800000L - 1, new int[20000], new long[20000]);
+
+        assertEquals(set.peekTime(), 946684800000L);
+        set.poll();
+        set.poll();
+        set.poll(); // the next day; the finished schedule is released
+
+        assertEquals(set.size(), 1);
+        assertNull(set.getSchedule(once));
+        assertEquals(set.peek(), daily);
+    }
+
+    @Test
+    public void testFinishedIdIsKeptTillNextPoll() throws Exception
+    {
+        ScheduleSet set = new ScheduleSet();
+        Schedule schedule = new Schedule("1970.01.01 00:00:01");
+        int once = set.add(schedule, 0);
+        set.add(new Schedule("00:00:00"), 0);
+
+        assertEquals(set.poll(), once); // the last event of the schedule
+        assertEquals(set.size(), 1);
+        assertSame(set.getSchedule(once), schedule); // the fired id still refers to the schedule
+        assertEquals(set.getNextTime(once), Long.MAX_VALUE);
+        assertNotEquals(set.add(new Schedule("*:*:*"), 0), once); // the id is not reused yet
+
+        assertTrue(set.poll() >= 0); // the next event of the other schedules
+        assertNull(set.getSchedule(once)); // released by the next poll
+        assertEquals(set.add(new Schedule("*:*:*"), 0), once); // the id is reused
+
+        // the explicit removing releases the finished schedule at once
+        int second = set.add(new Schedule("1970.01.01 00:00:00.500"), 0);
+        int[] ids = new int[1];
+        assertEquals(set.poll(500, ids, new long[1]), 1);
+        assertEquals(ids[0], second);
+        assertEquals(set.getSchedule(second).toString(), "1970.01.01 00:00:00.500");
+        assertTrue(set.remove(second));
+        assertFalse(set.remove(second));
+        assertNull(set.getSchedule(second));
+        assertEquals(set.add(new Schedule("*:*:*"), 0), second);
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        ScheduleSet set = new ScheduleSet();
+
+        assertTrue(set.isEmpty());
+        assertEquals(set.peek(), -1);
+        assertEquals(set.poll(), -1);
+        assertEquals(set.peekTime(), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testGrowth() throws Exception
+    {
+        ScheduleSet set = new ScheduleSet();
+        Schedule schedule = new Schedule("*:*:*");
+
+        for (int i = 0; i < 1000; i++)
+            set.add(schedule, 999000 - i * 1000L);
+
+        assertEquals(set.size(), 1000);
+        for (int i = 999; i >= 0; i--)
+        {
+            assertEquals(set.peekTime(), 1000000 - i * 1000L);
+            assertEquals(set.peek(), i);
+            set.remove(i);
+        }
+        assertTrue(set.isEmpty());
+    }
+
+
+    private static long min(long[] values)
+    {
+        long result = Long.MAX_VALUE;
+        for (long value : values) result = Math.min(result, value);
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+package com.habr.cron;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class ScheduleStatsTest
+{
+    private static final long START = 1609459200000L; // 2021.01.01
+
+    @Test
+    public void testHistogramBuckets()
+    {
+        long previous = -1;
+        for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 33, 100, 1000, 123456789, Long.MAX_VALUE})
+        {
+            int index = ScheduleStats.indexOf(value);
+            long highest = ScheduleStats.highestValueOf(index);
+
+            assertTrue(highest >= value, "value " + value);
+            assertTrue(highest - value <= value / 16, "value " + value); // the precision is 1/16
+            assertTrue(highest >= previous);
+            assertEquals(ScheduleStats.indexOf(highest), index);
+            previous = highest;
+        }
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        ScheduleStats stats = new ScheduleStats();
+        assertEquals(stats.getLatencyAtPercentile(99), 0);
+
+        for (int i = 1; i <= 1000; i++) stats.record(1, 0, i * 100, false);
+
+        assertEquals(stats.getSearchCount(), 1000);
+        assertEquals(stats.getMaxLatency(), 100000);
+        assertEquals(stats.getAverageLatency(), 50050.0, 0.001);
+        assertEquals(stats.getLatencyAtPercentile(50), 50000, 50000 / 16);
+        assertEquals(stats.getLatencyAtPercentile(99), 99000, 99000 / 16);
+        assertEquals(stats.getLatencyAtPercentile(100), 100000);
+        assertEquals(stats.getLatencyAtPercentile(0), 103); // the highest value of the bucket of 100
+
+        stats.reset();
+        assertEquals(stats.getSearchCount(), 0);
+        assertEquals(stats.getLatencyAtPercentile(50), 0);
+    }
+
+    @Test
+    public void testInstrumentedSearch() throws Exception
+    {
+        Schedule source = new Schedule("*.*.* 1-5 12:00:00");
+        assertNull(source.getStats());
+
+        Schedule schedule = source.instrument();
+        ScheduleStats stats = schedule.getStats();
+
+        assertEquals(schedule.NextEvent(START), source.NextEvent(START));
+        assertEquals(schedule.PrevEvent(START), source.PrevEvent(START));
+        assertEquals(stats.getSearchCount(), 2);
+        assertEquals(stats.getFailureCount(), 0);
+        assertTrue(stats.getStepCount() >= 2 * 3, "steps: " + stats.getStepCount()); // year, month, day at least
+        assertTrue(stats.getCarryCount() > 0);
+        assertTrue(stats.getMaxSteps() >= 3);
+        assertNotNull(stats.toString());
+
+        // the expensive schedule: the leap day on Monday; the carries go through the years
+        Schedule leap = new Schedule("*.02.29 1 12:00:00").instrument();
+        leap.NextEvent(START);
+        assertTrue(leap.getStats().getCarryCount() > stats.getCarryCount() / 3);
+
+        Schedule over = new Schedule("2020.*.* *:*:*").instrument();
+        try
+        {
+            over.NextEvent(START);
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assertEquals(over.getStats().getFailureCount(), 1);
+        }
+    }
+
+    @Test
+    public void testPlainSearchDoesNotCount() throws Exception
+    {
+        SearchContext context = new SearchContext();
+        Schedule source = new Schedule("*.02.29 1 12:00:00");
+
+        long event = source.NextEvent(START, context);
+        assertEquals(context.forward.carries, 0); // only the instrumented search counts
+
+        assertEquals(source.instrument().NextEvent(START, context), event);
+        assertTrue(context.forward.carries > 0);
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception
+    {
+        Path file = Files.createTempFile("cronex", ".jfr");
+        try
+        {
+            try (Recording recording = new Recording())
+            {
+                recording.enable("com.habr.cron.Build");
+                recording.enable("com.habr.cron.Search").withThreshold(Duration.ZERO);
+                recording.start();
+
+                Schedule schedule = new Schedule("*.*.* 1-5 12:00:00").instrument();
+                schedule.NextEvent(START);
+                new Schedule("*:*:*").NextEvent(START); // not instrumented: no events
+
+                recording.stop();
+                recording.dump(file);
+            }
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            int builds = 0, searches = 0;
+            for (RecordedEvent event : events)
+            {
+                String name = event.getEventType().getName();
+                if ( name.equals("com.habr.cron.Build") )
+                    builds++;
+
+                else if ( name.equals("com.habr.cron.Search") )
+                {
+                    searches++;
+                    assertEquals(event.getString("schedule"), "*.*.* 1-5 12:00:00");
+                    assertTrue(event.getBoolean("forward"));
+                    assertTrue(event.getInt("steps") >= 3);
+                    assertFalse(event.getBoolean("failed"));
+                }
+            }
+            assertEquals(builds, 1);
+            assertEquals(searches, 1);
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.habr.cron;
+
+import org.testng.annotations.Test;
+
+import java.time.ZoneId;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * The events of the records of the store are compared with the events of the same schedules.
+ */
+public class ScheduleStoreTest
+{
+    private static final long START = 1609459200000L; // 2021.01.01
+    private static final long YEAR = 365L * 86400000L;
+
+    @Test
+    public void testSameEvents() throws Exception
+    {
+        Schedule[] schedules = {
+                new Schedule("*.*.* 1-5 9:00:00"),
+                new Schedule("*.02.29 1 12:00:00"),
+                new Schedule("*.*.32 12:00:00"),
+                new Schedule("*.*.20-32/3 0:0:0"),
+                new Schedule("2021-2030/3.1,3,7.1-10/2 */4 *:*/17:00.100-200/7,5"),
+                new Schedule("*:*:*.1,2,3,5,8,13,21,34"),
+                new Schedule("2100,2104,2300.*.* 0:0:0"),
+                new Schedule("*/2.*.* *:*:*"),
+                new Schedule("10:00:00"),
+                new Schedule("*.*.* 6 *:*/10:00"),
+                new Schedule("*.*.* 0,6 10:00:00.000-999/250"),
+                new Schedule("*.*.* *:*:*.*"),
+                new Schedule("2020.*.* 12:00:00"),
+                new Schedule("*.4,6.31 0:0:0"), // no events
+                new Schedule("*.*.* 1-5 9:00:00"),
+                Schedule.fromQuartz("0 15 10 ? * 6L 2022-2025"),
+                Schedule.fromQuartz("0 0 12 LW * ?"),
+                Schedule.fromQuartz("0 0 12 15W * ?"),
+                Schedule.fromQuartz("0 0 12 ? * 2#3"),
+                Schedule.fromCrontab("0 12 1,15 * 1"),
+                Schedule.fromCrontab("*/7 */5 * * *"),
+        };
+
+        ScheduleStore store = new ScheduleStore(1);
+        for (int i = 0; i < schedules.length; i++)
+            assertEquals(store.add(schedules[i]), i);
+
+        assertEquals(store.size(), schedules.length);
+
+        Random random = new Random(42);
+        for (int n = 0; n < 2000; n++)
+        {
+            long timestamp = START - 30 * YEAR + (long) (random.nextDouble() * 120 * YEAR);
+            if ( n % 2 == 0 ) timestamp -= timestamp % 60000L; // at the start of minute
+
+            for (int i = 0; i < schedules.length; i++)
+            {
+                Schedule schedule = schedules[i];
+                String message = schedule + " " + timestamp;
+
+                assertEquals(find(store, i, timestamp, 0), find(schedule, timestamp, 0), message);
+                assertEquals(find(store, i, timestamp, 1), find(schedule, timestamp, 1), message);
+                assertEquals(find(store, i, timestamp, 2), find(schedule, timestamp, 2), message);
+                assertEquals(find(store, i, timestamp, 3), find(schedule, timestamp, 3), message);
+            }
+        }
+    }
+
+    @Test
+    public void testMemoryUsage() throws Exception
+    {
+        ScheduleStore store = new ScheduleStore();
+        store.add("*.*.* 12:00:00");
+        assertEquals(store.getMemoryUsage(), 9 * 8 + 4);
+
+        store.add("*.*.* 1-5 9:00:00");
+        assertEquals(store.getMemoryUsage(), (9 + 21) * 8 + 2 * 4);
+
+        store.trimToSize();
+        assertEquals(store.NextEvent(1, START), START + 9 * 3600000L); // Friday
+        assertEquals(store.NextEvent(1, START + 9 * 3600000L), START + 3 * 86400000L + 9 * 3600000L); // Monday
+        assertEquals(store.NextEvent(0, START), START + 12 * 3600000L);
+
+        store.add("*:*:*"); // grows after the trim
+        assertEquals(store.NearestEvent(2, START), START);
+        assertEquals(store.PrevEvent(2, START), START - 1000);
+    }
+
+    @Test
+    public void testInvalid() throws Exception
+    {
+        ScheduleStore store = new ScheduleStore();
+        try
+        {
+            store.add(new Schedule("12:00:00", ZoneId.of("Europe/Paris")));
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            store.add(new Schedule("12:00:00").excluding(HolidayCalendar.of(LocalDate.of(2021, 1, 1))));
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            store.NextEvent(0, START);
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        assertEquals(store.size(), 0);
+    }
+
+
+
+    private static Object find(ScheduleStore store, int id, long timestamp, int mode)
+    {
+        try
+        {
+            switch (mode)
+            {
+                case 0: return store.NextEvent(id, timestamp);
+                case 1: return store.PrevEvent(id, timestamp);
+                case 2: return store.NearestEvent(id, timestamp);
+                default: return store.NearestPrevEvent(id, timestamp);
+            }
+        }
+        catch (IllegalStateException e)
+        {
+            return "out";
+        }
+    }
+
+    private static Object find(Schedule schedule, long timestamp, int mode)
+    {
+        try
+        {
+            switch (mode)
+            {
+                case 0: return schedule.NextEvent(timestamp);
+                case 1: return schedule.PrevEvent(timestamp);
+                case 2: return schedule.NearestEvent(timestamp);
+                default: return schedule.NearestPrevEvent(timestamp);
+            }
+        }
+        catch (IllegalStateException e)
+        {
+            return "out";
+        }
+    }
+}
@@ -5,6 +5,9 @@ import org.testng.annotations.Test;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Date;
 import java.util.TimeZone;
 
@@ -33,6 +36,34 @@ public class ScheduleTest
                         "\n" +
                         f.format(actual) + " <- actual ");
     }
+    @Test(dataProvider = "nextEvent_DataProvider")
+    public void testNextEvent_Timestamp(String schedule, String sourceDate, String expectedDate) throws Exception
+    {
+        Schedule s = new Schedule(schedule);
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long date = f.parse(sourceDate).getTime();
+
+        long actual = s.NextEvent(date);
+        long expected = f.parse(expectedDate).getTime();
+        assertEquals(actual, expected,
+                "\n" +
+                        f.format(new Date(expected)) + " <- expected" +
+                        "\n" +
+                        f.format(new Date(actual)) + " <- actual ");
+        assertEquals(s.NextEvent(new Date(date)).getTime(), actual);
+    }
+    @Test(dataProvider = "nextEvent_DataProvider")
+    public void testNextEvent_JavaTime(String schedule, String sourceDate, String expectedDate) throws Exception
+    {
+        Schedule s = new Schedule(schedule);
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Instant date = f.parse(sourceDate).toInstant();
+        Instant expected = f.parse(expectedDate).toInstant();
+
+        assertEquals(s.NextEvent(date), expected);
+        assertEquals(s.NextEvent(LocalDateTime.ofInstant(date, ZoneOffset.UTC)), LocalDateTime.ofInstant(expected, ZoneOffset.UTC));
+        assertEquals(s.NextEvent(date.atZone(ZoneOffset.ofHours(3))), expected.atZone(ZoneOffset.ofHours(3)));
+    }
     @DataProvider
     private Object[][] nextEvent_DataProvider() throws ParseException
     {
@@ -187,6 +218,49 @@ public class ScheduleTest
                                             "01.01.2000 00:00:00.000", // current date
                                             "31.12.2100 23:59:59.999"
                 },
+                // the dates out of 2000..2100
+                {"*.*.* * *:*:*.*", // schedule
+                                            "31.12.1969 23:59:59.999", // current date
+                                            "01.01.1970 00:00:00.000", // expected date
+                },
+                {"1950.*.* 1 09:00:00", // schedule
+                                            "01.01.1950 10:00:00.000", // current date
+                                            "02.01.1950 09:00:00.000", // expected date
+                },
+                {"*.02.29 12:00:00", // schedule (2100 is not leap year)
+                                            "01.03.2096 00:00:00.000", // current date
+                                            "29.02.2104 12:00:00.000", // expected date
+                },
+                {"*.02.32 12:00:00", // schedule (2200 is not leap year)
+                                            "01.01.2200 00:00:00.000", // current date
+                                            "28.02.2200 12:00:00.000", // expected date
+                },
+                {"*.*.32 5 12:00:00", // schedule
+                                            "01.01.2200 00:00:00.000", // current date
+                                            "31.01.2200 12:00:00.000", // expected date
+                },
+                // the repeated values of the list
+                {"*.*.* 13,13:00:00", // schedule
+                                            "01.06.2000 00:00:00.000", // current date
+                                            "01.06.2000 13:00:00.000", // expected date
+                },
+                {"*.*.1,1 00:05,5:00", // schedule
+                                            "01.06.2000 00:05:00.000", // current date
+                                            "01.07.2000 00:05:00.000", // expected date
+                },
+                // the stepped years are counted from 2000, as before the years were widened
+                {"*/3.1.1 00:00:00", // schedule
+                                            "01.06.2000 00:00:00.000", // current date
+                                            "01.01.2003 00:00:00.000", // expected date
+                },
+                {"*/3.1.1 00:00:00", // schedule
+                                            "01.06.1998 00:00:00.000", // current date
+                                            "01.01.2000 00:00:00.000", // expected date
+                },
+                {"*/7.1.1 00:00:00", // schedule
+                                            "01.06.1990 00:00:00.000", // current date
+                                            "01.01.1993 00:00:00.000", // expected date
+                },
                 // overflow protection test of the day of the month (February, and others)
                 {"*.*.29,30 12:00:00", // schedule
                                             "31.01.2021 12:00:00.000", // current date
@@ -256,6 +330,18 @@ public class ScheduleTest
                         "\n" +
                         f.format(actual) + " <- actual ");
     }
+    @Test(dataProvider = "nearestEvent_DataProvider")
+    public void testNearestEvent_JavaTime(String schedule, String sourceDate, String expectedDate) throws Exception
+    {
+        Schedule s = new Schedule(schedule);
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Instant date = f.parse(sourceDate).toInstant();
+        Instant expected = f.parse(expectedDate).toInstant();
+
+        assertEquals(s.NearestEvent(date), expected);
+        assertEquals(s.NearestEvent(LocalDateTime.ofInstant(date, ZoneOffset.UTC)), LocalDateTime.ofInstant(expected, ZoneOffset.UTC));
+        assertEquals(s.NearestEvent(date.atZone(ZoneOffset.ofHours(3))), expected.atZone(ZoneOffset.ofHours(3)));
+    }
     @DataProvider
     private Object[][] nearestEvent_DataProvider() throws ParseException
     {
@@ -485,6 +571,34 @@ public class ScheduleTest
                 "\n" +
                 f.format(actual) + " <- actual ");
     }
+    @Test(dataProvider = "prevEvent_DataProvider")
+    public void testPrevEvent_Timestamp(String schedule, String sourceDate, String expectedDate) throws Exception
+    {
+        Schedule s = new Schedule(schedule);
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long date = f.parse(sourceDate).getTime();
+
+        long actual = s.PrevEvent(date);
+        long expected = f.parse(expectedDate).getTime();
+        assertEquals(actual, expected,
+                "\n" +
+                        f.format(new Date(expected)) + " <- expected" +
+                        "\n" +
+                        f.format(new Date(actual)) + " <- actual ");
+        assertEquals(s.PrevEvent(new Date(date)).getTime(), actual);
+    }
+    @Test(dataProvider = "prevEvent_DataProvider")
+    public void testPrevEvent_JavaTime(String schedule, String sourceDate, String expectedDate) throws Exception
+    {
+        Schedule s = new Schedule(schedule);
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Instant date = f.parse(sourceDate).toInstant();
+        Instant expected = f.parse(expectedDate).toInstant();
+
+        assertEquals(s.PrevEvent(date), expected);
+        assertEquals(s.PrevEvent(LocalDateTime.ofInstant(date, ZoneOffset.UTC)), LocalDateTime.ofInstant(expected, ZoneOffset.UTC));
+        assertEquals(s.PrevEvent(date.atZone(ZoneOffset.ofHours(3))), expected.atZone(ZoneOffset.ofHours(3)));
+    }
     @DataProvider
     private Object[][] prevEvent_DataProvider()
     {
@@ -684,6 +798,18 @@ public class ScheduleTest
                         "\n" +
                         f.format(actual) + " <- actual ");
     }
+    @Test(dataProvider = "nearestPrevEvent_DataProvider")
+    public void testNearestPrevEvent_JavaTime(String schedule, String sourceDate, String expectedDate) throws Exception
+    {
+        Schedule s = new Schedule(schedule);
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Instant date = f.parse(sourceDate).toInstant();
+        Instant expected = f.parse(expectedDate).toInstant();
+
+        assertEquals(s.NearestPrevEvent(date), expected);
+        assertEquals(s.NearestPrevEvent(LocalDateTime.ofInstant(date, ZoneOffset.UTC)), LocalDateTime.ofInstant(expected, ZoneOffset.UTC));
+        assertEquals(s.NearestPrevEvent(date.atZone(ZoneOffset.ofHours(3))), expected.atZone(ZoneOffset.ofHours(3)));
+    }
     @DataProvider
     private Object[][] nearestPrevEvent_DataProvider()
     {
@@ -892,13 +1018,17 @@ public class ScheduleTest
     {
         return new Object[][] {
                 {"*.*.* * *:*:*.*", // schedule
-                        "31.12.2100 23:59:59.999", // current date
-                        "01.01.2101 00:00:00.000" // expected date - out of valid range (according format)
+                        "31.12.9999 23:59:59.999", // current date
+                        "01.01.10000 00:00:00.000" // expected date - out of valid range (according format)
                 },
                 {"2021.2.4,29,30 12:00:00", // schedule
                         "04.02.2021 12:00:00.000", // current date
                         "04.02.2022 12:00:00.000", // expected date - out of valid range (according schedule)
                 },
+                {"2000-2100.2.29 12:00:00", // schedule; 2100 isn't leap
+                        "29.02.2096 12:00:00.000", // current date
+                        "29.02.2104 12:00:00.000", // expected date - out of valid range (according schedule)
+                },
         };
     }
 
@@ -991,7 +1121,7 @@ public class ScheduleTest
                                             "30.09.2021 12:14:34.000", // expected date
                 },
                 // 31st on Wednesday (the trick is that the conditional "February 31st" falls on Wednesday,
-                // but resetDate() automatically takes us to 31.03, which is the date satisfying the condition)
+                // but the date search automatically takes us to 31.03, which is the date satisfying the condition)
                 {"*.*.31 3 12:14:34", // schedule
                                             "31.01.2021 12:14:33.177", // current date
                                             "31.03.2021 12:14:34.000", // expected date
@@ -1098,7 +1228,7 @@ public class ScheduleTest
                         "30.07.2020 12:14:34.000",  // expected date
                 },
                 // 31st on Wednesday (the trick is that the conditional "June, 2020 31st" falls on Wednesday,
-                // but resetDate() automatically takes us to 31.03, which is the date satisfying the condition)
+                // but the date search automatically takes us to 31.03, which is the date satisfying the condition)
                 {"*.*.31 3 12:14:34", // 25 extra checks
                         "31.03.2021 12:00:00.000",  // current date
                         "31.07.2019 12:14:34.000",  // expected date
@@ -1187,6 +1317,319 @@ public class ScheduleTest
         };
     }
 
+    @Test
+    public void testScheduleFromBuffer() throws Exception
+    {
+        byte[] config = "job=*.*.* 1 12:00:00;".getBytes("US-ASCII");
+
+        Schedule s = new Schedule(config, 4, 16);
+        assertEquals(s.toString(), "*.*.* 1 12:00:00");
+        assertEquals(s.NextEvent(0), 4 * 86400000L + 12 * 3600000L); // 05.01.1970 - Monday
+
+        assertEquals(new Schedule(new StringBuilder("12:00:00")).NextEvent(0), 12 * 3600000L);
+    }
+
+    @Test(dataProvider = "fillDataProvider")
+    public void testFill(String schedule, String startDate, boolean forward) throws Exception
+    {
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Date start = f.parse(startDate);
+
+        Schedule s = new Schedule(schedule);
+        ScheduleEventsGenerator expected = s.getEventsGenerator(start, forward);
+        ScheduleEventsGenerator generator = s.getEventsGenerator(start, forward);
+
+        long[] events = new long[3000];
+        int count = 0;
+        for (int chunk = 1; count < events.length; chunk = chunk * 2 + 1) // chunks of different sizes
+        {
+            int max = Math.min(chunk, events.length - count);
+            int written = generator.fill(events, count, max, forward ? Long.MAX_VALUE : Long.MIN_VALUE);
+            assertEquals(written, max);
+            count += written;
+        }
+
+        for (long event : events)
+            assertEquals(event, expected.next().getTime());
+
+        assertEquals(generator.next(), expected.next()); // the generator continues after fill
+    }
+    @DataProvider
+    public Object[][] fillDataProvider()
+    {
+        return new Object[][]{
+                {"*:*:*.*", "17.11.2021 14:00:00.000", true},
+                {"*:*:*.*", "17.11.2021 14:00:00.000", false},
+                {"*:*:*.100-101,150-151,997-999", "31.12.2021 23:59:58.000", true},
+                {"*:*:*.*/100", "17.11.2021 14:00:00.000", false},
+                {"*.*.32 12:00:00.1,2", "01.01.2020 11:30:23.157", true},
+                {"*.*.31 3 12:14:34.0-3", "01.03.2019 12:00:00.000", true},
+                {"*.*.27-32/2 1 12:14:*.5", "29.03.2021 12:00:00.000", false},
+        };
+    }
+
+    @Test
+    public void testFill_Until() throws Exception
+    {
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Schedule s = new Schedule("*:*:*.*/250");
+        ScheduleEventsGenerator generator = s.getEventsGenerator(f.parse("01.01.2021 00:00:00.000"), true);
+
+        long[] events = new long[10];
+        int count = generator.fill(events, 1, 9, f.parse("01.01.2021 00:00:01.000").getTime());
+
+        assertEquals(count, 4); // the limit is inclusive
+        assertEquals(events[0], 0);
+        assertEquals(events[1], f.parse("01.01.2021 00:00:00.250").getTime());
+        assertEquals(events[4], f.parse("01.01.2021 00:00:01.000").getTime());
+
+        assertEquals(generator.next(), f.parse("01.01.2021 00:00:01.250")); // the first event beyond the limit
+    }
+
+    @Test
+    public void testFill_Default() throws Exception
+    {
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Schedule s = new Schedule("*:*:*.*/250");
+
+        for (boolean forward : new boolean[] {true, false})
+        {
+            final ScheduleEventsGenerator source = s.getEventsGenerator(f.parse("01.01.2021 00:00:00.000"), forward);
+            ScheduleEventsGenerator expected = s.getEventsGenerator(f.parse("01.01.2021 00:00:00.000"), forward);
+
+            ScheduleEventsGenerator generator = new ScheduleEventsGenerator() // without fill
+            {
+                public Date last()
+                {
+                    return source.last();
+                }
+
+                public Date next()
+                {
+                    return source.next();
+                }
+
+                public String schedule()
+                {
+                    return source.schedule();
+                }
+            };
+
+            long[] events = new long[10];
+            long until = f.parse(forward ? "01.01.2021 00:00:01.000" : "31.12.2020 23:59:59.000").getTime();
+            assertEquals(generator.fill(events, 1, 9, until), 4);
+            for (int i = 1; i <= 4; i++)
+                assertEquals(events[i], expected.next().getTime());
+            assertEquals(events[4], until); // the limit is inclusive
+
+            assertEquals(generator.fill(events, 0, 3, forward ? Long.MAX_VALUE : Long.MIN_VALUE), 3);
+        }
+
+        Schedule over = new Schedule("2021.12.31 23:59:59.997-999");
+        final ScheduleEventsGenerator source = over.getEventsGenerator(f.parse("31.12.2021 23:59:59.997"), true);
+        ScheduleEventsGenerator generator = new ScheduleEventsGenerator()
+        {
+            public Date last()
+            {
+                return source.last();
+            }
+
+            public Date next()
+            {
+                return source.next();
+            }
+
+            public String schedule()
+            {
+                return source.schedule();
+            }
+        };
+        ScheduleEventsGenerator expected = over.getEventsGenerator(f.parse("31.12.2021 23:59:59.997"), true);
+        int count = 0;
+        try
+        {
+            while ( true )
+            {
+                expected.next();
+                count++;
+            }
+        }
+        catch (IllegalStateException e)
+        {
+            // the schedule is over
+        }
+        assertEquals(generator.fill(new long[10], 0, 10, Long.MAX_VALUE), count); // the end of the schedule
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testFill_WhenScheduleIsOver() throws Exception
+    {
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Schedule s = new Schedule("2021.12.31 23:59:59.997-999");
+        ScheduleEventsGenerator generator = s.getEventsGenerator(f.parse("31.12.2021 23:59:59.997"), true);
+
+        long[] events = new long[10];
+        assertEquals(generator.fill(events, 0, 10, Long.MAX_VALUE), 2);
+        assertEquals(events[1], f.parse("31.12.2021 23:59:59.999").getTime());
+        assertEquals(generator.fill(events, 0, 10, Long.MAX_VALUE), 0);
+
+        generator.next(); // the schedule has no more events
+    }
+
+    @Test(dataProvider = "countEventsDataProvider")
+    public void testCountEvents(String schedule, String fromDate, String toDate) throws Exception
+    {
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long from = f.parse(fromDate).getTime();
+        long to = f.parse(toDate).getTime();
+
+        Schedule s = new Schedule(schedule);
+
+        // enumerates the events [from, to)
+        ScheduleEventsGenerator generator = s.getEventsGenerator(from - 1, true);
+        long[] events = new long[100000];
+        long expected = 0;
+        int count;
+        while ( (count = generator.fill(events, 0, events.length, to - 1)) > 0 )
+            expected += count;
+
+        assertEquals(s.countEvents(from, to), expected);
+        assertEquals(s.countEvents(to, from), 0);
+    }
+    @DataProvider
+    public Object[][] countEventsDataProvider()
+    {
+        return new Object[][]{
+                {"*:*:*.*", "17.11.2021 14:00:00.000", "17.11.2021 14:01:00.000"},
+                {"*:*:*.*", "17.11.2021 14:00:00.123", "17.11.2021 14:00:00.124"},
+                {"*:*:*.*/100", "17.11.2021 14:00:00.050", "17.11.2021 15:13:00.777"},
+                {"*:*:*.100-101,150-151,997-999", "31.12.2021 23:00:58.000", "01.01.2022 00:59:00.000"},
+                {"*/4:1-59/7:10-20", "01.01.2021 00:00:00.000", "03.03.2021 17:45:15.000"},
+                {"*.*.32 12:00:00.1,2", "01.01.2020 11:30:23.157", "01.01.2030 00:00:00.000"},
+                {"*.*.31 3 12:14:34.0-3", "01.03.2019 12:00:00.000", "01.03.2039 12:00:00.000"},
+                {"*.*.27-32/2 1 12:14:*.5", "29.03.2021 12:00:00.000", "17.11.2023 14:00:00.000"},
+                {"*.9.*/2 1-5 10:00:00.000", "01.01.2000 00:00:00.000", "01.01.2100 00:00:00.000"},
+                {"*.02.29 12:00:00", "01.01.2000 00:00:00.000", "01.01.2401 00:00:00.000"},
+                {"2021,2023,2030-2032.*.20-25 0,6 *:00:00", "17.11.2020 14:00:00.000", "17.11.2035 14:00:00.000"},
+                {"1969-1971.12,1.* 23:59:59.999", "31.12.1969 23:59:59.999", "01.01.1970 00:00:00.000"},
+        };
+    }
+
+    @Test
+    public void testCountEvents_WithoutIteration() throws Exception
+    {
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Schedule s = new Schedule("*:*:*.*");
+
+        long from = f.parse("01.01.2021 00:00:00.000").getTime();
+        long to = f.parse("01.02.2021 00:00:00.000").getTime();
+
+        assertEquals(s.countEvents(from, to), 31L * 86400000L); // 2.6 billion of milliseconds
+        assertEquals(new Schedule("*.*.* 1 12:00:00").countEvents(0, f.parse("01.01.9000 00:00:00.000").getTime()),
+                (f.parse("01.01.9000 00:00:00.000").getTime() / 86400000L - 4) / 7 + 1); // 5.01.1970 - Monday
+    }
+
+    @Test(dataProvider = "nanosDataProvider")
+    public void testEventsNanos(String schedule, String sourceDate, long sourceNanos,
+                                long nearest, long next, long nearestPrev, long prev) throws Exception
+    {
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long base = f.parse(sourceDate).getTime() * 1000000L;
+
+        Schedule s = new Schedule(schedule);
+        assertEquals(s.NearestEventNanos(base + sourceNanos) - base, nearest);
+        assertEquals(s.NextEventNanos(base + sourceNanos) - base, next);
+        assertEquals(s.NearestPrevEventNanos(base + sourceNanos) - base, nearestPrev);
+        assertEquals(s.PrevEventNanos(base + sourceNanos) - base, prev);
+    }
+    @DataProvider
+    public Object[][] nanosDataProvider()
+    {
+        return new Object[][]{
+                // schedule, base date, nanoseconds from the base: source, nearest, next, nearest prev, prev
+                {"*:*:*.*.500", "17.11.2021 14:00:00.000", 0, 500000, 500000, -500000, -500000},
+                {"*:*:*.*.500", "17.11.2021 14:00:00.000", 500000, 500000, 1500000, 500000, -500000},
+                {"*:*:*.*.*.*/250", "17.11.2021 14:00:00.000", 1, 250, 250, 0, 0},
+                {"*:*:*.*.*.*/250", "17.11.2021 14:00:00.000", 999999, 1000000, 1000000, 999750, 999750},
+                {"*:*:*.0.0.1", "17.11.2021 14:00:00.000", 2, 1000000001, 1000000001, 1, 1},
+                {"*.*.32 12:00:00.999.999.999", "30.11.2021 12:00:00.999", 999999,
+                        999999, 31L * 86400000000000L + 999999, 999999, -30L * 86400000000000L + 999999},
+                // the schedule without fractions has the events on the edge of milliseconds
+                {"*:*:*.*/100", "17.11.2021 14:00:00.000", 1, 100000000, 100000000, 0, 0},
+                // before 1 Jan 1970
+                {"*:*:*.*.*.3", "31.12.1969 23:59:59.999", 999000, 999003, 999003, 998003, 998003},
+        };
+    }
+
+    @Test
+    public void testJavaTime_Nanos() throws Exception
+    {
+        Schedule s = new Schedule("*:*:*.*");
+        Instant start = Instant.parse("2021-01-01T00:00:00.000000500Z");
+
+        assertEquals(s.NearestEvent(start), Instant.parse("2021-01-01T00:00:00.001Z")); // the start is after the event
+        assertEquals(s.NearestPrevEvent(start), Instant.parse("2021-01-01T00:00:00Z"));
+
+        Schedule nanos = new Schedule("*:*:*.*.*.*/250");
+        assertEquals(nanos.NextEvent(start), Instant.parse("2021-01-01T00:00:00.000000750Z"));
+        assertEquals(nanos.PrevEvent(LocalDateTime.parse("2021-01-01T00:00:00")), LocalDateTime.parse("2020-12-31T23:59:59.999999750"));
+        assertEquals(nanos.NearestEvent(Instant.parse("1969-12-31T23:59:59.999999999Z")), Instant.EPOCH);
+    }
+
+    @Test
+    public void testEventsNanos_MillisecondsView() throws Exception
+    {
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long start = f.parse("01.01.2021 00:00:00.000").getTime();
+
+        Schedule s = new Schedule("*:*:*.*/100.500");
+        assertEquals(s.toString(), "*:*:*.*/100.500");
+        assertEquals(s.NearestEvent(start), start); // the events are in the milliseconds 0, 100, 200, ...
+        assertEquals(s.NextEvent(start), start + 100);
+        assertEquals(s.PrevEvent(start), start - 100);
+        assertEquals(s.countEvents(start, start + 1000), 10);
+        assertEquals(new Schedule("*:*:*.*/100.*").countEvents(start, start + 1000), 10000); // 1000 in each
+        assertEquals(new Schedule("*:*:*.*.*.*").countEvents(start, start + 86400000L), 86400000000000L);
+    }
+
+    @Test(expectedExceptions = ArithmeticException.class)
+    public void testCountEventsNanos_Overflow() throws Exception
+    {
+        new Schedule("*:*:*.*.*.*").countEvents(0, 400L * 86400000L * 365); // 400 years of nanoseconds
+    }
+
+    @Test
+    public void testFillNanos() throws Exception
+    {
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long start = f.parse("31.12.2021 23:59:59.998").getTime() * 1000000L + 999000;
+
+        for (boolean forward : new boolean[] {true, false})
+        {
+            Schedule s = new Schedule("*:*:*.*/2.*/7.0-10,990-999");
+            ScheduleEventsGenerator generator = s.getEventsGeneratorNanos(start, forward);
+
+            long[] events = new long[3000];
+            int count = 0;
+            for (int chunk = 1; count < events.length; chunk = chunk * 2 + 1) // chunks of different sizes
+            {
+                int max = Math.min(chunk, events.length - count);
+                int written = generator.fill(events, count, max, forward ? Long.MAX_VALUE : Long.MIN_VALUE);
+                assertEquals(written, max);
+                count += written;
+            }
+
+            long expected = start;
+            for (long event : events)
+            {
+                expected = forward ? s.NextEventNanos(expected) : s.PrevEventNanos(expected);
+                assertEquals(event, expected);
+            }
+            expected = forward ? s.NextEventNanos(expected) : s.PrevEventNanos(expected);
+            assertEquals(generator.next().getTime(), Math.floorDiv(expected, 1000000L)); // continues after fill
+        }
+    }
+
     @Test //test for #0004 bug
     public void testGeneratorOnSmallRangeForMillisMustUseBitMap() throws Exception
     {
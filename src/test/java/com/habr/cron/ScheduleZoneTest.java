@@ -0,0 +1,231 @@
+package com.habr.cron;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests of schedules in the local time with daylight saving transitions.
+ */
+public class ScheduleZoneTest
+{
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    @Test(dataProvider = "nextEvent_DataProvider")
+    public void testNextEvent(String schedule, String sourceDate, String expectedDate) throws Exception
+    {
+        Schedule s = new Schedule(schedule, BERLIN);
+
+        assertEquals(Instant.ofEpochMilli(s.NextEvent(millis(sourceDate))), Instant.parse(expectedDate));
+    }
+    @DataProvider
+    private Object[][] nextEvent_DataProvider()
+    {
+        return new Object[][] {
+                // 28.03.2021 02:00 CET -> 03:00 CEST, the local time 02:30 does not exist
+                {"02:30:00",    "2021-03-27T12:00:00Z",     "2021-03-28T01:00:00Z"}, // fired at the transition
+                {"02:30:00",    "2021-03-28T01:00:00Z",     "2021-03-29T00:30:00Z"},
+                {"*:30:00",     "2021-03-28T00:30:00Z",     "2021-03-28T01:00:00Z"},
+                {"*:30:00",     "2021-03-28T01:00:00Z",     "2021-03-28T01:30:00Z"},
+                {"12:00:00",    "2021-03-27T11:00:00Z",     "2021-03-28T10:00:00Z"}, // 12:00 CEST
+
+                // 31.10.2021 03:00 CEST -> 02:00 CET, the local time 02:30 occurs twice
+                {"02:30:00",    "2021-10-30T12:00:00Z",     "2021-10-31T00:30:00Z"}, // the earlier offset
+                {"02:30:00",    "2021-10-31T00:30:00Z",     "2021-11-01T01:30:00Z"}, // only once
+                {"02:30:00",    "2021-10-31T01:10:00Z",     "2021-11-01T01:30:00Z"}, // from the repeated hour
+                {"*:00:00",     "2021-10-31T00:00:00Z",     "2021-10-31T02:00:00Z"},
+                {"*:00:00",     "2021-10-31T01:00:00Z",     "2021-10-31T02:00:00Z"},
+                {"*:*:*",       "2021-10-31T01:00:00Z",     "2021-10-31T02:00:00Z"},
+        };
+    }
+
+
+    @Test(dataProvider = "prevEvent_DataProvider")
+    public void testPrevEvent(String schedule, String sourceDate, String expectedDate) throws Exception
+    {
+        Schedule s = new Schedule(schedule, BERLIN);
+
+        assertEquals(Instant.ofEpochMilli(s.PrevEvent(millis(sourceDate))), Instant.parse(expectedDate));
+    }
+    @DataProvider
+    private Object[][] prevEvent_DataProvider()
+    {
+        return new Object[][] {
+                {"02:30:00",    "2021-03-28T01:00:00Z",     "2021-03-27T01:30:00Z"}, // strictly before the transition
+                {"02:30:00",    "2021-03-28T01:00:00.001Z", "2021-03-28T01:00:00Z"},
+                {"02:30:00",    "2021-03-28T12:00:00Z",     "2021-03-28T01:00:00Z"},
+                {"*:30:00",     "2021-03-28T01:30:00Z",     "2021-03-28T01:00:00Z"},
+
+                {"02:30:00",    "2021-10-31T01:40:00Z",     "2021-10-31T00:30:00Z"}, // from the repeated hour
+                {"02:30:00",    "2021-10-31T02:10:00Z",     "2021-10-31T00:30:00Z"},
+                {"*:00:00",     "2021-10-31T02:00:00Z",     "2021-10-31T00:00:00Z"},
+                {"*:00:00",     "2021-10-31T01:30:00Z",     "2021-10-31T00:00:00Z"},
+        };
+    }
+
+
+    @Test
+    public void testNearestEventInGap() throws Exception
+    {
+        Schedule s = new Schedule("02:30:00", BERLIN);
+        long transition = millis("2021-03-28T01:00:00Z");
+
+        assertEquals(s.NearestEvent(transition), transition);
+        assertEquals(s.NearestPrevEvent(transition), transition);
+    }
+
+
+    @Test
+    public void testGeneratorThroughGap() throws Exception
+    {
+        Schedule s = new Schedule("*:30:00", BERLIN);
+        ScheduleEventsGenerator generator = s.getEventsGenerator(new Date(millis("2021-03-27T23:00:00Z")), true);
+
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-03-27T23:30:00Z"));
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-03-28T00:30:00Z"));
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-03-28T01:00:00Z")); // 02:30 in the gap
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-03-28T01:30:00Z"));
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-03-28T02:30:00Z"));
+    }
+
+    @Test
+    public void testGeneratorThroughGapWithDuplicates() throws Exception
+    {
+        Schedule s = new Schedule("*:*/20:00", BERLIN);
+        ScheduleEventsGenerator generator = s.getEventsGenerator(new Date(millis("2021-03-28T00:30:00Z")), true);
+
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-03-28T00:40:00Z"));
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-03-28T01:00:00Z")); // 02:00, 02:20, 02:40, 03:00
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-03-28T01:20:00Z"));
+    }
+
+    @Test
+    public void testFillThroughGapWithDuplicates() throws Exception
+    {
+        Schedule s = new Schedule("*:*/20:00", BERLIN);
+        ScheduleEventsGenerator generator = s.getEventsGenerator(millis("2021-03-28T00:30:00Z"), true);
+
+        long[] events = new long[3];
+        assertEquals(generator.fill(events, 0, 3, Long.MAX_VALUE), 3);
+
+        assertEquals(Instant.ofEpochMilli(events[0]), Instant.parse("2021-03-28T00:40:00Z"));
+        assertEquals(Instant.ofEpochMilli(events[1]), Instant.parse("2021-03-28T01:00:00Z")); // 02:00, 02:20, 02:40, 03:00
+        assertEquals(Instant.ofEpochMilli(events[2]), Instant.parse("2021-03-28T01:20:00Z"));
+    }
+
+    @Test
+    public void testFillNanosThroughGap() throws Exception
+    {
+        Schedule s = new Schedule("*:*:*.0.0.*/250", BERLIN);
+        long transition = millis("2021-03-28T01:00:00Z") * 1000000L;
+        ScheduleEventsGenerator generator = s.getEventsGeneratorNanos(transition - 1000000000L, true);
+
+        long[] events = new long[6];
+        assertEquals(generator.fill(events, 0, 6, Long.MAX_VALUE), 6);
+
+        assertEquals(events[2], transition - 1000000000L + 750); // 01:59:59.000000750
+        assertEquals(events[3], transition); // 02:00:00 .. 02:59:59 in the gap and 03:00:00, only once
+        assertEquals(events[4], transition + 250);
+        assertEquals(events[5], transition + 500);
+
+        assertEquals(s.NextEventNanos(transition - 1000000000L + 750), transition);
+        assertEquals(s.NextEventNanos(transition), transition + 250);
+        assertEquals(s.PrevEventNanos(transition + 250), transition);
+    }
+
+    @Test(dataProvider = "countEventsDataProvider")
+    public void testCountEvents(String schedule, String from, String to) throws Exception
+    {
+        Schedule s = new Schedule(schedule, BERLIN);
+
+        ScheduleEventsGenerator generator = s.getEventsGenerator(millis(from) - 1, true);
+        long expected = 0;
+        while ( generator.next().getTime() < millis(to) )
+            expected++;
+
+        assertEquals(s.countEvents(millis(from), millis(to)), expected);
+    }
+    @DataProvider
+    public Object[][] countEventsDataProvider()
+    {
+        return new Object[][] {
+                {"*:*/20:00", "2021-03-27T00:00:00Z", "2021-03-29T00:00:00Z"}, // the gap
+                {"*:*/20:00", "2021-03-28T01:00:00Z", "2021-03-28T01:00:00.001Z"}, // the moment of the gap
+                {"*:*/20:00", "2021-03-28T01:00:00.001Z", "2021-03-28T03:00:00Z"}, // after the moment of the gap
+                {"2:30:00", "2021-03-27T00:00:00Z", "2021-03-30T00:00:00Z"},
+                {"*:*/20:00", "2021-10-30T00:00:00Z", "2021-11-01T00:00:00Z"}, // the overlap
+                {"*:*/20:00", "2021-10-31T01:10:00Z", "2021-10-31T03:00:00Z"}, // in the repeated local time
+                {"*.*.* 0 2:*:00", "2021-01-01T00:00:00Z", "2023-01-01T00:00:00Z"},
+        };
+    }
+
+    @Test
+    public void testGeneratorThroughOverlap() throws Exception
+    {
+        Schedule s = new Schedule("*:30:00", BERLIN);
+        ScheduleEventsGenerator generator = s.getEventsGenerator(new Date(millis("2021-10-30T22:00:00Z")), true);
+
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-10-30T22:30:00Z"));
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-10-30T23:30:00Z"));
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-10-31T00:30:00Z"));
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-10-31T02:30:00Z"));
+    }
+
+    @Test
+    public void testBackwardGeneratorThroughOverlap() throws Exception
+    {
+        Schedule s = new Schedule("*:30:00", BERLIN);
+        ScheduleEventsGenerator generator = s.getEventsGenerator(new Date(millis("2021-10-31T01:45:00Z")), false);
+
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-10-31T00:30:00Z"));
+        assertEquals(generator.next().toInstant(), Instant.parse("2021-10-30T23:30:00Z"));
+    }
+
+
+    @Test
+    public void testJavaTime() throws Exception
+    {
+        Schedule s = new Schedule("02:30:00", BERLIN);
+        ZonedDateTime start = ZonedDateTime.parse("2021-03-28T00:00:00+01:00[Europe/Berlin]");
+
+        // 02:30 is in the gap; it's fired at the moment of transition, the result is in the zone of the argument
+        assertEquals(s.NextEvent(start), ZonedDateTime.parse("2021-03-28T03:00:00+02:00[Europe/Berlin]"));
+        assertEquals(s.NextEvent(start.withZoneSameInstant(ZoneId.of("Z"))).toInstant(), Instant.parse("2021-03-28T01:00:00Z"));
+        assertEquals(s.NextEvent(start.toInstant()), Instant.parse("2021-03-28T01:00:00Z"));
+
+        // the local time has no transitions
+        assertEquals(s.NextEvent(LocalDateTime.parse("2021-03-28T00:00:00")), LocalDateTime.parse("2021-03-28T02:30:00"));
+    }
+
+    @Test
+    public void testFixedOffset() throws Exception
+    {
+        Schedule s = new Schedule("12:00:00", ZoneId.of("+03:00"));
+
+        assertEquals(Instant.ofEpochMilli(s.NextEvent(millis("2021-01-01T00:00:00Z"))),
+                Instant.parse("2021-01-01T09:00:00Z"));
+        assertEquals(Instant.ofEpochMilli(s.PrevEvent(millis("2021-01-01T00:00:00Z"))),
+                Instant.parse("2020-12-31T09:00:00Z"));
+    }
+
+    @Test
+    public void testUtcZoneIsDefault() throws Exception
+    {
+        assertEquals(new Schedule("12:00:00").getZone(), ZoneId.of("Z"));
+        assertEquals(new Schedule("12:00:00", ZoneId.of("UTC")).getZone(), ZoneId.of("Z"));
+        assertEquals(new Schedule("12:00:00", BERLIN).getZone(), BERLIN);
+    }
+
+
+    private static long millis(String instant)
+    {
+        return Instant.parse(instant).toEpochMilli();
+    }
+}
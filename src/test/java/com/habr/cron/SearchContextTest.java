@@ -0,0 +1,67 @@
+package com.habr.cron;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import static org.testng.Assert.assertEquals;
+
+public class SearchContextTest
+{
+    private final SimpleDateFormat f;
+
+    public SearchContextTest()
+    {
+        f = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss.SSS");
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * The same context is used for different schedules (with and without 'last day' proxy)
+     * and in different directions; the results must be the same as for the fresh searches.
+     */
+    @Test(dataProvider = "schedules_DataProvider")
+    public void testReuseContext(String schedule, String sourceDate) throws Exception
+    {
+        SearchContext context = new SearchContext();
+        Schedule other = new Schedule("*.*.32 12:00:00");
+        Schedule s = new Schedule(schedule);
+        long date = f.parse(sourceDate).getTime();
+
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(s.NextEvent(date, context), s.NextEvent(date));
+            assertEquals(other.PrevEvent(date, context), other.PrevEvent(date));
+            assertEquals(s.PrevEvent(date, context), s.PrevEvent(date));
+            assertEquals(other.NearestEvent(date, context), other.NearestEvent(date));
+            assertEquals(s.NearestEvent(date, context), s.NearestEvent(date));
+            assertEquals(s.NearestPrevEvent(date, context), s.NearestPrevEvent(date));
+        }
+    }
+    @DataProvider
+    private Object[][] schedules_DataProvider()
+    {
+        return new Object[][] {
+                {"*.*.* *:*:*.*",               "30.09.2021 12:00:00.002"},
+                {"*.*.20-32 12:00:00",          "30.04.2021 12:00:00.000"},
+                {"*.*.1-10 12:00:00",           "30.04.2021 12:00:00.000"},
+                {"*.9.*/2 1-5 10:00:00.000",    "03.09.2020 12:00:00.000"},
+                {"*.*.31 3 12:14:34",           "31.01.2021 12:14:33.177"},
+        };
+    }
+
+
+    @Test
+    public void testContextKeepsCalendarAfterSearch() throws Exception
+    {
+        SearchContext context = new SearchContext();
+        Schedule s = new Schedule("*.*.32 12:00:00");
+
+        long next = s.NextEvent(f.parse("28.04.2021 12:00:00.000").getTime(), context);
+
+        assertEquals(next, f.parse("30.04.2021 12:00:00.000").getTime());
+        assertEquals(context.calendar.asTimestamp(), next);
+    }
+}
@@ -0,0 +1,122 @@
+package com.habr.cron;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneRules;
+
+import static org.testng.Assert.*;
+
+public class ZoneTransitionsTest
+{
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    @Test(dataProvider = "zones_DataProvider")
+    public void testOffsetsEqualsToRules(String zoneId) throws Exception
+    {
+        ZoneId zone = ZoneId.of(zoneId);
+        ZoneRules rules = zone.getRules();
+        ZoneTransitions table = ZoneTransitions.of(zone);
+
+        // every 7 hours from 1995 till 2105: covers all transitions and both sides of the table window
+        long start = LocalDateTime.of(1995, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+        long end = LocalDateTime.of(2105, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        for (long instant = start; instant < end; instant += 7 * 3600000L)
+        {
+            int expected = rules.getOffset(Instant.ofEpochMilli(instant)).getTotalSeconds() * 1000;
+            assertEquals(table.getOffset(instant), expected, Instant.ofEpochMilli(instant).toString());
+            assertEquals(table.toInstant(table.toLocal(instant)) <= instant, true);
+        }
+    }
+    @DataProvider
+    private Object[][] zones_DataProvider()
+    {
+        return new Object[][] {
+                {"Europe/Berlin"}, {"America/New_York"}, {"Australia/Lord_Howe"}, {"Asia/Tokyo"}, {"+05:30"},
+        };
+    }
+
+
+    @Test
+    public void testFixedOffset() throws Exception
+    {
+        ZoneTransitions table = ZoneTransitions.of(ZoneId.of("+03:00"));
+
+        assertTrue(table.isFixed());
+        assertEquals(table.getOffset(0), 3 * 3600000);
+        assertEquals(table.toInstant(3 * 3600000), 0);
+        assertEquals(table.getRepeatedEnd(0), ZoneTransitions.NONE);
+        assertEquals(table.getGapStart(0), ZoneTransitions.NONE);
+    }
+
+
+    @Test
+    public void testGap() throws Exception
+    {
+        ZoneTransitions table = ZoneTransitions.of(BERLIN);
+
+        // 28.03.2021 02:00 CET -> 03:00 CEST (01:00 UTC)
+        long transition = instant("2021-03-28T01:00:00Z");
+
+        assertEquals(table.toInstant(local("2021-03-28T01:59:59.999")), transition - 1);
+        assertEquals(table.toInstant(local("2021-03-28T02:00:00")), transition);
+        assertEquals(table.toInstant(local("2021-03-28T02:30:00")), transition);
+        assertEquals(table.toInstant(local("2021-03-28T03:00:00")), transition);
+        assertEquals(table.toInstant(local("2021-03-28T03:00:00.001")), transition + 1);
+
+        assertEquals(table.getGapStart(local("2021-03-28T02:30:00")), local("2021-03-28T02:00:00"));
+        assertEquals(table.getGapStart(local("2021-03-28T03:00:00")), ZoneTransitions.NONE);
+        assertEquals(table.getGapStart(local("2021-03-28T01:59:59")), ZoneTransitions.NONE);
+    }
+
+
+    @Test
+    public void testOverlap() throws Exception
+    {
+        ZoneTransitions table = ZoneTransitions.of(BERLIN);
+
+        // 31.10.2021 03:00 CEST -> 02:00 CET (01:00 UTC)
+        long transition = instant("2021-10-31T01:00:00Z");
+
+        // the repeated local time is resolved to the earlier offset
+        assertEquals(table.toInstant(local("2021-10-31T02:30:00")), instant("2021-10-31T00:30:00Z"));
+        assertEquals(table.toInstant(local("2021-10-31T03:00:00")), instant("2021-10-31T02:00:00Z"));
+
+        assertEquals(table.getRepeatedEnd(transition - 1), ZoneTransitions.NONE);
+        assertEquals(table.getRepeatedEnd(transition), local("2021-10-31T03:00:00"));
+        assertEquals(table.getRepeatedEnd(transition + 3600000 - 1), local("2021-10-31T03:00:00"));
+        assertEquals(table.getRepeatedEnd(transition + 3600000), ZoneTransitions.NONE);
+    }
+
+
+    @Test
+    public void testOutOfTableWindow() throws Exception
+    {
+        ZoneTransitions table = ZoneTransitions.of(BERLIN);
+
+        // 26.03.1995 02:00 CET -> 03:00 CEST; 24.09.1995 03:00 CEST -> 02:00 CET
+        assertEquals(table.toInstant(local("1995-03-26T02:30:00")), instant("1995-03-26T01:00:00Z"));
+        assertEquals(table.getGapStart(local("1995-03-26T02:30:00")), local("1995-03-26T02:00:00"));
+        assertEquals(table.toInstant(local("1995-09-24T02:30:00")), instant("1995-09-24T00:30:00Z"));
+        assertEquals(table.getRepeatedEnd(instant("1995-09-24T01:30:00Z")), local("1995-09-24T03:00:00"));
+        assertEquals(table.getRepeatedEnd(instant("1995-09-24T02:30:00Z")), ZoneTransitions.NONE);
+    }
+
+
+
+    private static long instant(String text)
+    {
+        return ZonedDateTime.parse(text).toInstant().toEpochMilli();
+    }
+
+    private static long local(String text)
+    {
+        return LocalDateTime.parse(text).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}